@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test replaying recorded requests against {@link NumberOfShortestPathsFinderApi} on an embedded database, to
+ * reproduce latencies seen in production locally, e.g. before upgrading the module.
+ * <p/>
+ * Requests are read from a file with a {@link JsonPathFinderInput} per line, i.e. the bodies of requests to
+ * {@code increasinglyLongerShortestPath}, and replayed in turns by a number of threads, optionally at a target rate.
+ * With a target rate, request times are measured from when a request should have been sent rather than from when it
+ * was, so that a slow request delaying the next ones doesn't hide their wait (coordinated omission). Throughput and
+ * the distribution of request times, in microseconds, are written to a JSON report. Requests failing with an exception
+ * are counted, but their times are not recorded.
+ * <p/>
+ * Run by {@code mvn -P benchmark test-compile exec:exec@replay -Dreplay.args="..."}, with the arguments:
+ * <ul>
+ * <li>{@code --store <directory>}: Neo4j store to replay against, opened read-only, required,</li>
+ * <li>{@code --payloads <file>}: recorded requests, required,</li>
+ * <li>{@code --report <file>}: where to write the report, {@code replay-report.json} by default,</li>
+ * <li>{@code --concurrency <threads>}: number of threads sending requests, 1 by default,</li>
+ * <li>{@code --rate <requests per second>}: target rate of all threads together, 0 (as fast as possible) by default,</li>
+ * <li>{@code --requests <count>}: number of measured requests, the number of recorded ones by default. Recorded
+ * requests are replayed again from the first one if there are fewer of them,</li>
+ * <li>{@code --warmup <count>}: number of requests replayed before the measured ones, 0 by default.</li>
+ * </ul>
+ */
+public class NumberOfShortestPathsFinderApiReplay {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final NumberOfShortestPathsFinderApi api;
+    private final List<JsonPathFinderInput> payloads;
+    private final int concurrency;
+    private final double rate;
+
+    public NumberOfShortestPathsFinderApiReplay(NumberOfShortestPathsFinderApi api, List<JsonPathFinderInput> payloads, int concurrency, double rate) {
+        if (payloads.isEmpty()) {
+            throw new IllegalArgumentException("There are no requests to replay");
+        }
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive, was " + concurrency);
+        }
+
+        if (rate < 0) {
+            throw new IllegalArgumentException("Rate must not be negative, was " + rate);
+        }
+
+        this.api = api;
+        this.payloads = payloads;
+        this.concurrency = concurrency;
+        this.rate = rate;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        String store = options.get("store");
+        String payloadsFile = options.get("payloads");
+        if (store == null || payloadsFile == null) {
+            throw new IllegalArgumentException("Both --store and --payloads must be given");
+        }
+
+        List<JsonPathFinderInput> payloads = readPayloads(new File(payloadsFile));
+        File reportFile = new File(option(options, "report", "replay-report.json"));
+        int concurrency = Integer.parseInt(option(options, "concurrency", "1"));
+        double rate = Double.parseDouble(option(options, "rate", "0"));
+        long requests = Long.parseLong(option(options, "requests", String.valueOf(payloads.size())));
+        long warmup = Long.parseLong(option(options, "warmup", "0"));
+
+        GraphDatabaseService database = new GraphDatabaseFactory()
+                .newEmbeddedDatabaseBuilder(new File(store))
+                .setConfig(GraphDatabaseSettings.read_only, Boolean.TRUE.toString())
+                .newGraphDatabase();
+
+        NumberOfShortestPathsFinderApi api = new NumberOfShortestPathsFinderApi(database);
+
+        try {
+            NumberOfShortestPathsFinderApiReplay replay = new NumberOfShortestPathsFinderApiReplay(api, payloads, concurrency, rate);
+            replay.run(warmup);
+            Report report = replay.run(requests);
+
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+            System.out.println(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+        } finally {
+            api.shutdown();
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Replay requests, cycling through the recorded ones.
+     *
+     * @param requests number of requests to replay.
+     * @return report of the replay.
+     * @throws Exception if a thread replaying requests failed, other than by a request failing.
+     */
+    public Report run(long requests) throws Exception {
+        final Histogram requestTimes = new Histogram();
+        final AtomicLong next = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong truncated = new AtomicLong();
+        final long total = requests;
+        final long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        final long startTime = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        long request;
+                        while ((request = next.getAndIncrement()) < total) {
+                            long intendedTime = startTime + request * interval;
+                            waitUntil(intendedTime);
+
+                            long requestStart = interval > 0 ? intendedTime : System.nanoTime();
+                            try {
+                                if (replay(payloads.get((int) (request % payloads.size())))) {
+                                    truncated.incrementAndGet();
+                                }
+                                requestTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart));
+                            } catch (RuntimeException e) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long duration = System.nanoTime() - startTime;
+        return new Report(requests, errors.get(), truncated.get(), concurrency, rate, TimeUnit.NANOSECONDS.toMillis(duration),
+                duration > 0 ? requests * (double) TimeUnit.SECONDS.toNanos(1) / duration : 0, requestTimes.snapshot());
+    }
+
+    /**
+     * Replay a request.
+     *
+     * @return true iff the result was truncated.
+     */
+    private boolean replay(JsonPathFinderInput payload) {
+        final Map<String, String> headers = new HashMap<>();
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("setHeader".equals(method.getName())) {
+                            headers.put((String) args[0], (String) args[1]);
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+
+        api.numberOfShortestPaths(payload, response);
+
+        return headers.containsKey(NumberOfShortestPathsFinderApi.TRUNCATED_HEADER);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (boolean.class.equals(type)) {
+            return false;
+        }
+        if (int.class.equals(type)) {
+            return 0;
+        }
+        if (long.class.equals(type)) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static void waitUntil(long time) {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static List<JsonPathFinderInput> readPayloads(File file) throws IOException {
+        List<JsonPathFinderInput> payloads = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                payloads.add(MAPPER.readValue(line, JsonPathFinderInput.class));
+            }
+        }
+        return payloads;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, got " + Arrays.toString(args));
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Result of a replay, written to the report as JSON.
+     */
+    public static class Report {
+
+        private final long requests;
+        private final long errors;
+        private final long truncated;
+        private final int concurrency;
+        private final double targetRate;
+        private final long durationMillis;
+        private final double throughput;
+        private final HistogramSnapshot requestTimes;
+
+        public Report(long requests, long errors, long truncated, int concurrency, double targetRate, long durationMillis, double throughput, HistogramSnapshot requestTimes) {
+            this.requests = requests;
+            this.errors = errors;
+            this.truncated = truncated;
+            this.concurrency = concurrency;
+            this.targetRate = targetRate;
+            this.durationMillis = durationMillis;
+            this.throughput = throughput;
+            this.requestTimes = requestTimes;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTruncated() {
+            return truncated;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public double getTargetRate() {
+            return targetRate;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return requests per second, failed ones included.
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * @return distribution of request times in microseconds, failed requests excluded.
+         */
+        public HistogramSnapshot getRequestTimes() {
+            return requestTimes;
+        }
+    }
+}
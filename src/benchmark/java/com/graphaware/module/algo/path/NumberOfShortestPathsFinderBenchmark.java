@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import com.graphaware.module.algo.generator.Neo4jGraphGenerator;
+import com.graphaware.module.algo.generator.config.BarabasiAlbertConfig;
+import com.graphaware.module.algo.generator.config.BasicGeneratorConfig;
+import com.graphaware.module.algo.generator.config.ErdosRenyiConfig;
+import com.graphaware.module.algo.generator.config.WattsStrogatzConfig;
+import com.graphaware.module.algo.generator.node.SocialNetworkNodeCreator;
+import com.graphaware.module.algo.generator.relationship.BarabasiAlbertRelationshipGenerator;
+import com.graphaware.module.algo.generator.relationship.ErdosRenyiRelationshipGenerator;
+import com.graphaware.module.algo.generator.relationship.RelationshipGenerator;
+import com.graphaware.module.algo.generator.relationship.SocialNetworkRelationshipCreator;
+import com.graphaware.module.algo.generator.relationship.WattsStrogatzRelationshipGenerator;
+import org.neo4j.graphdb.*;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link NumberOfShortestPathsFinder} on graphs generated by {@link Neo4jGraphGenerator}. Every trial
+ * generates a graph with random relationship costs and samples pairs of nodes at a fixed distance from each other,
+ * which are then searched for in turns. Both throughput and latency percentiles are measured.
+ * <p/>
+ * Run by {@code mvn -P benchmark verify}, see the benchmark profile in pom.xml. The state is shared, so the benchmark
+ * must be run with a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NumberOfShortestPathsFinderBenchmark {
+
+    private static final String COST = "cost";
+    private static final int MAX_COST = 10;
+    private static final int PAIRS = 64;
+    private static final long SEED = 42;
+
+    /**
+     * Graph generators to benchmark on, all generating graphs with a mean degree of 6.
+     */
+    public enum Generator {
+        ERDOS_RENYI {
+            @Override
+            RelationshipGenerator<?> create(int size) {
+                return new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(size, size * 3));
+            }
+        },
+        BARABASI_ALBERT {
+            @Override
+            RelationshipGenerator<?> create(int size) {
+                return new BarabasiAlbertRelationshipGenerator(new BarabasiAlbertConfig(size, 3));
+            }
+        },
+        WATTS_STROGATZ {
+            @Override
+            RelationshipGenerator<?> create(int size) {
+                return new WattsStrogatzRelationshipGenerator(new WattsStrogatzConfig(size, 6, 0.5));
+            }
+        };
+
+        abstract RelationshipGenerator<?> create(int size);
+    }
+
+    @Param
+    public Generator generator;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    @Param({"2", "3"})
+    public int distance;
+
+    @Param({"3", "5"})
+    public int maxDepth;
+
+    @Param({"1", "10", "100"})
+    public int maxResults;
+
+    @Param
+    public SortOrder sortOrder;
+
+    private GraphDatabaseService database;
+    private NumberOfShortestPathsFinder pathFinder;
+    private long[] starts;
+    private long[] ends;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        pathFinder = new NumberOfShortestPathsFinder();
+
+        new Neo4jGraphGenerator(database).generateGraph(new BasicGeneratorConfig(
+                generator.create(size),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        Random random = new Random(SEED);
+
+        try (Transaction tx = database.beginTx()) {
+            for (Relationship relationship : database.getAllRelationships()) {
+                relationship.setProperty(COST, 1 + random.nextInt(MAX_COST));
+            }
+            tx.success();
+        }
+
+        samplePairs(random);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public int findPaths() {
+        int pair = next;
+        next = (next + 1) % starts.length;
+
+        try (Transaction tx = database.beginTx()) {
+            PathFinderInput input = new PathFinderInput(database.getNodeById(starts[pair]), database.getNodeById(ends[pair]))
+                    .setMaxDepth(maxDepth)
+                    .setMaxResults(maxResults)
+                    .setSortOrder(sortOrder);
+
+            if (!SortOrder.LENGTH_ASC.equals(sortOrder)) {
+                input.setCostProperty(COST);
+            }
+
+            int found = pathFinder.findPaths(input).size();
+            tx.success();
+            return found;
+        }
+    }
+
+    /**
+     * Sample pairs of nodes whose shortest path, ignoring relationship directions, has exactly the benchmarked length.
+     *
+     * @throws IllegalStateException if there are no such pairs.
+     */
+    private void samplePairs(Random random) {
+        List<long[]> pairs = new ArrayList<>();
+
+        try (Transaction tx = database.beginTx()) {
+            for (int attempt = 0; attempt < PAIRS * 10 && pairs.size() < PAIRS; attempt++) {
+                Node start = database.getNodeById(random.nextInt(size));
+                List<Node> atDistance = nodesAtDistance(start);
+                if (!atDistance.isEmpty()) {
+                    pairs.add(new long[]{start.getId(), atDistance.get(random.nextInt(atDistance.size())).getId()});
+                }
+            }
+            tx.success();
+        }
+
+        if (pairs.isEmpty()) {
+            throw new IllegalStateException("No pairs of nodes at distance " + distance + " found");
+        }
+
+        starts = new long[pairs.size()];
+        ends = new long[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            starts[i] = pairs.get(i)[0];
+            ends[i] = pairs.get(i)[1];
+        }
+    }
+
+    private List<Node> nodesAtDistance(Node start) {
+        Set<Long> visited = new HashSet<>();
+        visited.add(start.getId());
+        List<Node> frontier = Collections.singletonList(start);
+
+        for (int depth = 0; depth < distance && !frontier.isEmpty(); depth++) {
+            List<Node> newFrontier = new ArrayList<>();
+            for (Node node : frontier) {
+                for (Relationship relationship : node.getRelationships(Direction.BOTH)) {
+                    Node neighbour = relationship.getOtherNode(node);
+                    if (visited.add(neighbour.getId())) {
+                        newFrontier.add(neighbour);
+                    }
+                }
+            }
+            frontier = newFrontier;
+        }
+
+        return frontier;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finder of paths for a batch of {@link PathFinderInput}s, using {@link NumberOfShortestPathsFinder} on a bounded
+ * pool of worker threads. Each worker of a batch runs in a single read transaction, in which it finds paths for one
+ * input after the other. Results are passed to a {@link BatchPathListener} in the order of the inputs, as soon as all
+ * preceding results have been passed on.
+ * <p/>
+ * The number of results held in memory waiting to be passed on is bounded, workers wait for the listener when they
+ * get too far ahead of it.
+ * <p/>
+ * This class is thread-safe. Batches started concurrently share the worker pool.
+ */
+public class BatchPathFinder {
+
+    private static final int MAX_PENDING_RESULTS_PER_WORKER = 16;
+
+    private final GraphDatabaseService database;
+    private final NumberOfShortestPathsFinder pathFinder;
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * Construct a new batch path finder.
+     *
+     * @param database to find paths in.
+     * @param threads  size of the worker pool, must be positive.
+     */
+    public BatchPathFinder(GraphDatabaseService database, int threads) {
+        this(database, new NumberOfShortestPathsFinder(), threads);
+    }
+
+    /**
+     * Construct a new batch path finder.
+     *
+     * @param database   to find paths in.
+     * @param pathFinder to find paths for each input with.
+     * @param threads    size of the worker pool, must be positive.
+     */
+    public BatchPathFinder(GraphDatabaseService database, NumberOfShortestPathsFinder pathFinder, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, was " + threads);
+        }
+
+        this.database = database;
+        this.pathFinder = pathFinder;
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "GraphAware-BatchPathFinder-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Find paths for all inputs of a batch. Blocks until results for all inputs have been passed to the listener, or
+     * until finding paths for one of the inputs, or the listener, fails, in which case the rest of the batch is
+     * abandoned and the exception is rethrown.
+     *
+     * @param inputs      to find paths for.
+     * @param parallelism maximum number of workers to use for the batch. Capped at the size of the worker pool.
+     * @param listener    to pass the results to.
+     */
+    public void findPaths(List<PathFinderInput> inputs, int parallelism, BatchPathListener listener) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+        }
+
+        if (inputs.isEmpty()) {
+            return;
+        }
+
+        int workers = Math.min(Math.min(parallelism, threads), inputs.size());
+        Batch batch = new Batch(inputs, workers * MAX_PENDING_RESULTS_PER_WORKER);
+
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(batch);
+            }
+
+            for (int i = 0; i < inputs.size(); i++) {
+                listener.resultFound(i, batch.awaitResult(i));
+            }
+        } finally {
+            batch.cancel();
+        }
+    }
+
+    /**
+     * Stop the worker pool. Batches in progress are abandoned.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A single batch of inputs. Every worker of the batch runs this, taking the next input not yet taken by another
+     * worker, until there are no more inputs, or the batch is cancelled.
+     */
+    private class Batch implements Runnable {
+
+        private final List<PathFinderInput> inputs;
+        private final CompletableFuture<List<? extends Path>>[] results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final Semaphore pending;
+        private volatile boolean cancelled = false;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Batch(List<PathFinderInput> inputs, int maxPending) {
+            this.inputs = inputs;
+            this.results = new CompletableFuture[inputs.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new CompletableFuture<>();
+            }
+            this.pending = new Semaphore(maxPending);
+        }
+
+        @Override
+        public void run() {
+            try (Transaction tx = database.beginTx()) {
+                while (!cancelled) {
+                    pending.acquireUninterruptibly();
+
+                    int index = next.getAndIncrement();
+                    if (cancelled || index >= inputs.size()) {
+                        break;
+                    }
+
+                    //errors, such as running out of memory for a large result, must not leave the caller waiting
+                    try {
+                        results[index].complete(pathFinder.findPaths(inputs.get(index)));
+                    } catch (Throwable e) {
+                        results[index].completeExceptionally(e);
+                    }
+                }
+
+                tx.success();
+            } catch (Throwable e) {
+                //the worker could not run at all, inputs it would have taken would never be finished
+                for (CompletableFuture<List<? extends Path>> result : results) {
+                    //results already passed to the listener have been cleared
+                    if (result != null) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+
+        private List<? extends Path> awaitResult(int index) {
+            try {
+                return results[index].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for batch results", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                results[index] = null;
+                pending.release();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            //wake up all workers waiting for the listener to catch up
+            pending.release(inputs.size());
+        }
+    }
+}
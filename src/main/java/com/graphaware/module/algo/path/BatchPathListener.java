@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Path;
+
+import java.util.List;
+
+/**
+ * Listener notified by {@link BatchPathFinder} about the paths found for each input of a batch.
+ */
+public interface BatchPathListener {
+
+    /**
+     * Called for every input of the batch, in the order of the inputs, on the thread that started the batch.
+     *
+     * @param index of the input in the batch.
+     * @param paths found for the input, in the same order as {@link NumberOfShortestPathsFinder#findPaths(PathFinderInput)} returns them.
+     */
+    void resultFound(int index, List<? extends Path> paths);
+}
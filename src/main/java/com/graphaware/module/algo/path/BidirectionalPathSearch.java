@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.*;
+
+/**
+ * {@link PathSearch} expanding from both the start and the end node and joining the two halves of each path in the
+ * middle. A path of length n is thus found by expanding only about n/2 hops from each side, rather than n hops from
+ * the start node, which makes a big difference in graphs with a high average degree.
+ * <p/>
+ * The shortest path length is found by a bidirectional breadth-first search, always expanding the smaller of the two
+ * frontiers. Distances discovered by it are then used to only follow relationships on the shortest paths when
+ * enumerating them. Relationships of every expanded node are remembered for the rest of the search, so each node is
+ * expanded at most once per direction, no matter how many depths are searched.
+ * <p/>
+ * This class is not thread-safe and must be used within a transaction.
+ */
+class BidirectionalPathSearch implements PathSearch {
+
+    private final Node start;
+    private final Node end;
+    private final SearchStatistics statistics;
+
+    private final Side fromStart;
+    private final Side fromEnd;
+
+    /**
+     * Construct a new search.
+     *
+     * @param input      path finder input.
+     * @param costFinder to find relationship costs with, null if costs aren't needed.
+     * @param statistics to record search statistics in.
+     */
+    BidirectionalPathSearch(PathFinderInput input, RelationshipCostFinder costFinder, SearchStatistics statistics) {
+        this.start = input.getStart();
+        this.end = input.getEnd();
+        this.statistics = statistics;
+
+        PathExpander<Object> expander = new CountingPathExpander<>(input.getExpander(statistics), statistics);
+        this.fromStart = new Side(start, expander, costFinder);
+        this.fromEnd = new Side(end, expander.reverse(), costFinder);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findShortestPaths(int maxDepth, PathCollector collector) {
+        if (start.equals(end)) {
+            collector.collect(CompactPath.singular(start), 0);
+            return 0;
+        }
+
+        int shortestLength = Integer.MAX_VALUE;
+
+        while (shortestLength == Integer.MAX_VALUE
+                && fromStart.depth + fromEnd.depth < maxDepth
+                && !fromStart.frontier.isEmpty()
+                && !fromEnd.frontier.isEmpty()) {
+
+            if (fromStart.frontier.size() <= fromEnd.frontier.size()) {
+                shortestLength = fromStart.expandFrontier(fromEnd);
+            } else {
+                shortestLength = fromEnd.expandFrontier(fromStart);
+            }
+        }
+
+        if (shortestLength == Integer.MAX_VALUE) {
+            return -1;
+        }
+
+        findPaths(shortestLength, true, collector);
+
+        return shortestLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void findPathsWithLength(int length, PathCollector collector) {
+        findPaths(length, false, collector);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNegativeCosts() {
+        return fromStart.expansions.hasNegativeCosts() || fromEnd.expansions.hasNegativeCosts();
+    }
+
+    /**
+     * Find all paths with the given length, in which no node appears more than once.
+     *
+     * @param length   of the paths.
+     * @param shortest  true iff the length is known to be the shortest path length, in which case only nodes with the
+     *                  right distances from start and end are followed.
+     * @param collector to collect the paths with.
+     */
+    private void findPaths(int length, boolean shortest, PathCollector collector) {
+        int endLength = length / 2;
+        int startLength = length - endLength;
+
+        Map<Long, List<HalfPath>> halves = new HashMap<>();
+        NodeIdSet visited = new NodeIdSet();
+        visited.add(end.getId());
+        collectHalves(new LinkedList<Relationship>(), new LinkedList<Node>(), 0, end, endLength, shortest, visited, halves);
+
+        visited.remove(end.getId());
+        visited.add(start.getId());
+        long[] nodeIds = new long[startLength + 1];
+        nodeIds[0] = start.getId();
+        joinHalves(nodeIds, new long[startLength], 0, 0, start, startLength, shortest, visited, halves, collector);
+    }
+
+    /**
+     * Collect all paths of the given length leading to the end node, indexed by their first node.
+     */
+    private void collectHalves(LinkedList<Relationship> relationships, LinkedList<Node> nodes, long cost, Node current, int length, boolean shortest, NodeIdSet visited, Map<Long, List<HalfPath>> halves) {
+        if (relationships.size() == length) {
+            List<HalfPath> halvesForNode = halves.get(current.getId());
+            if (halvesForNode == null) {
+                halvesForNode = new LinkedList<>();
+                halves.put(current.getId(), halvesForNode);
+            }
+            halvesForNode.add(new HalfPath(relationships, nodes, cost));
+            return;
+        }
+
+        ExpansionCache.Expansion expansion = fromEnd.expansions.expand(current);
+        for (int i = 0; i < expansion.relationships.length; i++) {
+            statistics.relationshipFollowed();
+            Node neighbour = expansion.neighbours[i];
+
+            //the start node can only be the first node on the path, which is never part of the half from the end
+            if (visited.contains(neighbour.getId()) || neighbour.equals(start)) {
+                continue;
+            }
+
+            if (shortest && !fromEnd.isAtDistance(neighbour, relationships.size() + 1)) {
+                continue;
+            }
+
+            visited.add(neighbour.getId());
+            nodes.addFirst(current);
+            relationships.addFirst(expansion.relationships[i]);
+            collectHalves(relationships, nodes, PathCostCalculatorImpl.add(cost, expansion.costs[i]), neighbour, length, shortest, visited, halves);
+            relationships.removeFirst();
+            nodes.removeFirst();
+            visited.remove(neighbour.getId());
+        }
+    }
+
+    /**
+     * Find all paths of the given length leading from the start node and join them with matching halves leading to
+     * the end node, as long as the two don't share any nodes.
+     */
+    private void joinHalves(long[] nodeIds, long[] relationshipIds, int depth, long cost, Node current, int length, boolean shortest, NodeIdSet visited, Map<Long, List<HalfPath>> halves, PathCollector collector) {
+        if (depth == length) {
+            List<HalfPath> halvesForNode = halves.get(current.getId());
+            if (halvesForNode == null) {
+                return;
+            }
+
+            for (HalfPath half : halvesForNode) {
+                long totalCost = PathCostCalculatorImpl.add(cost, half.cost);
+                if (collector.accepts(totalCost) && half.isDisjointWith(visited)) {
+                    collector.collect(toPath(nodeIds, relationshipIds, half), totalCost);
+                }
+            }
+            return;
+        }
+
+        if (!collector.canExtend(cost)) {
+            return;
+        }
+
+        ExpansionCache.Expansion expansion = fromStart.expansions.expand(current);
+        for (int i = 0; i < expansion.relationships.length; i++) {
+            statistics.relationshipFollowed();
+            Node neighbour = expansion.neighbours[i];
+
+            //the end node can only be the last node on the path
+            if (visited.contains(neighbour.getId()) || (neighbour.equals(end) && depth + 1 < length)) {
+                continue;
+            }
+
+            if (shortest && !fromStart.isAtDistance(neighbour, depth + 1)) {
+                continue;
+            }
+
+            visited.add(neighbour.getId());
+            nodeIds[depth + 1] = neighbour.getId();
+            relationshipIds[depth] = expansion.relationships[i].getId();
+            joinHalves(nodeIds, relationshipIds, depth + 1, PathCostCalculatorImpl.add(cost, expansion.costs[i]), neighbour, length, shortest, visited, halves, collector);
+            visited.remove(neighbour.getId());
+        }
+    }
+
+    /**
+     * Join the first half of a path, whose IDs are in arrays reused for the next paths, with its second half.
+     */
+    private CompactPath toPath(long[] firstNodeIds, long[] firstRelationshipIds, HalfPath secondHalf) {
+        long[] nodeIds = Arrays.copyOf(firstNodeIds, firstNodeIds.length + secondHalf.nodeIds.length);
+        System.arraycopy(secondHalf.nodeIds, 0, nodeIds, firstNodeIds.length, secondHalf.nodeIds.length);
+
+        long[] relationshipIds = Arrays.copyOf(firstRelationshipIds, firstRelationshipIds.length + secondHalf.relationshipIds.length);
+        System.arraycopy(secondHalf.relationshipIds, 0, relationshipIds, firstRelationshipIds.length, secondHalf.relationshipIds.length);
+
+        return new CompactPath(start.getGraphDatabase(), nodeIds, relationshipIds);
+    }
+
+    /**
+     * Breadth-first search state and expanded relationships of one side of the search.
+     */
+    private static class Side {
+
+        private final ExpansionCache expansions;
+        private final NodeDistances distances = new NodeDistances();
+        private List<Node> frontier = new ArrayList<>();
+        private int depth = 0;
+
+        private Side(Node origin, PathExpander<Object> expander, RelationshipCostFinder costFinder) {
+            this.expansions = new ExpansionCache(expander, costFinder);
+            distances.put(origin.getId(), 0);
+            frontier.add(origin);
+        }
+
+        /**
+         * Expand all nodes in the frontier and move the frontier one level deeper.
+         *
+         * @param other the other side of the search.
+         * @return length of the shortest path, if the two sides have met, {@link Integer#MAX_VALUE} otherwise.
+         */
+        private int expandFrontier(Side other) {
+            int shortestLength = Integer.MAX_VALUE;
+            List<Node> newFrontier = new ArrayList<>();
+
+            for (Node node : frontier) {
+                for (Node neighbour : expansions.expand(node).neighbours) {
+                    if (!distances.containsKey(neighbour.getId())) {
+                        distances.put(neighbour.getId(), depth + 1);
+                        newFrontier.add(neighbour);
+
+                        int otherDistance = other.distances.get(neighbour.getId());
+                        if (otherDistance >= 0) {
+                            shortestLength = Math.min(shortestLength, depth + 1 + otherDistance);
+                        }
+                    }
+                }
+            }
+
+            frontier = newFrontier;
+            depth++;
+
+            return shortestLength;
+        }
+
+        /**
+         * Can the given node be at the given distance from this side's origin? Only nodes with known distances can be
+         * excluded, the distances of others are greater than the depth of the breadth-first search.
+         */
+        private boolean isAtDistance(Node node, int distance) {
+            int known = distances.get(node.getId());
+            if (known >= 0) {
+                return known == distance;
+            }
+            return distance > depth;
+        }
+    }
+
+    /**
+     * A path leading to the end node, with relationships and nodes in the direction from start to end. The nodes
+     * exclude the first node, where the path meets its other half, and include the end node.
+     */
+    private static class HalfPath {
+
+        private final long[] relationshipIds;
+        private final long[] nodeIds;
+        private final long cost;
+
+        private HalfPath(List<Relationship> relationships, List<Node> nodes, long cost) {
+            this.cost = cost;
+            this.relationshipIds = new long[relationships.size()];
+            int i = 0;
+            for (Relationship relationship : relationships) {
+                relationshipIds[i++] = relationship.getId();
+            }
+            this.nodeIds = new long[nodes.size()];
+            i = 0;
+            for (Node node : nodes) {
+                nodeIds[i++] = node.getId();
+            }
+        }
+
+        /**
+         * @return true iff none of this half's nodes are in the given set.
+         */
+        private boolean isDisjointWith(NodeIdSet nodeIds) {
+            for (long nodeId : this.nodeIds) {
+                if (nodeIds.contains(nodeId)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
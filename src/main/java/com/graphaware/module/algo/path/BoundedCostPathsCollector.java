@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * {@link PathCollector} keeping only a given number of paths with the lowest or highest cost, using a bounded heap.
+ * Memory used by the collector thus depends on the number of paths needed, rather than the number of paths found.
+ * <p/>
+ * When collecting the cheapest paths, partial paths that are already more expensive than the most expensive collected
+ * path aren't worth extending once the collector is full. This is only true when relationship costs are non-negative,
+ * so pruning can be switched off.
+ * <p/>
+ * Forks keep the same number of paths as this collector, so merging them keeps the same paths a single collector would
+ * have kept, except that paths with the same cost as the last kept path may be different ones.
+ */
+class BoundedCostPathsCollector implements PathCollector {
+
+    private final PathListener listener;
+    private final int capacity;
+    private final LengthThenCostWeightedPathComparator.SortOrder sortOrder;
+    private final boolean pruning;
+    private final PriorityQueue<WeightedPath> heap;
+    private boolean pruned = false;
+
+    /**
+     * Construct a new collector.
+     *
+     * @param listener  to pass the paths to, once all of them have been found.
+     * @param capacity  maximum number of paths to collect, no paths are collected if it isn't positive.
+     * @param sortOrder {@link LengthThenCostWeightedPathComparator.SortOrder#ASC} to keep the cheapest paths,
+     *                  {@link LengthThenCostWeightedPathComparator.SortOrder#DESC} to keep the most expensive ones.
+     * @param pruning   true iff partial paths can be pruned, i.e. relationship costs are known to be non-negative.
+     */
+    BoundedCostPathsCollector(PathListener listener, int capacity, LengthThenCostWeightedPathComparator.SortOrder sortOrder, boolean pruning) {
+        this.listener = listener;
+        this.capacity = capacity;
+        this.sortOrder = sortOrder;
+        this.pruning = pruning;
+        //the worst collected path is at the head of the heap
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)), Collections.reverseOrder(new LengthThenCostWeightedPathComparator(sortOrder)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canExtend(long partialCost) {
+        if (capacity <= 0) {
+            return false;
+        }
+
+        if (!pruning || heap.size() < capacity || LengthThenCostWeightedPathComparator.SortOrder.DESC.equals(sortOrder)) {
+            return true;
+        }
+
+        if (partialCost < heap.peek().getCost()) {
+            return true;
+        }
+
+        pruned = true;
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean accepts(long cost) {
+        if (capacity <= 0) {
+            return false;
+        }
+
+        if (heap.size() < capacity) {
+            return true;
+        }
+
+        switch (sortOrder) {
+            case ASC:
+                return cost < heap.peek().getCost();
+            case DESC:
+                return cost > heap.peek().getCost();
+            default:
+                throw new IllegalStateException("Unknown sort order " + sortOrder + ". This is a bug");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void collect(CompactPath path, long cost) {
+        heap.add(path.withCost(cost));
+
+        if (heap.size() > capacity) {
+            heap.poll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int complete() {
+        List<WeightedPath> result = new ArrayList<>(heap);
+        Collections.sort(result, new LengthThenCostWeightedPathComparator(sortOrder));
+
+        for (WeightedPath path : result) {
+            listener.pathFound(path);
+        }
+
+        return result.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PathCollector fork() {
+        return new BoundedCostPathsCollector(null, capacity, sortOrder, pruning);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void merge(PathCollector fork) {
+        BoundedCostPathsCollector other = (BoundedCostPathsCollector) fork;
+
+        List<WeightedPath> paths = new ArrayList<>(other.heap);
+        Collections.sort(paths, new LengthThenCostWeightedPathComparator(sortOrder));
+
+        for (WeightedPath path : paths) {
+            if (accepts(path.getCost())) {
+                heap.add(path);
+                if (heap.size() > capacity) {
+                    heap.poll();
+                }
+            }
+        }
+
+        pruned |= other.pruned;
+    }
+
+    /**
+     * Have any partial paths been pruned?
+     *
+     * @return true iff {@link #canExtend(long)} has returned false.
+     */
+    boolean hasPruned() {
+        return pruned;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+/**
+ * A search for the cheapest path between two nodes, regardless of its length, by Dijkstra's algorithm from the start
+ * node.
+ * <p/>
+ * Unlike {@link KCheapestPathsSearch}, which finds any number of cheapest loopless paths, this search only finds a
+ * single path, so it needs no backward search and keeps no paths. Each reached node gets an index, and its ID, tentative
+ * distance, and the relationship and node it was reached through are kept in primitive arrays at that index. Nodes
+ * wait to be settled in a {@link RadixHeap}. The arrays, the map of indices and the heap are a pooled
+ * {@link SearchState}, so the bookkeeping of the search allocates nothing, apart from growing them when the search
+ * reaches more nodes than any search before it on the same thread. Reading nodes and relationships from the database
+ * still allocates, as it does for any search. The search stops as soon as the end node has been settled.
+ * <p/>
+ * Relationships with undefined cost are never traversed. Costs must not be negative.
+ * <p/>
+ * This class is not thread-safe and must be used within a transaction.
+ */
+class CheapestPathSearch {
+
+    private final GraphDatabaseService database;
+    private final Node start;
+    private final Node end;
+    private final PathExpander<Object> expander;
+    private final RelationshipCostFinder costFinder;
+    private final SearchState state;
+
+    /**
+     * Construct a new search.
+     *
+     * @param input      path finder input.
+     * @param costFinder to find relationship costs with, must return {@link Long#MAX_VALUE} for relationships that
+     *                   must not be traversed.
+     * @param statistics to record search statistics in.
+     * @param state      working state, acquired from a {@link SearchStatePool} and not used by any other search.
+     */
+    CheapestPathSearch(PathFinderInput input, RelationshipCostFinder costFinder, SearchStatistics statistics, SearchState state) {
+        this.database = input.getStart().getGraphDatabase();
+        this.start = input.getStart();
+        this.end = input.getEnd();
+        this.expander = new CountingPathExpander<>(input.getExpander(statistics), statistics);
+        this.costFinder = costFinder;
+        this.state = state;
+        state.resetForCheapestPathSearch();
+    }
+
+    /**
+     * Find the cheapest path.
+     *
+     * @return cheapest path from the start node to the end node, null if there is no path.
+     * @throws IllegalArgumentException if a negative cost is found.
+     */
+    @SuppressWarnings("unchecked")
+    public WeightedPath findPath() {
+        RadixHeap queue = state.queue;
+
+        int startIndex = reach(start.getId());
+        state.nodeDistances[startIndex] = 0;
+        queue.push(0, startIndex);
+
+        while (!queue.isEmpty()) {
+            long distance = queue.peekKey();
+            int index = (int) queue.pop();
+
+            //stale entry of a node settled through a cheaper relationship
+            if (state.settled[index]) {
+                continue;
+            }
+            state.settled[index] = true;
+
+            if (state.nodeIds[index] == end.getId()) {
+                return toPath(startIndex, index);
+            }
+
+            Node node = database.getNodeById(state.nodeIds[index]);
+            for (Relationship relationship : (Iterable<Relationship>) expander.expand(PathImpl.singular(node), BranchState.NO_STATE)) {
+                relax(node, index, relationship, distance);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Update the tentative distance of the other node of a relationship, if it's cheaper to reach through it.
+     */
+    private void relax(Node node, int index, Relationship relationship, long distance) {
+        long cost = costFinder.getCost(relationship);
+
+        if (cost < 0) {
+            throw new IllegalArgumentException("Relationship costs must not be negative when searching for the cheapest path");
+        }
+
+        long neighbourDistance = PathCostCalculatorImpl.add(distance, cost);
+        if (neighbourDistance == Long.MAX_VALUE) {
+            return;
+        }
+
+        int neighbour = reach(relationship.getOtherNode(node).getId());
+        if (!state.settled[neighbour] && neighbourDistance < state.nodeDistances[neighbour]) {
+            state.nodeDistances[neighbour] = neighbourDistance;
+            state.previousRelationships[neighbour] = relationship.getId();
+            state.previousNodes[neighbour] = index;
+            state.queue.push(neighbourDistance, neighbour);
+        }
+    }
+
+    /**
+     * Get the index of a node, giving it the next index if it hasn't been reached yet.
+     */
+    private int reach(long nodeId) {
+        int index = state.indices.get(nodeId);
+        if (index != ReusableLongIntMap.ABSENT) {
+            return index;
+        }
+
+        state.ensureReachedCapacity();
+
+        index = state.reached++;
+        state.indices.put(nodeId, index);
+        state.nodeIds[index] = nodeId;
+        state.nodeDistances[index] = Long.MAX_VALUE;
+        state.settled[index] = false;
+        return index;
+    }
+
+    /**
+     * Build the path to the end node by following the relationships leading to each node back to the start node.
+     */
+    private WeightedPath toPath(int startIndex, int endIndex) {
+        int length = 0;
+        for (int index = endIndex; index != startIndex; index = state.previousNodes[index]) {
+            length++;
+        }
+
+        long[] pathNodeIds = new long[length + 1];
+        long[] pathRelationshipIds = new long[length];
+
+        int index = endIndex;
+        for (int i = length; i > 0; i--) {
+            pathNodeIds[i] = state.nodeIds[index];
+            pathRelationshipIds[i - 1] = state.previousRelationships[index];
+            index = state.previousNodes[index];
+        }
+        pathNodeIds[0] = state.nodeIds[startIndex];
+
+        return new WeightedCompactPath(database, pathNodeIds, pathRelationshipIds, state.nodeDistances[endIndex]);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.traversal.Paths;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable {@link Path} represented only by the IDs of its nodes and relationships. Searches produce paths in this form,
+ * so that collecting, sorting and caching them doesn't need any Neo4j objects. {@link Node}s and {@link Relationship}s
+ * are only looked up by ID when the path is iterated, typically when it is returned to a client, which must happen
+ * within a transaction.
+ */
+class CompactPath implements Path {
+
+    private final GraphDatabaseService database;
+    private final long[] nodeIds;
+    private final long[] relationshipIds;
+
+    /**
+     * Construct a new path. The arrays are not copied, so they must not be modified afterwards.
+     *
+     * @param database        the path is in.
+     * @param nodeIds         IDs of the nodes on the path, in order, one more than relationships.
+     * @param relationshipIds IDs of the relationships on the path, in order.
+     */
+    CompactPath(GraphDatabaseService database, long[] nodeIds, long[] relationshipIds) {
+        this.database = database;
+        this.nodeIds = nodeIds;
+        this.relationshipIds = relationshipIds;
+    }
+
+    /**
+     * Create a path of length 0.
+     *
+     * @param node the only node on the path.
+     * @return path.
+     */
+    static CompactPath singular(Node node) {
+        return new CompactPath(node.getGraphDatabase(), new long[]{node.getId()}, new long[0]);
+    }
+
+    /**
+     * Create a compact copy of a path.
+     *
+     * @param path to copy.
+     * @return the path itself if it already is compact, its copy otherwise.
+     */
+    static CompactPath of(Path path) {
+        if (path instanceof CompactPath) {
+            return (CompactPath) path;
+        }
+
+        long[] nodeIds = new long[path.length() + 1];
+        int i = 0;
+        for (Node node : path.nodes()) {
+            nodeIds[i++] = node.getId();
+        }
+
+        long[] relationshipIds = new long[path.length()];
+        i = 0;
+        for (Relationship relationship : path.relationships()) {
+            relationshipIds[i++] = relationship.getId();
+        }
+
+        return new CompactPath(path.startNode().getGraphDatabase(), nodeIds, relationshipIds);
+    }
+
+    /**
+     * Create a weighted path with the same nodes and relationships as this one.
+     *
+     * @param cost of the path.
+     * @return weighted path.
+     */
+    WeightedCompactPath withCost(long cost) {
+        return new WeightedCompactPath(database, nodeIds, relationshipIds, cost);
+    }
+
+    /**
+     * Get the ID of a node on the path.
+     *
+     * @param index of the node, 0 for the start node.
+     * @return node ID.
+     */
+    long nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Get the ID of a relationship on the path.
+     *
+     * @param index of the relationship, 0 for the first one.
+     * @return relationship ID.
+     */
+    long relationshipId(int index) {
+        return relationshipIds[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node startNode() {
+        return database.getNodeById(nodeIds[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node endNode() {
+        return database.getNodeById(nodeIds[nodeIds.length - 1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Relationship lastRelationship() {
+        return relationshipIds.length == 0 ? null : database.getRelationshipById(relationshipIds[relationshipIds.length - 1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Relationship> relationships() {
+        return relationships(false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Relationship> reverseRelationships() {
+        return relationships(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Node> nodes() {
+        return nodes(false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Node> reverseNodes() {
+        return nodes(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int length() {
+        return relationshipIds.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<PropertyContainer> iterator() {
+        return new IndexIterator<PropertyContainer>(nodeIds.length + relationshipIds.length, false) {
+            @Override
+            protected PropertyContainer get(int index) {
+                return index % 2 == 0 ? database.getNodeById(nodeIds[index / 2]) : database.getRelationshipById(relationshipIds[index / 2]);
+            }
+        };
+    }
+
+    private Iterable<Node> nodes(final boolean reverse) {
+        return new Iterable<Node>() {
+            @Override
+            public Iterator<Node> iterator() {
+                return new IndexIterator<Node>(nodeIds.length, reverse) {
+                    @Override
+                    protected Node get(int index) {
+                        return database.getNodeById(nodeIds[index]);
+                    }
+                };
+            }
+        };
+    }
+
+    private Iterable<Relationship> relationships(final boolean reverse) {
+        return new Iterable<Relationship>() {
+            @Override
+            public Iterator<Relationship> iterator() {
+                return new IndexIterator<Relationship>(relationshipIds.length, reverse) {
+                    @Override
+                    protected Relationship get(int index) {
+                        return database.getRelationshipById(relationshipIds[index]);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        CompactPath that = (CompactPath) o;
+        return Arrays.equals(nodeIds, that.nodeIds) && Arrays.equals(relationshipIds, that.relationshipIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(nodeIds) + Arrays.hashCode(relationshipIds);
+    }
+
+    @Override
+    public String toString() {
+        return Paths.defaultPathToString(this);
+    }
+
+    /**
+     * Iterator over the indices of an array, looking up the element for each index.
+     */
+    private static abstract class IndexIterator<T> implements Iterator<T> {
+
+        private final int size;
+        private final boolean reverse;
+        private int next = 0;
+
+        private IndexIterator(int size, boolean reverse) {
+            this.size = size;
+            this.reverse = reverse;
+        }
+
+        protected abstract T get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int index = next++;
+            return get(reverse ? size - 1 - index : index);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+import java.util.Iterator;
+
+/**
+ * {@link PathExpander} decorator that records every expanded relationship in {@link SearchStatistics}.
+ */
+class CountingPathExpander<STATE> implements PathExpander<STATE> {
+
+    private final PathExpander<STATE> wrapped;
+    private final SearchStatistics statistics;
+
+    /**
+     * Construct a new expander.
+     *
+     * @param wrapped    expander to delegate to.
+     * @param statistics to record expanded relationships in.
+     */
+    CountingPathExpander(PathExpander<STATE> wrapped, SearchStatistics statistics) {
+        this.wrapped = wrapped;
+        this.statistics = statistics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Relationship> expand(Path path, BranchState<STATE> state) {
+        final Iterable<Relationship> relationships = wrapped.expand(path, state);
+
+        return new Iterable<Relationship>() {
+            @Override
+            public Iterator<Relationship> iterator() {
+                final Iterator<Relationship> iterator = relationships.iterator();
+
+                return new Iterator<Relationship>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Relationship next() {
+                        Relationship next = iterator.next();
+                        statistics.relationshipExpanded();
+                        return next;
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PathExpander<STATE> reverse() {
+        return new CountingPathExpander<>(wrapped.reverse(), statistics);
+    }
+}
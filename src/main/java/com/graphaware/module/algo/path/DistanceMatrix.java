@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Path;
+
+/**
+ * Distances, and optionally shortest paths, between every source and every target of a {@link DistanceMatrixInput},
+ * found by {@link DistanceMatrixFinder}. Distances are stored in a single array, row by row, i.e. source by source.
+ */
+public class DistanceMatrix {
+
+    /**
+     * Distance of a target that is not reachable from a source within the maximum depth.
+     */
+    public static final int UNREACHABLE = -1;
+
+    private final int rows;
+    private final int columns;
+    private final int[] distances;
+    private final Path[] paths;
+
+    /**
+     * Construct a new matrix with all targets unreachable.
+     *
+     * @param rows         number of sources.
+     * @param columns      number of targets.
+     * @param includePaths true iff paths will be stored in the matrix.
+     */
+    DistanceMatrix(int rows, int columns, boolean includePaths) {
+        this.rows = rows;
+        this.columns = columns;
+        this.distances = new int[rows * columns];
+        this.paths = includePaths ? new Path[rows * columns] : null;
+
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = UNREACHABLE;
+        }
+    }
+
+    void set(int row, int column, int distance, Path path) {
+        distances[row * columns + column] = distance;
+        if (paths != null) {
+            paths[row * columns + column] = path;
+        }
+    }
+
+    /**
+     * Get the number of rows, i.e. sources.
+     *
+     * @return number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns, i.e. targets.
+     *
+     * @return number of columns.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the length of the shortest path between a source and a target.
+     *
+     * @param row    index of the source in {@link DistanceMatrixInput#getSources()}.
+     * @param column index of the target in {@link DistanceMatrixInput#getTargets()}.
+     * @return distance, {@link #UNREACHABLE} if there is no path within the maximum depth.
+     */
+    public int getDistance(int row, int column) {
+        checkIndices(row, column);
+        return distances[row * columns + column];
+    }
+
+    /**
+     * Get a shortest path between a source and a target. If there are more shortest paths, it is unspecified which one
+     * is returned.
+     *
+     * @param row    index of the source in {@link DistanceMatrixInput#getSources()}.
+     * @param column index of the target in {@link DistanceMatrixInput#getTargets()}.
+     * @return shortest path, null if there is no path within the maximum depth.
+     * @throws IllegalStateException if paths haven't been requested by {@link DistanceMatrixInput#setIncludePaths(boolean)}.
+     */
+    public Path getPath(int row, int column) {
+        if (paths == null) {
+            throw new IllegalStateException("Paths have not been requested");
+        }
+
+        checkIndices(row, column);
+        return paths[row * columns + column];
+    }
+
+    /**
+     * Get distances of all targets from a single source.
+     *
+     * @param row index of the source in {@link DistanceMatrixInput#getSources()}.
+     * @return distances, indexed by target, {@link #UNREACHABLE} for targets with no path within the maximum depth.
+     */
+    public int[] getRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("No row " + row + " in a " + rows + "x" + columns + " matrix");
+        }
+
+        int[] result = new int[columns];
+        System.arraycopy(distances, row * columns, result, 0, columns);
+        return result;
+    }
+
+    private void checkIndices(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("No element at " + row + ", " + column + " in a " + rows + "x" + columns + " matrix");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A finder of distances (lengths of shortest paths) and optionally shortest paths from many sources to many targets.
+ * <p/>
+ * Rather than searching for paths between every source and every target separately, a single breadth-first search is
+ * run from each source, which stops as soon as all targets have been reached, or the maximum depth has been searched.
+ * Finding an N&times;M matrix thus expands each node at most N times, rather than up to N&times;M times.
+ * <p/>
+ * Must be used within a transaction.
+ */
+public class DistanceMatrixFinder {
+
+    /**
+     * Find distances between all sources and all targets.
+     *
+     * @param input distance matrix input.
+     * @return distance matrix, with a row for each source and a column for each target.
+     */
+    public DistanceMatrix findDistances(DistanceMatrixInput input) {
+        return findDistances(input, new SearchStatistics());
+    }
+
+    /**
+     * Find distances between all sources and all targets, recording statistics about the search.
+     *
+     * @param input      distance matrix input.
+     * @param statistics to record search statistics in.
+     * @return distance matrix, with a row for each source and a column for each target.
+     */
+    public DistanceMatrix findDistances(DistanceMatrixInput input, SearchStatistics statistics) {
+        List<Node> sources = input.getSources();
+        List<Node> targets = input.getTargets();
+
+        DistanceMatrix matrix = new DistanceMatrix(sources.size(), targets.size(), input.isIncludePaths());
+
+        //the same node can be a target more than once, each occurrence has its own column
+        PrimitiveLongObjectMap<List<Integer>> columns = Primitive.longObjectMap();
+        for (int column = 0; column < targets.size(); column++) {
+            List<Integer> nodeColumns = columns.get(targets.get(column).getId());
+            if (nodeColumns == null) {
+                nodeColumns = new ArrayList<>(1);
+                columns.put(targets.get(column).getId(), nodeColumns);
+            }
+            nodeColumns.add(column);
+        }
+
+        PathExpander<Object> expander = new CountingPathExpander<>(input.getExpander(), statistics);
+
+        for (int row = 0; row < sources.size(); row++) {
+            searchFrom(sources.get(row), row, input, expander, columns, matrix);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Run a breadth-first search from a single source and fill in its row of the matrix.
+     */
+    @SuppressWarnings("unchecked")
+    private void searchFrom(Node source, int row, DistanceMatrixInput input, PathExpander<Object> expander, PrimitiveLongObjectMap<List<Integer>> columns, DistanceMatrix matrix) {
+        PrimitiveLongIntMap distances = Primitive.longIntMap();
+        PrimitiveLongObjectMap<Relationship> parents = input.isIncludePaths() ? Primitive.<Relationship>longObjectMap() : null;
+        int remainingTargets = columns.size();
+
+        distances.put(source.getId(), 0);
+        remainingTargets -= reached(source, 0, row, parents, columns, matrix);
+
+        List<Node> frontier = new ArrayList<>();
+        frontier.add(source);
+
+        for (int depth = 1; depth <= input.getMaxDepth() && remainingTargets > 0 && !frontier.isEmpty(); depth++) {
+            List<Node> newFrontier = new ArrayList<>();
+
+            for (Node node : frontier) {
+                for (Relationship relationship : (Iterable<Relationship>) expander.expand(PathImpl.singular(node), BranchState.NO_STATE)) {
+                    Node neighbour = relationship.getOtherNode(node);
+
+                    if (distances.containsKey(neighbour.getId())) {
+                        continue;
+                    }
+
+                    distances.put(neighbour.getId(), depth);
+                    if (parents != null) {
+                        parents.put(neighbour.getId(), relationship);
+                    }
+
+                    remainingTargets -= reached(neighbour, depth, row, parents, columns, matrix);
+                    newFrontier.add(neighbour);
+                }
+            }
+
+            frontier = newFrontier;
+        }
+    }
+
+    /**
+     * Record that a node has been reached by the search.
+     *
+     * @return 1 if the node is a target, 0 otherwise.
+     */
+    private int reached(Node node, int distance, int row, PrimitiveLongObjectMap<Relationship> parents, PrimitiveLongObjectMap<List<Integer>> columns, DistanceMatrix matrix) {
+        List<Integer> nodeColumns = columns.get(node.getId());
+
+        if (nodeColumns == null) {
+            return 0;
+        }
+
+        Path path = parents != null ? toPath(node, distance, parents) : null;
+        for (int column : nodeColumns) {
+            matrix.set(row, column, distance, path);
+        }
+
+        return 1;
+    }
+
+    private Path toPath(Node end, int length, PrimitiveLongObjectMap<Relationship> parents) {
+        LinkedList<Relationship> relationships = new LinkedList<>();
+        Node current = end;
+        for (int i = 0; i < length; i++) {
+            Relationship relationship = parents.get(current.getId());
+            relationships.addFirst(relationship);
+            current = relationship.getOtherNode(current);
+        }
+
+        PathImpl.Builder builder = new PathImpl.Builder(current);
+        for (Relationship relationship : relationships) {
+            builder = builder.push(relationship);
+        }
+        return builder.build();
+    }
+}
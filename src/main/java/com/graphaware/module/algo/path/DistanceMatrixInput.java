@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encapsulation of parameters for {@link DistanceMatrixFinder}, with fluent interface. Relationships to be traversed
+ * and the maximum traversal depth are specified in the same way and have the same defaults as in {@link PathFinderInput}.
+ * <p/>
+ * By default, only distances are found. Shortest paths can be requested using {@link #setIncludePaths(boolean)}.
+ * <p/>
+ * This class is not thread-safe, it should not be shared among threads (there should be no reason to do so).
+ */
+public class DistanceMatrixInput {
+
+    private final List<Node> sources;
+    private final List<Node> targets;
+    private int maxDepth = 3;
+    private final List<Object> typesAndDirections = new ArrayList<>();
+    private Direction direction;
+    private boolean includePaths = false;
+
+    /**
+     * Construct new distance matrix input.
+     *
+     * @param sources source nodes, i.e. start nodes of paths, rows of the matrix.
+     * @param targets target nodes, i.e. end nodes of paths, columns of the matrix.
+     */
+    public DistanceMatrixInput(List<Node> sources, List<Node> targets) {
+        this.sources = sources;
+        this.targets = targets;
+    }
+
+    /**
+     * Set maximum traversal depth. Targets further away from a source are reported as unreachable from it.
+     *
+     * @param maxDepth new max depth.
+     * @return self.
+     */
+    public DistanceMatrixInput setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public DistanceMatrixInput setDirection(Direction direction) {
+        this.direction = direction;
+        return this;
+    }
+
+    /**
+     * Add a relationship type to be traversed in {@link org.neo4j.graphdb.Direction#BOTH} directions.
+     *
+     * @param type relationship type.
+     * @return self.
+     */
+    public DistanceMatrixInput addType(RelationshipType type) {
+        return addTypeAndDirection(type, Direction.BOTH);
+    }
+
+    /**
+     * Add a relationship type to be traversed in the given direction.
+     *
+     * @param type      relationship type.
+     * @param direction direction.
+     * @return self.
+     */
+    public DistanceMatrixInput addTypeAndDirection(RelationshipType type, Direction direction) {
+        typesAndDirections.add(type);
+        typesAndDirections.add(direction);
+        return this;
+    }
+
+    /**
+     * Set whether a shortest path should be found for every reachable source and target, in addition to the distance.
+     *
+     * @param includePaths true to find paths.
+     * @return self.
+     */
+    public DistanceMatrixInput setIncludePaths(boolean includePaths) {
+        this.includePaths = includePaths;
+        return this;
+    }
+
+    //Getters
+
+    public List<Node> getSources() {
+        return sources;
+    }
+
+    public List<Node> getTargets() {
+        return targets;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isIncludePaths() {
+        return includePaths;
+    }
+
+    /**
+     * Get a path expander representing this input.
+     *
+     * @return path expander.
+     */
+    public PathExpander<Object> getExpander() {
+        return PathFinderInput.createExpander(typesAndDirections, direction);
+    }
+}
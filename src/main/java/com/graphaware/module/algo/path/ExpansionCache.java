@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Relationships of nodes returned by a {@link PathExpander}, read from the database only the first time they are
+ * needed and remembered for the rest of a single path search. Optionally, costs of the relationships are remembered
+ * as well.
+ * <p/>
+ * This class is not thread-safe and must be used within a transaction. Parts of a search running on other threads use
+ * caches of their own, which can read, but not modify, the expansions of a parent cache, as long as the parent isn't
+ * modified in the meantime.
+ */
+class ExpansionCache {
+
+    private final ExpansionCache parent;
+    private final PathExpander<Object> expander;
+    private final RelationshipCostFinder costFinder;
+    private final Map<Long, Expansion> expansions = new HashMap<>();
+    private boolean negativeCosts = false;
+
+    /**
+     * Construct a new cache.
+     *
+     * @param expander   to expand nodes with.
+     * @param costFinder to find relationship costs with, can be null, in which case all costs are 0.
+     */
+    ExpansionCache(PathExpander<Object> expander, RelationshipCostFinder costFinder) {
+        this(null, expander, costFinder);
+    }
+
+    /**
+     * Construct a new cache, which takes expansions from a parent cache when it has them.
+     *
+     * @param parent     to take expansions from, not modified by this cache.
+     * @param expander   to expand nodes the parent hasn't expanded with.
+     * @param costFinder to find relationship costs with, can be null, in which case all costs are 0.
+     */
+    ExpansionCache(ExpansionCache parent, PathExpander<Object> expander, RelationshipCostFinder costFinder) {
+        this.parent = parent;
+        this.expander = expander;
+        this.costFinder = costFinder;
+    }
+
+    /**
+     * Get the relationships of the given node.
+     *
+     * @param node to expand.
+     * @return expansion of the node.
+     */
+    @SuppressWarnings("unchecked")
+    Expansion expand(Node node) {
+        Expansion expansion = parent != null ? parent.expansions.get(node.getId()) : null;
+        if (expansion == null) {
+            expansion = expansions.get(node.getId());
+        }
+
+        if (expansion == null) {
+            List<Relationship> relationships = new ArrayList<>();
+            for (Relationship relationship : (Iterable<Relationship>) expander.expand(PathImpl.singular(node), BranchState.NO_STATE)) {
+                relationships.add(relationship);
+            }
+
+            expansion = new Expansion(node, relationships, costFinder);
+            expansions.put(node.getId(), expansion);
+
+            for (long cost : expansion.costs) {
+                if (cost < 0) {
+                    negativeCosts = true;
+                }
+            }
+        }
+
+        return expansion;
+    }
+
+    /**
+     * Take over the expansions of a cache created with this cache as its parent, once it is no longer used.
+     *
+     * @param child to take expansions from.
+     */
+    void merge(ExpansionCache child) {
+        for (Map.Entry<Long, Expansion> entry : child.expansions.entrySet()) {
+            if (!expansions.containsKey(entry.getKey())) {
+                expansions.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        negativeCosts |= child.negativeCosts;
+    }
+
+    /**
+     * Has a relationship with a negative cost been expanded?
+     *
+     * @return true iff a negative cost has been found.
+     */
+    boolean hasNegativeCosts() {
+        return negativeCosts;
+    }
+
+    /**
+     * Relationships of a node, as returned by the expander, the nodes at their other ends, and their costs.
+     */
+    static class Expansion {
+
+        final Relationship[] relationships;
+        final Node[] neighbours;
+        final long[] costs;
+
+        private Expansion(Node node, List<Relationship> relationships, RelationshipCostFinder costFinder) {
+            this.relationships = relationships.toArray(new Relationship[relationships.size()]);
+            this.neighbours = new Node[this.relationships.length];
+            this.costs = new long[this.relationships.length];
+            for (int i = 0; i < this.relationships.length; i++) {
+                neighbours[i] = this.relationships[i].getOtherNode(node);
+                if (costFinder != null) {
+                    costs[i] = costFinder.getCost(this.relationships[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+
+/**
+ * Immutable in-memory snapshot of the structure of a graph in compressed sparse row (CSR) format, used by
+ * {@link SearchEngine#SNAPSHOT} to find paths without reading relationships from the database.
+ * <p/>
+ * Nodes are identified by dense int indices, assigned in the order of increasing node IDs. Relationships of each node are
+ * stored twice, once for each direction, grouped by node and, within each node's range, sorted by relationship type, so
+ * that the relationships of a node with a given type and direction occupy a contiguous range of the neighbour array.
+ * Each node only has a group (a type and an offset) for every type it has relationships with, found by a binary search
+ * of the node's groups, so the snapshot takes memory linear in the number of nodes and relationships, no matter how many
+ * types there are. Optionally, the values of numerical relationship properties (costs) are stored in arrays parallel to
+ * the neighbours.
+ * <p/>
+ * The snapshot reflects the graph at the time it was built. It must be rebuilt to reflect later changes, see
+ * {@link GraphSnapshotProvider}.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class GraphSnapshot {
+
+    static final int OUTGOING = 0;
+    static final int INCOMING = 1;
+
+    /**
+     * Maximum number of times {@link #build(GraphDatabaseService, Collection)} reads the graph.
+     */
+    static final int MAX_BUILD_ATTEMPTS = 3;
+
+    private final long[] nodeIds;
+    private final Map<String, Integer> typeIndices;
+    private final int typeCount;
+    private final long relationshipCount;
+
+    //indexed by direction; the groups of a node are those from its node group to the next node's, sorted by type, and
+    //the relationships of a group are those from its group offset to the next group's
+    private final int[][] nodeGroups;
+    private final int[][] groupTypes;
+    private final int[][] groupOffsets;
+    private final int[][] neighbours;
+    private final long[][] relationshipIds;
+
+    private final Map<String, PropertyValues> costs;
+
+    private final long buildTime;
+
+    private GraphSnapshot(long[] nodeIds, Map<String, Integer> typeIndices, long relationshipCount, int[][] nodeGroups, int[][] groupTypes,
+                          int[][] groupOffsets, int[][] neighbours, long[][] relationshipIds, Map<String, PropertyValues> costs, long buildTime) {
+        this.nodeIds = nodeIds;
+        this.typeIndices = typeIndices;
+        this.typeCount = typeIndices.size();
+        this.relationshipCount = relationshipCount;
+        this.nodeGroups = nodeGroups;
+        this.groupTypes = groupTypes;
+        this.groupOffsets = groupOffsets;
+        this.neighbours = neighbours;
+        this.relationshipIds = relationshipIds;
+        this.costs = costs;
+        this.buildTime = buildTime;
+    }
+
+    /**
+     * Build a snapshot of the whole graph. Runs in its own transaction. As reading the graph isn't isolated from
+     * transactions committed meanwhile, the snapshot is built again if any were, up to {@link #MAX_BUILD_ATTEMPTS}
+     * times.
+     *
+     * @param database       to build the snapshot of.
+     * @param costProperties keys of numerical relationship properties to store in the snapshot.
+     * @return snapshot.
+     * @throws ConcurrentModificationException if the graph kept changing while the snapshot was being built.
+     */
+    public static GraphSnapshot build(GraphDatabaseService database, Collection<String> costProperties) {
+        long start = System.currentTimeMillis();
+
+        for (int attempt = 0; attempt < MAX_BUILD_ATTEMPTS; attempt++) {
+            long transactionIdBefore = lastCommittedTransactionId(database);
+            GraphSnapshot snapshot = tryBuild(database, costProperties, start);
+
+            //without transaction IDs, changes can only be detected by the structure of the graph being inconsistent
+            if (snapshot != null && (transactionIdBefore < 0 || transactionIdBefore == lastCommittedTransactionId(database))) {
+                return snapshot;
+            }
+        }
+
+        throw new ConcurrentModificationException("The graph has changed while the snapshot was being built, please try again");
+    }
+
+    /**
+     * Build a snapshot from a single pass over all relationships, which are then sorted into place in memory by node and
+     * type, for each direction.
+     *
+     * @return snapshot, null if the graph has been found to have changed during the pass.
+     */
+    private static GraphSnapshot tryBuild(GraphDatabaseService database, Collection<String> costProperties, long start) {
+        try (Transaction tx = database.beginTx()) {
+            long[] nodeIds = collectNodeIds(database);
+
+            Map<String, Integer> typeIndices = new HashMap<>();
+            for (RelationshipType type : database.getAllRelationshipTypes()) {
+                typeIndices.put(type.name(), typeIndices.size());
+            }
+
+            List<String> costKeys = new ArrayList<>(costProperties);
+            int capacity = 1024;
+            long[] ids = new long[capacity];
+            int[] types = new int[capacity];
+            int[][] ends = new int[2][capacity];
+            long[][] costValues = new long[costKeys.size()][capacity];
+            BitSet[] costsUndefined = new BitSet[costKeys.size()];
+            for (int i = 0; i < costsUndefined.length; i++) {
+                costsUndefined[i] = new BitSet();
+            }
+
+            int count = 0;
+            for (Relationship relationship : database.getAllRelationships()) {
+                Integer type = typeIndices.get(relationship.getType().name());
+                int startIndex = indexOf(nodeIds, relationship.getStartNode().getId());
+                int endIndex = indexOf(nodeIds, relationship.getEndNode().getId());
+                if (type == null || startIndex < 0 || endIndex < 0) {
+                    return null;
+                }
+
+                if (count == Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Graphs with more than " + Integer.MAX_VALUE + " relationships are not supported");
+                }
+
+                if (count == capacity) {
+                    capacity = (int) Math.min(Integer.MAX_VALUE, 2L * capacity);
+                    ids = Arrays.copyOf(ids, capacity);
+                    types = Arrays.copyOf(types, capacity);
+                    ends[OUTGOING] = Arrays.copyOf(ends[OUTGOING], capacity);
+                    ends[INCOMING] = Arrays.copyOf(ends[INCOMING], capacity);
+                    for (int i = 0; i < costValues.length; i++) {
+                        costValues[i] = Arrays.copyOf(costValues[i], capacity);
+                    }
+                }
+
+                ids[count] = relationship.getId();
+                types[count] = type;
+                ends[OUTGOING][count] = startIndex;
+                ends[INCOMING][count] = endIndex;
+                for (int i = 0; i < costValues.length; i++) {
+                    Object value = relationship.getProperty(costKeys.get(i), null);
+                    if (value instanceof Integer || value instanceof Long) {
+                        costValues[i][count] = ((Number) value).longValue();
+                    } else {
+                        costsUndefined[i].set(count);
+                    }
+                }
+                count++;
+            }
+
+            int[][] nodeGroups = new int[2][];
+            int[][] groupTypes = new int[2][];
+            int[][] groupOffsets = new int[2][];
+            int[][] neighbours = new int[2][count];
+            long[][] relationshipIds = new long[2][count];
+            int[][] positions = new int[2][];
+
+            for (int direction = OUTGOING; direction <= INCOMING; direction++) {
+                int[] nodes = ends[direction];
+                int[] others = ends[1 - direction];
+
+                //relationships by node and, as the sort by node is stable, by type within each node
+                int[] order = sortByKey(sortByKey(null, types, count, typeIndices.size()), nodes, count, nodeIds.length);
+
+                int[] groupsOfNodes = new int[nodeIds.length + 1];
+                int[] typesOfGroups = new int[Math.min(count, 1024)];
+                int[] offsetsOfGroups = new int[typesOfGroups.length + 1];
+                int[] positionsOfRelationships = new int[count];
+                int groups = 0;
+
+                for (int position = 0; position < count; position++) {
+                    int relationship = order[position];
+                    int node = nodes[relationship];
+
+                    if (position == 0 || node != nodes[order[position - 1]] || types[relationship] != types[order[position - 1]]) {
+                        if (groups == typesOfGroups.length) {
+                            typesOfGroups = Arrays.copyOf(typesOfGroups, Math.min(count, 2 * groups));
+                            offsetsOfGroups = Arrays.copyOf(offsetsOfGroups, typesOfGroups.length + 1);
+                        }
+                        typesOfGroups[groups] = types[relationship];
+                        offsetsOfGroups[groups] = position;
+                        groups++;
+                        groupsOfNodes[node + 1] = groups;
+                    }
+
+                    neighbours[direction][position] = others[relationship];
+                    relationshipIds[direction][position] = ids[relationship];
+                    positionsOfRelationships[relationship] = position;
+                }
+
+                //nodes without relationships have no groups, they end where the previous node's do
+                for (int node = 1; node <= nodeIds.length; node++) {
+                    groupsOfNodes[node] = Math.max(groupsOfNodes[node], groupsOfNodes[node - 1]);
+                }
+                offsetsOfGroups[groups] = count;
+
+                nodeGroups[direction] = groupsOfNodes;
+                groupTypes[direction] = Arrays.copyOf(typesOfGroups, groups);
+                groupOffsets[direction] = Arrays.copyOf(offsetsOfGroups, groups + 1);
+                positions[direction] = positionsOfRelationships;
+            }
+
+            Map<String, PropertyValues> costs = new HashMap<>();
+            for (int i = 0; i < costKeys.size(); i++) {
+                costs.put(costKeys.get(i), new PropertyValues(costValues[i], costsUndefined[i], count, positions));
+            }
+
+            tx.success();
+
+            return new GraphSnapshot(nodeIds, typeIndices, count, nodeGroups, groupTypes, groupOffsets, neighbours, relationshipIds, costs, System.currentTimeMillis() - start);
+        } catch (NotFoundException e) {
+            //a relationship or node has been deleted while being read
+            return null;
+        }
+    }
+
+    /**
+     * Stable counting sort of relationships by an int key.
+     *
+     * @param order     of the relationships to sort, null for the order they were read in.
+     * @param keys      of the relationships, indexed by the order they were read in.
+     * @param count     number of relationships.
+     * @param keyCount  number of possible keys, which are non-negative and less than this.
+     * @return relationships, as indices to the order they were read in, sorted by key.
+     */
+    private static int[] sortByKey(int[] order, int[] keys, int count, int keyCount) {
+        int[] starts = new int[keyCount + 1];
+        for (int i = 0; i < count; i++) {
+            starts[keys[i] + 1]++;
+        }
+        for (int key = 1; key <= keyCount; key++) {
+            starts[key] += starts[key - 1];
+        }
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            int relationship = order == null ? i : order[i];
+            result[starts[keys[relationship]]++] = relationship;
+        }
+        return result;
+    }
+
+    /**
+     * Get the ID of the last transaction committed to a database.
+     *
+     * @param database to get the transaction ID of.
+     * @return transaction ID, -1 if it can't be found out.
+     */
+    static long lastCommittedTransactionId(GraphDatabaseService database) {
+        if (!(database instanceof GraphDatabaseAPI)) {
+            return -1;
+        }
+
+        try {
+            return ((GraphDatabaseAPI) database).getDependencyResolver().resolveDependency(TransactionIdStore.class).getLastCommittedTransactionId();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static long[] collectNodeIds(GraphDatabaseService database) {
+        long[] nodeIds = new long[1024];
+        int count = 0;
+        for (Node node : database.getAllNodes()) {
+            if (count == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, nodeIds.length * 2);
+            }
+            nodeIds[count++] = node.getId();
+        }
+        nodeIds = Arrays.copyOf(nodeIds, count);
+        Arrays.sort(nodeIds);
+        return nodeIds;
+    }
+
+    private static int indexOf(long[] nodeIds, long nodeId) {
+        return Arrays.binarySearch(nodeIds, nodeId);
+    }
+
+    /**
+     * Get the dense index of a node.
+     *
+     * @param nodeId ID of the node.
+     * @return index, negative if the node isn't in the snapshot.
+     */
+    int indexOf(long nodeId) {
+        int index = indexOf(nodeIds, nodeId);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Get the ID of a node.
+     *
+     * @param index dense index of the node.
+     * @return node ID.
+     */
+    long nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Get the index of a relationship type.
+     *
+     * @param type name of the type.
+     * @return index, -1 if there was no relationship with the type when the snapshot was built.
+     */
+    int typeIndex(String type) {
+        Integer index = typeIndices.get(type);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Get the first position of relationships of a node with the given type and direction.
+     */
+    int from(int direction, int node, int type) {
+        int group = groupOf(direction, node, type);
+        return group < 0 ? 0 : groupOffsets[direction][group];
+    }
+
+    /**
+     * Get the position after the last relationship of a node with the given type and direction.
+     */
+    int to(int direction, int node, int type) {
+        int group = groupOf(direction, node, type);
+        return group < 0 ? 0 : groupOffsets[direction][group + 1];
+    }
+
+    /**
+     * Get the first position of relationships of a node with the given direction, of any type.
+     */
+    int from(int direction, int node) {
+        return groupOffsets[direction][nodeGroups[direction][node]];
+    }
+
+    /**
+     * Get the position after the last relationship of a node with the given direction, of any type.
+     */
+    int to(int direction, int node) {
+        return groupOffsets[direction][nodeGroups[direction][node + 1]];
+    }
+
+    private int groupOf(int direction, int node, int type) {
+        return Arrays.binarySearch(groupTypes[direction], nodeGroups[direction][node], nodeGroups[direction][node + 1], type);
+    }
+
+    int neighbour(int direction, int position) {
+        return neighbours[direction][position];
+    }
+
+    long relationshipId(int direction, int position) {
+        return relationshipIds[direction][position];
+    }
+
+    /**
+     * Get the values of a cost property.
+     *
+     * @param costProperty key of the property.
+     * @return values, null if the property isn't stored in the snapshot.
+     */
+    PropertyValues costs(String costProperty) {
+        return costs.get(costProperty);
+    }
+
+    /**
+     * Get the number of nodes in the snapshot.
+     *
+     * @return number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Get the number of relationships in the snapshot.
+     *
+     * @return number of relationships.
+     */
+    public long getRelationshipCount() {
+        return relationshipCount;
+    }
+
+    /**
+     * Get the number of relationship types in the snapshot.
+     *
+     * @return number of types.
+     */
+    public int getTypeCount() {
+        return typeCount;
+    }
+
+    /**
+     * Get the keys of relationship properties stored in the snapshot.
+     *
+     * @return cost property keys.
+     */
+    public Set<String> getCostProperties() {
+        return Collections.unmodifiableSet(costs.keySet());
+    }
+
+    /**
+     * Get the time it took to build the snapshot.
+     *
+     * @return build time in ms.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Get the approximate amount of heap memory taken by the arrays of the snapshot.
+     *
+     * @return memory footprint in bytes.
+     */
+    public long getMemoryFootprint() {
+        long result = 8L * nodeIds.length;
+        for (int direction = OUTGOING; direction <= INCOMING; direction++) {
+            result += 4L * (nodeGroups[direction].length + groupTypes[direction].length + groupOffsets[direction].length);
+            result += 4L * neighbours[direction].length + 8L * relationshipIds[direction].length;
+        }
+        for (PropertyValues values : costs.values()) {
+            result += values.getMemoryFootprint();
+        }
+        return result;
+    }
+
+    /**
+     * Values of a single numerical relationship property, parallel to the neighbour arrays of a {@link GraphSnapshot}.
+     * Relationships whose property doesn't exist or isn't a number are marked as such, so that callers can decide
+     * what their cost is.
+     */
+    static class PropertyValues {
+
+        private final long[][] values;
+        private final BitSet[] undefined;
+        private boolean negative = false;
+
+        /**
+         * Put values of relationships in the order they were read in into place.
+         *
+         * @param valuesRead    values in the order relationships were read in.
+         * @param undefinedRead relationships without a numerical value, in the order they were read in.
+         * @param size          number of relationships.
+         * @param positions     of the relationships read, indexed by direction and then the order they were read in.
+         */
+        private PropertyValues(long[] valuesRead, BitSet undefinedRead, int size, int[][] positions) {
+            values = new long[][]{new long[size], new long[size]};
+            undefined = new BitSet[]{new BitSet(size), new BitSet(size)};
+
+            for (int relationship = 0; relationship < size; relationship++) {
+                for (int direction = OUTGOING; direction <= INCOMING; direction++) {
+                    if (undefinedRead.get(relationship)) {
+                        undefined[direction].set(positions[direction][relationship]);
+                    } else {
+                        values[direction][positions[direction][relationship]] = valuesRead[relationship];
+                    }
+                }
+                negative |= !undefinedRead.get(relationship) && valuesRead[relationship] < 0;
+            }
+        }
+
+        /**
+         * Get the cost of a relationship.
+         *
+         * @param direction   of the relationship.
+         * @param position    of the relationship.
+         * @param defaultCost cost of relationships whose property doesn't exist or isn't a number.
+         * @return cost.
+         */
+        long get(int direction, int position, long defaultCost) {
+            return undefined[direction].get(position) ? defaultCost : values[direction][position];
+        }
+
+        /**
+         * Is there a relationship with a negative cost?
+         *
+         * @return true iff a negative cost exists.
+         */
+        boolean hasNegative() {
+            return negative;
+        }
+
+        private long getMemoryFootprint() {
+            return 2 * (8L * values[OUTGOING].length + undefined[OUTGOING].size() / 8);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Collection;
+
+/**
+ * Holder of the current {@link GraphSnapshot} of a database, which can be rebuilt on demand. Searches that have
+ * started with the previous snapshot finish with it, new searches use the new one.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class GraphSnapshotProvider {
+
+    private final GraphDatabaseService database;
+    private volatile GraphSnapshot snapshot;
+
+    /**
+     * Construct a new provider. No snapshot is built until {@link #rebuild(Collection)} is called.
+     *
+     * @param database to provide snapshots of.
+     */
+    public GraphSnapshotProvider(GraphDatabaseService database) {
+        this.database = database;
+    }
+
+    /**
+     * Build a new snapshot and make it the current one.
+     *
+     * @param costProperties keys of numerical relationship properties to store in the snapshot.
+     * @return the new snapshot.
+     * @throws java.util.ConcurrentModificationException if the graph kept changing while the snapshot was being built,
+     *                                                   in which case the current snapshot is kept.
+     */
+    public synchronized GraphSnapshot rebuild(Collection<String> costProperties) {
+        GraphSnapshot newSnapshot = GraphSnapshot.build(database, costProperties);
+        snapshot = newSnapshot;
+        return newSnapshot;
+    }
+
+    /**
+     * Get the current snapshot.
+     *
+     * @return snapshot, null if none has been built yet.
+     */
+    public GraphSnapshot get() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.algo.path;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable snapshot of a {@link Histogram}.
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "p999", "max"})
+    public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * @return number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return mean of the recorded values, 0 if there are none.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return median of the recorded values, 0 if there are none.
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * @return 90th percentile of the recorded values, 0 if there are none.
+     */
+    public long getP90() {
+        return p90;
+    }
+
+    /**
+     * @return 99th percentile of the recorded values, 0 if there are none.
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * @return 99.9th percentile of the recorded values, 0 if there are none.
+     */
+    public long getP999() {
+        return p999;
+    }
+
+    /**
+     * @return maximum of the recorded values, 0 if there are none.
+     */
+    public long getMax() {
+        return max;
+    }
+}
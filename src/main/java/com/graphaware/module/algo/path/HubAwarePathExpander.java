@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link PathExpander} that prevents searches from traversing hubs, as specified by {@link HubPolicy}. Whether a node is
+ * a hub is decided from its degree before any of its relationships are iterated over, and remembered for the rest of
+ * the search. Hubs are recorded in {@link SearchStatistics#getPrunedHubs()}.
+ * <p/>
+ * The {@link #reverse()} of this expander expands exactly the same relationships, only in the opposite direction, so
+ * that searches expanding from both ends find the same paths as searches expanding from the start node only.
+ * <p/>
+ * This class is not thread-safe, a new instance should be used for every search.
+ *
+ * @param <STATE> type of the branch state.
+ */
+class HubAwarePathExpander<STATE> implements PathExpander<STATE> {
+
+    private final Hubs<STATE> hubs;
+    private final boolean reversed;
+
+    /**
+     * Construct a new expander.
+     *
+     * @param input      path finder input, with a hub degree threshold.
+     * @param statistics to record hubs in.
+     */
+    HubAwarePathExpander(PathFinderInput input, SearchStatistics statistics) {
+        this(new Hubs<STATE>(input, statistics), false);
+    }
+
+    private HubAwarePathExpander(Hubs<STATE> hubs, boolean reversed) {
+        this.hubs = hubs;
+        this.reversed = reversed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Relationship> expand(Path path, BranchState<STATE> state) {
+        Node node = path.endNode();
+        PathExpander<STATE> wrapped = reversed ? hubs.backward : hubs.forward;
+
+        if (hubs.isHub(node)) {
+            if (HubPolicy.SKIP.equals(hubs.policy)) {
+                //never reached, unless a hub is expanded directly
+                return Collections.emptyList();
+            }
+
+            //a hub can only be followed by the end node...
+            if (!reversed) {
+                return hubs.relationshipsToEnd(node, state);
+            }
+
+            //...so when expanding backwards, only the hub itself is allowed to be followed by the end node
+            return withoutHubs(node, wrapped.expand(path, state));
+        }
+
+        //expanding forwards, hubs can't be entered at all when they are skipped. Expanding backwards, hubs can only
+        //precede the end node, or nothing when they are skipped
+        boolean skipHubs = reversed
+                ? HubPolicy.SKIP.equals(hubs.policy) || !node.equals(hubs.end)
+                : HubPolicy.SKIP.equals(hubs.policy);
+
+        return skipHubs ? withoutHubs(node, wrapped.expand(path, state)) : wrapped.expand(path, state);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PathExpander<STATE> reverse() {
+        return new HubAwarePathExpander<>(hubs, !reversed);
+    }
+
+    /**
+     * Filter out relationships leading from a node to hubs.
+     *
+     * @param node          the relationships are expanded from.
+     * @param relationships to filter.
+     * @return relationships that don't lead to hubs.
+     */
+    private Iterable<Relationship> withoutHubs(final Node node, final Iterable<Relationship> relationships) {
+        return new Iterable<Relationship>() {
+            @Override
+            public Iterator<Relationship> iterator() {
+                final Iterator<Relationship> iterator = relationships.iterator();
+
+                return new PrefetchingIterator<Relationship>() {
+                    @Override
+                    protected Relationship fetchNextOrNull() {
+                        while (iterator.hasNext()) {
+                            Relationship relationship = iterator.next();
+                            if (!hubs.isHub(relationship.getOtherNode(node))) {
+                                return relationship;
+                            }
+                        }
+                        return null;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Hubs of a single search, shared by the expander and its reverse.
+     */
+    private static class Hubs<STATE> {
+
+        private final PathExpander<STATE> forward;
+        private final PathExpander<STATE> backward;
+        private final Node start;
+        private final Node end;
+        private final int threshold;
+        private final HubPolicy policy;
+        private final List<Object> typesAndDirections;
+        private final Direction direction;
+        private final SearchStatistics statistics;
+
+        //node ID -> degree, or -1 if not known yet. Degrees of hubs are only known to be over the threshold.
+        private final PrimitiveLongIntMap degrees = Primitive.longIntMap();
+
+        private Hubs(PathFinderInput input, SearchStatistics statistics) {
+            this.forward = PathFinderInput.createExpander(input.getTypesAndDirections(), input.getDirection());
+            this.backward = forward.reverse();
+            this.start = input.getStart();
+            this.end = input.getEnd();
+            this.threshold = input.getHubDegreeThreshold();
+            this.policy = input.getHubPolicy();
+            this.typesAndDirections = input.getTypesAndDirections();
+            this.direction = input.getDirection() == null ? Direction.BOTH : input.getDirection();
+            this.statistics = statistics;
+        }
+
+        /**
+         * Is the node a hub? The start and end nodes never are.
+         *
+         * @param node to check.
+         * @return true iff the node is a hub.
+         */
+        private boolean isHub(Node node) {
+            return degree(node) > threshold;
+        }
+
+        /**
+         * Get the number of relationships a search expanding forwards would expand from a node, stopping as soon as it
+         * is known to be over the threshold.
+         *
+         * @param node to get the degree of.
+         * @return degree, or a number greater than the threshold if it is a hub.
+         */
+        private int degree(Node node) {
+            int degree = degrees.get(node.getId());
+
+            if (degree < 0) {
+                degree = node.equals(start) || node.equals(end) ? 0 : degree(node, false);
+                degrees.put(node.getId(), degree);
+
+                if (degree > threshold) {
+                    statistics.hubPruned();
+                }
+            }
+
+            return degree;
+        }
+
+        private int degree(Node node, boolean reverse) {
+            if (typesAndDirections.isEmpty()) {
+                return node.getDegree(reverse ? direction.reverse() : direction);
+            }
+
+            int degree = 0;
+            for (int i = 0; i < typesAndDirections.size() && degree <= threshold; i += 2) {
+                Direction direction = (Direction) typesAndDirections.get(i + 1);
+                degree += node.getDegree((RelationshipType) typesAndDirections.get(i), reverse ? direction.reverse() : direction);
+            }
+            return degree;
+        }
+
+        /**
+         * Find the relationships a search expanding forwards would expand from a hub to the end node, iterating over
+         * the relationships of the hub or the end node, whichever has fewer.
+         *
+         * @param hub   to find relationships of.
+         * @param state branch state.
+         * @return relationships.
+         */
+        private Iterable<Relationship> relationshipsToEnd(Node hub, BranchState<STATE> state) {
+            final Node from;
+            final Node to;
+            Iterable<Relationship> relationships;
+
+            if (degree(end, true) < degree(hub)) {
+                from = end;
+                to = hub;
+                relationships = backward.expand(PathImpl.singular(end), state);
+            } else {
+                from = hub;
+                to = end;
+                relationships = forward.expand(PathImpl.singular(hub), state);
+            }
+
+            final Iterable<Relationship> all = relationships;
+            return new Iterable<Relationship>() {
+                @Override
+                public Iterator<Relationship> iterator() {
+                    final Iterator<Relationship> iterator = all.iterator();
+
+                    return new PrefetchingIterator<Relationship>() {
+                        @Override
+                        protected Relationship fetchNextOrNull() {
+                            while (iterator.hasNext()) {
+                                Relationship relationship = iterator.next();
+                                if (relationship.getOtherNode(from).equals(to)) {
+                                    return relationship;
+                                }
+                            }
+                            return null;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
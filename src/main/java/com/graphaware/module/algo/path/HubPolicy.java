@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+/**
+ * How should a path search treat hubs, i.e. nodes (other than the start and end nodes) with more relationships to
+ * traverse than {@link PathFinderInput#getHubDegreeThreshold()}? Whether a node is a hub is found out from its degree,
+ * which Neo4j keeps for densely connected nodes, without iterating over its relationships.
+ */
+public enum HubPolicy {
+
+    /**
+     * Hubs are never traversed, i.e. no path passes through a hub. This is the default.
+     */
+    SKIP,
+
+    /**
+     * Hubs are only traversed when they are adjacent to the end node, i.e. a hub can only be the last node on a path
+     * before the end node. Instead of iterating over all relationships of a hub, the search looks for relationships
+     * connecting it to the end node, from whichever of the two has fewer relationships.
+     * <p/>
+     * Note that searches which also expand backwards from the end node ({@link SearchEngine#BIDIRECTIONAL},
+     * {@link SearchEngine#PER_DEPTH}, and sorting by {@link SortOrder#COST_ASC}) have to iterate over all relationships
+     * of hubs adjacent to the end node, when they reach them from the end node.
+     */
+    TARGET_ONLY
+}
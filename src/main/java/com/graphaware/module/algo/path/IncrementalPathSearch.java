@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * {@link PathSearch} expanding from the start node only. Unlike running a new search for every depth, it remembers the
+ * relationships of every node it has expanded, as well as its breadth-first search frontier, so that each node is only
+ * expanded (i.e. its relationships are only read from the database) once, no matter how many depths are searched.
+ * <p/>
+ * Before paths longer than the shortest ones are enumerated, a second breadth-first search expands backwards from the
+ * end node, far enough to know the distance to the end node of every node that can still be on a path of the length.
+ * Partial paths ending with a node that is farther from the end node than the number of hops left are not extended.
+ * The backward search is incremental as well, each depth only moves its frontier one level further.
+ * <p/>
+ * Paths can also be counted without being created: shortest paths by dynamic programming over the layers of the
+ * breadth-first search, longer paths by enumerating them without collecting them.
+ * <p/>
+ * When {@link PathFinderInput#isParallel()} and there is no hub degree threshold, paths of each length are enumerated
+ * in parallel on the bounded pool of threads of the path finder, one task for each relationship of the start node.
+ * The relationships of the start node are followed before the tasks are started, so the search takes as many steps of
+ * its budget as when it runs on a single thread, the tasks share the rest of it. Every task runs
+ * in a transaction of its own, expands nodes the search hasn't expanded before through a cache of its own, and collects
+ * paths into a {@link PathCollector#fork()}. Once all tasks are finished, the forks are merged in the order of the
+ * relationships of the start node, so the paths are the same, and in the same order, as when enumerated on a single
+ * thread. Tasks read the database in their own transactions, so they don't see changes made by the transaction the
+ * search runs in; it shouldn't have made any.
+ * <p/>
+ * This class is not thread-safe and must be used within a transaction.
+ */
+class IncrementalPathSearch implements PathSearch {
+
+    private final GraphDatabaseService database;
+    private final PathFinderInput input;
+    private final Node start;
+    private final Node end;
+    private final RelationshipCostFinder costFinder;
+    private final SearchStatistics statistics;
+    private final ExpansionCache expansions;
+    private final boolean parallel;
+    private final ExecutorService branchExecutor;
+
+    //breadth-first search state
+    private final NodeDistances distances = new NodeDistances();
+    private List<Node> frontier = new ArrayList<>();
+    private int frontierDepth = 0;
+
+    //backward breadth-first search state, nodes without a distance are farther from the end node than the frontier depth
+    private final ExpansionCache backwardExpansions;
+    private final NodeDistances distancesToEnd = new NodeDistances();
+    private List<Node> backwardFrontier = new ArrayList<>();
+    private int backwardFrontierDepth = 0;
+
+    /**
+     * Construct a new search.
+     *
+     * @param input          path finder input.
+     * @param costFinder     to find relationship costs with, null if costs aren't needed. Must be thread-safe if the
+     *                       search runs in parallel.
+     * @param statistics     to record search statistics in.
+     * @param branchExecutor to enumerate paths on when the search runs in parallel, null if it doesn't.
+     */
+    IncrementalPathSearch(PathFinderInput input, RelationshipCostFinder costFinder, SearchStatistics statistics, ExecutorService branchExecutor) {
+        this.database = input.getStart().getGraphDatabase();
+        this.input = input;
+        this.start = input.getStart();
+        this.end = input.getEnd();
+        this.costFinder = costFinder;
+        this.statistics = statistics;
+        PathExpander<Object> expander = new CountingPathExpander<>(input.getExpander(statistics), statistics);
+        this.expansions = new ExpansionCache(expander, costFinder);
+        this.backwardExpansions = new ExpansionCache(expander.reverse(), null);
+        this.parallel = input.isParallel() && input.getHubDegreeThreshold() == Integer.MAX_VALUE && branchExecutor != null;
+        this.branchExecutor = branchExecutor;
+
+        distances.put(start.getId(), 0);
+        frontier.add(start);
+
+        distancesToEnd.put(end.getId(), 0);
+        backwardFrontier.add(end);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findShortestPaths(int maxDepth, PathCollector collector) {
+        if (start.equals(end)) {
+            collector.collect(CompactPath.singular(start), 0);
+            return 0;
+        }
+
+        int length = findShortestPathLength(maxDepth);
+        if (length < 0) {
+            return -1;
+        }
+
+        if (parallel) {
+            findPathsInParallel(length, true, collector);
+        } else {
+            collectShortestPaths(expansions, statistics, newNodeIds(length), new long[length], 0, 0, start, length, collector);
+        }
+
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void findPathsWithLength(int length, PathCollector collector) {
+        findDistancesToEnd(length);
+
+        if (parallel) {
+            findPathsInParallel(length, false, collector);
+            return;
+        }
+
+        NodeIdSet visited = new NodeIdSet();
+        visited.add(start.getId());
+
+        collectPathsWithLength(expansions, statistics, newNodeIds(length), new long[length], 0, 0, start, length, visited, collector);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNegativeCosts() {
+        return expansions.hasNegativeCosts();
+    }
+
+    /**
+     * Count the shortest paths between the start and end nodes.
+     *
+     * @param maxDepth maximum length of the paths.
+     * @return length of the shortest paths and their number, null if there is no path with length less than or equal
+     * to max depth.
+     */
+    PathCount countShortestPaths(int maxDepth) {
+        if (start.equals(end)) {
+            return new PathCount(0, 1);
+        }
+
+        int length = findShortestPathLength(maxDepth);
+        if (length < 0) {
+            return null;
+        }
+
+        //nodes on shortest paths, layer after layer, with the number of shortest paths from the start node to each of
+        //them; a node is only on the layer of its distance, so its index is the same in all layers
+        ReusableLongIntMap indices = new ReusableLongIntMap();
+        Node[] nodes = new Node[16];
+        long[] counts = new long[16];
+        indices.put(start.getId(), 0);
+        nodes[0] = start;
+        counts[0] = 1;
+        int layerStart = 0;
+        int layerEnd = 1;
+
+        for (int depth = 0; depth < length; depth++) {
+            int nextLayerEnd = layerEnd;
+
+            for (int i = layerStart; i < layerEnd; i++) {
+                ExpansionCache.Expansion expansion = expansions.expand(nodes[i]);
+                for (Node neighbour : expansion.neighbours) {
+                    statistics.relationshipFollowed();
+                    if (!isOnShortestPath(neighbour, depth + 1)) {
+                        continue;
+                    }
+
+                    int index = indices.get(neighbour.getId());
+                    if (index == ReusableLongIntMap.ABSENT) {
+                        if (nextLayerEnd == nodes.length) {
+                            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                            counts = Arrays.copyOf(counts, counts.length * 2);
+                        }
+                        index = nextLayerEnd++;
+                        indices.put(neighbour.getId(), index);
+                        nodes[index] = neighbour;
+                    }
+                    counts[index] = PathCount.add(counts[index], counts[i]);
+                }
+            }
+
+            layerStart = layerEnd;
+            layerEnd = nextLayerEnd;
+        }
+
+        int endIndex = indices.get(end.getId());
+        return new PathCount(length, endIndex == ReusableLongIntMap.ABSENT ? 0 : counts[endIndex]);
+    }
+
+    /**
+     * Count all paths between the start and end nodes with the given length, in which no node appears more than once.
+     *
+     * @param length of the paths.
+     * @return number of paths.
+     */
+    long countPathsWithLength(int length) {
+        findDistancesToEnd(length);
+
+        NodeIdSet visited = new NodeIdSet();
+        visited.add(start.getId());
+
+        return countPathsWithLength(0, start, length, visited);
+    }
+
+    private long countPathsWithLength(int depth, Node current, int length, NodeIdSet visited) {
+        if (depth == length) {
+            return current.equals(end) ? 1 : 0;
+        }
+
+        long count = 0;
+        ExpansionCache.Expansion expansion = expansions.expand(current);
+        for (Node neighbour : expansion.neighbours) {
+            statistics.relationshipFollowed();
+            if (canFollow(neighbour, depth, length, visited)) {
+                visited.add(neighbour.getId());
+                count = PathCount.add(count, countPathsWithLength(depth + 1, neighbour, length, visited));
+                visited.remove(neighbour.getId());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Expand the breadth-first search until the end node is found.
+     *
+     * @param maxDepth maximum distance from the start node to expand to.
+     * @return distance of the end node from the start node, -1 if it's farther than max depth.
+     */
+    private int findShortestPathLength(int maxDepth) {
+        while (!distances.containsKey(end.getId()) && frontierDepth < maxDepth && !frontier.isEmpty()) {
+            expandFrontier();
+        }
+
+        return distances.get(end.getId());
+    }
+
+    /**
+     * Expand the backward breadth-first search far enough to prune paths of the given length. The second node of a
+     * path is the first one that can be pruned, it must be at most length - 1 hops from the end node.
+     *
+     * @param length of the paths.
+     */
+    private void findDistancesToEnd(int length) {
+        while (backwardFrontierDepth < length - 1 && !backwardFrontier.isEmpty()) {
+            expandBackwardFrontier();
+        }
+    }
+
+    /**
+     * Expand all nodes in the current breadth-first search frontier and move the frontier one level deeper.
+     */
+    private void expandFrontier() {
+        List<Node> newFrontier = new ArrayList<>();
+
+        for (Node node : frontier) {
+            for (Node neighbour : expansions.expand(node).neighbours) {
+                if (!distances.containsKey(neighbour.getId())) {
+                    distances.put(neighbour.getId(), frontierDepth + 1);
+                    newFrontier.add(neighbour);
+                }
+            }
+        }
+
+        frontier = newFrontier;
+        frontierDepth++;
+    }
+
+    /**
+     * Expand all nodes in the current backward breadth-first search frontier and move the frontier one level deeper.
+     */
+    private void expandBackwardFrontier() {
+        List<Node> newFrontier = new ArrayList<>();
+
+        for (Node node : backwardFrontier) {
+            for (Node neighbour : backwardExpansions.expand(node).neighbours) {
+                if (!distancesToEnd.containsKey(neighbour.getId())) {
+                    distancesToEnd.put(neighbour.getId(), backwardFrontierDepth + 1);
+                    newFrontier.add(neighbour);
+                }
+            }
+        }
+
+        backwardFrontier = newFrontier;
+        backwardFrontierDepth++;
+    }
+
+    /**
+     * Find paths with the given length using one {@link Branch} for each relationship of the start node.
+     *
+     * @param length    of the paths.
+     * @param shortest  true iff the length is the shortest path length, see {@link #collectShortestPaths}.
+     * @param collector to merge the paths found by all branches into.
+     * @throws SearchBudgetExceededException if the search has run out of its budget. Paths found by all branches have
+     *                                       been merged into the collector.
+     */
+    private void findPathsInParallel(int length, boolean shortest, PathCollector collector) {
+        if (!collector.canExtend(0)) {
+            return;
+        }
+
+        ExpansionCache.Expansion expansion = expansions.expand(start);
+        final List<Branch> branches = new ArrayList<>(expansion.relationships.length);
+        for (int i = 0; i < expansion.relationships.length; i++) {
+            //the first hop, as when enumerating on a single thread
+            statistics.relationshipFollowed();
+            branches.add(new Branch(expansion, i, length, shortest, collector.fork()));
+        }
+
+        try {
+            for (Future<Void> future : branchExecutor.invokeAll(branches)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel search", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        for (Branch branch : branches) {
+            statistics.merge(branch.statistics);
+            expansions.merge(branch.expansions);
+            collector.merge(branch.collector);
+        }
+
+        if (statistics.isTruncated()) {
+            throw SearchBudgetExceededException.INSTANCE;
+        }
+    }
+
+    private void collectShortestPaths(ExpansionCache expansions, SearchStatistics statistics, long[] nodeIds, long[] relationshipIds, int depth, long cost, Node current, int length, PathCollector collector) {
+        if (depth == length) {
+            if (current.equals(end) && collector.accepts(cost)) {
+                collector.collect(toPath(nodeIds, relationshipIds), cost);
+            }
+            return;
+        }
+
+        if (!collector.canExtend(cost)) {
+            return;
+        }
+
+        ExpansionCache.Expansion expansion = expansions.expand(current);
+        for (int i = 0; i < expansion.relationships.length; i++) {
+            statistics.relationshipFollowed();
+            if (isOnShortestPath(expansion.neighbours[i], depth + 1)) {
+                nodeIds[depth + 1] = expansion.neighbours[i].getId();
+                relationshipIds[depth] = expansion.relationships[i].getId();
+                collectShortestPaths(expansions, statistics, nodeIds, relationshipIds, depth + 1, PathCostCalculatorImpl.add(cost, expansion.costs[i]), expansion.neighbours[i], length, collector);
+            }
+        }
+    }
+
+    private boolean isOnShortestPath(Node node, int depth) {
+        return distances.isAt(node.getId(), depth);
+    }
+
+    private void collectPathsWithLength(ExpansionCache expansions, SearchStatistics statistics, long[] nodeIds, long[] relationshipIds, int depth, long cost, Node current, int length, NodeIdSet visited, PathCollector collector) {
+        if (depth == length) {
+            if (current.equals(end) && collector.accepts(cost)) {
+                collector.collect(toPath(nodeIds, relationshipIds), cost);
+            }
+            return;
+        }
+
+        if (!collector.canExtend(cost)) {
+            return;
+        }
+
+        ExpansionCache.Expansion expansion = expansions.expand(current);
+        for (int i = 0; i < expansion.relationships.length; i++) {
+            statistics.relationshipFollowed();
+            if (canFollow(expansion.neighbours[i], depth, length, visited)) {
+                Node neighbour = expansion.neighbours[i];
+                visited.add(neighbour.getId());
+                nodeIds[depth + 1] = neighbour.getId();
+                relationshipIds[depth] = expansion.relationships[i].getId();
+                collectPathsWithLength(expansions, statistics, nodeIds, relationshipIds, depth + 1, PathCostCalculatorImpl.add(cost, expansion.costs[i]), neighbour, length, visited, collector);
+                visited.remove(neighbour.getId());
+            }
+        }
+    }
+
+    /**
+     * Can a path of the given length be extended by a node? Nodes can't appear on a path more than once, the end node
+     * can only be the last node on the path, and the rest of the path can't be shorter than the node's distance to the
+     * end node.
+     */
+    private boolean canFollow(Node neighbour, int depth, int length, NodeIdSet visited) {
+        if (visited.contains(neighbour.getId()) || neighbour.equals(end) && depth + 1 < length) {
+            return false;
+        }
+
+        return distancesToEnd.isWithin(neighbour.getId(), length - depth - 1);
+    }
+
+    private long[] newNodeIds(int length) {
+        long[] nodeIds = new long[length + 1];
+        nodeIds[0] = start.getId();
+        return nodeIds;
+    }
+
+    /**
+     * Copy the IDs of the path being enumerated into a new path, as the arrays are reused for the next paths.
+     */
+    private CompactPath toPath(long[] nodeIds, long[] relationshipIds) {
+        return new CompactPath(database, nodeIds.clone(), relationshipIds.clone());
+    }
+
+    /**
+     * Task enumerating paths of a single length starting with a single relationship of the start node.
+     */
+    private class Branch implements Callable<Void> {
+
+        private final ExpansionCache.Expansion startExpansion;
+        private final int index;
+        private final int length;
+        private final boolean shortest;
+        private final PathCollector collector;
+        private final SearchStatistics statistics;
+        private final ExpansionCache expansions;
+
+        private Branch(ExpansionCache.Expansion startExpansion, int index, int length, boolean shortest, PathCollector collector) {
+            this.startExpansion = startExpansion;
+            this.index = index;
+            this.length = length;
+            this.shortest = shortest;
+            this.collector = collector;
+            this.statistics = IncrementalPathSearch.this.statistics.fork();
+            this.expansions = new ExpansionCache(IncrementalPathSearch.this.expansions, new CountingPathExpander<>(input.getExpander(statistics), statistics), costFinder);
+        }
+
+        @Override
+        public Void call() {
+            Node neighbour = startExpansion.neighbours[index];
+            long[] nodeIds = newNodeIds(length);
+            long[] relationshipIds = new long[length];
+            nodeIds[1] = neighbour.getId();
+            relationshipIds[0] = startExpansion.relationships[index].getId();
+            long cost = PathCostCalculatorImpl.add(0, startExpansion.costs[index]);
+
+            try (Transaction tx = database.beginTx()) {
+                if (shortest) {
+                    if (isOnShortestPath(neighbour, 1)) {
+                        collectShortestPaths(expansions, statistics, nodeIds, relationshipIds, 1, cost, neighbour, length, collector);
+                    }
+                } else {
+                    NodeIdSet visited = new NodeIdSet();
+                    visited.add(start.getId());
+                    if (canFollow(neighbour, 0, length, visited)) {
+                        visited.add(neighbour.getId());
+                        collectPathsWithLength(expansions, statistics, nodeIds, relationshipIds, 1, cost, neighbour, length, visited, collector);
+                    }
+                }
+
+                tx.success();
+            } catch (SearchBudgetExceededException e) {
+                //the fork of the statistics is truncated, which stops the whole search once it's merged
+            }
+
+            return null;
+        }
+    }
+}
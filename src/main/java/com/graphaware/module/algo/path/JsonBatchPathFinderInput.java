@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON-serializable input to a batch path finder. Either specifies a complete {@link JsonPathFinderInput} for every
+ * search ({@code inputs}), or settings shared by all searches ({@code settings}, without start and end nodes) and the
+ * start and end nodes of each search ({@code pairs}).
+ */
+public class JsonBatchPathFinderInput {
+
+    private List<JsonPathFinderInput> inputs;
+
+    private JsonPathFinderInput settings;
+    private List<JsonNodePair> pairs;
+
+    private Integer parallelism;
+
+    /**
+     * Produce path finder inputs from this JSON representation.
+     *
+     * @param database to find nodes in.
+     * @return path finder inputs, one per search, in the order of the searches.
+     */
+    public List<PathFinderInput> produceInputs(GraphDatabaseService database) {
+        if ((getInputs() == null) == (getPairs() == null)) {
+            throw new IllegalArgumentException("Must specify either inputs, or settings and node pairs, not both!");
+        }
+
+        List<PathFinderInput> result = new ArrayList<>();
+
+        if (getInputs() != null) {
+            for (JsonPathFinderInput input : getInputs()) {
+                result.add(input.produceInput(database));
+            }
+            return result;
+        }
+
+        if (getSettings() == null) {
+            throw new IllegalArgumentException("Must specify settings with node pairs!");
+        }
+
+        for (JsonNodePair pair : getPairs()) {
+            result.add(getSettings().produceInput(database, pair.getStartNode(), pair.getEndNode()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the JSON input specifying how to serialize results of a search.
+     *
+     * @param index of the search.
+     * @return JSON input of the search.
+     */
+    public JsonPathFinderInput serializationSpecificationOf(int index) {
+        return getInputs() != null ? getInputs().get(index) : getSettings();
+    }
+
+    //getters & setters
+
+    public List<JsonPathFinderInput> getInputs() {
+        return inputs;
+    }
+
+    public void setInputs(List<JsonPathFinderInput> inputs) {
+        this.inputs = inputs;
+    }
+
+    public JsonPathFinderInput getSettings() {
+        return settings;
+    }
+
+    public void setSettings(JsonPathFinderInput settings) {
+        this.settings = settings;
+    }
+
+    public List<JsonNodePair> getPairs() {
+        return pairs;
+    }
+
+    public void setPairs(List<JsonNodePair> pairs) {
+        this.pairs = pairs;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+}
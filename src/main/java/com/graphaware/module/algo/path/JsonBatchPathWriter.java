@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Path;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * {@link BatchPathListener} writing results of a batch to an output stream as a JSON array, with one element per input
+ * of the batch. Each element is an array of paths in the format of {@link JsonPath}, i.e. the same as the result of a
+ * single search, with the JSON representations of nodes and relationships shared by the paths of each result, see
+ * {@link JsonPathElements}.
+ * <p/>
+ * Nothing is written before the first result is known, so that failures that happen before that can still be reported
+ * to the client properly. {@link #close()} must be called once the batch is finished.
+ */
+class JsonBatchPathWriter implements BatchPathListener {
+
+    private final GraphDatabaseService database;
+    private final OutputStream outputStream;
+    private final JsonBatchPathFinderInput jsonInput;
+    private JsonGenerator generator;
+
+    /**
+     * Construct a new writer.
+     *
+     * @param database     to read nodes and relationships from.
+     * @param outputStream to write to. Not closed by this writer.
+     * @param jsonInput    input of the batch, determining which node and relationship properties to write.
+     */
+    JsonBatchPathWriter(GraphDatabaseService database, OutputStream outputStream, JsonBatchPathFinderInput jsonInput) {
+        this.database = database;
+        this.outputStream = outputStream;
+        this.jsonInput = jsonInput;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resultFound(int index, List<? extends Path> paths) {
+        try {
+            if (generator == null) {
+                start();
+            }
+
+            generator.writeStartArray();
+            JsonPathElements elements = new JsonPathElements(database, jsonInput.serializationSpecificationOf(index));
+            for (Path path : paths) {
+                JsonPathWriter.writePath(generator, path, elements);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finish the JSON array and flush it to the output stream.
+     */
+    public void close() {
+        try {
+            if (generator == null) {
+                start();
+            }
+
+            generator.writeEndArray();
+            generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void start() throws IOException {
+        generator = JsonPathWriter.createGenerator(outputStream);
+        generator.writeStartArray();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import java.util.List;
+
+/**
+ * JSON-serializable representation of a {@link DistanceMatrix}. Distances are represented as an array of rows, one per
+ * source, each containing the distance of every target, or {@link DistanceMatrix#UNREACHABLE} for unreachable targets.
+ */
+public class JsonDistanceMatrix {
+
+    private List<Long> sources;
+    private List<Long> targets;
+    private int[][] distances;
+
+    public JsonDistanceMatrix(DistanceMatrix matrix, JsonDistanceMatrixInput jsonInput) {
+        setSources(jsonInput.getSources());
+        setTargets(jsonInput.getTargets());
+
+        int[][] rows = new int[matrix.getRows()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = matrix.getRow(i);
+        }
+        setDistances(rows);
+    }
+
+    public List<Long> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<Long> sources) {
+        this.sources = sources;
+    }
+
+    public List<Long> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(List<Long> targets) {
+        this.targets = targets;
+    }
+
+    public int[][] getDistances() {
+        return distances;
+    }
+
+    public void setDistances(int[][] distances) {
+        this.distances = distances;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import com.graphaware.api.json.JsonRelationshipTypeAndDirection;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON-serializable input to a distance matrix finder.
+ */
+public class JsonDistanceMatrixInput {
+
+    private List<Long> sources;
+    private List<Long> targets;
+    private Integer maxDepth;
+
+    //either concrete relationship types and directions
+    private List<JsonRelationshipTypeAndDirection> typesAndDirections;
+
+    //or all relationship types and direction
+    private Direction direction;
+
+    /**
+     * Produce distance matrix input from this JSON representation.
+     *
+     * @param database to find nodes in.
+     * @return distance matrix input.
+     */
+    public DistanceMatrixInput produceInput(GraphDatabaseService database) {
+        if (getSources() == null || getTargets() == null) {
+            throw new IllegalArgumentException("Must specify at least sources and targets!");
+        }
+
+        DistanceMatrixInput input = new DistanceMatrixInput(findNodes(database, getSources()), findNodes(database, getTargets()));
+
+        if (getDirection() != null) {
+            input.setDirection(getDirection());
+        }
+
+        if (getMaxDepth() != null) {
+            input.setMaxDepth(getMaxDepth());
+        }
+
+        if (getTypesAndDirections() != null) {
+            if (getDirection() != null) {
+                throw new IllegalArgumentException("Must specify either global direction, or specific types and directions, not both!");
+            }
+            for (JsonRelationshipTypeAndDirection typeAndDirection : getTypesAndDirections()) {
+                input.addTypeAndDirection(DynamicRelationshipType.withName(typeAndDirection.getType()), typeAndDirection.getDirection());
+            }
+        }
+        return input;
+    }
+
+    private List<Node> findNodes(GraphDatabaseService database, List<Long> ids) {
+        List<Node> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (id == null) {
+                throw new IllegalArgumentException("Node IDs must not be null!");
+            }
+            result.add(database.getNodeById(id));
+        }
+        return result;
+    }
+
+    //getters & setters
+
+    public List<Long> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<Long> sources) {
+        this.sources = sources;
+    }
+
+    public List<Long> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(List<Long> targets) {
+        this.targets = targets;
+    }
+
+    public Integer getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(Integer maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public List<JsonRelationshipTypeAndDirection> getTypesAndDirections() {
+        return typesAndDirections;
+    }
+
+    public void setTypesAndDirections(List<JsonRelationshipTypeAndDirection> typesAndDirections) {
+        this.typesAndDirections = typesAndDirections;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import java.util.Set;
+
+/**
+ * JSON-serializable information about a {@link GraphSnapshot}.
+ */
+public class JsonGraphSnapshot {
+
+    private int nodeCount;
+    private long relationshipCount;
+    private int typeCount;
+    private Set<String> costProperties;
+    private long memoryFootprint;
+    private long buildTime;
+
+    public JsonGraphSnapshot(GraphSnapshot snapshot) {
+        setNodeCount(snapshot.getNodeCount());
+        setRelationshipCount(snapshot.getRelationshipCount());
+        setTypeCount(snapshot.getTypeCount());
+        setCostProperties(snapshot.getCostProperties());
+        setMemoryFootprint(snapshot.getMemoryFootprint());
+        setBuildTime(snapshot.getBuildTime());
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public void setNodeCount(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    public long getRelationshipCount() {
+        return relationshipCount;
+    }
+
+    public void setRelationshipCount(long relationshipCount) {
+        this.relationshipCount = relationshipCount;
+    }
+
+    public int getTypeCount() {
+        return typeCount;
+    }
+
+    public void setTypeCount(int typeCount) {
+        this.typeCount = typeCount;
+    }
+
+    public Set<String> getCostProperties() {
+        return costProperties;
+    }
+
+    public void setCostProperties(Set<String> costProperties) {
+        this.costProperties = costProperties;
+    }
+
+    public long getMemoryFootprint() {
+        return memoryFootprint;
+    }
+
+    public void setMemoryFootprint(long memoryFootprint) {
+        this.memoryFootprint = memoryFootprint;
+    }
+
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    public void setBuildTime(long buildTime) {
+        this.buildTime = buildTime;
+    }
+}
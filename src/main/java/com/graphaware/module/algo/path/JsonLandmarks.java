@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+/**
+ * JSON-serializable information about {@link Landmarks} and, if available, their {@link LandmarksEvaluation}.
+ */
+public class JsonLandmarks {
+
+    private String costProperty;
+    private long[] landmarkIds;
+    private long memoryFootprint;
+    private long buildTime;
+    private Integer samples;
+    private Long expandedRelationshipsWithout;
+    private Long expandedRelationshipsWith;
+    private Double speedup;
+
+    public JsonLandmarks(Landmarks landmarks, LandmarksEvaluation evaluation) {
+        setCostProperty(landmarks.getCostProperty());
+        setLandmarkIds(landmarks.getLandmarkIds());
+        setMemoryFootprint(landmarks.getMemoryFootprint());
+        setBuildTime(landmarks.getBuildTime());
+
+        if (evaluation != null) {
+            setSamples(evaluation.getSamples());
+            setExpandedRelationshipsWithout(evaluation.getExpandedRelationshipsWithout());
+            setExpandedRelationshipsWith(evaluation.getExpandedRelationshipsWith());
+            setSpeedup(evaluation.getSpeedup());
+        }
+    }
+
+    public String getCostProperty() {
+        return costProperty;
+    }
+
+    public void setCostProperty(String costProperty) {
+        this.costProperty = costProperty;
+    }
+
+    public long[] getLandmarkIds() {
+        return landmarkIds;
+    }
+
+    public void setLandmarkIds(long[] landmarkIds) {
+        this.landmarkIds = landmarkIds;
+    }
+
+    public long getMemoryFootprint() {
+        return memoryFootprint;
+    }
+
+    public void setMemoryFootprint(long memoryFootprint) {
+        this.memoryFootprint = memoryFootprint;
+    }
+
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    public void setBuildTime(long buildTime) {
+        this.buildTime = buildTime;
+    }
+
+    public Integer getSamples() {
+        return samples;
+    }
+
+    public void setSamples(Integer samples) {
+        this.samples = samples;
+    }
+
+    public Long getExpandedRelationshipsWithout() {
+        return expandedRelationshipsWithout;
+    }
+
+    public void setExpandedRelationshipsWithout(Long expandedRelationshipsWithout) {
+        this.expandedRelationshipsWithout = expandedRelationshipsWithout;
+    }
+
+    public Long getExpandedRelationshipsWith() {
+        return expandedRelationshipsWith;
+    }
+
+    public void setExpandedRelationshipsWith(Long expandedRelationshipsWith) {
+        this.expandedRelationshipsWith = expandedRelationshipsWith;
+    }
+
+    public Double getSpeedup() {
+        return speedup;
+    }
+
+    public void setSpeedup(Double speedup) {
+        this.speedup = speedup;
+    }
+}
@@ -19,14 +19,7 @@ package com.graphaware.module.algo.path;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.graphaware.api.json.JsonNode;
 import com.graphaware.api.json.JsonRelationship;
-import com.graphaware.api.json.LongIdJsonNode;
-import com.graphaware.api.json.LongIdJsonRelationship;
-import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
-import org.neo4j.graphdb.Relationship;
-
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * JSON-serializable representation of a Neo4j path.
@@ -39,18 +32,18 @@ public class JsonPath {
     private Long cost;
 
     public JsonPath(Path path, JsonPathFinderInput jsonInput) {
-        List<JsonNode> jsonNodes = new LinkedList<>();
-        for (Node node : path.nodes()) {
-            jsonNodes.add(new LongIdJsonNode(node, jsonInput.getNodeProperties()));
-        }
-
-        List<JsonRelationship> jsonRelationships = new LinkedList<>();
-        for (Relationship relationship : path.relationships()) {
-            jsonRelationships.add(new LongIdJsonRelationship(relationship, jsonInput.getRelationshipProperties()));
-        }
+        this(path, new JsonPathElements(path.startNode().getGraphDatabase(), jsonInput));
+    }
 
-        setNodes(jsonNodes.toArray(new JsonNode[jsonNodes.size()]));
-        setRelationships(jsonRelationships.toArray(new JsonRelationship[jsonRelationships.size()]));
+    /**
+     * Construct a JSON path sharing node and relationship representations with other paths of the same response.
+     *
+     * @param path     to represent.
+     * @param elements of the response.
+     */
+    JsonPath(Path path, JsonPathElements elements) {
+        setNodes(elements.nodesOf(path));
+        setRelationships(elements.relationshipsOf(path));
 
         if (path instanceof WeightedPath) {
             setCost(((WeightedPath) path).getCost());
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import com.graphaware.api.SerializationSpecification;
+import com.graphaware.api.json.JsonNode;
+import com.graphaware.api.json.JsonRelationship;
+import com.graphaware.api.json.LongIdJsonNode;
+import com.graphaware.api.json.LongIdJsonRelationship;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * JSON representations of the nodes and relationships of the paths in a single response, created once per distinct node
+ * and relationship and shared by all paths that contain it. Paths returned by a search typically have many nodes and
+ * relationships in common, so this saves reading the same labels and properties from the database over and over again.
+ * <p/>
+ * Memory used by the instance grows with the number of distinct nodes and relationships, so it must not outlive the
+ * response. This class is not thread-safe and must be used within a transaction.
+ */
+class JsonPathElements {
+
+    private final GraphDatabaseService database;
+    private final SerializationSpecification serializationSpecification;
+
+    private final PrimitiveLongObjectMap<JsonNode> nodes = Primitive.longObjectMap();
+    private final PrimitiveLongObjectMap<JsonRelationship> relationships = Primitive.longObjectMap();
+
+    /**
+     * Construct new, empty elements.
+     *
+     * @param database                   to read nodes and relationships from.
+     * @param serializationSpecification determining which node and relationship properties to include.
+     */
+    JsonPathElements(GraphDatabaseService database, SerializationSpecification serializationSpecification) {
+        this.database = database;
+        this.serializationSpecification = serializationSpecification;
+    }
+
+    /**
+     * Get the JSON representations of the nodes on a path.
+     *
+     * @param path to get the nodes of.
+     * @return nodes, in the order of the path.
+     */
+    JsonNode[] nodesOf(Path path) {
+        JsonNode[] result = new JsonNode[path.length() + 1];
+
+        if (path instanceof CompactPath) {
+            CompactPath compactPath = (CompactPath) path;
+            for (int i = 0; i < result.length; i++) {
+                result[i] = node(compactPath.nodeId(i), null);
+            }
+            return result;
+        }
+
+        int i = 0;
+        for (Node node : path.nodes()) {
+            result[i++] = node(node.getId(), node);
+        }
+        return result;
+    }
+
+    /**
+     * Get the JSON representations of the relationships on a path.
+     *
+     * @param path to get the relationships of.
+     * @return relationships, in the order of the path.
+     */
+    JsonRelationship[] relationshipsOf(Path path) {
+        JsonRelationship[] result = new JsonRelationship[path.length()];
+
+        if (path instanceof CompactPath) {
+            CompactPath compactPath = (CompactPath) path;
+            for (int i = 0; i < result.length; i++) {
+                result[i] = relationship(compactPath.relationshipId(i), null);
+            }
+            return result;
+        }
+
+        int i = 0;
+        for (Relationship relationship : path.relationships()) {
+            result[i++] = relationship(relationship.getId(), relationship);
+        }
+        return result;
+    }
+
+    private JsonNode node(long id, Node node) {
+        JsonNode result = nodes.get(id);
+        if (result == null) {
+            result = new LongIdJsonNode(node != null ? node : database.getNodeById(id), serializationSpecification.getNodeProperties());
+            nodes.put(id, result);
+        }
+        return result;
+    }
+
+    private JsonRelationship relationship(long id, Relationship relationship) {
+        JsonRelationship result = relationships.get(id);
+        if (result == null) {
+            result = new LongIdJsonRelationship(relationship != null ? relationship : database.getRelationshipById(id), serializationSpecification.getRelationshipProperties());
+            relationships.put(id, result);
+        }
+        return result;
+    }
+}
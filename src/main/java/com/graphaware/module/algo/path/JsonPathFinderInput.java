@@ -42,6 +42,12 @@ public class JsonPathFinderInput extends SerializationSpecification {
 
     private SortOrder sortOrder;
     private String costProperty;
+    private SearchEngine searchEngine;
+    private Long maxTime;
+    private Long maxExpansions;
+    private Integer hubDegreeThreshold;
+    private HubPolicy hubPolicy;
+    private Boolean parallel;
 
     /**
      * Produce path finder input from this JSON representation.
@@ -50,11 +56,24 @@ public class JsonPathFinderInput extends SerializationSpecification {
      * @return path finder input.
      */
     public PathFinderInput produceInput(GraphDatabaseService database) {
-        if (getStartNode() == null || getEndNode() == null) {
+        return produceInput(database, getStartNode(), getEndNode());
+    }
+
+    /**
+     * Produce path finder input from this JSON representation, with start and end nodes that override the ones in
+     * this representation.
+     *
+     * @param database  to find nodes in.
+     * @param startNode ID of the start node.
+     * @param endNode   ID of the end node.
+     * @return path finder input.
+     */
+    public PathFinderInput produceInput(GraphDatabaseService database, Long startNode, Long endNode) {
+        if (startNode == null || endNode == null) {
             throw new IllegalArgumentException("Must specify at least start and end nodes!");
         }
 
-        PathFinderInput input = new PathFinderInput(database.getNodeById(getStartNode()), database.getNodeById(getEndNode()));
+        PathFinderInput input = new PathFinderInput(database.getNodeById(startNode), database.getNodeById(endNode));
 
         if (getSortOrder() != null) {
             input.setSortOrder(getSortOrder());
@@ -64,6 +83,10 @@ public class JsonPathFinderInput extends SerializationSpecification {
             input.setCostProperty(getCostProperty());
         }
 
+        if (getSearchEngine() != null) {
+            input.setSearchEngine(getSearchEngine());
+        }
+
         if (getMaxResults() != null) {
             input.setMaxResults(getMaxResults());
         }
@@ -76,6 +99,26 @@ public class JsonPathFinderInput extends SerializationSpecification {
             input.setMaxDepth(getMaxDepth());
         }
 
+        if (getMaxTime() != null) {
+            input.setMaxTime(getMaxTime());
+        }
+
+        if (getMaxExpansions() != null) {
+            input.setMaxExpansions(getMaxExpansions());
+        }
+
+        if (getHubDegreeThreshold() != null) {
+            input.setHubDegreeThreshold(getHubDegreeThreshold());
+        }
+
+        if (getHubPolicy() != null) {
+            input.setHubPolicy(getHubPolicy());
+        }
+
+        if (getParallel() != null) {
+            input.setParallel(getParallel());
+        }
+
         if (getTypesAndDirections() != null) {
             if (getDirection() != null) {
                 throw new IllegalArgumentException("Must specify either global direction, or specific types and directions, not both!");
@@ -152,4 +195,52 @@ public class JsonPathFinderInput extends SerializationSpecification {
     public void setCostProperty(String costProperty) {
         this.costProperty = costProperty;
     }
+
+    public SearchEngine getSearchEngine() {
+        return searchEngine;
+    }
+
+    public void setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+
+    public Long getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(Long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    public Long getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    public void setMaxExpansions(Long maxExpansions) {
+        this.maxExpansions = maxExpansions;
+    }
+
+    public Integer getHubDegreeThreshold() {
+        return hubDegreeThreshold;
+    }
+
+    public void setHubDegreeThreshold(Integer hubDegreeThreshold) {
+        this.hubDegreeThreshold = hubDegreeThreshold;
+    }
+
+    public HubPolicy getHubPolicy() {
+        return hubPolicy;
+    }
+
+    public void setHubPolicy(HubPolicy hubPolicy) {
+        this.hubPolicy = hubPolicy;
+    }
+
+    public Boolean getParallel() {
+        return parallel;
+    }
+
+    public void setParallel(Boolean parallel) {
+        this.parallel = parallel;
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.algo.path;
+
+import java.util.Map;
+
+/**
+ * JSON-serializable {@link PathFinderMetrics}. All times are in microseconds.
+ */
+public class JsonPathFinderMetrics {
+
+    private long requests;
+    private HistogramSnapshot requestTimes;
+    private Map<String, HistogramSnapshot> phaseTimes;
+    private HistogramSnapshot expandedRelationships;
+    private HistogramSnapshot returnedPaths;
+    private int statePoolSize;
+    private long statePoolMemoryFootprint;
+    private long statePoolHits;
+    private long statePoolMisses;
+    private double statePoolHitRate;
+
+    public JsonPathFinderMetrics(PathFinderMetrics metrics) {
+        setRequests(metrics.getRequests());
+        setRequestTimes(metrics.getRequestTimes());
+        setPhaseTimes(metrics.getPhaseTimes());
+        setExpandedRelationships(metrics.getExpandedRelationships());
+        setReturnedPaths(metrics.getReturnedPaths());
+        setStatePoolSize(metrics.getStatePoolSize());
+        setStatePoolMemoryFootprint(metrics.getStatePoolMemoryFootprint());
+        setStatePoolHits(metrics.getStatePoolHits());
+        setStatePoolMisses(metrics.getStatePoolMisses());
+        setStatePoolHitRate(metrics.getStatePoolHitRate());
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public HistogramSnapshot getRequestTimes() {
+        return requestTimes;
+    }
+
+    public void setRequestTimes(HistogramSnapshot requestTimes) {
+        this.requestTimes = requestTimes;
+    }
+
+    public Map<String, HistogramSnapshot> getPhaseTimes() {
+        return phaseTimes;
+    }
+
+    public void setPhaseTimes(Map<String, HistogramSnapshot> phaseTimes) {
+        this.phaseTimes = phaseTimes;
+    }
+
+    public HistogramSnapshot getExpandedRelationships() {
+        return expandedRelationships;
+    }
+
+    public void setExpandedRelationships(HistogramSnapshot expandedRelationships) {
+        this.expandedRelationships = expandedRelationships;
+    }
+
+    public HistogramSnapshot getReturnedPaths() {
+        return returnedPaths;
+    }
+
+    public void setReturnedPaths(HistogramSnapshot returnedPaths) {
+        this.returnedPaths = returnedPaths;
+    }
+
+    public int getStatePoolSize() {
+        return statePoolSize;
+    }
+
+    public void setStatePoolSize(int statePoolSize) {
+        this.statePoolSize = statePoolSize;
+    }
+
+    public long getStatePoolMemoryFootprint() {
+        return statePoolMemoryFootprint;
+    }
+
+    public void setStatePoolMemoryFootprint(long statePoolMemoryFootprint) {
+        this.statePoolMemoryFootprint = statePoolMemoryFootprint;
+    }
+
+    public long getStatePoolHits() {
+        return statePoolHits;
+    }
+
+    public void setStatePoolHits(long statePoolHits) {
+        this.statePoolHits = statePoolHits;
+    }
+
+    public long getStatePoolMisses() {
+        return statePoolMisses;
+    }
+
+    public void setStatePoolMisses(long statePoolMisses) {
+        this.statePoolMisses = statePoolMisses;
+    }
+
+    public double getStatePoolHitRate() {
+        return statePoolHitRate;
+    }
+
+    public void setStatePoolHitRate(double statePoolHitRate) {
+        this.statePoolHitRate = statePoolHitRate;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphaware.api.json.JsonNode;
+import com.graphaware.api.json.JsonRelationship;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Path;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * {@link PathListener} writing paths to an output stream as a JSON array, one by one, as they are found. Every path is
+ * written in the same format as {@link JsonPath}, but no intermediate representation of the whole result is built.
+ * <p/>
+ * Unlike {@link JsonPathElements} of a whole response, which grow with the number of distinct nodes and relationships
+ * in it, the JSON representations of nodes and relationships are only shared within a single path, so that the memory
+ * needed doesn't depend on the number of results.
+ * <p/>
+ * Nothing is written before the first path is found, so that failures of the search that happen before any path has
+ * been found can still be reported to the client properly. {@link #close()} must be called once the search is finished.
+ */
+class JsonPathWriter implements PathListener {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final GraphDatabaseService database;
+    private final OutputStream outputStream;
+    private final JsonPathFinderInput jsonInput;
+    private JsonGenerator generator;
+    private int writtenPaths;
+
+    /**
+     * Construct a new writer.
+     *
+     * @param database     to read nodes and relationships from.
+     * @param outputStream to write to. Not closed by this writer.
+     * @param jsonInput    input of the search, determining which node and relationship properties to write.
+     */
+    JsonPathWriter(GraphDatabaseService database, OutputStream outputStream, JsonPathFinderInput jsonInput) {
+        this.database = database;
+        this.outputStream = outputStream;
+        this.jsonInput = jsonInput;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pathFound(Path path) {
+        try {
+            if (generator == null) {
+                start();
+            }
+
+            writePath(generator, path, new JsonPathElements(database, jsonInput));
+            writtenPaths++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finish the JSON array and flush it to the output stream. Writes an empty array if no path has been found.
+     */
+    public void close() {
+        try {
+            if (generator == null) {
+                start();
+            }
+
+            generator.writeEndArray();
+            generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the number of paths written so far.
+     *
+     * @return number of paths.
+     */
+    public int getWrittenPaths() {
+        return writtenPaths;
+    }
+
+    private void start() throws IOException {
+        generator = createGenerator(outputStream);
+        generator.writeStartArray();
+    }
+
+    /**
+     * Create a JSON generator writing to an output stream, which it doesn't close.
+     *
+     * @param outputStream to write to.
+     * @return generator.
+     * @throws IOException if the generator could not be created.
+     */
+    static JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    /**
+     * Write a single path in the format of {@link JsonPath}.
+     *
+     * @param generator to write with.
+     * @param path      to write.
+     * @param elements  to take the JSON representations of the path's nodes and relationships from.
+     * @throws IOException if the path could not be written.
+     */
+    static void writePath(JsonGenerator generator, Path path, JsonPathElements elements) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeArrayFieldStart("nodes");
+        for (JsonNode node : elements.nodesOf(path)) {
+            generator.writeObject(node);
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("relationships");
+        for (JsonRelationship relationship : elements.relationshipsOf(path)) {
+            generator.writeObject(relationship);
+        }
+        generator.writeEndArray();
+
+        if (path instanceof WeightedPath) {
+            generator.writeNumberField("cost", ((WeightedPath) path).getCost());
+        }
+
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.*;
+
+/**
+ * A search for the k cheapest loopless paths between two nodes, regardless of their length, based on Yen's algorithm
+ * with Lawler's improvement (spur paths are only searched for from the node where a path deviates from its parent
+ * onwards).
+ * <p/>
+ * Spur paths are found by A* guided by exact distances to the end node, which are computed by a Dijkstra search from
+ * the end node backwards. That search is incremental: it only settles as many nodes as needed to answer the questions
+ * asked so far. When the cheapest path from a spur node to the end node (in the whole graph) avoids all nodes and
+ * relationships excluded for the spur node, it is reused directly, without any search. Candidate paths are kept in a
+ * heap bounded by the number of paths still needed, and spur searches never extend paths that would cost more than
+ * the worst candidate in a full heap.
+ * <p/>
+ * When {@link Landmarks} are available, the backward search is an A* search towards the start node rather than a
+ * Dijkstra search in all directions, guided by lower bounds of distances from the start node, which are consistent,
+ * so nodes are still settled with exact distances. The lower bounds of distances to the end node also prune spur
+ * nodes and partial spur paths that can't lead to a path cheaper than the bound, before their exact distances are
+ * computed, and pairs of nodes with no path between them are recognised without any search.
+ * <p/>
+ * Relationships with undefined cost are never traversed. Costs must not be negative.
+ * <p/>
+ * This class is not thread-safe and must be used within a transaction.
+ */
+class KCheapestPathsSearch {
+
+    private final Node start;
+    private final Node end;
+    private final ExpansionCache forward;
+    private final ExpansionCache backward;
+    private final Landmarks landmarks;
+    private final SearchStatistics statistics;
+
+    //incremental Dijkstra from the end node backwards
+    private final Map<Long, Long> distancesToEnd = new HashMap<>();
+    private final Map<Long, Long> tentativeDistancesToEnd = new HashMap<>();
+    private final Map<Long, Step> stepsToEnd = new HashMap<>();
+    private final PriorityQueue<QueueEntry> backwardQueue = new PriorityQueue<>();
+
+    /**
+     * Construct a new search.
+     *
+     * @param input      path finder input.
+     * @param costFinder to find relationship costs with, must return {@link Long#MAX_VALUE} for relationships that
+     *                   must not be traversed.
+     * @param statistics to record search statistics in.
+     * @param landmarks  for the cost property of the cost finder, null if there are none.
+     */
+    KCheapestPathsSearch(PathFinderInput input, RelationshipCostFinder costFinder, SearchStatistics statistics, Landmarks landmarks) {
+        this.start = input.getStart();
+        this.end = input.getEnd();
+        this.landmarks = landmarks;
+        this.statistics = statistics;
+
+        PathExpander<Object> expander = new CountingPathExpander<>(input.getExpander(statistics), statistics);
+        this.forward = new ExpansionCache(expander, costFinder);
+        this.backward = new ExpansionCache(expander.reverse(), costFinder);
+
+        tentativeDistancesToEnd.put(end.getId(), 0L);
+        backwardQueue.add(new QueueEntry(end, 0, lowerBound(start, end)));
+    }
+
+    /**
+     * Find the cheapest paths. Each path is passed on to the listener as soon as it is found, as paths are found in
+     * the order of increasing cost. Finding each path after the first one is timed as a separate
+     * {@link SearchPhase#LONGER_PATHS} phase.
+     *
+     * @param k        maximum number of paths to find.
+     * @param listener to pass at most k cheapest loopless paths to, ordered by increasing cost.
+     */
+    public void findPaths(int k, PathListener listener) {
+        List<CandidatePath> result = new ArrayList<>();
+
+        if (k < 1 || lowerBound(start, end) == Long.MAX_VALUE || distanceToEnd(start) == Long.MAX_VALUE) {
+            return;
+        }
+
+        Set<List<Long>> seen = new HashSet<>();
+        long sequence = 0;
+        TreeSet<CandidatePath> candidates = new TreeSet<>();
+
+        CandidatePath first = cheapestPathToEnd(start, new CandidatePath(start));
+        seen.add(first.relationshipIds());
+        result.add(first);
+        listener.pathFound(first.toWeightedPath(start));
+
+        while (result.size() < k) {
+            statistics.startPhase(SearchPhase.LONGER_PATHS);
+            CandidatePath previous = result.get(result.size() - 1);
+            int remaining = k - result.size();
+
+            for (int i = previous.deviation; i < previous.length(); i++) {
+                CandidatePath root = previous.prefix(i);
+                Node spurNode = previous.nodes.get(i);
+
+                Set<Long> excludedRelationships = new HashSet<>();
+                for (CandidatePath path : result) {
+                    if (path.length() > i && path.startsWith(root)) {
+                        excludedRelationships.add(path.relationships.get(i).getId());
+                    }
+                }
+
+                Set<Long> excludedNodes = new HashSet<>();
+                for (int j = 0; j < i; j++) {
+                    excludedNodes.add(previous.nodes.get(j).getId());
+                }
+
+                long bound = Long.MAX_VALUE;
+                if (candidates.size() >= remaining) {
+                    bound = candidates.last().cost - root.cost;
+                }
+
+                CandidatePath candidate = findSpurPath(spurNode, root, excludedNodes, excludedRelationships, bound);
+
+                if (candidate != null && seen.add(candidate.relationshipIds())) {
+                    candidate.deviation = i;
+                    candidate.sequence = sequence++;
+                    candidates.add(candidate);
+                    //candidates beyond the number of paths still needed can never be selected
+                    if (candidates.size() > remaining) {
+                        candidates.pollLast();
+                    }
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                break;
+            }
+
+            CandidatePath next = candidates.pollFirst();
+            result.add(next);
+            listener.pathFound(next.toWeightedPath(start));
+        }
+    }
+
+    /**
+     * Find the cheapest path from the spur node to the end node, avoiding excluded nodes and relationships, and append
+     * it to the root path.
+     *
+     * @return root path followed by the spur path, null if there is no such path cheaper than the bound.
+     */
+    private CandidatePath findSpurPath(Node spurNode, CandidatePath root, Set<Long> excludedNodes, Set<Long> excludedRelationships, long bound) {
+        if (lowerBound(spurNode, end) >= bound) {
+            return null;
+        }
+
+        long distance = distanceToEnd(spurNode);
+        if (distance == Long.MAX_VALUE || distance >= bound) {
+            return null;
+        }
+
+        if (isCheapestPathToEndAllowed(spurNode, excludedNodes, excludedRelationships)) {
+            return cheapestPathToEnd(spurNode, root);
+        }
+
+        return aStar(spurNode, root, excludedNodes, excludedRelationships, bound);
+    }
+
+    /**
+     * A* from the spur node to the end node, using exact distances to the end node in the whole graph as heuristic.
+     * These are admissible and consistent when some nodes and relationships are excluded.
+     */
+    private CandidatePath aStar(Node spurNode, CandidatePath root, Set<Long> excludedNodes, Set<Long> excludedRelationships, long bound) {
+        Map<Long, Long> costs = new HashMap<>();
+        Map<Long, Step> stepsFromSpur = new HashMap<>();
+        Set<Long> closed = new HashSet<>();
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+
+        costs.put(spurNode.getId(), 0L);
+        queue.add(new QueueEntry(spurNode, 0, distanceToEnd(spurNode)));
+
+        while (!queue.isEmpty()) {
+            QueueEntry entry = queue.poll();
+            Node current = entry.node;
+
+            if (!closed.add(current.getId())) {
+                continue;
+            }
+
+            if (current.equals(end)) {
+                LinkedList<Step> steps = new LinkedList<>();
+                for (Node node = end; !node.equals(spurNode); ) {
+                    Step step = stepsFromSpur.get(node.getId());
+                    steps.addFirst(new Step(step.relationship, node, step.cost));
+                    node = step.node;
+                }
+
+                CandidatePath result = root.copy();
+                for (Step step : steps) {
+                    result.append(step.relationship, step.node, step.cost);
+                }
+                return result;
+            }
+
+            long cost = costs.get(current.getId());
+            ExpansionCache.Expansion expansion = expand(forward, current);
+
+            for (int i = 0; i < expansion.relationships.length; i++) {
+                statistics.relationshipFollowed();
+                Node neighbour = expansion.neighbours[i];
+
+                if (expansion.costs[i] == Long.MAX_VALUE
+                        || closed.contains(neighbour.getId())
+                        || excludedNodes.contains(neighbour.getId())
+                        || (current.equals(spurNode) && excludedRelationships.contains(expansion.relationships[i].getId()))) {
+                    continue;
+                }
+
+                long neighbourCost = cost + expansion.costs[i];
+
+                //cheap lower bound first, so that the exact distance isn't computed for pruned neighbours
+                long estimate = lowerBound(neighbour, end);
+                if (estimate == Long.MAX_VALUE || neighbourCost + estimate >= bound) {
+                    continue;
+                }
+
+                long heuristic = distanceToEnd(neighbour);
+                if (heuristic == Long.MAX_VALUE || neighbourCost + heuristic >= bound) {
+                    continue;
+                }
+
+                Long known = costs.get(neighbour.getId());
+                if (known == null || neighbourCost < known) {
+                    costs.put(neighbour.getId(), neighbourCost);
+                    stepsFromSpur.put(neighbour.getId(), new Step(expansion.relationships[i], current, expansion.costs[i]));
+                    queue.add(new QueueEntry(neighbour, neighbourCost, neighbourCost + heuristic));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Does the cheapest path from the given node to the end node avoid all excluded nodes and relationships?
+     */
+    private boolean isCheapestPathToEndAllowed(Node node, Set<Long> excludedNodes, Set<Long> excludedRelationships) {
+        Step step = stepsToEnd.get(node.getId());
+
+        if (step != null && excludedRelationships.contains(step.relationship.getId())) {
+            return false;
+        }
+
+        for (; step != null; step = stepsToEnd.get(step.node.getId())) {
+            if (excludedNodes.contains(step.node.getId())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Append the cheapest path from the given node to the end node (in the whole graph) to the root path.
+     */
+    private CandidatePath cheapestPathToEnd(Node node, CandidatePath root) {
+        CandidatePath result = root.copy();
+        for (Step step = stepsToEnd.get(node.getId()); step != null; step = stepsToEnd.get(step.node.getId())) {
+            result.append(step.relationship, step.node, step.cost);
+        }
+        return result;
+    }
+
+    /**
+     * Get the cost of the cheapest path from the given node to the end node, continuing the backward Dijkstra search
+     * until the node is settled.
+     *
+     * @param node to get the distance for.
+     * @return distance, {@link Long#MAX_VALUE} if the end node can't be reached from the node.
+     */
+    private long distanceToEnd(Node node) {
+        while (!distancesToEnd.containsKey(node.getId()) && !backwardQueue.isEmpty()) {
+            QueueEntry entry = backwardQueue.poll();
+            Node settled = entry.node;
+
+            if (distancesToEnd.containsKey(settled.getId())) {
+                continue;
+            }
+
+            distancesToEnd.put(settled.getId(), entry.distance);
+
+            ExpansionCache.Expansion expansion = expand(backward, settled);
+            for (int i = 0; i < expansion.relationships.length; i++) {
+                statistics.relationshipFollowed();
+                Node neighbour = expansion.neighbours[i];
+
+                if (expansion.costs[i] == Long.MAX_VALUE || distancesToEnd.containsKey(neighbour.getId())) {
+                    continue;
+                }
+
+                long distance = entry.distance + expansion.costs[i];
+                Long known = tentativeDistancesToEnd.get(neighbour.getId());
+                if (known == null || distance < known) {
+                    //nodes that can't be reached from the start node are never needed
+                    long heuristic = lowerBound(start, neighbour);
+                    if (heuristic == Long.MAX_VALUE) {
+                        continue;
+                    }
+
+                    tentativeDistancesToEnd.put(neighbour.getId(), distance);
+                    stepsToEnd.put(neighbour.getId(), new Step(expansion.relationships[i], settled, expansion.costs[i]));
+                    backwardQueue.add(new QueueEntry(neighbour, distance, distance + heuristic));
+                }
+            }
+        }
+
+        Long distance = distancesToEnd.get(node.getId());
+        return distance == null ? Long.MAX_VALUE : distance;
+    }
+
+    /**
+     * Get a lower bound of the cost of the cheapest path between two nodes.
+     *
+     * @return lower bound, 0 if there are no landmarks, {@link Long#MAX_VALUE} if there is no path between the nodes.
+     */
+    private long lowerBound(Node from, Node to) {
+        return landmarks == null ? 0 : landmarks.lowerBound(from.getId(), to.getId());
+    }
+
+    private ExpansionCache.Expansion expand(ExpansionCache cache, Node node) {
+        ExpansionCache.Expansion expansion = cache.expand(node);
+
+        if (cache.hasNegativeCosts()) {
+            throw new IllegalArgumentException("Relationship costs must not be negative when sort order is " + SortOrder.COST_ASC);
+        }
+
+        return expansion;
+    }
+
+    /**
+     * A relationship leading from or to a node, with its cost.
+     */
+    private static class Step {
+
+        private final Relationship relationship;
+        private final Node node;
+        private final long cost;
+
+        private Step(Relationship relationship, Node node, long cost) {
+            this.relationship = relationship;
+            this.node = node;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Node in a priority queue, with its distance from the origin of the search, and its priority, i.e. the distance
+     * plus the estimated distance to the goal of the search.
+     */
+    private static class QueueEntry implements Comparable<QueueEntry> {
+
+        private final Node node;
+        private final long distance;
+        private final long priority;
+
+        private QueueEntry(Node node, long distance, long priority) {
+            this.node = node;
+            this.distance = distance;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(QueueEntry other) {
+            return Long.compare(priority, other.priority);
+        }
+    }
+
+    /**
+     * A path found by the search, with the index of the node where it deviates from the path it has been derived from,
+     * and a sequence number to order candidates with the same cost.
+     */
+    private static class CandidatePath implements Comparable<CandidatePath> {
+
+        private final List<Node> nodes = new ArrayList<>();
+        private final List<Relationship> relationships = new ArrayList<>();
+        private final List<Long> costs = new ArrayList<>();
+        private long cost = 0;
+        private int deviation = 0;
+        private long sequence = 0;
+
+        private CandidatePath(Node start) {
+            nodes.add(start);
+        }
+
+        private CandidatePath() {
+        }
+
+        private int length() {
+            return relationships.size();
+        }
+
+        private void append(Relationship relationship, Node node, long relationshipCost) {
+            relationships.add(relationship);
+            nodes.add(node);
+            costs.add(relationshipCost);
+            cost += relationshipCost;
+        }
+
+        private CandidatePath copy() {
+            CandidatePath copy = new CandidatePath();
+            copy.nodes.addAll(nodes);
+            copy.relationships.addAll(relationships);
+            copy.costs.addAll(costs);
+            copy.cost = cost;
+            return copy;
+        }
+
+        private CandidatePath prefix(int length) {
+            CandidatePath prefix = new CandidatePath();
+            prefix.nodes.addAll(nodes.subList(0, length + 1));
+            prefix.relationships.addAll(relationships.subList(0, length));
+            prefix.costs.addAll(costs.subList(0, length));
+            for (long relationshipCost : prefix.costs) {
+                prefix.cost += relationshipCost;
+            }
+            return prefix;
+        }
+
+        private boolean startsWith(CandidatePath prefix) {
+            for (int i = 0; i < prefix.relationships.size(); i++) {
+                if (relationships.get(i).getId() != prefix.relationships.get(i).getId()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private List<Long> relationshipIds() {
+            List<Long> result = new ArrayList<>(relationships.size());
+            for (Relationship relationship : relationships) {
+                result.add(relationship.getId());
+            }
+            return result;
+        }
+
+        private WeightedPath toWeightedPath(Node start) {
+            long[] nodeIds = new long[nodes.size()];
+            for (int i = 0; i < nodeIds.length; i++) {
+                nodeIds[i] = nodes.get(i).getId();
+            }
+
+            long[] relationshipIds = new long[relationships.size()];
+            for (int i = 0; i < relationshipIds.length; i++) {
+                relationshipIds[i] = relationships.get(i).getId();
+            }
+
+            return new WeightedCompactPath(start.getGraphDatabase(), nodeIds, relationshipIds, cost);
+        }
+
+        @Override
+        public int compareTo(CandidatePath other) {
+            int result = Long.compare(cost, other.cost);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Immutable set of landmarks with precomputed distances (total costs of the cheapest paths) from each landmark to every
+ * node, used to compute lower bounds of distances between any two nodes by the triangle inequality, for the ALT
+ * (A*, landmarks, triangle inequality) speed-up of {@link SortOrder#COST_ASC} searches, see {@link KCheapestPathsSearch}.
+ * <p/>
+ * Distances are computed by Dijkstra's algorithm over all relationships in both directions, relationships with undefined
+ * cost excluded. As every search traverses a subset of those relationships, in at most both directions, the lower bounds
+ * are valid for all searches with the same cost property. Nodes that are in different connected components than a
+ * landmark have an infinite distance from it, which identifies pairs of nodes with no path between them at all.
+ * <p/>
+ * Landmarks are picked one at a time, each as far as possible from the ones picked before, starting with the node
+ * farthest from an arbitrary node. Distances are stored off-heap, in an array per landmark indexed by node ID, so
+ * that they don't add to garbage collection and can be memory-mapped from a file they have been written to, see
+ * {@link #writeTo(File)} and {@link #readFrom(File)}.
+ * <p/>
+ * Landmarks reflect the graph at the time they were built and must be discarded when relationships or their costs
+ * change, see {@link LandmarksProvider}.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class Landmarks {
+
+    static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private static final int MAGIC = 0x4C4D4B31;
+
+    private final String costProperty;
+    private final long[] landmarkIds;
+    private final long nodeIdBound;
+    private final LongBuffer[] distances;
+    private final long lastTransactionId;
+    private final long buildTime;
+
+    private Landmarks(String costProperty, long[] landmarkIds, long nodeIdBound, LongBuffer[] distances, long lastTransactionId, long buildTime) {
+        this.costProperty = costProperty;
+        this.landmarkIds = landmarkIds;
+        this.nodeIdBound = nodeIdBound;
+        this.distances = distances;
+        this.lastTransactionId = lastTransactionId;
+        this.buildTime = buildTime;
+    }
+
+    /**
+     * Pick landmarks and compute their distances to all nodes. Runs in its own transaction.
+     *
+     * @param database     to build landmarks for.
+     * @param costProperty key of the numerical relationship property representing cost, which must not be negative.
+     * @param count        maximum number of landmarks, must be positive.
+     * @return landmarks.
+     * @throws IllegalArgumentException                  if count isn't positive or there is a relationship with a
+     *                                                   negative cost.
+     * @throws java.util.ConcurrentModificationException if the graph kept changing while its snapshot was being built,
+     *                                                   see {@link GraphSnapshot#build(GraphDatabaseService, java.util.Collection)}.
+     */
+    public static Landmarks build(GraphDatabaseService database, String costProperty, int count) {
+        if (costProperty == null || count < 1) {
+            throw new IllegalArgumentException("Cost property must be specified and number of landmarks must be positive");
+        }
+
+        long start = System.currentTimeMillis();
+        long lastTransactionId = GraphSnapshot.lastCommittedTransactionId(database);
+
+        GraphSnapshot snapshot = GraphSnapshot.build(database, Collections.singleton(costProperty));
+        GraphSnapshot.PropertyValues costs = snapshot.costs(costProperty);
+        if (costs.hasNegative()) {
+            throw new IllegalArgumentException("Relationship costs must not be negative to build landmarks");
+        }
+
+        int nodeCount = snapshot.getNodeCount();
+        long nodeIdBound = nodeCount == 0 ? 0 : snapshot.nodeId(nodeCount - 1) + 1;
+        if (nodeIdBound > Integer.MAX_VALUE / 8) {
+            throw new IllegalStateException("Graphs with node IDs greater than " + Integer.MAX_VALUE / 8 + " are not supported");
+        }
+
+        long[] distancesFromLandmark = new long[nodeCount];
+        long[] distancesFromClosestLandmark = new long[nodeCount];
+        Arrays.fill(distancesFromClosestLandmark, UNREACHABLE);
+
+        long[] landmarkIds = new long[0];
+        LongBuffer[] distances = new LongBuffer[0];
+
+        if (nodeCount > 0) {
+            dijkstra(snapshot, costs, 0, distancesFromLandmark);
+            int next = farthest(distancesFromLandmark, false);
+
+            while (landmarkIds.length < count) {
+                dijkstra(snapshot, costs, next, distancesFromLandmark);
+
+                LongBuffer buffer = ByteBuffer.allocateDirect((int) nodeIdBound * 8).asLongBuffer();
+                for (int id = 0; id < nodeIdBound; id++) {
+                    buffer.put(id, UNREACHABLE);
+                }
+                for (int node = 0; node < nodeCount; node++) {
+                    buffer.put((int) snapshot.nodeId(node), distancesFromLandmark[node]);
+                    distancesFromClosestLandmark[node] = Math.min(distancesFromClosestLandmark[node], distancesFromLandmark[node]);
+                }
+
+                landmarkIds = Arrays.copyOf(landmarkIds, landmarkIds.length + 1);
+                landmarkIds[landmarkIds.length - 1] = snapshot.nodeId(next);
+                distances = Arrays.copyOf(distances, distances.length + 1);
+                distances[distances.length - 1] = buffer;
+
+                //nodes in components without a landmark are the farthest of all
+                next = farthest(distancesFromClosestLandmark, true);
+                if (distancesFromClosestLandmark[next] == 0) {
+                    break;
+                }
+            }
+        }
+
+        return new Landmarks(costProperty, landmarkIds, nodeIdBound, distances, lastTransactionId, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Find the node with the greatest distance.
+     *
+     * @param distances         of nodes.
+     * @param includeUnreachable whether unreachable nodes count as the farthest.
+     * @return index of the farthest node.
+     */
+    private static int farthest(long[] distances, boolean includeUnreachable) {
+        int result = 0;
+        for (int node = 1; node < distances.length; node++) {
+            if ((includeUnreachable || distances[node] != UNREACHABLE) && distances[node] > distances[result]) {
+                result = node;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute distances from a node to all nodes in a snapshot, traversing relationships in both directions. Costs are
+     * non-negative, so the nodes are settled using a {@link RadixHeap}.
+     *
+     * @param snapshot  to search.
+     * @param costs     of relationships.
+     * @param source    index of the node to compute distances from.
+     * @param distances to fill in, {@link #UNREACHABLE} for nodes that can't be reached.
+     */
+    private static void dijkstra(GraphSnapshot snapshot, GraphSnapshot.PropertyValues costs, int source, long[] distances) {
+        Arrays.fill(distances, UNREACHABLE);
+        boolean[] settled = new boolean[distances.length];
+        RadixHeap heap = new RadixHeap();
+
+        distances[source] = 0;
+        heap.push(0, source);
+
+        while (!heap.isEmpty()) {
+            long distance = heap.peekKey();
+            int node = (int) heap.pop();
+
+            if (settled[node]) {
+                continue;
+            }
+            settled[node] = true;
+
+            for (int direction = GraphSnapshot.OUTGOING; direction <= GraphSnapshot.INCOMING; direction++) {
+                for (int position = snapshot.from(direction, node), to = snapshot.to(direction, node); position < to; position++) {
+                    long cost = costs.get(direction, position, UNREACHABLE);
+                    if (cost == UNREACHABLE) {
+                        continue;
+                    }
+
+                    int neighbour = snapshot.neighbour(direction, position);
+                    long neighbourDistance = PathCostCalculatorImpl.add(distance, cost);
+                    if (!settled[neighbour] && neighbourDistance < distances[neighbour]) {
+                        distances[neighbour] = neighbourDistance;
+                        heap.push(neighbourDistance, neighbour);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a lower bound of the distance between two nodes, i.e. of the total cost of the cheapest path between them in
+     * any direction.
+     *
+     * @param fromNodeId ID of one node.
+     * @param toNodeId   ID of the other node.
+     * @return lower bound, {@link #UNREACHABLE} if there is no path between the nodes at all, 0 if unknown.
+     */
+    long lowerBound(long fromNodeId, long toNodeId) {
+        if (fromNodeId >= nodeIdBound || toNodeId >= nodeIdBound) {
+            return 0;
+        }
+
+        long result = 0;
+        for (LongBuffer landmarkDistances : distances) {
+            long from = landmarkDistances.get((int) fromNodeId);
+            long to = landmarkDistances.get((int) toNodeId);
+
+            if (from == UNREACHABLE || to == UNREACHABLE) {
+                if (from != to) {
+                    return UNREACHABLE;
+                }
+                continue;
+            }
+
+            result = Math.max(result, from > to ? from - to : to - from);
+        }
+        return result;
+    }
+
+    /**
+     * Write the landmarks to a file, so that they can be read by {@link #readFrom(File)}.
+     *
+     * @param file to write to, overwritten if it exists.
+     * @throws IOException if the file can't be written.
+     */
+    public void writeTo(File file) throws IOException {
+        byte[] property = costProperty.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(headerLength(property.length, landmarkIds.length));
+        header.putInt(MAGIC).putInt(property.length).put(property);
+        header.putLong(lastTransactionId).putLong(buildTime).putLong(nodeIdBound).putInt(landmarkIds.length);
+        for (long landmarkId : landmarkIds) {
+            header.putLong(landmarkId);
+        }
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            for (LongBuffer landmarkDistances : distances) {
+                for (int id = 0; id < nodeIdBound; id++) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                        buffer.clear();
+                    }
+                    buffer.putLong(landmarkDistances.get(id));
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+    }
+
+    /**
+     * Read landmarks written by {@link #writeTo(File)}. Distances are memory-mapped rather than read into memory.
+     *
+     * @param file to read from.
+     * @return landmarks.
+     * @throws IOException if the file can't be read or isn't a landmarks file.
+     */
+    public static Landmarks readFrom(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer prefix = readFully(channel, 8);
+            if (prefix.getInt() != MAGIC) {
+                throw new IOException(file + " is not a landmarks file");
+            }
+
+            int propertyLength = prefix.getInt();
+            ByteBuffer fixed = readFully(channel, propertyLength + 28);
+            byte[] property = new byte[propertyLength];
+            fixed.get(property);
+            long lastTransactionId = fixed.getLong();
+            long buildTime = fixed.getLong();
+            long nodeIdBound = fixed.getLong();
+            int count = fixed.getInt();
+
+            ByteBuffer ids = readFully(channel, 8 * count);
+            long[] landmarkIds = new long[count];
+            LongBuffer[] distances = new LongBuffer[count];
+            long position = headerLength(propertyLength, count);
+            for (int i = 0; i < count; i++) {
+                landmarkIds[i] = ids.getLong();
+                distances[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, nodeIdBound * 8).asLongBuffer();
+                position += nodeIdBound * 8;
+            }
+
+            return new Landmarks(new String(property, StandardCharsets.UTF_8), landmarkIds, nodeIdBound, distances, lastTransactionId, buildTime);
+        }
+    }
+
+    private static int headerLength(int propertyLength, int count) {
+        return 8 + propertyLength + 28 + 8 * count;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of landmarks file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Get the key of the relationship property the distances are the total costs of.
+     *
+     * @return cost property.
+     */
+    public String getCostProperty() {
+        return costProperty;
+    }
+
+    /**
+     * Get the IDs of the landmark nodes.
+     *
+     * @return landmark IDs, in the order they were picked.
+     */
+    public long[] getLandmarkIds() {
+        return landmarkIds.clone();
+    }
+
+    /**
+     * Get the ID of the last transaction committed before the landmarks were built.
+     *
+     * @return transaction ID, -1 if unknown.
+     */
+    public long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    /**
+     * Get the time it took to build the landmarks.
+     *
+     * @return build time in ms.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Get the number greater than the IDs of all nodes the landmarks know distances of.
+     *
+     * @return node ID bound.
+     */
+    long getNodeIdBound() {
+        return nodeIdBound;
+    }
+
+    /**
+     * Get the amount of off-heap memory taken by the distances.
+     *
+     * @return memory footprint in bytes.
+     */
+    public long getMemoryFootprint() {
+        return 8L * nodeIdBound * distances.length;
+    }
+}
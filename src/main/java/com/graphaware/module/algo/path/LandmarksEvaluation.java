@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.Random;
+
+/**
+ * Measured speed-up of {@link SortOrder#COST_ASC} searches thanks to {@link Landmarks}, found by searching for the
+ * cheapest path between random pairs of nodes with and without landmarks.
+ * <p/>
+ * This class is immutable.
+ */
+public class LandmarksEvaluation {
+
+    private static final PathListener NO_LISTENER = new PathListener() {
+        @Override
+        public void pathFound(Path path) {
+        }
+    };
+
+    private final int samples;
+    private final long expandedRelationshipsWithout;
+    private final long expandedRelationshipsWith;
+    private final long timeWithout;
+    private final long timeWith;
+
+    private LandmarksEvaluation(int samples, long expandedRelationshipsWithout, long expandedRelationshipsWith, long timeWithout, long timeWith) {
+        this.samples = samples;
+        this.expandedRelationshipsWithout = expandedRelationshipsWithout;
+        this.expandedRelationshipsWith = expandedRelationshipsWith;
+        this.timeWithout = timeWithout;
+        this.timeWith = timeWith;
+    }
+
+    /**
+     * Evaluate landmarks on random pairs of nodes. Runs in its own transaction.
+     *
+     * @param database  the landmarks have been built for.
+     * @param landmarks to evaluate.
+     * @param samples   number of pairs of nodes to search for the cheapest path between.
+     * @param seed      of the random choice of nodes.
+     * @return evaluation.
+     */
+    static LandmarksEvaluation evaluate(GraphDatabaseService database, Landmarks landmarks, int samples, long seed) {
+        Random random = new Random(seed);
+        long expandedWithout = 0, expandedWith = 0, timeWithout = 0, timeWith = 0;
+        int evaluated = 0;
+
+        try (Transaction tx = database.beginTx()) {
+            for (int attempt = 0; evaluated < samples && attempt < samples * 10 && landmarks.getNodeIdBound() > 0; attempt++) {
+                Node start = findNode(database, random.nextInt((int) landmarks.getNodeIdBound()));
+                Node end = findNode(database, random.nextInt((int) landmarks.getNodeIdBound()));
+                if (start == null || end == null) {
+                    continue;
+                }
+
+                PathFinderInput input = new PathFinderInput(start, end).setCostProperty(landmarks.getCostProperty()).setSortOrder(SortOrder.COST_ASC);
+                RelationshipCostFinder costFinder = new MaxLongDefaultingRelationshipCostFinder(landmarks.getCostProperty());
+
+                SearchStatistics without = new SearchStatistics();
+                long startTime = System.nanoTime();
+                new KCheapestPathsSearch(input, costFinder, without, null).findPaths(1, NO_LISTENER);
+                timeWithout += System.nanoTime() - startTime;
+                expandedWithout += without.getExpandedRelationships();
+
+                SearchStatistics with = new SearchStatistics();
+                startTime = System.nanoTime();
+                new KCheapestPathsSearch(input, costFinder, with, landmarks).findPaths(1, NO_LISTENER);
+                timeWith += System.nanoTime() - startTime;
+                expandedWith += with.getExpandedRelationships();
+
+                evaluated++;
+            }
+
+            tx.success();
+        }
+
+        return new LandmarksEvaluation(evaluated, expandedWithout, expandedWith, timeWithout / 1000, timeWith / 1000);
+    }
+
+    private static Node findNode(GraphDatabaseService database, long id) {
+        try {
+            return database.getNodeById(id);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the number of pairs of nodes the landmarks have been evaluated on.
+     *
+     * @return number of samples.
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Get the total number of relationships expanded by searches without landmarks.
+     *
+     * @return number of expanded relationships.
+     */
+    public long getExpandedRelationshipsWithout() {
+        return expandedRelationshipsWithout;
+    }
+
+    /**
+     * Get the total number of relationships expanded by searches with landmarks.
+     *
+     * @return number of expanded relationships.
+     */
+    public long getExpandedRelationshipsWith() {
+        return expandedRelationshipsWith;
+    }
+
+    /**
+     * Get the total time taken by searches without landmarks.
+     *
+     * @return time in microseconds.
+     */
+    public long getTimeWithout() {
+        return timeWithout;
+    }
+
+    /**
+     * Get the total time taken by searches with landmarks.
+     *
+     * @return time in microseconds.
+     */
+    public long getTimeWith() {
+        return timeWith;
+    }
+
+    /**
+     * Get the speed-up, measured as the ratio of relationships expanded without and with landmarks, which, unlike time,
+     * doesn't depend on the state of caches and the load of the machine.
+     *
+     * @return speed-up, 1 if nothing has been expanded.
+     */
+    public double getSpeedup() {
+        if (expandedRelationshipsWithout == 0) {
+            return 1;
+        }
+        return (double) expandedRelationshipsWithout / Math.max(1, expandedRelationshipsWith);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holder of the current {@link Landmarks} of a database, at most one per cost property, which are built on demand. The
+ * landmarks are discarded by a {@link TransactionEventHandler} as soon as a transaction that makes them invalid has been
+ * committed, i.e. one that creates or deletes relationships, or changes their cost property. Searches that have started
+ * with discarded landmarks finish with them, as they only use the landmarks within a single transaction.
+ * <p/>
+ * Optionally, landmarks are written to a directory when built, and read from it on construction, if nothing has
+ * been committed to the database since they were built.
+ * <p/>
+ * {@link #shutdown()} must be called when the provider is no longer needed.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class LandmarksProvider {
+
+    private static final Log LOG = LoggerFactory.getLogger(LandmarksProvider.class);
+
+    private static final int EVALUATION_SAMPLES = 10;
+
+    private final GraphDatabaseService database;
+    private final File directory;
+    private final ConcurrentMap<String, Landmarks> landmarks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LandmarksEvaluation> evaluations = new ConcurrentHashMap<>();
+
+    //incremented on every invalidation, so that landmarks built before an invalidation are never used after it
+    private volatile long generation = 0;
+
+    private final TransactionEventHandler<Void> invalidator = new TransactionEventHandler.Adapter<Void>() {
+        @Override
+        public void afterCommit(TransactionData data, Void state) {
+            invalidate(data);
+        }
+    };
+
+    /**
+     * Construct a new provider, which doesn't persist landmarks.
+     *
+     * @param database to provide landmarks for.
+     */
+    public LandmarksProvider(GraphDatabaseService database) {
+        this(database, null);
+    }
+
+    /**
+     * Construct a new provider, reading landmarks that are still valid from a directory.
+     *
+     * @param database  to provide landmarks for.
+     * @param directory to persist landmarks in, null not to persist them.
+     */
+    public LandmarksProvider(GraphDatabaseService database, File directory) {
+        this.database = database;
+        this.directory = directory;
+
+        database.registerTransactionEventHandler(invalidator);
+
+        if (directory != null) {
+            load();
+        }
+    }
+
+    /**
+     * Build new landmarks for a cost property and make them the current ones. They are evaluated on random pairs of
+     * nodes, see {@link #getEvaluation(String)}, and written to the directory, if there is one.
+     *
+     * @param costProperty key of the numerical relationship property representing cost.
+     * @param count        maximum number of landmarks.
+     * @return the new landmarks.
+     * @throws IllegalArgumentException        if the landmarks can't be built, see {@link Landmarks#build(GraphDatabaseService, String, int)}.
+     * @throws ConcurrentModificationException if the graph has changed while the landmarks were being built.
+     */
+    public synchronized Landmarks rebuild(String costProperty, int count) {
+        long generationBefore = generation;
+
+        Landmarks newLandmarks = Landmarks.build(database, costProperty, count);
+        LandmarksEvaluation evaluation = LandmarksEvaluation.evaluate(database, newLandmarks, EVALUATION_SAMPLES, costProperty.hashCode());
+
+        if (generation != generationBefore) {
+            throw new ConcurrentModificationException("The graph has changed while landmarks were being built, please try again");
+        }
+
+        landmarks.put(costProperty, newLandmarks);
+        evaluations.put(costProperty, evaluation);
+
+        //a concurrent invalidation might have missed the new landmarks
+        if (generation != generationBefore) {
+            landmarks.remove(costProperty, newLandmarks);
+            throw new ConcurrentModificationException("The graph has changed while landmarks were being built, please try again");
+        }
+
+        if (directory != null) {
+            save(newLandmarks);
+        }
+
+        return newLandmarks;
+    }
+
+    /**
+     * Get the current landmarks for a cost property.
+     *
+     * @param costProperty key of the relationship property representing cost.
+     * @return landmarks, null if there are none.
+     */
+    public Landmarks get(String costProperty) {
+        return landmarks.get(costProperty);
+    }
+
+    /**
+     * Get all current landmarks.
+     *
+     * @return landmarks.
+     */
+    public Collection<Landmarks> getAll() {
+        return Collections.unmodifiableCollection(new ArrayList<>(landmarks.values()));
+    }
+
+    /**
+     * Get the evaluation of the current landmarks for a cost property.
+     *
+     * @param costProperty key of the relationship property representing cost.
+     * @return evaluation, null if there are no landmarks or they have been read from a file rather than built.
+     */
+    public LandmarksEvaluation getEvaluation(String costProperty) {
+        return landmarks.containsKey(costProperty) ? evaluations.get(costProperty) : null;
+    }
+
+    /**
+     * Stop keeping the landmarks consistent with the database and discard them.
+     */
+    public void shutdown() {
+        database.unregisterTransactionEventHandler(invalidator);
+        landmarks.clear();
+        evaluations.clear();
+    }
+
+    private void invalidate(TransactionData data) {
+        if (data.createdRelationships().iterator().hasNext() || data.deletedRelationships().iterator().hasNext()) {
+            generation++;
+            landmarks.clear();
+            evaluations.clear();
+            return;
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+            changed.add(entry.key());
+        }
+        for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+            changed.add(entry.key());
+        }
+
+        if (!changed.isEmpty()) {
+            generation++;
+            for (String costProperty : changed) {
+                landmarks.remove(costProperty);
+                evaluations.remove(costProperty);
+            }
+        }
+    }
+
+    private void save(Landmarks newLandmarks) {
+        try {
+            File file = fileOf(newLandmarks.getCostProperty());
+            File temporary = new File(directory, file.getName() + ".tmp");
+            newLandmarks.writeTo(temporary);
+            //replace atomically, so that readers never see a partially written file
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write landmarks to " + directory, e);
+        }
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long lastTransactionId = GraphSnapshot.lastCommittedTransactionId(database);
+
+        for (File file : files) {
+            if (!file.getName().startsWith("landmarks-") || !file.getName().endsWith(".bin")) {
+                continue;
+            }
+
+            try {
+                Landmarks loaded = Landmarks.readFrom(file);
+                if (loaded.getLastTransactionId() >= 0 && loaded.getLastTransactionId() == lastTransactionId) {
+                    landmarks.put(loaded.getCostProperty(), loaded);
+                } else {
+                    LOG.info("Landmarks in " + file + " are out of date and will not be used");
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not read landmarks from " + file, e);
+            }
+        }
+    }
+
+    private File fileOf(String costProperty) throws UnsupportedEncodingException {
+        return new File(directory, "landmarks-" + URLEncoder.encode(costProperty, "UTF-8") + ".bin");
+    }
+}
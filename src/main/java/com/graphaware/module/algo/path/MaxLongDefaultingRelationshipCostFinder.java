@@ -30,6 +30,15 @@ public class MaxLongDefaultingRelationshipCostFinder extends PropertyBasedRelati
         super(costPropertyKey);
     }
 
+    /**
+     * Construct a new cost finder reading costs through a cache.
+     *
+     * @param cache to read costs through. Its cost property key is the one that defines cost.
+     */
+    public MaxLongDefaultingRelationshipCostFinder(RelationshipCostCache cache) {
+        super(cache);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Distances of nodes from the origin of a breadth-first search, kept as a {@link NodeIdSet} of the nodes at each
+ * distance, rather than a map of boxed IDs to boxed distances. Nodes are reached level by level, so each level's set
+ * soon becomes dense and takes a bit per possible node ID.
+ * <p/>
+ * Telling whether a node is at a given distance is a single membership test. Telling whether it has been reached, or
+ * getting its distance, takes a test per level, which is cheap, as breadth-first searches of path finding are shallow.
+ * Each node is only stored once, in the set of its level.
+ * <p/>
+ * The distances can be read by many threads, as long as no thread modifies them, but this class is otherwise not
+ * thread-safe.
+ */
+class NodeDistances {
+
+    private final List<NodeIdSet> levels = new ArrayList<>();
+    private long size = 0;
+
+    /**
+     * Record the distance of a node.
+     *
+     * @param nodeId   ID of a node that hasn't been reached yet.
+     * @param distance of the node.
+     */
+    void put(long nodeId, int distance) {
+        while (levels.size() <= distance) {
+            levels.add(new NodeIdSet());
+        }
+
+        if (levels.get(distance).add(nodeId)) {
+            size++;
+        }
+    }
+
+    /**
+     * Has a node been reached?
+     *
+     * @param nodeId ID of the node.
+     * @return true iff the node's distance is known.
+     */
+    boolean containsKey(long nodeId) {
+        return get(nodeId) >= 0;
+    }
+
+    /**
+     * Get the distance of a node.
+     *
+     * @param nodeId ID of the node.
+     * @return distance, -1 if the node hasn't been reached.
+     */
+    int get(long nodeId) {
+        for (int distance = 0; distance < levels.size(); distance++) {
+            if (levels.get(distance).contains(nodeId)) {
+                return distance;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Is a node at the given distance?
+     *
+     * @param nodeId   ID of the node.
+     * @param distance to check.
+     * @return true iff the node has been reached at exactly that distance.
+     */
+    boolean isAt(long nodeId, int distance) {
+        return distance >= 0 && distance < levels.size() && levels.get(distance).contains(nodeId);
+    }
+
+    /**
+     * Is a node at most the given distance away?
+     *
+     * @param nodeId      ID of the node.
+     * @param maxDistance maximum distance.
+     * @return true iff the node has been reached at the maximum distance or closer.
+     */
+    boolean isWithin(long nodeId, int maxDistance) {
+        for (int distance = 0; distance <= maxDistance && distance < levels.size(); distance++) {
+            if (levels.get(distance).contains(nodeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of reached nodes.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return approximate number of bytes taken by the distances.
+     */
+    long getMemoryFootprint() {
+        long result = 0;
+        for (NodeIdSet level : levels) {
+            result += level.getMemoryFootprint();
+        }
+        return result;
+    }
+}
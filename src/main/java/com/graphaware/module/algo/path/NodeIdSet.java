@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import java.util.Arrays;
+
+/**
+ * Set of node IDs, compressed like a Roaring bitmap.
+ * <p/>
+ * IDs are split into chunks of 65536 by their high bits; the chunks present are kept in an array sorted by those bits.
+ * Each chunk holds the low 16 bits of its IDs either in a sorted array, 2 bytes per ID, while it has no more than 4096
+ * of them, or in a bitmap of 8 kB once it has more, i.e. less than 2 bytes per ID. Sparse sets thus take about 2 bytes
+ * per ID and dense ones (as node IDs reached by a breadth-first search of a well-connected graph soon are) a bit per
+ * possible ID, an order of magnitude less than a hash set of boxed IDs. Membership tests are a binary search of the
+ * chunks, followed by a binary search of a sparse chunk, or a single bit test of a dense one.
+ * <p/>
+ * IDs can be removed again, as by searches keeping the nodes of the path being enumerated; chunks are kept (and dense
+ * ones stay dense) once they are empty, so adding and removing IDs of the same chunks over and over doesn't allocate.
+ * The set can be read by many threads, as long as no thread modifies it, but this class is otherwise not thread-safe.
+ */
+class NodeIdSet {
+
+    private static final int MAX_SPARSE_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int INITIAL_CHUNKS = 4;
+    private static final int INITIAL_SPARSE_CAPACITY = 4;
+
+    //chunks by the high bits of their IDs, each with either a sorted array or a bitmap of the low bits
+    private int[] keys = new int[INITIAL_CHUNKS];
+    private char[][] sparse = new char[INITIAL_CHUNKS][];
+    private long[][] dense = new long[INITIAL_CHUNKS][];
+    private int[] chunkSizes = new int[INITIAL_CHUNKS];
+    private int chunks = 0;
+    private long size = 0;
+
+    /**
+     * Add a node ID to the set.
+     *
+     * @param id to add, must not be negative.
+     * @return true iff the ID wasn't in the set.
+     */
+    boolean add(long id) {
+        int high = (int) (id >>> 16);
+        char low = (char) id;
+
+        int chunk = Arrays.binarySearch(keys, 0, chunks, high);
+        if (chunk < 0) {
+            chunk = insertChunk(-chunk - 1, high);
+        }
+
+        if (dense[chunk] != null) {
+            long[] bitmap = dense[chunk];
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+        } else {
+            char[] lows = sparse[chunk];
+            int chunkSize = chunkSizes[chunk];
+            int position = Arrays.binarySearch(lows, 0, chunkSize, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+
+            if (chunkSize == MAX_SPARSE_SIZE) {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (int i = 0; i < chunkSize; i++) {
+                    bitmap[lows[i] >>> 6] |= 1L << lows[i];
+                }
+                bitmap[low >>> 6] |= 1L << low;
+                dense[chunk] = bitmap;
+                sparse[chunk] = null;
+            } else {
+                if (chunkSize == lows.length) {
+                    lows = Arrays.copyOf(lows, Math.min(MAX_SPARSE_SIZE, chunkSize * 2));
+                    sparse[chunk] = lows;
+                }
+                System.arraycopy(lows, position, lows, position + 1, chunkSize - position);
+                lows[position] = low;
+            }
+        }
+
+        chunkSizes[chunk]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove a node ID from the set.
+     *
+     * @param id to remove.
+     * @return true iff the ID was in the set.
+     */
+    boolean remove(long id) {
+        int chunk = Arrays.binarySearch(keys, 0, chunks, (int) (id >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+
+        char low = (char) id;
+        if (dense[chunk] != null) {
+            long[] bitmap = dense[chunk];
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~bit;
+        } else {
+            char[] lows = sparse[chunk];
+            int chunkSize = chunkSizes[chunk];
+            int position = Arrays.binarySearch(lows, 0, chunkSize, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(lows, position + 1, lows, position, chunkSize - position - 1);
+        }
+
+        chunkSizes[chunk]--;
+        size--;
+        return true;
+    }
+
+    /**
+     * Is a node ID in the set?
+     *
+     * @param id to look for.
+     * @return true iff the ID is in the set.
+     */
+    boolean contains(long id) {
+        int chunk = Arrays.binarySearch(keys, 0, chunks, (int) (id >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+
+        char low = (char) id;
+        if (dense[chunk] != null) {
+            return (dense[chunk][low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(sparse[chunk], 0, chunkSizes[chunk], low) >= 0;
+    }
+
+    /**
+     * @return number of IDs in the set.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return approximate number of bytes taken by the set.
+     */
+    long getMemoryFootprint() {
+        long result = 24L * keys.length;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            result += dense[chunk] != null ? 8L * BITMAP_WORDS : 2L * sparse[chunk].length;
+        }
+        return result;
+    }
+
+    private int insertChunk(int position, int high) {
+        if (chunks == keys.length) {
+            keys = Arrays.copyOf(keys, chunks * 2);
+            sparse = Arrays.copyOf(sparse, chunks * 2);
+            dense = Arrays.copyOf(dense, chunks * 2);
+            chunkSizes = Arrays.copyOf(chunkSizes, chunks * 2);
+        }
+
+        System.arraycopy(keys, position, keys, position + 1, chunks - position);
+        System.arraycopy(sparse, position, sparse, position + 1, chunks - position);
+        System.arraycopy(dense, position, dense, position + 1, chunks - position);
+        System.arraycopy(chunkSizes, position, chunkSizes, position + 1, chunks - position);
+
+        keys[position] = high;
+        sparse[position] = new char[INITIAL_SPARSE_CAPACITY];
+        dense[position] = null;
+        chunkSizes[position] = 0;
+        chunks++;
+
+        return position;
+    }
+}
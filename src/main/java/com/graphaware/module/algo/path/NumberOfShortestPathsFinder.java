@@ -18,11 +18,17 @@ package com.graphaware.module.algo.path;
 
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
 import org.neo4j.helpers.collection.Iterables;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A path finder that finds a given number of shortest paths between two nodes. It is different from {@link org.neo4j.graphalgo.impl.path.ShortestPath}
@@ -34,9 +40,124 @@ import java.util.List;
  * If {@link PathFinderInput#getSortOrder()} is {@link com.graphaware.module.algo.path.SortOrder#LENGTH_ASC_THEN_COST_ASC} or
  * {@link com.graphaware.module.algo.path.SortOrder#LENGTH_ASC_THEN_COST_DESC}, then {@link PathFinderInput#getCostProperty()}
  * must also be provided and paths with the same length are ordered by total cost ascending or descending, respectively.
+ * In that case, no more than {@link PathFinderInput#getMaxResults()} paths are returned and only that many paths are
+ * held in memory during the search.
+ * <p/>
+ * If {@link PathFinderInput#getSortOrder()} is {@link com.graphaware.module.algo.path.SortOrder#COST_ASC}, then the
+ * cheapest {@link PathFinderInput#getMaxResults()} loopless paths are returned, regardless of their length, using
+ * {@link KCheapestPathsSearch}, which is guided by {@link Landmarks} for the cost property, if there are any. The search
+ * engine and maximum depth are ignored in that case.
+ * <p/>
+ * How the paths are searched for is determined by {@link PathFinderInput#getSearchEngine()}, see {@link SearchEngine}.
+ * <p/>
+ * If the search runs out of {@link PathFinderInput#getMaxTime()} or {@link PathFinderInput#getMaxExpansions()}, the
+ * paths found so far are returned and {@link SearchStatistics#isTruncated()} is true.
+ * <p/>
+ * The working state of {@link SearchEngine#SNAPSHOT} searches and of {@link #findCheapestPath(PathFinderInput,
+ * SearchStatistics)} is reused by subsequent searches on the same thread, see {@link #getStatePool()}.
+ * <p/>
+ * Returned paths only hold the IDs of their nodes and relationships, see {@link CompactPath}. Nodes and relationships
+ * are looked up when the paths are iterated, which must happen within a transaction.
+ * <p/>
+ * Searches running in parallel (see {@link PathFinderInput#isParallel()}) share a bounded pool of threads, created when
+ * the first of them starts. {@link #shutdown()} must be called when the path finder is no longer needed, if it has
+ * found paths in parallel.
  */
 public class NumberOfShortestPathsFinder {
 
+    private final RelationshipCostCaches costCaches;
+    private final GraphSnapshotProvider snapshots;
+    private final LandmarksProvider landmarks;
+    private final SearchStatePool statePool = new SearchStatePool();
+    private ExecutorService branchExecutor;
+    private boolean shutdown = false;
+
+    /**
+     * Construct a new path finder, which reads relationship costs directly from the database.
+     */
+    public NumberOfShortestPathsFinder() {
+        this(null);
+    }
+
+    /**
+     * Construct a new path finder, which reads relationship costs through caches.
+     *
+     * @param costCaches to read relationship costs through, null to read them directly from the database.
+     */
+    public NumberOfShortestPathsFinder(RelationshipCostCaches costCaches) {
+        this(costCaches, null);
+    }
+
+    /**
+     * Construct a new path finder, which reads relationship costs through caches and can search graph snapshots.
+     *
+     * @param costCaches to read relationship costs through, null to read them directly from the database.
+     * @param snapshots  provider of snapshots for {@link SearchEngine#SNAPSHOT}, null if the engine isn't available.
+     */
+    public NumberOfShortestPathsFinder(RelationshipCostCaches costCaches, GraphSnapshotProvider snapshots) {
+        this(costCaches, snapshots, null);
+    }
+
+    /**
+     * Construct a new path finder, which reads relationship costs through caches, can search graph snapshots, and
+     * speeds up searches sorted by {@link SortOrder#COST_ASC} using landmarks.
+     *
+     * @param costCaches to read relationship costs through, null to read them directly from the database.
+     * @param snapshots  provider of snapshots for {@link SearchEngine#SNAPSHOT}, null if the engine isn't available.
+     * @param landmarks  provider of landmarks, null not to use landmarks.
+     */
+    public NumberOfShortestPathsFinder(RelationshipCostCaches costCaches, GraphSnapshotProvider snapshots, LandmarksProvider landmarks) {
+        this.costCaches = costCaches;
+        this.snapshots = snapshots;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Stop the pool of threads of parallel searches, if it has been created. Parallel searches in progress are
+     * abandoned and no more can be started.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (branchExecutor != null) {
+            branchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the pool of threads to run parts of parallel searches on, creating it if needed.
+     *
+     * @return executor.
+     * @throws IllegalStateException if the path finder has been shut down.
+     */
+    private synchronized ExecutorService getBranchExecutor() {
+        if (shutdown) {
+            throw new IllegalStateException("The path finder has been shut down");
+        }
+
+        if (branchExecutor == null) {
+            branchExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "GraphAware-PathSearchBranch-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return branchExecutor;
+    }
+
+    /**
+     * Get the pool of working state of searches, e.g. to monitor its size and hit rate.
+     *
+     * @return state pool.
+     */
+    public SearchStatePool getStatePool() {
+        return statePool;
+    }
+
     /**
      * Find paths between the start and end nodes.
      *
@@ -44,68 +165,445 @@ public class NumberOfShortestPathsFinder {
      * @return paths between the two nodes.
      */
     public List<? extends Path> findPaths(PathFinderInput input) {
-        List<Path> paths = findPathsSortedByLength(input);
+        return findPaths(input, new SearchStatistics());
+    }
 
-        if (SortOrder.LENGTH_ASC.equals(input.getSortOrder())) {
-            return paths;
+    /**
+     * Find paths between the start and end nodes, recording statistics about the search.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
+     * @return paths between the two nodes.
+     */
+    public List<? extends Path> findPaths(PathFinderInput input, SearchStatistics statistics) {
+        final List<Path> result = new LinkedList<>();
+
+        findPaths(input, statistics, new PathListener() {
+            @Override
+            public void pathFound(Path path) {
+                result.add(path);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Find paths between the start and end nodes, passing each path to a listener as soon as its position in the
+     * result is known, so that the paths do not need to be held in memory. The listener receives the same paths, in
+     * the same order, as {@link #findPaths(PathFinderInput, SearchStatistics)} would return.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
+     * @param listener   to pass the found paths to.
+     */
+    public void findPaths(PathFinderInput input, final SearchStatistics statistics, final PathListener listener) {
+        if (!SortOrder.LENGTH_ASC.equals(input.getSortOrder()) && input.getCostProperty() == null) {
+            throw new IllegalArgumentException("Cost property is null, but sort order is " + input.getSortOrder());
+        }
+
+        statistics.startBudget(input.getMaxTime(), input.getMaxExpansions());
+
+        try {
+            findPathsTimed(input, statistics, new PathListener() {
+                @Override
+                public void pathFound(Path path) {
+                    statistics.pathFound(path.length());
+                    listener.pathFound(path);
+                }
+            });
+        } finally {
+            statistics.finishPhase();
+        }
+    }
+
+    /**
+     * Count the paths between the start and end nodes {@link #findPaths(PathFinderInput, SearchStatistics)} would
+     * consider, without creating them: the number of shortest paths, then the number of paths one hop longer, two hops
+     * longer, etc., until the maximum depth is reached, or the number of paths counted reaches the maximum number of
+     * results. All paths of each length are counted, no matter how many results are needed.
+     * <p/>
+     * Shortest paths are counted by dynamic programming over the layers of a breadth-first search, i.e. in time
+     * proportional to the number of nodes and relationships within their length from the start node. Longer paths can't
+     * be counted that way, as paths in which a node appears more than once would be counted as well, so they are
+     * enumerated without being created, like {@link SearchEngine#INCREMENTAL} does. The search engine and sort order of
+     * the input are ignored.
+     * <p/>
+     * If the search runs out of its budget, the counts of lengths searched completely before that are returned.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
+     * @return numbers of paths by increasing length, empty if there is no path with length less than or equal to max
+     * depth.
+     */
+    public List<PathCount> countPaths(PathFinderInput input, SearchStatistics statistics) {
+        statistics.startBudget(input.getMaxTime(), input.getMaxExpansions());
+
+        List<PathCount> result = new ArrayList<>();
+        IncrementalPathSearch search = new IncrementalPathSearch(input, null, statistics, null);
+
+        try {
+            statistics.startPhase(SearchPhase.SHORTEST_PATHS);
+            PathCount shortest = search.countShortestPaths(input.getMaxDepth());
+            if (shortest == null) {
+                return result;
+            }
+
+            result.add(shortest);
+            statistics.shortestPathsFound(shortest.getLength());
+            long found = shortest.getCount();
+
+            for (int depth = shortest.getLength() + 1; depth <= input.getMaxDepth() && found < input.getMaxResults(); depth++) {
+                statistics.startPhase(SearchPhase.LONGER_PATHS);
+                statistics.depthSearched(depth);
+                long count = search.countPathsWithLength(depth);
+                result.add(new PathCount(depth, count));
+                found = PathCount.add(found, count);
+            }
+        } catch (SearchBudgetExceededException e) {
+            //the count of the length being searched for when the budget ran out is lost
+        } finally {
+            statistics.finishPhase();
         }
 
+        return result;
+    }
+
+    /**
+     * Find the cheapest path between the start and end nodes, regardless of its length, using
+     * {@link CheapestPathSearch}. {@link PathFinderInput#getCostProperty()} must be provided; relationships without it
+     * are not traversed. The sort order, search engine, maximum depth, and maximum number of results of the input are
+     * ignored. The search is timed as {@link SearchPhase#SHORTEST_PATHS}.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
+     * @return cheapest path, null if there is no path, or the search ran out of its budget before finding it.
+     * @throws IllegalArgumentException if the cost property is null, or a negative cost is found.
+     */
+    public WeightedPath findCheapestPath(PathFinderInput input, SearchStatistics statistics) {
         if (input.getCostProperty() == null) {
-            throw new IllegalArgumentException("Cost property is null, but sort order is " + input.getSortOrder());
+            throw new IllegalArgumentException("Cost property must be specified to find the cheapest path");
+        }
+
+        statistics.startBudget(input.getMaxTime(), input.getMaxExpansions());
+
+        SearchState state = statePool.acquire();
+
+        try {
+            statistics.startPhase(SearchPhase.SHORTEST_PATHS);
+            return new CheapestPathSearch(input, createMaxLongDefaultingCostFinder(input), statistics, state).findPath();
+        } catch (SearchBudgetExceededException e) {
+            return null;
+        } finally {
+            statistics.finishPhase();
+            statePool.release(state);
+        }
+    }
+
+    /**
+     * Same as {@link #findPaths(PathFinderInput, SearchStatistics, PathListener)}, with each phase of the search started
+     * by {@link SearchStatistics#startPhase(SearchPhase)}. The last phase is finished by the caller.
+     */
+    private void findPathsTimed(PathFinderInput input, SearchStatistics statistics, PathListener listener) {
+        if (SortOrder.COST_ASC.equals(input.getSortOrder())) {
+            try {
+                statistics.startPhase(SearchPhase.SHORTEST_PATHS);
+                Landmarks costLandmarks = landmarks != null ? landmarks.get(input.getCostProperty()) : null;
+                new KCheapestPathsSearch(input, createCostFinder(input), statistics, costLandmarks).findPaths(input.getMaxResults(), listener);
+            } catch (SearchBudgetExceededException e) {
+                //the cheapest paths found so far have already been passed to the listener
+            }
+            return;
+        }
+
+        switch (input.getSearchEngine()) {
+            case BIDIRECTIONAL:
+                findPathsUsing(new BidirectionalPathSearch(input, createCostFinder(input), statistics), input, statistics, listener);
+                break;
+            case INCREMENTAL:
+                findPathsUsing(new IncrementalPathSearch(input, createCostFinder(input), statistics, input.isParallel() ? getBranchExecutor() : null), input, statistics, listener);
+                break;
+            case SNAPSHOT:
+                SearchState state = statePool.acquire();
+                try {
+                    findPathsUsing(createSnapshotSearch(input, statistics, state), input, statistics, listener);
+                } finally {
+                    statePool.release(state);
+                }
+                break;
+            case PER_DEPTH:
+                for (Path path : findPathsPerDepth(input, statistics)) {
+                    listener.pathFound(path);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Illegal search engine " + input.getSearchEngine() + ". This is a bug");
+        }
+    }
+
+    /**
+     * Find paths between the start and end nodes using a single {@link PathSearch}. When sorting by cost, only the
+     * required number of paths is kept for each length, so the number of paths held in memory depends on the maximum
+     * number of results, rather than the number of paths in the graph.
+     * <p/>
+     * Paths are passed to the listener as soon as their position in the result is known, i.e. immediately when sorting
+     * by length only, and once all paths of a length have been found when sorting by length, then cost. When the search
+     * runs out of its budget, the paths of the current length collected so far are passed on, too.
+     *
+     * @param search     to use.
+     * @param input      path finder input.
+     * @param statistics to time the phases of the search in.
+     * @param listener   to pass the found paths to.
+     */
+    private void findPathsUsing(PathSearch search, PathFinderInput input, SearchStatistics statistics, PathListener listener) {
+        //When the search must be repeated, paths are only passed on from the repeated search. This never happens when
+        //sorting by length only, as those collectors never prune and pass the paths on immediately.
+        PathCollector collector = createCollector(input, input.getMaxResults(), search, listener);
+
+        try {
+            statistics.startPhase(SearchPhase.SHORTEST_PATHS);
+            int shortestLength = search.findShortestPaths(input.getMaxDepth(), collector);
+
+            //If there are no results, there will never be any.
+            if (shortestLength < 0) {
+                return;
+            }
+
+            statistics.shortestPathsFound(shortestLength);
+
+            if (mustRepeat(collector, search)) {
+                collector = createCollector(input, input.getMaxResults(), search, listener);
+                search.findPathsWithLength(shortestLength, collector);
+            }
+
+            int found = complete(collector, input, statistics);
+
+            //Now, we have some results, maybe not enough. We try with longer path length until we have enough:
+            for (int depth = shortestLength + 1; depth <= input.getMaxDepth() && found < input.getMaxResults(); depth++) {
+                statistics.startPhase(SearchPhase.LONGER_PATHS);
+                statistics.depthSearched(depth);
+                collector = createCollector(input, input.getMaxResults() - found, search, listener);
+                search.findPathsWithLength(depth, collector);
+
+                if (mustRepeat(collector, search)) {
+                    collector = createCollector(input, input.getMaxResults() - found, search, listener);
+                    search.findPathsWithLength(depth, collector);
+                }
+
+                found += complete(collector, input, statistics);
+            }
+        } catch (SearchBudgetExceededException e) {
+            //the budget only runs out during a search, so the current collector has not been completed yet
+            collector.complete();
+        }
+    }
+
+    /**
+     * Complete a collector, timing it as {@link SearchPhase#SORTING} if it sorts the paths.
+     *
+     * @return number of paths passed on to the listener.
+     */
+    private int complete(PathCollector collector, PathFinderInput input, SearchStatistics statistics) {
+        if (SortOrder.LENGTH_ASC.equals(input.getSortOrder())) {
+            return collector.complete();
+        }
+
+        statistics.startPhase(SearchPhase.SORTING);
+        int completed = collector.complete();
+        statistics.finishPhase();
+        return completed;
+    }
+
+    /**
+     * Create a collector for paths of a single length.
+     *
+     * @param input    path finder input.
+     * @param capacity maximum number of paths needed.
+     * @param search   the search the collector is for.
+     * @param listener to pass the collected paths to.
+     * @return collector.
+     */
+    private PathCollector createCollector(PathFinderInput input, int capacity, PathSearch search, PathListener listener) {
+        switch (input.getSortOrder()) {
+            case LENGTH_ASC:
+                return new StreamingPathsCollector(listener);
+            case LENGTH_ASC_THEN_COST_ASC:
+                return new BoundedCostPathsCollector(listener, capacity, LengthThenCostWeightedPathComparator.SortOrder.ASC, !search.hasNegativeCosts());
+            case LENGTH_ASC_THEN_COST_DESC:
+                return new BoundedCostPathsCollector(listener, capacity, LengthThenCostWeightedPathComparator.SortOrder.DESC, !search.hasNegativeCosts());
+            default:
+                throw new IllegalStateException("Illegal sort order " + input.getSortOrder() + ". This is a bug");
+        }
+    }
+
+    /**
+     * Must the search for paths with the current length be repeated, because partial paths have been pruned
+     * assuming non-negative costs, but a negative cost has been found in the meantime?
+     *
+     * @param collector that has collected the paths.
+     * @param search    that has found the paths.
+     * @return true iff the search must be repeated without pruning.
+     */
+    private boolean mustRepeat(PathCollector collector, PathSearch search) {
+        return collector instanceof BoundedCostPathsCollector && ((BoundedCostPathsCollector) collector).hasPruned() && search.hasNegativeCosts();
+    }
+
+    /**
+     * Create a search of the current graph snapshot.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
+     * @param state      working state of the search.
+     * @return search.
+     * @throws IllegalArgumentException if there is no snapshot, or it doesn't contain the needed cost property.
+     */
+    private PathSearch createSnapshotSearch(PathFinderInput input, SearchStatistics statistics, SearchState state) {
+        GraphSnapshot snapshot = snapshots != null ? snapshots.get() : null;
+
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Search engine is " + SearchEngine.SNAPSHOT + ", but no graph snapshot has been built");
+        }
+
+        if (SortOrder.LENGTH_ASC.equals(input.getSortOrder())) {
+            return new SnapshotPathSearch(input, snapshot, null, 0, statistics, state);
+        }
+
+        GraphSnapshot.PropertyValues costs = snapshot.costs(input.getCostProperty());
+        if (costs == null) {
+            throw new IllegalArgumentException("Cost property " + input.getCostProperty() + " is not in the graph snapshot");
+        }
+
+        return new SnapshotPathSearch(input, snapshot, costs, SortOrder.LENGTH_ASC_THEN_COST_ASC.equals(input.getSortOrder()) ? Long.MAX_VALUE : 0, statistics, state);
+    }
+
+    /**
+     * Create a relationship cost finder for the input.
+     *
+     * @param input path finder input.
+     * @return cost finder, null if no costs are needed.
+     */
+    private RelationshipCostFinder createCostFinder(PathFinderInput input) {
+        switch (input.getSortOrder()) {
+            case LENGTH_ASC:
+                return null;
+            case LENGTH_ASC_THEN_COST_ASC:
+            case COST_ASC:
+                return createMaxLongDefaultingCostFinder(input);
+            case LENGTH_ASC_THEN_COST_DESC:
+                return costCaches != null
+                        ? new ZeroDefaultingRelationshipCostFinder(costCaches.forProperty(input.getCostProperty()))
+                        : new ZeroDefaultingRelationshipCostFinder(input.getCostProperty());
+            default:
+                throw new IllegalStateException("Illegal sort order " + input.getSortOrder() + ". This is a bug");
+        }
+    }
+
+    /**
+     * Create a relationship cost finder for the input, which finds {@link Long#MAX_VALUE} for relationships without
+     * the cost property, so that they are never traversed.
+     *
+     * @param input path finder input.
+     * @return cost finder.
+     */
+    private RelationshipCostFinder createMaxLongDefaultingCostFinder(PathFinderInput input) {
+        return costCaches != null
+                ? new MaxLongDefaultingRelationshipCostFinder(costCaches.forProperty(input.getCostProperty()))
+                : new MaxLongDefaultingRelationshipCostFinder(input.getCostProperty());
+    }
+
+    /**
+     * Find paths between the start and end nodes using a new search for every depth.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
+     * @return paths between the two nodes.
+     */
+    private List<? extends Path> findPathsPerDepth(PathFinderInput input, SearchStatistics statistics) {
+        List<Path> paths = findPathsPerDepthSortedByLength(input, statistics);
+
+        if (SortOrder.LENGTH_ASC.equals(input.getSortOrder())) {
+            List<CompactPath> compactPaths = new LinkedList<>();
+            for (Path path : paths) {
+                compactPaths.add(CompactPath.of(path));
+            }
+            return compactPaths;
         }
 
         List<WeightedPath> weightedPaths;
 
         switch (input.getSortOrder()) {
             case LENGTH_ASC_THEN_COST_ASC:
-                weightedPaths = calculateCost(paths, new PathCostCalculatorImpl(new MaxLongDefaultingRelationshipCostFinder(input.getCostProperty())));
+                statistics.startPhase(SearchPhase.COST_CALCULATION);
+                weightedPaths = calculateCost(paths, new PathCostCalculatorImpl(createCostFinder(input)));
+                statistics.startPhase(SearchPhase.SORTING);
                 Collections.sort(weightedPaths, new LengthThenCostWeightedPathComparator(LengthThenCostWeightedPathComparator.SortOrder.ASC));
-                return weightedPaths;
+                break;
             case LENGTH_ASC_THEN_COST_DESC:
-                weightedPaths = calculateCost(paths, new PathCostCalculatorImpl(new ZeroDefaultingRelationshipCostFinder(input.getCostProperty())));
+                statistics.startPhase(SearchPhase.COST_CALCULATION);
+                weightedPaths = calculateCost(paths, new PathCostCalculatorImpl(createCostFinder(input)));
+                statistics.startPhase(SearchPhase.SORTING);
                 Collections.sort(weightedPaths, new LengthThenCostWeightedPathComparator(LengthThenCostWeightedPathComparator.SortOrder.DESC));
-                return weightedPaths;
+                break;
             default:
                 throw new IllegalStateException("Illegal sort order " + input.getSortOrder() + ". This is a bug");
         }
+
+        return weightedPaths.size() > input.getMaxResults() ? weightedPaths.subList(0, input.getMaxResults()) : weightedPaths;
     }
 
     /**
-     * Find paths between the start and end nodes.
+     * Find paths between the start and end nodes using a new search for every depth.
      *
-     * @param input path finder input.
+     * @param input      path finder input.
+     * @param statistics to record search statistics in.
      * @return paths between the two nodes.
      */
-    private List<Path> findPathsSortedByLength(PathFinderInput input) {
+    private List<Path> findPathsPerDepthSortedByLength(PathFinderInput input, SearchStatistics statistics) {
         List<Path> result = new LinkedList<Path>();
 
-        //first attempt: classic shortest path
-        result.addAll(Iterables.asList(GraphAlgoFactory.shortestPath(input.getExpander(), input.getMaxDepth()).findAllPaths(input.getStart(), input.getEnd())));
+        PathExpander<Object> expander = new CountingPathExpander<>(input.getExpander(statistics), statistics);
 
-        //If there are no results, there will never be any. If there are enough, then we just return them:
-        if (result.isEmpty() || result.size() >= input.getMaxResults()) {
-            return result;
-        }
+        try {
+            //first attempt: classic shortest path
+            statistics.startPhase(SearchPhase.SHORTEST_PATHS);
+            result.addAll(Iterables.asList(GraphAlgoFactory.shortestPath(expander, input.getMaxDepth()).findAllPaths(input.getStart(), input.getEnd())));
+
+            //If there are no results, there will never be any. If there are enough, then we just return them:
+            if (result.isEmpty()) {
+                return result;
+            }
 
-        //Now, we have some results, but not enough. All the resulting paths so far must have the same length (they are
-        //the shortest paths after all). We try with longer path length until we have enough:
-        for (int depth = result.get(0).length() + 1; depth <= input.getMaxDepth() && result.size() < input.getMaxResults(); depth++) {
-            result.addAll(Iterables.asList(GraphAlgoFactory.pathsWithLength(input.getExpander(), depth).findAllPaths(input.getStart(), input.getEnd())));
+            statistics.shortestPathsFound(result.get(0).length());
+            if (result.size() >= input.getMaxResults()) {
+                return result;
+            }
+
+            //Now, we have some results, but not enough. All the resulting paths so far must have the same length (they are
+            //the shortest paths after all). We try with longer path length until we have enough:
+            for (int depth = result.get(0).length() + 1; depth <= input.getMaxDepth() && result.size() < input.getMaxResults(); depth++) {
+                statistics.startPhase(SearchPhase.LONGER_PATHS);
+                statistics.depthSearched(depth);
+                result.addAll(Iterables.asList(GraphAlgoFactory.pathsWithLength(expander, depth).findAllPaths(input.getStart(), input.getEnd())));
+            }
+        } catch (SearchBudgetExceededException e) {
+            //paths of the length being searched for when the budget ran out are lost, the ones found before are returned
         }
 
+        statistics.finishPhase();
+
         return result;
     }
 
     /**
-     * Convert paths to weighted paths.
+     * Convert paths to compact weighted paths.
      *
      * @param paths to convert.
      * @return weighted paths.
      */
     private List<WeightedPath> calculateCost(List<Path> paths, PathCostCalculator costCalculator) {
-        List<WeightedPath> result = new LinkedList<>();
+        List<WeightedPath> result = new ArrayList<>(paths.size());
         for (Path path : paths) {
-            result.add(new WeightedPathImpl(path, costCalculator.calculateCost(path)));
+            result.add(CompactPath.of(path).withCost(costCalculator.calculateCost(path)));
         }
         return result;
     }
@@ -20,11 +20,19 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Transaction;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -33,32 +41,372 @@ import java.util.List;
  */
 @Controller
 @RequestMapping("/algorithm/path")
-public class NumberOfShortestPathsFinderApi {
+public class NumberOfShortestPathsFinderApi implements DisposableBean {
+
+    /**
+     * System property with the maximum number of relationship costs to cache per cost property. Costs are not cached
+     * unless set.
+     */
+    public static final String COST_CACHE_CAPACITY_PROPERTY = "com.graphaware.module.algo.path.costCacheCapacity";
+
+    /**
+     * System property with the maximum number of results of
+     * {@link #numberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)} to cache. Results are not cached unless set.
+     */
+    public static final String RESULT_CACHE_CAPACITY_PROPERTY = "com.graphaware.module.algo.path.resultCacheCapacity";
+
+    /**
+     * System property with the directory to persist landmarks in, see {@link LandmarksProvider}. Landmarks are not
+     * persisted unless set.
+     */
+    public static final String LANDMARKS_DIRECTORY_PROPERTY = "com.graphaware.module.algo.path.landmarksDirectory";
+
+    /**
+     * System property with the time in ms over which path finding requests are logged, see {@link SlowQueryLog}.
+     * Requests are not logged unless set.
+     */
+    public static final String SLOW_QUERY_THRESHOLD_PROPERTY = "com.graphaware.module.algo.path.slowQueryThreshold";
+
+    /**
+     * System property with the maximum number of slow requests logged per second,
+     * {@link #DEFAULT_SLOW_QUERY_LOG_RATE} unless set.
+     */
+    public static final String SLOW_QUERY_LOG_RATE_PROPERTY = "com.graphaware.module.algo.path.slowQueryLogRate";
+
+    /**
+     * Maximum number of slow requests logged per second unless specified.
+     */
+    public static final int DEFAULT_SLOW_QUERY_LOG_RATE = 10;
+
+    /**
+     * Number of landmarks built by {@link #rebuildLandmarks(JsonLandmarksInput)} unless specified.
+     */
+    public static final int DEFAULT_LANDMARK_COUNT = 8;
+
+    /**
+     * Response header set to true by {@link #numberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)} when the
+     * search ran out of its time or expansion budget and the result is incomplete.
+     */
+    public static final String TRUNCATED_HEADER = "X-Search-Truncated";
+
+    /**
+     * Response header with the number of hubs pruned by
+     * {@link #numberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)}, set when there were any, see
+     * {@link HubPolicy}.
+     */
+    public static final String PRUNED_HUBS_HEADER = "X-Pruned-Hubs";
 
     private final GraphDatabaseService database;
 
-    private NumberOfShortestPathsFinder pathFinder = new NumberOfShortestPathsFinder();
+    private final RelationshipCostCaches costCaches;
+    private final GraphSnapshotProvider snapshots;
+    private final LandmarksProvider landmarks;
+    private final NumberOfShortestPathsFinder pathFinder;
+    private final PathResultCache resultCache;
+    private final BatchPathFinder batchPathFinder;
+    private final DistanceMatrixFinder distanceMatrixFinder = new DistanceMatrixFinder();
+    private final PathFinderMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
 
     @Autowired
     public NumberOfShortestPathsFinderApi(GraphDatabaseService database) {
         this.database = database;
+
+        Integer costCacheCapacity = Integer.getInteger(COST_CACHE_CAPACITY_PROPERTY);
+        this.costCaches = costCacheCapacity != null && costCacheCapacity > 0 ? new RelationshipCostCaches(database, costCacheCapacity) : null;
+        this.snapshots = new GraphSnapshotProvider(database);
+        String landmarksDirectory = System.getProperty(LANDMARKS_DIRECTORY_PROPERTY);
+        this.landmarks = new LandmarksProvider(database, landmarksDirectory != null ? new File(landmarksDirectory) : null);
+        this.pathFinder = new NumberOfShortestPathsFinder(costCaches, snapshots, landmarks);
+        this.metrics = new PathFinderMetrics(pathFinder.getStatePool());
+
+        Integer resultCacheCapacity = Integer.getInteger(RESULT_CACHE_CAPACITY_PROPERTY);
+        this.resultCache = resultCacheCapacity != null && resultCacheCapacity > 0 ? new PathResultCache(database, pathFinder, resultCacheCapacity) : null;
+
+        this.batchPathFinder = new BatchPathFinder(database, pathFinder, Runtime.getRuntime().availableProcessors());
+
+        Long slowQueryThreshold = Long.getLong(SLOW_QUERY_THRESHOLD_PROPERTY);
+        this.slowQueryLog = slowQueryThreshold != null && slowQueryThreshold >= 0 ? new SlowQueryLog(slowQueryThreshold, Integer.getInteger(SLOW_QUERY_LOG_RATE_PROPERTY, DEFAULT_SLOW_QUERY_LOG_RATE)) : null;
+
+        metrics.register();
     }
 
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    public void shutdown() {
+        metrics.unregister();
+        batchPathFinder.shutdown();
+        pathFinder.shutdown();
+        landmarks.shutdown();
+
+        if (costCaches != null) {
+            costCaches.shutdown();
+        }
+
+        if (resultCache != null) {
+            resultCache.shutdown();
+        }
+
+        if (slowQueryLog != null) {
+            slowQueryLog.shutdown();
+        }
+    }
+
+    /**
+     * Find paths between two nodes. The time spent in each {@link SearchPhase} is recorded in {@link PathFinderMetrics},
+     * see {@link #getMetrics()}; writing the result to the response, which happens afterwards, is not.
+     */
     @RequestMapping(value = "increasinglyLongerShortestPath", method = RequestMethod.POST)
     @ResponseBody
-    public List<JsonPath> numberOfShortestPaths(@RequestBody JsonPathFinderInput jsonInput) {
+    public List<JsonPath> numberOfShortestPaths(@RequestBody JsonPathFinderInput jsonInput, HttpServletResponse response) {
+            long startTime = System.nanoTime();
             List<JsonPath> result = new LinkedList<>();
 
             try (Transaction tx = database.beginTx()) {
-                for (Path path : pathFinder.findPaths(jsonInput.produceInput(database))) {
-                    result.add(new JsonPath(path, jsonInput));
+                SearchStatistics statistics = new SearchStatistics();
+                statistics.startPhase(SearchPhase.INPUT_RESOLUTION);
+                PathFinderInput input = jsonInput.produceInput(database);
+                statistics.finishPhase();
+
+                List<? extends Path> paths = resultCache != null ? resultCache.findPaths(input, statistics) : pathFinder.findPaths(input, statistics);
+
+                statistics.startPhase(SearchPhase.SERIALIZATION);
+                JsonPathElements elements = new JsonPathElements(database, jsonInput);
+                for (Path path : paths) {
+                    result.add(new JsonPath(path, elements));
                 }
+                statistics.finishPhase();
                 tx.success();
+
+                long time = System.nanoTime() - startTime;
+                metrics.record(statistics, time, result.size());
+                logIfSlow("increasinglyLongerShortestPath", jsonInput, statistics, time);
+
+                if (statistics.isTruncated()) {
+                    response.setHeader(TRUNCATED_HEADER, Boolean.TRUE.toString());
+                }
+
+                if (statistics.getPrunedHubs() > 0) {
+                    response.setHeader(PRUNED_HUBS_HEADER, String.valueOf(statistics.getPrunedHubs()));
+                }
             }
 
             return result;
         }
 
+    /**
+     * Same as {@link #numberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)}, but each path is written to the
+     * response as soon as it is found, so neither the memory needed nor the time to first byte depends on the number of
+     * results. As the headers are sent before the search is complete, truncated results are not marked as such.
+     * Paths are written during the search phases, so {@link SearchPhase#SERIALIZATION} only covers finishing the
+     * response.
+     */
+    @RequestMapping(value = "increasinglyLongerShortestPath/stream", method = RequestMethod.POST)
+    public void streamNumberOfShortestPaths(@RequestBody JsonPathFinderInput jsonInput, HttpServletResponse response) throws IOException {
+        long startTime = System.nanoTime();
+
+        try (Transaction tx = database.beginTx()) {
+            SearchStatistics statistics = new SearchStatistics();
+            statistics.startPhase(SearchPhase.INPUT_RESOLUTION);
+            PathFinderInput input = jsonInput.produceInput(database);
+            statistics.finishPhase();
+
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            JsonPathWriter writer = new JsonPathWriter(database, response.getOutputStream(), jsonInput);
+            pathFinder.findPaths(input, statistics, writer);
+
+            statistics.startPhase(SearchPhase.SERIALIZATION);
+            writer.close();
+            statistics.finishPhase();
+
+            tx.success();
+
+            long time = System.nanoTime() - startTime;
+            metrics.record(statistics, time, writer.getWrittenPaths());
+            logIfSlow("increasinglyLongerShortestPath/stream", jsonInput, statistics, time);
+        }
+    }
+
+    /**
+     * Count the paths {@link #numberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)} would consider for each
+     * length, without finding them, see {@link NumberOfShortestPathsFinder#countPaths(PathFinderInput, SearchStatistics)}.
+     */
+    @RequestMapping(value = "increasinglyLongerShortestPath/count", method = RequestMethod.POST)
+    @ResponseBody
+    public List<PathCount> countShortestPaths(@RequestBody JsonPathFinderInput jsonInput, HttpServletResponse response) {
+        long startTime = System.nanoTime();
+
+        try (Transaction tx = database.beginTx()) {
+            SearchStatistics statistics = new SearchStatistics();
+            statistics.startPhase(SearchPhase.INPUT_RESOLUTION);
+            PathFinderInput input = jsonInput.produceInput(database);
+            statistics.finishPhase();
+
+            List<PathCount> result = pathFinder.countPaths(input, statistics);
+            tx.success();
+
+            //paths are only counted, none are returned
+            long time = System.nanoTime() - startTime;
+            metrics.record(statistics, time, 0);
+            logIfSlow("increasinglyLongerShortestPath/count", jsonInput, statistics, time);
+
+            if (statistics.isTruncated()) {
+                response.setHeader(TRUNCATED_HEADER, Boolean.TRUE.toString());
+            }
+
+            if (statistics.getPrunedHubs() > 0) {
+                response.setHeader(PRUNED_HUBS_HEADER, String.valueOf(statistics.getPrunedHubs()));
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Find the cheapest path between two nodes, regardless of its length, see
+     * {@link NumberOfShortestPathsFinder#findCheapestPath(PathFinderInput, SearchStatistics)}. Responds with an array
+     * containing the path, empty if there is none.
+     */
+    @RequestMapping(value = "cheapestPath", method = RequestMethod.POST)
+    @ResponseBody
+    public List<JsonPath> cheapestPath(@RequestBody JsonPathFinderInput jsonInput, HttpServletResponse response) {
+        long startTime = System.nanoTime();
+        List<JsonPath> result = new LinkedList<>();
+
+        try (Transaction tx = database.beginTx()) {
+            SearchStatistics statistics = new SearchStatistics();
+            statistics.startPhase(SearchPhase.INPUT_RESOLUTION);
+            PathFinderInput input = jsonInput.produceInput(database);
+            statistics.finishPhase();
+
+            WeightedPath path = pathFinder.findCheapestPath(input, statistics);
+
+            statistics.startPhase(SearchPhase.SERIALIZATION);
+            if (path != null) {
+                result.add(new JsonPath(path, new JsonPathElements(database, jsonInput)));
+            }
+            statistics.finishPhase();
+            tx.success();
+
+            long time = System.nanoTime() - startTime;
+            metrics.record(statistics, time, result.size());
+            logIfSlow("cheapestPath", jsonInput, statistics, time);
+
+            if (statistics.isTruncated()) {
+                response.setHeader(TRUNCATED_HEADER, Boolean.TRUE.toString());
+            }
+
+            if (statistics.getPrunedHubs() > 0) {
+                response.setHeader(PRUNED_HUBS_HEADER, String.valueOf(statistics.getPrunedHubs()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find paths for many start and end nodes in a single request, using multiple threads. The results are streamed
+     * to the response in the order of the inputs, as an array containing the result of each search.
+     */
+    @RequestMapping(value = "increasinglyLongerShortestPath/batch", method = RequestMethod.POST)
+    public void batchNumberOfShortestPaths(@RequestBody JsonBatchPathFinderInput jsonInput, HttpServletResponse response) throws IOException {
+        try (Transaction tx = database.beginTx()) {
+            List<PathFinderInput> inputs = jsonInput.produceInputs(database);
+            int parallelism = jsonInput.getParallelism() != null ? jsonInput.getParallelism() : Integer.MAX_VALUE;
+
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            JsonBatchPathWriter writer = new JsonBatchPathWriter(database, response.getOutputStream(), jsonInput);
+            batchPathFinder.findPaths(inputs, parallelism, writer);
+            writer.close();
+
+            tx.success();
+        }
+    }
+
+    @RequestMapping(value = "distanceMatrix", method = RequestMethod.POST)
+    @ResponseBody
+    public JsonDistanceMatrix distanceMatrix(@RequestBody JsonDistanceMatrixInput jsonInput) {
+        try (Transaction tx = database.beginTx()) {
+            JsonDistanceMatrix result = new JsonDistanceMatrix(distanceMatrixFinder.findDistances(jsonInput.produceInput(database)), jsonInput);
+            tx.success();
+            return result;
+        }
+    }
+
+    @RequestMapping(value = "cache", method = RequestMethod.GET)
+    @ResponseBody
+    public JsonPathResultCache getResultCache() {
+        if (resultCache == null) {
+            throw new NotFoundException("Result cache is not enabled");
+        }
+
+        return new JsonPathResultCache(resultCache);
+    }
+
+    /**
+     * Get metrics of the requests served by {@link #numberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)}
+     * and {@link #streamNumberOfShortestPaths(JsonPathFinderInput, HttpServletResponse)} so far. The same metrics are
+     * available over JMX, see {@link PathFinderMetrics#OBJECT_NAME}.
+     */
+    @RequestMapping(value = "stats", method = RequestMethod.GET)
+    @ResponseBody
+    public JsonPathFinderMetrics getMetrics() {
+        return new JsonPathFinderMetrics(metrics);
+    }
+
+    @RequestMapping(value = "snapshot", method = RequestMethod.POST)
+    @ResponseBody
+    public JsonGraphSnapshot rebuildSnapshot(@RequestBody(required = false) JsonGraphSnapshotInput jsonInput) {
+        List<String> costProperties = jsonInput != null && jsonInput.getCostProperties() != null ? jsonInput.getCostProperties() : Collections.<String>emptyList();
+        return new JsonGraphSnapshot(snapshots.rebuild(costProperties));
+    }
+
+    @RequestMapping(value = "snapshot", method = RequestMethod.GET)
+    @ResponseBody
+    public JsonGraphSnapshot getSnapshot() {
+        GraphSnapshot snapshot = snapshots.get();
+
+        if (snapshot == null) {
+            throw new NotFoundException("No graph snapshot has been built");
+        }
+
+        return new JsonGraphSnapshot(snapshot);
+    }
+
+    /**
+     * Build landmarks for a cost property, which make searches sorted by that property faster, see {@link Landmarks}.
+     * Responds with 409 Conflict if the graph changes while they are being built.
+     */
+    @RequestMapping(value = "landmarks", method = RequestMethod.POST)
+    @ResponseBody
+    public JsonLandmarks rebuildLandmarks(@RequestBody JsonLandmarksInput jsonInput) {
+        if (jsonInput.getCostProperty() == null) {
+            throw new IllegalArgumentException("Cost property must be specified");
+        }
+
+        int count = jsonInput.getCount() != null ? jsonInput.getCount() : DEFAULT_LANDMARK_COUNT;
+        return new JsonLandmarks(landmarks.rebuild(jsonInput.getCostProperty(), count), landmarks.getEvaluation(jsonInput.getCostProperty()));
+    }
+
+    @RequestMapping(value = "landmarks", method = RequestMethod.GET)
+    @ResponseBody
+    public List<JsonLandmarks> getLandmarks() {
+        List<JsonLandmarks> result = new ArrayList<>();
+        for (Landmarks current : landmarks.getAll()) {
+            result.add(new JsonLandmarks(current, landmarks.getEvaluation(current.getCostProperty())));
+        }
+        return result;
+    }
+
+    private void logIfSlow(String endpoint, JsonPathFinderInput jsonInput, SearchStatistics statistics, long time) {
+        if (slowQueryLog != null) {
+            slowQueryLog.record(endpoint, jsonInput, statistics, time);
+        }
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public void handleIllegalArguments() {
@@ -68,4 +416,9 @@ public class NumberOfShortestPathsFinderApi {
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public void handleNotFound() {
     }
+
+    @ExceptionHandler(ConcurrentModificationException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public void handleConflict() {
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+/**
+ * Receiver of paths of a single length found by a {@link PathSearch}, which can also tell the search that partial paths
+ * aren't worth extending, because no complete path starting with them would be collected. Collected paths are passed on
+ * to a {@link PathListener}, either immediately, or once all paths of the length have been found.
+ */
+interface PathCollector {
+
+    /**
+     * Is it worth extending a partial path with the given cost?
+     *
+     * @param partialCost cost of the partial path found so far.
+     * @return false iff no path starting with the partial path would be collected.
+     */
+    boolean canExtend(long partialCost);
+
+    /**
+     * Would a complete path with the given cost be collected? Allows searches to avoid creating paths that would be
+     * thrown away.
+     *
+     * @param cost of the path.
+     * @return true iff a path with the given cost would be collected.
+     */
+    boolean accepts(long cost);
+
+    /**
+     * Collect a path.
+     *
+     * @param path to collect.
+     * @param cost of the path, 0 if costs aren't calculated.
+     */
+    void collect(CompactPath path, long cost);
+
+    /**
+     * Called once all paths of the length have been found. Passes all collected paths that haven't been passed on yet
+     * to the listener.
+     *
+     * @return total number of paths passed on to the listener.
+     */
+    int complete();
+
+    /**
+     * Create an empty collector of the same kind, for collecting paths of a part of the search on another thread. The
+     * fork doesn't pass its paths on to the listener, they are kept until they are merged into this collector.
+     *
+     * @return fork.
+     */
+    PathCollector fork();
+
+    /**
+     * Collect all paths collected by a fork, as if they had been collected by this collector.
+     *
+     * @param fork created by {@link #fork()}, which has finished collecting.
+     */
+    void merge(PathCollector fork);
+}
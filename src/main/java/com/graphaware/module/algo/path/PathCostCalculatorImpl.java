@@ -43,15 +43,29 @@ public class PathCostCalculatorImpl implements PathCostCalculator {
         long result = 0;
 
         for (Relationship r : path.relationships()) {
-            long cost = costFinder.getCost(r);
+            result = add(result, costFinder.getCost(r));
 
-            if (Long.MAX_VALUE == cost) {
+            if (Long.MAX_VALUE == result) {
                 return Long.MAX_VALUE;
             }
-
-            result += cost;
         }
 
         return result;
     }
+
+    /**
+     * Add two costs. {@link Long#MAX_VALUE} represents an infinite cost, so adding anything to it results in
+     * {@link Long#MAX_VALUE}.
+     *
+     * @param cost1 first cost.
+     * @param cost2 second cost.
+     * @return sum of the costs.
+     */
+    static long add(long cost1, long cost2) {
+        if (Long.MAX_VALUE == cost1 || Long.MAX_VALUE == cost2) {
+            return Long.MAX_VALUE;
+        }
+
+        return cost1 + cost2;
+    }
 }
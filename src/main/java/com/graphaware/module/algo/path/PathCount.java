@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.algo.path;
+
+/**
+ * Number of paths with a certain length, see {@link NumberOfShortestPathsFinder#countPaths(PathFinderInput, SearchStatistics)}.
+ * Counts too large for a long are {@link Long#MAX_VALUE}.
+ */
+public class PathCount {
+
+    private final int length;
+    private final long count;
+
+    public PathCount(int length, long count) {
+        this.length = length;
+        this.count = count;
+    }
+
+    /**
+     * @return length of the paths.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return number of paths.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Add two counts, saturating at {@link Long#MAX_VALUE}, as the number of paths grows exponentially with length.
+     *
+     * @param count1 first count, non-negative.
+     * @param count2 second count, non-negative.
+     * @return sum of the counts, {@link Long#MAX_VALUE} if it's larger.
+     */
+    static long add(long count1, long count2) {
+        long sum = count1 + count2;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
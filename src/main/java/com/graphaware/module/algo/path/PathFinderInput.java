@@ -32,6 +32,16 @@ import java.util.List;
  * defined on each relationship), in which case the relationship property representing that cost must also be defined
  * (using {@link com.graphaware.module.algo.path.PathFinderInput#setCostProperty(String)}).
  * <p/>
+ * By default, the search runs until it is complete. It can be bounded by a maximum time and a maximum number of expanded
+ * relationships, in which case the paths found before the budget ran out are returned and the search is marked as
+ * truncated in {@link SearchStatistics}.
+ * <p/>
+ * Nodes with more relationships to traverse than a hub degree threshold (other than the start and end nodes) can be
+ * pruned from the search, as specified by {@link HubPolicy}. By default, there is no threshold.
+ * <p/>
+ * {@link SearchEngine#INCREMENTAL} searches can optionally enumerate paths on multiple threads, see
+ * {@link #setParallel(boolean)}. By default, they run on the calling thread only.
+ * <p/>
  * This class is not thread-safe, it should not be shared among threads (there should be no reason to do so).
  */
 public class PathFinderInput {
@@ -44,6 +54,12 @@ public class PathFinderInput {
     private Direction direction;
     private SortOrder sortOrder = SortOrder.LENGTH_ASC;
     private String costProperty;
+    private SearchEngine searchEngine = SearchEngine.BIDIRECTIONAL;
+    private long maxTime = Long.MAX_VALUE;
+    private long maxExpansions = Long.MAX_VALUE;
+    private int hubDegreeThreshold = Integer.MAX_VALUE;
+    private HubPolicy hubPolicy = HubPolicy.SKIP;
+    private boolean parallel = false;
 
     /**
      * Construct new path finder input.
@@ -119,8 +135,9 @@ public class PathFinderInput {
 
     /**
      * Set the cost property on relationships on the found paths. Only relevant when
-     * {@link com.graphaware.module.algo.path.SortOrder#LENGTH_ASC_THEN_COST_ASC} or
-     * {@link com.graphaware.module.algo.path.SortOrder#LENGTH_ASC_THEN_COST_DESC} is used.
+     * {@link com.graphaware.module.algo.path.SortOrder#LENGTH_ASC_THEN_COST_ASC},
+     * {@link com.graphaware.module.algo.path.SortOrder#LENGTH_ASC_THEN_COST_DESC}, or
+     * {@link com.graphaware.module.algo.path.SortOrder#COST_ASC} is used.
      *
      * @param costProperty name of the numerical property on relationships representing cost.
      * @return self.
@@ -130,6 +147,77 @@ public class PathFinderInput {
         return this;
     }
 
+    /**
+     * Set the search engine used to find the paths. Mostly useful for comparing the engines, as they find the same paths.
+     *
+     * @param searchEngine search engine.
+     * @return self.
+     */
+    public PathFinderInput setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+        return this;
+    }
+
+    /**
+     * Set maximum time the search may take. When it runs out, the paths found so far are returned.
+     *
+     * @param maxTime new max time in ms.
+     * @return self.
+     */
+    public PathFinderInput setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+        return this;
+    }
+
+    /**
+     * Set maximum number of relationships the search may expand. Relationships followed again while enumerating paths
+     * from expansions the search has cached count as well, see {@link SearchStatistics#getFollowedRelationships()}.
+     * When it runs out, the paths found so far are returned.
+     *
+     * @param maxExpansions new max number of expanded and followed relationships.
+     * @return self.
+     */
+    public PathFinderInput setMaxExpansions(long maxExpansions) {
+        this.maxExpansions = maxExpansions;
+        return this;
+    }
+
+    /**
+     * Set the degree above which nodes are treated as hubs, see {@link HubPolicy}.
+     *
+     * @param hubDegreeThreshold maximum number of relationships to traverse a node has to not be a hub.
+     * @return self.
+     */
+    public PathFinderInput setHubDegreeThreshold(int hubDegreeThreshold) {
+        this.hubDegreeThreshold = hubDegreeThreshold;
+        return this;
+    }
+
+    /**
+     * Set how hubs are treated. Only relevant when a hub degree threshold has been set.
+     *
+     * @param hubPolicy hub policy.
+     * @return self.
+     */
+    public PathFinderInput setHubPolicy(HubPolicy hubPolicy) {
+        this.hubPolicy = hubPolicy;
+        return this;
+    }
+
+    /**
+     * Set whether paths should be enumerated in parallel, splitting the search tree by the relationships of the start
+     * node. Only {@link SearchEngine#INCREMENTAL} searches without a hub degree threshold run in parallel, others
+     * ignore this setting. The paths found, and their order, are the same as those of a search on a single thread, but
+     * when sorting by length only, paths of each length are passed on once all of them have been found.
+     *
+     * @param parallel true to enumerate paths in parallel.
+     * @return self.
+     */
+    public PathFinderInput setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
     //Getters
 
     public Node getStart() {
@@ -153,7 +241,32 @@ public class PathFinderInput {
      *
      * @return path expander.
      */
-    public PathExpander getExpander() {
+    public PathExpander<Object> getExpander() {
+        return getExpander(new SearchStatistics());
+    }
+
+    /**
+     * Get a path expander representing this input, which records pruned hubs.
+     *
+     * @param statistics to record pruned hubs in.
+     * @return path expander.
+     */
+    PathExpander<Object> getExpander(SearchStatistics statistics) {
+        if (hubDegreeThreshold < Integer.MAX_VALUE) {
+            return new HubAwarePathExpander<>(this, statistics);
+        }
+
+        return createExpander(typesAndDirections, direction);
+    }
+
+    /**
+     * Create a path expander.
+     *
+     * @param typesAndDirections relationship types, each followed by a direction. If empty, all types are expanded.
+     * @param direction          direction of all relationships when no types are specified, null for both directions.
+     * @return path expander.
+     */
+    static <STATE> PathExpander<STATE> createExpander(List<Object> typesAndDirections, Direction direction) {
         if (typesAndDirections.isEmpty()) {
             return PathExpanders.forDirection(direction == null ? Direction.BOTH : direction);
         }
@@ -175,6 +288,24 @@ public class PathFinderInput {
         );
     }
 
+    /**
+     * Get relationship types to be traversed, each followed by its direction.
+     *
+     * @return types and directions, empty if all types should be traversed.
+     */
+    List<Object> getTypesAndDirections() {
+        return typesAndDirections;
+    }
+
+    /**
+     * Get the direction of relationships to be traversed when no types have been specified.
+     *
+     * @return direction, null if not specified, i.e. both directions.
+     */
+    Direction getDirection() {
+        return direction;
+    }
+
     public SortOrder getSortOrder() {
         return sortOrder;
     }
@@ -182,4 +313,28 @@ public class PathFinderInput {
     public String getCostProperty() {
         return costProperty;
     }
+
+    public SearchEngine getSearchEngine() {
+        return searchEngine;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public long getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    public int getHubDegreeThreshold() {
+        return hubDegreeThreshold;
+    }
+
+    public HubPolicy getHubPolicy() {
+        return hubPolicy;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
 }
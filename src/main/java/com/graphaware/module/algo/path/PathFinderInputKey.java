@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Normalised form of a {@link PathFinderInput}, equal for all inputs that produce the same result, used as a key in
+ * {@link PathResultCache}. The search engine is not part of the key, as all engines find the same paths.
+ */
+final class PathFinderInputKey {
+
+    private final long startNodeId;
+    private final long endNodeId;
+    private final int maxDepth;
+    private final int maxResults;
+    private final SortOrder sortOrder;
+    private final String costProperty;
+    private final List<String> typesAndDirections;
+    private final int hubDegreeThreshold;
+    private final HubPolicy hubPolicy;
+    private final int hashCode;
+
+    PathFinderInputKey(PathFinderInput input) {
+        this.startNodeId = input.getStart().getId();
+        this.endNodeId = input.getEnd().getId();
+        this.maxDepth = input.getMaxDepth();
+        this.maxResults = input.getMaxResults();
+        this.sortOrder = input.getSortOrder();
+        this.costProperty = SortOrder.LENGTH_ASC.equals(input.getSortOrder()) ? null : input.getCostProperty();
+
+        List<String> normalised = new ArrayList<>();
+        List<Object> inputTypesAndDirections = input.getTypesAndDirections();
+        if (inputTypesAndDirections.isEmpty()) {
+            normalised.add("*:" + (input.getDirection() == null ? Direction.BOTH : input.getDirection()));
+        } else {
+            for (int i = 0; i < inputTypesAndDirections.size(); i += 2) {
+                normalised.add(((RelationshipType) inputTypesAndDirections.get(i)).name() + ":" + inputTypesAndDirections.get(i + 1));
+            }
+            Collections.sort(normalised);
+        }
+        this.typesAndDirections = normalised;
+        this.hubDegreeThreshold = input.getHubDegreeThreshold();
+        this.hubPolicy = hasHubDegreeThreshold() ? input.getHubPolicy() : null;
+
+        int result = (int) (startNodeId ^ (startNodeId >>> 32));
+        result = 31 * result + (int) (endNodeId ^ (endNodeId >>> 32));
+        result = 31 * result + maxDepth;
+        result = 31 * result + maxResults;
+        result = 31 * result + sortOrder.hashCode();
+        result = 31 * result + (costProperty != null ? costProperty.hashCode() : 0);
+        result = 31 * result + typesAndDirections.hashCode();
+        result = 31 * result + hubDegreeThreshold;
+        result = 31 * result + (hubPolicy != null ? hubPolicy.hashCode() : 0);
+        this.hashCode = result;
+    }
+
+    /**
+     * Get the cost property the result depends on.
+     *
+     * @return cost property key, null if the result doesn't depend on costs.
+     */
+    String getCostProperty() {
+        return costProperty;
+    }
+
+    /**
+     * Does the result depend on degrees of nodes, because hubs have been pruned?
+     *
+     * @return true iff the input has a hub degree threshold.
+     */
+    boolean hasHubDegreeThreshold() {
+        return hubDegreeThreshold < Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        PathFinderInputKey that = (PathFinderInputKey) o;
+
+        return startNodeId == that.startNodeId
+                && endNodeId == that.endNodeId
+                && maxDepth == that.maxDepth
+                && maxResults == that.maxResults
+                && sortOrder == that.sortOrder
+                && (costProperty != null ? costProperty.equals(that.costProperty) : that.costProperty == null)
+                && typesAndDirections.equals(that.typesAndDirections)
+                && hubDegreeThreshold == that.hubDegreeThreshold
+                && hubPolicy == that.hubPolicy;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.algo.path;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.logging.Log;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregated {@link SearchStatistics} of path finding requests, i.e. distributions of request and {@link SearchPhase}
+ * times, expanded relationships, and returned paths, kept in {@link Histogram}s with a constant memory footprint,
+ * together with the size and hit rate of the {@link SearchStatePool} of the path finder, if there is one.
+ * The metrics can be exposed over JMX by {@link #register()}, under {@link #OBJECT_NAME}.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class PathFinderMetrics implements PathFinderMetricsMXBean {
+
+    private static final Log LOG = LoggerFactory.getLogger(PathFinderMetrics.class);
+
+    /**
+     * Name of the MBean registered by {@link #register()}.
+     */
+    public static final String OBJECT_NAME = "com.graphaware.module.algo.path:type=PathFinderMetrics";
+
+    //instance registered under the object name, guarded by the class
+    private static PathFinderMetrics registered;
+
+    private final Histogram requestTimes = new Histogram();
+    private final Histogram[] phaseTimes = new Histogram[SearchPhase.values().length];
+    private final Histogram expandedRelationships = new Histogram();
+    private final Histogram returnedPaths = new Histogram();
+    private final SearchStatePool statePool;
+
+    /**
+     * Construct new metrics, without search state pool metrics, which are all 0.
+     */
+    public PathFinderMetrics() {
+        this(null);
+    }
+
+    /**
+     * Construct new metrics.
+     *
+     * @param statePool search state pool of the path finder, null if there is none.
+     */
+    public PathFinderMetrics(SearchStatePool statePool) {
+        this.statePool = statePool;
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Record a request.
+     *
+     * @param statistics    of the request, with its phases finished.
+     * @param requestTime   time of the entire request in ns.
+     * @param returnedPaths number of paths returned by the request.
+     */
+    public void record(SearchStatistics statistics, long requestTime, int returnedPaths) {
+        requestTimes.record(toMicros(requestTime));
+
+        for (SearchPhase phase : SearchPhase.values()) {
+            if (SearchPhase.LONGER_PATHS.equals(phase)) {
+                for (long time : statistics.getLongerPathsTimes()) {
+                    phaseTimes[phase.ordinal()].record(toMicros(time));
+                }
+            } else if (statistics.hasPhase(phase)) {
+                phaseTimes[phase.ordinal()].record(toMicros(statistics.getPhaseTime(phase)));
+            }
+        }
+
+        expandedRelationships.record(statistics.getExpandedRelationships());
+        this.returnedPaths.record(returnedPaths);
+    }
+
+    private long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRequests() {
+        return requestTimes.snapshot().getCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HistogramSnapshot getRequestTimes() {
+        return requestTimes.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, HistogramSnapshot> getPhaseTimes() {
+        Map<String, HistogramSnapshot> result = new LinkedHashMap<>();
+        for (SearchPhase phase : SearchPhase.values()) {
+            result.put(phase.name(), phaseTimes[phase.ordinal()].snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HistogramSnapshot getExpandedRelationships() {
+        return expandedRelationships.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HistogramSnapshot getReturnedPaths() {
+        return returnedPaths.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getStatePoolSize() {
+        return statePool != null ? statePool.getSize() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStatePoolMemoryFootprint() {
+        return statePool != null ? statePool.getMemoryFootprint() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStatePoolHits() {
+        return statePool != null ? statePool.getHits() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStatePoolMisses() {
+        return statePool != null ? statePool.getMisses() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getStatePoolHitRate() {
+        return statePool != null ? statePool.getHitRate() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        requestTimes.reset();
+        for (Histogram histogram : phaseTimes) {
+            histogram.reset();
+        }
+        expandedRelationships.reset();
+        returnedPaths.reset();
+        if (statePool != null) {
+            statePool.resetCounters();
+        }
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, replacing metrics registered before, e.g. by a previous
+     * instance of the REST API. Failures are logged, as metrics are not essential.
+     */
+    public void register() {
+        synchronized (PathFinderMetrics.class) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                registered = null;
+                server.registerMBean(this, name);
+                registered = this;
+            } catch (JMException e) {
+                LOG.warn("Could not register path finder metrics with JMX", e);
+            }
+        }
+    }
+
+    /**
+     * Unregister the metrics registered by {@link #register()} from the platform MBean server, unless they have been
+     * replaced by other metrics since, e.g. by a new instance of the REST API.
+     */
+    public void unregister() {
+        synchronized (PathFinderMetrics.class) {
+            if (registered != this) {
+                return;
+            }
+
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                registered = null;
+            } catch (JMException e) {
+                LOG.warn("Could not unregister path finder metrics from JMX", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.algo.path;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link PathFinderMetrics}. All times are in microseconds.
+ */
+public interface PathFinderMetricsMXBean {
+
+    /**
+     * @return number of recorded requests.
+     */
+    long getRequests();
+
+    /**
+     * @return times of the entire requests.
+     */
+    HistogramSnapshot getRequestTimes();
+
+    /**
+     * @return times of each {@link SearchPhase}, keyed by its name. Phases that didn't happen in a request aren't
+     * recorded for it and every {@link SearchPhase#LONGER_PATHS} phase is recorded separately.
+     */
+    Map<String, HistogramSnapshot> getPhaseTimes();
+
+    /**
+     * @return numbers of relationships expanded per request.
+     */
+    HistogramSnapshot getExpandedRelationships();
+
+    /**
+     * @return numbers of paths returned per request.
+     */
+    HistogramSnapshot getReturnedPaths();
+
+    /**
+     * @return number of pooled search states, see {@link SearchStatePool}.
+     */
+    int getStatePoolSize();
+
+    /**
+     * @return approximate number of bytes taken by pooled search states.
+     */
+    long getStatePoolMemoryFootprint();
+
+    /**
+     * @return number of searches that reused a pooled search state.
+     */
+    long getStatePoolHits();
+
+    /**
+     * @return number of searches that had to create a new search state.
+     */
+    long getStatePoolMisses();
+
+    /**
+     * @return share of searches that reused a pooled search state.
+     */
+    double getStatePoolHitRate();
+
+    /**
+     * Remove all recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Path;
+
+/**
+ * Listener notified by {@link NumberOfShortestPathsFinder} about every path it returns, as soon as the path is known to
+ * be part of the result and its position in the result is final. This allows for processing paths without waiting for
+ * the whole search to finish and without holding all of them in memory.
+ */
+public interface PathListener {
+
+    /**
+     * Called for every path in the result, in the order of the result.
+     *
+     * @param path found. Is a {@link WeightedPath} when sorting by cost.
+     */
+    void pathFound(Path path);
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.*;
+
+/**
+ * Size-bounded, least-recently-used cache of results of {@link NumberOfShortestPathsFinder}, keyed by a normalised
+ * form of {@link PathFinderInput}. Paths are cached as {@link CompactPath}s, i.e. their nodes and relationships are
+ * read from the database when the paths are used, so property values returned to clients are always current.
+ * <p/>
+ * The cache is kept consistent with the database by a {@link TransactionEventHandler}. After a transaction has been
+ * committed:
+ * <ul>
+ * <li>if it created relationships, all cached results are removed, because new paths may exist between any nodes,</li>
+ * <li>results containing relationships it deleted are removed, as are all results of searches with a hub degree
+ * threshold, because nodes that were hubs may not be anymore,</li>
+ * <li>results sorted by a cost property whose value it changed on any relationship are removed, because paths that
+ * are not part of a result can become cheaper than the ones that are.</li>
+ * </ul>
+ * Results of searches running while a transaction creating or deleting relationships, or changing their properties, is
+ * committed are not cached at all, as the searches may have read the graph before or after the changes.
+ * Changes made by the current, not yet committed, transaction are not seen by the cache, so it must only be used in
+ * transactions that don't modify the graph.
+ * <p/>
+ * {@link #shutdown()} must be called when the cache is no longer needed.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class PathResultCache {
+
+    private final GraphDatabaseService database;
+    private final NumberOfShortestPathsFinder pathFinder;
+    private final int capacity;
+
+    private final LinkedHashMap<PathFinderInputKey, Entry> entries;
+    private final Map<Long, Set<PathFinderInputKey>> keysByRelationship = new HashMap<>();
+    private final Map<String, Set<PathFinderInputKey>> keysByCostProperty = new HashMap<>();
+    private final Set<PathFinderInputKey> keysWithHubThreshold = new HashSet<>();
+
+    //incremented on every invalidation, so that results found before an invalidation are never cached after it
+    private long generation = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    private final TransactionEventHandler<Void> invalidator = new TransactionEventHandler.Adapter<Void>() {
+        @Override
+        public void afterCommit(TransactionData data, Void state) {
+            invalidate(data);
+        }
+    };
+
+    /**
+     * Construct a new cache and start keeping it consistent with the database.
+     *
+     * @param database   to cache paths of.
+     * @param pathFinder to find paths not found in the cache.
+     * @param capacity   maximum number of cached results, must be positive.
+     */
+    public PathResultCache(GraphDatabaseService database, NumberOfShortestPathsFinder pathFinder, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+        }
+
+        this.database = database;
+        this.pathFinder = pathFinder;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<PathFinderInputKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PathFinderInputKey, Entry> eldest) {
+                if (size() > PathResultCache.this.capacity) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        database.registerTransactionEventHandler(invalidator);
+    }
+
+    /**
+     * Find paths between the start and end nodes, returning a cached result if there is one. Results of
+     * {@link SearchEngine#SNAPSHOT} are never cached, as they reflect the snapshot rather than the database.
+     *
+     * @param input path finder input.
+     * @return unmodifiable list of paths between the two nodes.
+     */
+    public List<? extends Path> findPaths(PathFinderInput input) {
+        return findPaths(input, new SearchStatistics());
+    }
+
+    /**
+     * Find paths between the start and end nodes, returning a cached result if there is one, and recording statistics
+     * about the search if there isn't. Results of {@link SearchEngine#SNAPSHOT} are never cached, as they reflect the
+     * snapshot rather than the database, and neither are truncated results, which are incomplete.
+     *
+     * @param input      path finder input.
+     * @param statistics to record search statistics in, untouched when the result is cached.
+     * @return unmodifiable list of paths between the two nodes.
+     */
+    public List<? extends Path> findPaths(PathFinderInput input, SearchStatistics statistics) {
+        if (SearchEngine.SNAPSHOT.equals(input.getSearchEngine())) {
+            return Collections.unmodifiableList(new ArrayList<>(pathFinder.findPaths(input, statistics)));
+        }
+
+        PathFinderInputKey key = new PathFinderInputKey(input);
+        long generationBefore;
+
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached.paths;
+            }
+            misses++;
+            generationBefore = generation;
+        }
+
+        List<? extends Path> paths = Collections.unmodifiableList(new ArrayList<>(pathFinder.findPaths(input, statistics)));
+        if (statistics.isTruncated()) {
+            return paths;
+        }
+
+        Entry entry = new Entry(paths);
+
+        synchronized (this) {
+            //the graph might have changed while the paths were being found, in which case they can't be cached
+            if (generation == generationBefore && !entries.containsKey(key)) {
+                entries.put(key, entry);
+                index(key, entry);
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Remove all results from the cache.
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        keysByRelationship.clear();
+        keysByCostProperty.clear();
+        keysWithHubThreshold.clear();
+    }
+
+    /**
+     * Stop keeping the cache consistent with the database and clear it.
+     */
+    public void shutdown() {
+        database.unregisterTransactionEventHandler(invalidator);
+        clear();
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return size.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Get the maximum number of cached results.
+     *
+     * @return capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of results found in the cache since it was created.
+     *
+     * @return number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of results not found in the cache since it was created.
+     *
+     * @return number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void invalidate(TransactionData data) {
+        if (data.createdRelationships().iterator().hasNext()) {
+            clear();
+            return;
+        }
+
+        if (!data.deletedRelationships().iterator().hasNext()
+                && !data.assignedRelationshipProperties().iterator().hasNext()
+                && !data.removedRelationshipProperties().iterator().hasNext()) {
+            return;
+        }
+
+        Set<PathFinderInputKey> invalid = new HashSet<>();
+
+        synchronized (this) {
+            //searches in progress may have read what the transaction changed, their results must not be cached
+            generation++;
+
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            for (Relationship relationship : data.deletedRelationships()) {
+                addAll(invalid, keysByRelationship.get(relationship.getId()));
+            }
+
+            if (data.deletedRelationships().iterator().hasNext()) {
+                addAll(invalid, keysWithHubThreshold);
+            }
+
+            for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+                addAll(invalid, keysByCostProperty.get(entry.key()));
+            }
+
+            for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                addAll(invalid, keysByCostProperty.get(entry.key()));
+            }
+
+            for (PathFinderInputKey key : invalid) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    unindex(key, entry);
+                }
+            }
+        }
+    }
+
+    private void addAll(Set<PathFinderInputKey> target, Set<PathFinderInputKey> keys) {
+        if (keys != null) {
+            target.addAll(keys);
+        }
+    }
+
+    private void index(PathFinderInputKey key, Entry entry) {
+        for (long relationshipId : entry.relationshipIds) {
+            Set<PathFinderInputKey> keys = keysByRelationship.get(relationshipId);
+            if (keys == null) {
+                keys = new HashSet<>();
+                keysByRelationship.put(relationshipId, keys);
+            }
+            keys.add(key);
+        }
+
+        if (key.getCostProperty() != null) {
+            Set<PathFinderInputKey> keys = keysByCostProperty.get(key.getCostProperty());
+            if (keys == null) {
+                keys = new HashSet<>();
+                keysByCostProperty.put(key.getCostProperty(), keys);
+            }
+            keys.add(key);
+        }
+
+        if (key.hasHubDegreeThreshold()) {
+            keysWithHubThreshold.add(key);
+        }
+    }
+
+    private void unindex(PathFinderInputKey key, Entry entry) {
+        for (long relationshipId : entry.relationshipIds) {
+            Set<PathFinderInputKey> keys = keysByRelationship.get(relationshipId);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByRelationship.remove(relationshipId);
+                }
+            }
+        }
+
+        if (key.getCostProperty() != null) {
+            Set<PathFinderInputKey> keys = keysByCostProperty.get(key.getCostProperty());
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByCostProperty.remove(key.getCostProperty());
+                }
+            }
+        }
+
+        keysWithHubThreshold.remove(key);
+    }
+
+    /**
+     * A cached result and the IDs of all relationships in it.
+     */
+    private static class Entry {
+
+        private final List<? extends Path> paths;
+        private final long[] relationshipIds;
+
+        private Entry(List<? extends Path> paths) {
+            this.paths = paths;
+
+            Set<Long> ids = new HashSet<>();
+            for (Path path : paths) {
+                CompactPath compactPath = CompactPath.of(path);
+                for (int i = 0; i < compactPath.length(); i++) {
+                    ids.add(compactPath.relationshipId(i));
+                }
+            }
+
+            this.relationshipIds = new long[ids.size()];
+            int i = 0;
+            for (long id : ids) {
+                relationshipIds[i++] = id;
+            }
+        }
+    }
+}
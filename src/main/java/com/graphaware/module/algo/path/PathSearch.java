@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+/**
+ * A single path search between two nodes, which can be asked for the shortest paths and then for paths of increasing
+ * lengths, remembering what it has learned about the graph in between.
+ * <p/>
+ * The paths found are the same as the ones returned by {@link org.neo4j.graphalgo.GraphAlgoFactory#shortestPath(org.neo4j.graphdb.PathExpander, int)}
+ * and {@link org.neo4j.graphalgo.GraphAlgoFactory#pathsWithLength(org.neo4j.graphdb.PathExpander, int)}, i.e. all
+ * shortest paths and then all paths with the given length, in which no node appears more than once. They are passed
+ * to a {@link PathCollector}, which can stop the search from extending partial paths that aren't worth it.
+ */
+interface PathSearch {
+
+    /**
+     * Find all shortest paths between the start and end nodes.
+     *
+     * @param maxDepth  maximum length of the paths.
+     * @param collector to collect the paths with.
+     * @return length of the shortest paths, -1 if there is no path with length less than or equal to max depth.
+     */
+    int findShortestPaths(int maxDepth, PathCollector collector);
+
+    /**
+     * Find all paths between the start and end nodes with the given length, in which no node appears more than once.
+     *
+     * @param length    of the paths.
+     * @param collector to collect the paths with.
+     */
+    void findPathsWithLength(int length, PathCollector collector);
+
+    /**
+     * Has a relationship with a negative cost been found by the search so far? If so, partial paths must not be pruned
+     * based on their cost, because the cost can still decrease.
+     *
+     * @return true iff a negative cost has been found.
+     */
+    boolean hasNegativeCosts();
+}
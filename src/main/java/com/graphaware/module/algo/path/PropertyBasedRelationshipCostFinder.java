@@ -22,10 +22,14 @@ import org.neo4j.graphdb.Relationship;
  * {@link com.graphaware.module.algo.path.RelationshipCostFinder} that reads the cost from a relationship's property.
  * In case the property is undefined or not a number, {@link #getDefaultCost()} is called to let subclasses determine
  * the cost.
+ * <p/>
+ * Optionally, costs are read through a {@link RelationshipCostCache}, so that only costs of relationships that haven't
+ * been needed recently are read from the database.
  */
 public abstract class PropertyBasedRelationshipCostFinder implements RelationshipCostFinder {
 
     private final String costPropertyKey;
+    private final RelationshipCostCache cache;
 
     /**
      * Construct a new cost finder.
@@ -34,6 +38,17 @@ public abstract class PropertyBasedRelationshipCostFinder implements Relationshi
      */
     protected PropertyBasedRelationshipCostFinder(String costPropertyKey) {
         this.costPropertyKey = costPropertyKey;
+        this.cache = null;
+    }
+
+    /**
+     * Construct a new cost finder reading costs through a cache.
+     *
+     * @param cache to read costs through. Its cost property key is the one that defines cost.
+     */
+    protected PropertyBasedRelationshipCostFinder(RelationshipCostCache cache) {
+        this.costPropertyKey = cache.getCostPropertyKey();
+        this.cache = cache;
     }
 
     /**
@@ -41,6 +56,10 @@ public abstract class PropertyBasedRelationshipCostFinder implements Relationshi
      */
     @Override
     public long getCost(Relationship relationship) {
+        if (cache != null) {
+            return cache.getCost(relationship, getDefaultCost());
+        }
+
         if (!relationship.hasProperty(costPropertyKey)) {
             return getDefaultCost();
         }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import java.util.Arrays;
+
+/**
+ * Monotone min-priority queue of long values by non-negative long keys (a radix heap), backed by primitive arrays.
+ * <p/>
+ * Keys pushed must not be smaller than the key last popped, which always holds for distances settled by Dijkstra's
+ * algorithm with non-negative costs. Entries are kept in 64 buckets: bucket 0 holds entries whose key equals the last
+ * popped key, bucket i holds entries whose key first differs from it in bit i - 1. When bucket 0 is empty, the smallest
+ * key of the first non-empty bucket becomes the last popped key and the entries of that bucket move to lower buckets,
+ * so each entry moves at most 64 times, no matter how many entries there are. Unlike a binary heap, pushing is constant
+ * time and doesn't compare keys. Once the buckets have grown large enough, neither operation allocates.
+ * <p/>
+ * There is no decrease-key; entries made stale by a smaller key pushed later are skipped by the caller.
+ * <p/>
+ * This class is not thread-safe.
+ */
+class RadixHeap {
+
+    private static final int BUCKETS = 64;
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+    private final long[][] keys = new long[BUCKETS][];
+    private final long[][] values = new long[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    private long last = 0;
+    private int size = 0;
+
+    /**
+     * Add a value to the heap.
+     *
+     * @param key   of the value, must not be smaller than the key last popped.
+     * @param value to add.
+     * @throws IllegalArgumentException if the key is smaller than the key last popped.
+     */
+    void push(long key, long value) {
+        if (key < last) {
+            throw new IllegalArgumentException("Key " + key + " is smaller than the last popped key " + last);
+        }
+
+        add(bucketOf(key), key, value);
+        size++;
+    }
+
+    /**
+     * Get the smallest key in the heap, which must not be empty.
+     *
+     * @return key of the value {@link #pop()} would return.
+     */
+    long peekKey() {
+        if (sizes[0] == 0) {
+            redistribute();
+        }
+        return last;
+    }
+
+    /**
+     * Remove a value with the smallest key from the heap, which must not be empty.
+     *
+     * @return value.
+     */
+    long pop() {
+        if (sizes[0] == 0) {
+            redistribute();
+        }
+        size--;
+        return values[0][--sizes[0]];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove all values, keeping the buckets for reuse.
+     */
+    void clear() {
+        Arrays.fill(sizes, 0);
+        last = 0;
+        size = 0;
+    }
+
+    /**
+     * Remove all values and release the buckets that hold more than the given number of values.
+     *
+     * @param maxBucketCapacity maximum number of values a bucket may keep room for.
+     */
+    void trim(int maxBucketCapacity) {
+        clear();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (keys[bucket] != null && keys[bucket].length > maxBucketCapacity) {
+                keys[bucket] = null;
+                values[bucket] = null;
+            }
+        }
+    }
+
+    /**
+     * @return approximate number of bytes taken by the buckets.
+     */
+    long getMemoryFootprint() {
+        long result = 0;
+        for (long[] bucketKeys : keys) {
+            result += bucketKeys != null ? 16L * bucketKeys.length : 0;
+        }
+        return result;
+    }
+
+    private int bucketOf(long key) {
+        return key == last ? 0 : BUCKETS - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void add(int bucket, long key, long value) {
+        int bucketSize = sizes[bucket];
+
+        if (keys[bucket] == null) {
+            keys[bucket] = new long[INITIAL_BUCKET_CAPACITY];
+            values[bucket] = new long[INITIAL_BUCKET_CAPACITY];
+        } else if (bucketSize == keys[bucket].length) {
+            keys[bucket] = Arrays.copyOf(keys[bucket], bucketSize * 2);
+            values[bucket] = Arrays.copyOf(values[bucket], bucketSize * 2);
+        }
+
+        keys[bucket][bucketSize] = key;
+        values[bucket][bucketSize] = value;
+        sizes[bucket] = bucketSize + 1;
+    }
+
+    /**
+     * Make the smallest key the last popped key and move the entries of its bucket to lower buckets, at least one of
+     * them to bucket 0.
+     */
+    private void redistribute() {
+        int bucket = 1;
+        while (sizes[bucket] == 0) {
+            bucket++;
+        }
+
+        long[] bucketKeys = keys[bucket];
+        long[] bucketValues = values[bucket];
+        int bucketSize = sizes[bucket];
+
+        long min = bucketKeys[0];
+        for (int i = 1; i < bucketSize; i++) {
+            min = Math.min(min, bucketKeys[i]);
+        }
+
+        last = min;
+        sizes[bucket] = 0;
+
+        //all keys in the bucket share bits above the bucket's with the new last key, so they land in lower buckets
+        for (int i = 0; i < bucketSize; i++) {
+            add(bucketOf(bucketKeys[i]), bucketKeys[i], bucketValues[i]);
+        }
+    }
+}
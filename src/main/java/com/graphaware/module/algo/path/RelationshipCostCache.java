@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Relationship;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded cache of the values of a single numerical relationship property, keyed by relationship ID, used by
+ * {@link PropertyBasedRelationshipCostFinder}s to avoid reading the cost property of frequently traversed relationships
+ * from the database over and over again.
+ * <p/>
+ * The cache is direct-mapped: each relationship ID maps to a single slot, so the cache never holds more than its
+ * capacity and a newly cached relationship evicts the one previously cached in the same slot. Relationships whose
+ * property isn't a number, or doesn't exist, are cached as such, so that different {@link PropertyBasedRelationshipCostFinder}s
+ * can share the cache, no matter what their default cost is.
+ * <p/>
+ * Entries must be invalidated whenever the property changes, or the relationship is deleted. This is done by
+ * {@link RelationshipCostCaches}, which should be used to obtain instances of this class. Values committed by other
+ * transactions are thus seen as soon as those transactions have finished committing, but changes made by the current,
+ * not yet committed, transaction aren't.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class RelationshipCostCache {
+
+    private final String costPropertyKey;
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+
+    //incremented before every invalidation, so that values read before the invalidation are never cached after it
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Construct a new cache.
+     *
+     * @param costPropertyKey key of the relationship property that defines cost.
+     * @param capacity        maximum number of cached relationships, must be positive. Rounded up to a power of two.
+     */
+    RelationshipCostCache(String costPropertyKey, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        this.costPropertyKey = costPropertyKey;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the cost of a relationship, reading it from the database if it isn't cached.
+     *
+     * @param relationship to get the cost of.
+     * @param defaultCost  cost to return if the relationship doesn't have a numerical cost property.
+     * @return cost.
+     */
+    public long getCost(Relationship relationship, long defaultCost) {
+        long id = relationship.getId();
+        int slot = slot(id);
+
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.relationshipId == id) {
+            hits.incrementAndGet();
+            return entry.defined ? entry.cost : defaultCost;
+        }
+
+        misses.incrementAndGet();
+
+        long before = generation.get();
+        entry = load(relationship);
+        entries.set(slot, entry);
+
+        //the property might have changed while it was being read, in which case the entry can't be trusted
+        if (generation.get() != before) {
+            entries.compareAndSet(slot, entry, null);
+        }
+
+        return entry.defined ? entry.cost : defaultCost;
+    }
+
+    /**
+     * Remove a relationship from the cache, because its cost has changed, or it has been deleted.
+     *
+     * @param relationshipId ID of the relationship.
+     */
+    void invalidate(long relationshipId) {
+        generation.incrementAndGet();
+
+        int slot = slot(relationshipId);
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.relationshipId == relationshipId) {
+            entries.compareAndSet(slot, entry, null);
+        }
+    }
+
+    /**
+     * Remove all relationships from the cache.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /**
+     * Get the key of the cached relationship property.
+     *
+     * @return cost property key.
+     */
+    public String getCostPropertyKey() {
+        return costPropertyKey;
+    }
+
+    /**
+     * Get the maximum number of cached relationships.
+     *
+     * @return capacity.
+     */
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Get the number of costs found in the cache since it was created.
+     *
+     * @return number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of costs read from the database since the cache was created.
+     *
+     * @return number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Entry load(Relationship relationship) {
+        Object value = relationship.getProperty(costPropertyKey, null);
+
+        if (value instanceof Integer) {
+            return new Entry(relationship.getId(), (int) value, true);
+        }
+
+        if (value instanceof Long) {
+            return new Entry(relationship.getId(), (long) value, true);
+        }
+
+        return new Entry(relationship.getId(), 0, false);
+    }
+
+    private int slot(long relationshipId) {
+        long hash = relationshipId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Cached cost of a single relationship.
+     */
+    private static final class Entry {
+
+        private final long relationshipId;
+        private final long cost;
+        private final boolean defined;
+
+        private Entry(long relationshipId, long cost, boolean defined) {
+            this.relationshipId = relationshipId;
+            this.cost = cost;
+            this.defined = defined;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link RelationshipCostCache}s for a single database, one per cost property key, created when first needed. The
+ * caches are kept consistent with the database by a {@link TransactionEventHandler}, which invalidates cached costs of
+ * relationships whose cost property has been changed or removed, and of deleted relationships, once a transaction has
+ * been committed.
+ * <p/>
+ * {@link #shutdown()} must be called when the caches are no longer needed.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class RelationshipCostCaches {
+
+    private final GraphDatabaseService database;
+    private final int capacity;
+    private final ConcurrentMap<String, RelationshipCostCache> caches = new ConcurrentHashMap<>();
+    private final TransactionEventHandler<Void> invalidator = new TransactionEventHandler.Adapter<Void>() {
+        @Override
+        public void afterCommit(TransactionData data, Void state) {
+            invalidate(data);
+        }
+    };
+
+    /**
+     * Construct new caches and start keeping them consistent with the database.
+     *
+     * @param database to cache relationship costs of.
+     * @param capacity maximum number of cached relationships per cost property key.
+     */
+    public RelationshipCostCaches(GraphDatabaseService database, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+        }
+
+        this.database = database;
+        this.capacity = capacity;
+
+        database.registerTransactionEventHandler(invalidator);
+    }
+
+    /**
+     * Get the cache for a cost property key.
+     *
+     * @param costPropertyKey key of the relationship property that defines cost.
+     * @return cache.
+     */
+    public RelationshipCostCache forProperty(String costPropertyKey) {
+        RelationshipCostCache cache = caches.get(costPropertyKey);
+
+        if (cache == null) {
+            RelationshipCostCache newCache = new RelationshipCostCache(costPropertyKey, capacity);
+            cache = caches.putIfAbsent(costPropertyKey, newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Stop keeping the caches consistent with the database and clear them.
+     */
+    public void shutdown() {
+        database.unregisterTransactionEventHandler(invalidator);
+
+        for (RelationshipCostCache cache : caches.values()) {
+            cache.clear();
+        }
+        caches.clear();
+    }
+
+    private void invalidate(TransactionData data) {
+        if (caches.isEmpty()) {
+            return;
+        }
+
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+            invalidate(entry);
+        }
+
+        for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+            invalidate(entry);
+        }
+
+        //IDs of deleted relationships can be reused by new relationships
+        for (Relationship relationship : data.deletedRelationships()) {
+            for (RelationshipCostCache cache : caches.values()) {
+                cache.invalidate(relationship.getId());
+            }
+        }
+    }
+
+    private void invalidate(PropertyEntry<Relationship> entry) {
+        RelationshipCostCache cache = caches.get(entry.key());
+        if (cache != null) {
+            cache.invalidate(entry.entity().getId());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import java.util.Arrays;
+
+/**
+ * Map of long keys to non-negative int values, backed by primitive arrays (open addressing with linear probing), which
+ * is meant to be cleared and reused by many searches.
+ * <p/>
+ * Each slot has a stamp, the generation of the map in which it was last written; slots with an older stamp are empty.
+ * Clearing the map thus takes constant time, no matter how many entries it holds, and neither clearing nor putting
+ * entries allocates, unless the map must grow. Its capacity only depends on the largest number of entries it has
+ * held, and can be reset by {@link #trim(int)}.
+ * <p/>
+ * This class is not thread-safe.
+ */
+class ReusableLongIntMap {
+
+    /**
+     * Value returned by {@link #get(long)} for keys not in the map.
+     */
+    static final int ABSENT = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private int[] values;
+    private int[] stamps;
+    private int mask;
+    private int generation = 1;
+    private int size = 0;
+
+    ReusableLongIntMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key to get the value of.
+     * @return value, {@link #ABSENT} if the key is not in the map.
+     */
+    int get(long key) {
+        for (int slot = slotOf(key); stamps[slot] == generation; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Is a key in the map?
+     *
+     * @param key to look for.
+     * @return true iff the key is in the map.
+     */
+    boolean containsKey(long key) {
+        return get(key) != ABSENT;
+    }
+
+    /**
+     * Set the value of a key.
+     *
+     * @param key   to set the value of.
+     * @param value to set, must not be negative.
+     */
+    void put(long key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+
+        int slot = slotOf(key);
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        stamps[slot] = generation;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        size = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Remove all entries and release the memory held by the map, if its capacity exceeds the given one.
+     *
+     * @param maxCapacity maximum number of slots to keep.
+     */
+    void trim(int maxCapacity) {
+        clear();
+        if (keys.length > maxCapacity) {
+            allocate(INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * @return approximate number of bytes taken by the map.
+     */
+    long getMemoryFootprint() {
+        return 16L * keys.length;
+    }
+
+    private int slotOf(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        stamps = new int[capacity];
+        mask = capacity - 1;
+        generation = 1;
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+
+        allocate(keys.length * 2);
+
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldStamps[slot] == oldGeneration) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+/**
+ * Thrown by {@link SearchStatistics#relationshipExpanded()} and {@link SearchStatistics#relationshipFollowed()} to stop
+ * a search that has run out of its budget, i.e.
+ * {@link PathFinderInput#getMaxTime()} or {@link PathFinderInput#getMaxExpansions()}. It is caught by
+ * {@link NumberOfShortestPathsFinder} and never leaves it.
+ * <p/>
+ * As it is only used for control flow, a single instance without a stack trace is shared.
+ */
+class SearchBudgetExceededException extends RuntimeException {
+
+    static final SearchBudgetExceededException INSTANCE = new SearchBudgetExceededException();
+
+    private SearchBudgetExceededException() {
+        super("Search budget exceeded", null, false, false);
+    }
+}
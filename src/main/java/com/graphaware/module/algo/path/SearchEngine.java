@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+/**
+ * Which search engine should {@link NumberOfShortestPathsFinder} use to find paths? Both engines return the same paths,
+ * they differ in how much of the graph they need to expand in order to find them.
+ */
+public enum SearchEngine {
+
+    /**
+     * A single search expanding from both the start and the end node and joining paths in the middle. It keeps its
+     * visited nodes and their expanded relationships between depths, so that each node is expanded at most once per
+     * direction per query. This is the default.
+     */
+    BIDIRECTIONAL,
+
+    /**
+     * A single search expanding from the start node only, which keeps its visited nodes and their expanded
+     * relationships between depths, so that each node is expanded at most once per query.
+     */
+    INCREMENTAL,
+
+    /**
+     * Classic shortest path search first, followed by a completely new search for each longer depth.
+     */
+    PER_DEPTH,
+
+    /**
+     * The same search as {@link #INCREMENTAL}, but reading the graph from an in-memory {@link GraphSnapshot} rather
+     * than from the database, so it doesn't see changes made after the snapshot was built. Only available when
+     * {@link NumberOfShortestPathsFinder} has been constructed with a {@link GraphSnapshotProvider} that has built a
+     * snapshot, which must include the cost property when sorting by cost.
+     */
+    SNAPSHOT
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+/**
+ * Phase of serving a path finding request, timed by {@link SearchStatistics}. Relationship costs are looked up while
+ * relationships are expanded, so except for {@link SearchEngine#PER_DEPTH}, the time spent looking them up is part of
+ * the search phases.
+ */
+public enum SearchPhase {
+
+    /**
+     * Turning the JSON input into a {@link PathFinderInput}, i.e. looking up nodes and validating the input.
+     */
+    INPUT_RESOLUTION,
+
+    /**
+     * Finding the shortest paths or, when sorting by {@link SortOrder#COST_ASC}, the cheapest path.
+     */
+    SHORTEST_PATHS,
+
+    /**
+     * Finding paths one hop longer than the ones found before or, when sorting by {@link SortOrder#COST_ASC}, the next
+     * cheapest path. Each depth (or path) is timed separately.
+     */
+    LONGER_PATHS,
+
+    /**
+     * Calculating costs of paths found by {@link SearchEngine#PER_DEPTH}, which doesn't calculate them while searching.
+     */
+    COST_CALCULATION,
+
+    /**
+     * Sorting paths of the same length by cost.
+     */
+    SORTING,
+
+    /**
+     * Converting paths to JSON, including reading the requested properties of their nodes and relationships.
+     */
+    SERIALIZATION
+}
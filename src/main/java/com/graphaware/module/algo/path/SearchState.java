@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import java.util.Arrays;
+
+/**
+ * Working state of {@link SnapshotPathSearch} and {@link CheapestPathSearch}, which is reused by many searches on the
+ * same thread, see {@link SearchStatePool}, so that searches don't allocate it over and over again.
+ * <p/>
+ * Maps are {@link ReusableLongIntMap}s and the queue is a {@link RadixHeap}, which are cleared in constant time. Arrays
+ * are never cleared: searches only read the elements they have written. All of them keep their capacity between
+ * searches, so once a thread has run a search as large as the ones that follow, searching allocates nothing but the
+ * found paths. State larger than {@link #MAX_RETAINED_CAPACITY} entries is released after a search, so that a single
+ * large search doesn't make every thread hold on to a lot of memory.
+ * <p/>
+ * Arrays may be replaced by larger ones during a search, which is why they are fields rather than final. A state must
+ * only be used by one search at a time, between {@link #resetForSnapshotSearch()} or
+ * {@link #resetForCheapestPathSearch()} and {@link SearchStatePool#release(SearchState)}.
+ * <p/>
+ * This class is not thread-safe.
+ */
+class SearchState {
+
+    /**
+     * Maximum number of entries of a map, array or queue bucket kept between searches.
+     */
+    static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //snapshot search: distances from the start node and to the end node, and hubs found, by node index
+    final ReusableLongIntMap distances = new ReusableLongIntMap();
+    final ReusableLongIntMap distancesToEnd = new ReusableLongIntMap();
+    final ReusableLongIntMap hubs = new ReusableLongIntMap();
+
+    //snapshot search: breadth-first search frontiers and buffers for the next ones, node indices of the current path
+    int[] frontier = new int[INITIAL_CAPACITY];
+    int[] nextFrontier = new int[INITIAL_CAPACITY];
+    int[] backwardFrontier = new int[INITIAL_CAPACITY];
+    int[] nextBackwardFrontier = new int[INITIAL_CAPACITY];
+    int[] pathNodes = new int[INITIAL_CAPACITY];
+    long[] pathRelationships = new long[INITIAL_CAPACITY];
+
+    //cheapest path search: index of each reached node, and its ID, distance, and how it was reached by index
+    final ReusableLongIntMap indices = new ReusableLongIntMap();
+    long[] nodeIds = new long[INITIAL_CAPACITY];
+    long[] nodeDistances = new long[INITIAL_CAPACITY];
+    long[] previousRelationships = new long[INITIAL_CAPACITY];
+    int[] previousNodes = new int[INITIAL_CAPACITY];
+    boolean[] settled = new boolean[INITIAL_CAPACITY];
+    int reached = 0;
+
+    //cheapest path search: node indices by tentative distance
+    final RadixHeap queue = new RadixHeap();
+
+    private boolean inUse = false;
+
+    /**
+     * Prepare the state for a new {@link SnapshotPathSearch}.
+     */
+    void resetForSnapshotSearch() {
+        distances.clear();
+        distancesToEnd.clear();
+        hubs.clear();
+    }
+
+    /**
+     * Prepare the state for a new {@link CheapestPathSearch}.
+     */
+    void resetForCheapestPathSearch() {
+        indices.clear();
+        queue.clear();
+        reached = 0;
+    }
+
+    /**
+     * Make sure the path buffers can hold a path of the given length.
+     *
+     * @param length of the path.
+     */
+    void ensurePathCapacity(int length) {
+        if (pathNodes.length < length + 1) {
+            pathNodes = new int[length + 1];
+            pathRelationships = new long[length + 1];
+        }
+    }
+
+    /**
+     * Make sure the cheapest path search arrays can hold one more node.
+     */
+    void ensureReachedCapacity() {
+        if (reached == nodeIds.length) {
+            nodeIds = Arrays.copyOf(nodeIds, reached * 2);
+            nodeDistances = Arrays.copyOf(nodeDistances, reached * 2);
+            previousRelationships = Arrays.copyOf(previousRelationships, reached * 2);
+            previousNodes = Arrays.copyOf(previousNodes, reached * 2);
+            settled = Arrays.copyOf(settled, reached * 2);
+        }
+    }
+
+    boolean isInUse() {
+        return inUse;
+    }
+
+    void setInUse(boolean inUse) {
+        this.inUse = inUse;
+    }
+
+    /**
+     * Release the memory held by state larger than {@link #MAX_RETAINED_CAPACITY}.
+     */
+    void trim() {
+        distances.trim(MAX_RETAINED_CAPACITY);
+        distancesToEnd.trim(MAX_RETAINED_CAPACITY);
+        hubs.trim(MAX_RETAINED_CAPACITY);
+        indices.trim(MAX_RETAINED_CAPACITY);
+        queue.trim(MAX_RETAINED_CAPACITY);
+
+        if (frontier.length > MAX_RETAINED_CAPACITY || nextFrontier.length > MAX_RETAINED_CAPACITY) {
+            frontier = new int[INITIAL_CAPACITY];
+            nextFrontier = new int[INITIAL_CAPACITY];
+        }
+
+        if (backwardFrontier.length > MAX_RETAINED_CAPACITY || nextBackwardFrontier.length > MAX_RETAINED_CAPACITY) {
+            backwardFrontier = new int[INITIAL_CAPACITY];
+            nextBackwardFrontier = new int[INITIAL_CAPACITY];
+        }
+
+        if (nodeIds.length > MAX_RETAINED_CAPACITY) {
+            nodeIds = new long[INITIAL_CAPACITY];
+            nodeDistances = new long[INITIAL_CAPACITY];
+            previousRelationships = new long[INITIAL_CAPACITY];
+            previousNodes = new int[INITIAL_CAPACITY];
+            settled = new boolean[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Get the approximate amount of memory taken by the state. As the state may be in use by another thread, the
+     * result may be slightly out of date.
+     *
+     * @return approximate number of bytes.
+     */
+    long getMemoryFootprint() {
+        return distances.getMemoryFootprint()
+                + distancesToEnd.getMemoryFootprint()
+                + hubs.getMemoryFootprint()
+                + indices.getMemoryFootprint()
+                + queue.getMemoryFootprint()
+                + 4L * (frontier.length + nextFrontier.length + backwardFrontier.length + nextBackwardFrontier.length + pathNodes.length)
+                + 8L * pathRelationships.length
+                + 29L * nodeIds.length;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-thread pool of {@link SearchState}s, which lets {@link SnapshotPathSearch} and {@link CheapestPathSearch} reuse
+ * their working state from one search to the next, rather than allocating it for every request.
+ * <p/>
+ * Each thread gets its own state the first time it acquires one and reuses it for all subsequent searches (a hit). If
+ * the thread's state is already in use, e.g. by a search that started another one, a new state is created for the
+ * second search and discarded afterwards (a miss, as is creating the thread's state). States of threads that have
+ * terminated are garbage collected.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class SearchStatePool {
+
+    private final ThreadLocal<SearchState> threadStates = new ThreadLocal<>();
+    private final Set<SearchState> pooledStates = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<SearchState, Boolean>()));
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Acquire the state of the current thread, which must be released by {@link #release(SearchState)} once the search
+     * is done.
+     *
+     * @return state.
+     */
+    SearchState acquire() {
+        SearchState state = threadStates.get();
+
+        if (state == null) {
+            state = new SearchState();
+            threadStates.set(state);
+            pooledStates.add(state);
+            misses.incrementAndGet();
+        } else if (state.isInUse()) {
+            state = new SearchState();
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        state.setInUse(true);
+        return state;
+    }
+
+    /**
+     * Release a state acquired by {@link #acquire()}, so that the next search on the thread can reuse it. Paths
+     * created from the state must not refer to its arrays, as they will be overwritten.
+     *
+     * @param state to release.
+     */
+    void release(SearchState state) {
+        state.trim();
+        state.setInUse(false);
+    }
+
+    /**
+     * Get the number of pooled states, i.e. of live threads that have run a search.
+     *
+     * @return size.
+     */
+    public int getSize() {
+        return pooledStates.size();
+    }
+
+    /**
+     * Get the approximate amount of memory taken by the pooled states.
+     *
+     * @return approximate number of bytes.
+     */
+    public long getMemoryFootprint() {
+        long result = 0;
+        synchronized (pooledStates) {
+            for (SearchState state : pooledStates) {
+                result += state.getMemoryFootprint();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of searches that reused a pooled state.
+     *
+     * @return number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of searches that had to create a new state.
+     *
+     * @return number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the share of searches that reused a pooled state.
+     *
+     * @return hits divided by hits and misses, 0 if there have been no searches.
+     */
+    public double getHitRate() {
+        long currentHits = hits.get();
+        long total = currentHits + misses.get();
+        return total == 0 ? 0 : (double) currentHits / total;
+    }
+
+    /**
+     * Reset the numbers of hits and misses. The pooled states are kept.
+     */
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+}
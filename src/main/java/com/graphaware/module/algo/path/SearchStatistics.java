@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics about a single path search, collected by {@link NumberOfShortestPathsFinder} when passed to
+ * {@link NumberOfShortestPathsFinder#findPaths(PathFinderInput, SearchStatistics)}.
+ * <p/>
+ * The statistics also enforce the search budget, i.e. {@link PathFinderInput#getMaxTime()} and
+ * {@link PathFinderInput#getMaxExpansions()}: once it has run out, recording another expanded relationship marks the
+ * search as truncated and throws {@link SearchBudgetExceededException}, which the path finder catches to return the
+ * paths found so far.
+ * <p/>
+ * Time spent in each {@link SearchPhase} is recorded as well, by the path finder and by the REST API, which also passes
+ * the statistics on to {@link PathFinderMetrics}.
+ * <p/>
+ * This class is not thread-safe, a new instance should be used for every search. Parts of a search running on other
+ * threads record their statistics in {@link #fork()}s, which are merged back once the parts are finished. Forks share
+ * the remaining expansion budget, reserving it in small chunks, so all parts together never exceed it.
+ */
+public class SearchStatistics {
+
+    //reading the clock is much more expensive than counting, so it is only read every this many steps (plus one)
+    private static final long CLOCK_CHECK_MASK = 0xFF;
+
+    //number of steps a fork reserves from the shared budget at once
+    private static final long RESERVED_STEPS = CLOCK_CHECK_MASK + 1;
+
+    private long expandedRelationships;
+    private long followedRelationships;
+
+    //relationships expanded or followed, which is what the budget limits
+    private long steps;
+    private long maxSteps = Long.MAX_VALUE;
+
+    //steps left for forks to reserve, shared by this instance's forks and the forks themselves, null if unlimited
+    private AtomicLong sharedSteps;
+    private long deadline;
+    private boolean hasDeadline;
+    private boolean truncated;
+    private long prunedHubs;
+    private int shortestPathLength = -1;
+    private int depthReached = -1;
+    private long[] pathsPerLength = new long[0];
+
+    private final long[] phaseTimes = new long[SearchPhase.values().length];
+    private final boolean[] phasesStarted = new boolean[SearchPhase.values().length];
+    private final List<Long> longerPathsTimes = new ArrayList<>();
+    private SearchPhase currentPhase;
+    private long phaseStartTime;
+
+    /**
+     * Start enforcing a search budget, counting from now and from the relationships expanded and followed so far.
+     *
+     * @param maxTime       maximum time in ms, {@link Long#MAX_VALUE} for no limit.
+     * @param maxExpansions maximum number of relationships to expand or follow, {@link Long#MAX_VALUE} for no limit.
+     */
+    void startBudget(long maxTime, long maxExpansions) {
+        if (maxTime < 0 || maxExpansions < 0) {
+            throw new IllegalArgumentException("Maximum time and maximum number of expansions must not be negative");
+        }
+
+        maxSteps = maxExpansions == Long.MAX_VALUE ? Long.MAX_VALUE : steps + maxExpansions;
+        hasDeadline = maxTime != Long.MAX_VALUE;
+        if (hasDeadline) {
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxTime);
+        }
+    }
+
+    /**
+     * Record that a relationship has been expanded (i.e. read from the database or a graph snapshot) during the search.
+     *
+     * @throws SearchBudgetExceededException if the search has run out of its budget.
+     */
+    void relationshipExpanded() {
+        expandedRelationships++;
+        step();
+    }
+
+    /**
+     * Record that a relationship expanded earlier has been followed while enumerating paths, which is where searches
+     * caching expansions spend most of their time once the paths get long.
+     *
+     * @throws SearchBudgetExceededException if the search has run out of its budget.
+     */
+    void relationshipFollowed() {
+        followedRelationships++;
+        step();
+    }
+
+    private void step() {
+        if ((++steps > maxSteps && !reserveSteps())
+                || (hasDeadline && (steps & CLOCK_CHECK_MASK) == 0 && System.nanoTime() - deadline > 0)) {
+            truncated = true;
+            throw SearchBudgetExceededException.INSTANCE;
+        }
+    }
+
+    /**
+     * Reserve more steps from the budget shared with other forks.
+     *
+     * @return true iff any steps were left.
+     */
+    private boolean reserveSteps() {
+        if (sharedSteps == null) {
+            return false;
+        }
+
+        while (true) {
+            long left = sharedSteps.get();
+            if (left <= 0) {
+                return false;
+            }
+
+            long reserved = Math.min(left, RESERVED_STEPS);
+            if (sharedSteps.compareAndSet(left, left - reserved)) {
+                maxSteps += reserved;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Create statistics for a part of the search running on another thread. The fork has the same deadline and shares
+     * the remaining expansion budget with all other forks created until the next {@link #merge(SearchStatistics)}.
+     *
+     * @return fork.
+     */
+    SearchStatistics fork() {
+        SearchStatistics fork = new SearchStatistics();
+        if (maxSteps != Long.MAX_VALUE) {
+            if (sharedSteps == null) {
+                sharedSteps = new AtomicLong(Math.max(0, maxSteps - steps));
+            }
+            fork.maxSteps = 0;
+            fork.sharedSteps = sharedSteps;
+        }
+        fork.hasDeadline = hasDeadline;
+        fork.deadline = deadline;
+        return fork;
+    }
+
+    /**
+     * Merge statistics of a finished part of the search. The search is truncated if the part was, in which case the
+     * caller must stop the search, as {@link #relationshipExpanded()} would have. Forks created after merging share a
+     * new budget, i.e. what is left of it once the merged parts are taken into account.
+     *
+     * @param fork created by {@link #fork()}.
+     */
+    void merge(SearchStatistics fork) {
+        sharedSteps = null;
+        expandedRelationships += fork.expandedRelationships;
+        followedRelationships += fork.followedRelationships;
+        steps += fork.steps;
+        prunedHubs += fork.prunedHubs;
+        truncated |= fork.truncated || steps > maxSteps;
+    }
+
+    /**
+     * Record that a hub has been found and pruned from the search, see {@link HubPolicy}.
+     */
+    void hubPruned() {
+        prunedHubs++;
+    }
+
+    /**
+     * Record that the shortest paths have been found.
+     *
+     * @param length of the shortest paths.
+     */
+    void shortestPathsFound(int length) {
+        shortestPathLength = length;
+        depthSearched(length);
+    }
+
+    /**
+     * Record that paths of a length are being searched for.
+     *
+     * @param depth length of the paths.
+     */
+    void depthSearched(int depth) {
+        depthReached = Math.max(depthReached, depth);
+    }
+
+    /**
+     * Record that a path has been found and passed on.
+     *
+     * @param length of the path.
+     */
+    void pathFound(int length) {
+        if (length >= pathsPerLength.length) {
+            pathsPerLength = Arrays.copyOf(pathsPerLength, length + 1);
+        }
+        pathsPerLength[length]++;
+    }
+
+    /**
+     * Start timing a phase, finishing the current one, if any.
+     *
+     * @param phase to start.
+     */
+    void startPhase(SearchPhase phase) {
+        long now = System.nanoTime();
+        finishPhase(now);
+        currentPhase = phase;
+        phasesStarted[phase.ordinal()] = true;
+        phaseStartTime = now;
+    }
+
+    /**
+     * Finish timing the current phase, if any.
+     */
+    void finishPhase() {
+        finishPhase(System.nanoTime());
+    }
+
+    private void finishPhase(long now) {
+        if (currentPhase == null) {
+            return;
+        }
+
+        long time = now - phaseStartTime;
+        phaseTimes[currentPhase.ordinal()] += time;
+        if (SearchPhase.LONGER_PATHS.equals(currentPhase)) {
+            longerPathsTimes.add(time);
+        }
+        currentPhase = null;
+    }
+
+    /**
+     * Get the total time spent in a phase.
+     *
+     * @param phase to get the time of.
+     * @return time in ns, 0 if the phase hasn't happened.
+     */
+    public long getPhaseTime(SearchPhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Has a phase happened, i.e. has it been started at least once?
+     *
+     * @param phase to check.
+     * @return true iff the phase has been started.
+     */
+    public boolean hasPhase(SearchPhase phase) {
+        return phasesStarted[phase.ordinal()];
+    }
+
+    /**
+     * Get the times of the individual {@link SearchPhase#LONGER_PATHS} phases, i.e. of each depth searched after the
+     * shortest paths have been found.
+     *
+     * @return times in ns, in the order the depths have been searched.
+     */
+    public List<Long> getLongerPathsTimes() {
+        return Collections.unmodifiableList(longerPathsTimes);
+    }
+
+    /**
+     * Get the total number of relationships expanded during the search.
+     *
+     * @return number of expanded relationships.
+     */
+    public long getExpandedRelationships() {
+        return expandedRelationships;
+    }
+
+    /**
+     * Get the total number of relationships followed while enumerating paths from expansions cached by the search, see
+     * {@link #relationshipFollowed()}. Relationships followed straight from the database or a graph snapshot are
+     * counted as expanded instead.
+     *
+     * @return number of followed relationships.
+     */
+    public long getFollowedRelationships() {
+        return followedRelationships;
+    }
+
+    /**
+     * Has the search run out of its budget before it was complete? If so, the found paths are only those found before
+     * that happened. They are still in the requested order, but some paths that should be among them may be missing.
+     *
+     * @return true iff the search has been truncated.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the length of the shortest paths found by the search.
+     *
+     * @return length, -1 if no paths have been found, or the search doesn't search for shortest paths first (i.e. when
+     * sorting by {@link SortOrder#COST_ASC}, or looking for the cheapest path).
+     */
+    public int getShortestPathLength() {
+        return shortestPathLength;
+    }
+
+    /**
+     * Get the length of the longest paths searched for, by searches that look for paths one length after the other.
+     *
+     * @return depth, -1 if no paths have been searched for by length.
+     */
+    public int getDepthReached() {
+        return depthReached;
+    }
+
+    /**
+     * Get the number of paths found and passed on by
+     * {@link NumberOfShortestPathsFinder#findPaths(PathFinderInput, SearchStatistics, PathListener)} for each length.
+     *
+     * @return numbers of paths by increasing length, only for lengths of which paths have been found.
+     */
+    public List<PathCount> getPathsPerLength() {
+        List<PathCount> result = new ArrayList<>();
+        for (int length = 0; length < pathsPerLength.length; length++) {
+            if (pathsPerLength[length] > 0) {
+                result.add(new PathCount(length, pathsPerLength[length]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of distinct hubs pruned from the search, see {@link PathFinderInput#getHubDegreeThreshold()}.
+     *
+     * @return number of pruned hubs.
+     */
+    public long getPrunedHubs() {
+        return prunedHubs;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log of path finding requests that took longer than a threshold, with everything needed to reproduce and understand
+ * them: the {@link JsonPathFinderInput}, the time spent in each {@link SearchPhase}, the length of the shortest paths,
+ * the depth reached, the number of expanded relationships, and the number of paths found of each length. Each entry is
+ * logged as a single line of JSON.
+ * <p/>
+ * Requests under the threshold cost a single comparison. Slow ones are handed over to a background thread, which
+ * formats and writes the entries, so that logging never delays a response. At most a given number of entries is logged
+ * per second, and at most {@link #MAX_PENDING_ENTRIES} wait to be written; entries over either limit are dropped, and
+ * their number is included in the next logged entry.
+ * <p/>
+ * {@link #shutdown()} must be called when the log is no longer needed.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class SlowQueryLog {
+
+    private static final Log LOG = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    static final int MAX_PENDING_ENTRIES = 64;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+
+    private final long thresholdNanos;
+    private final int maxEntriesPerSecond;
+    private final ExecutorService executor;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private long secondStartTime = System.nanoTime();
+    private int entriesThisSecond = 0;
+
+    /**
+     * Construct a new log.
+     *
+     * @param threshold           minimum time of a logged request in ms, must not be negative.
+     * @param maxEntriesPerSecond maximum number of entries logged per second, must be positive.
+     */
+    public SlowQueryLog(long threshold, int maxEntriesPerSecond) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative, was " + threshold);
+        }
+
+        if (maxEntriesPerSecond < 1) {
+            throw new IllegalArgumentException("Maximum number of entries per second must be positive, was " + maxEntriesPerSecond);
+        }
+
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.maxEntriesPerSecond = maxEntriesPerSecond;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(MAX_PENDING_ENTRIES), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "GraphAware-SlowQueryLog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Log a request, if it was slow.
+     *
+     * @param endpoint   name of the endpoint that served the request.
+     * @param input      of the request, must not be modified afterwards.
+     * @param statistics of the search, must not be modified afterwards.
+     * @param time       of the request in ns.
+     */
+    public void record(final String endpoint, final JsonPathFinderInput input, final SearchStatistics statistics, final long time) {
+        if (time < thresholdNanos) {
+            return;
+        }
+
+        if (!tryAcquire()) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        final long droppedBefore = dropped.getAndSet(0);
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(format(endpoint, input, statistics, time, droppedBefore));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.addAndGet(droppedBefore + 1);
+        }
+    }
+
+    /**
+     * Stop the background thread. Entries waiting to be written are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Write a formatted entry, on the background thread.
+     *
+     * @param entry single line of JSON.
+     */
+    protected void write(String entry) {
+        LOG.warn("Slow path finding request: " + entry);
+    }
+
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (now - secondStartTime >= TimeUnit.SECONDS.toNanos(1)) {
+            secondStartTime = now;
+            entriesThisSecond = 0;
+        }
+        return ++entriesThisSecond <= maxEntriesPerSecond;
+    }
+
+    static String format(String endpoint, JsonPathFinderInput input, SearchStatistics statistics, long time, long dropped) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("endpoint", endpoint);
+        entry.put("time", TimeUnit.NANOSECONDS.toMicros(time));
+        entry.put("input", input);
+        entry.put("shortestPathLength", statistics.getShortestPathLength());
+        entry.put("depthReached", statistics.getDepthReached());
+        entry.put("expandedRelationships", statistics.getExpandedRelationships());
+        entry.put("truncated", statistics.isTruncated());
+        entry.put("prunedHubs", statistics.getPrunedHubs());
+        entry.put("pathsPerLength", statistics.getPathsPerLength());
+
+        Map<String, Long> phaseTimes = new LinkedHashMap<>();
+        for (SearchPhase phase : SearchPhase.values()) {
+            if (statistics.hasPhase(phase)) {
+                phaseTimes.put(phase.name(), TimeUnit.NANOSECONDS.toMicros(statistics.getPhaseTime(phase)));
+            }
+        }
+        entry.put("phaseTimes", phaseTimes);
+
+        List<Long> longerPathsTimes = new ArrayList<>();
+        for (long longerPathsTime : statistics.getLongerPathsTimes()) {
+            longerPathsTimes.add(TimeUnit.NANOSECONDS.toMicros(longerPathsTime));
+        }
+        entry.put("longerPathsTimes", longerPathsTimes);
+        entry.put("droppedBefore", dropped);
+
+        try {
+            return MAPPER.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            return "Could not format entry: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link PathSearch} expanding from the start node only, like {@link IncrementalPathSearch}, but reading the graph from
+ * a {@link GraphSnapshot} rather than from the database. Nodes and relationships are only represented by their dense
+ * indices and IDs during the search, and collected paths are {@link CompactPath}s, so no Neo4j objects are created.
+ * <p/>
+ * Like {@link IncrementalPathSearch}, it prunes partial paths that can't reach the end node in the hops left, using
+ * distances to the end node found by an incremental backward breadth-first search.
+ * <p/>
+ * The state of both breadth-first searches and the buffers paths are enumerated in are a pooled {@link SearchState},
+ * so that searching allocates nothing but the collected paths, once a search as large has run on the same thread.
+ * <p/>
+ * This class is not thread-safe and must be used within a transaction.
+ */
+class SnapshotPathSearch implements PathSearch {
+
+    private final GraphDatabaseService database;
+    private final GraphSnapshot snapshot;
+    private final Node startNode;
+    private final int start;
+    private final int end;
+
+    //type and direction of each group of relationships to expand, and whether to skip loops, which would otherwise
+    //be expanded twice when expanding both directions
+    private final int[] types;
+    private final int[] directions;
+    private final boolean[] skipLoops;
+
+    private final GraphSnapshot.PropertyValues costs;
+    private final long defaultCost;
+    private final SearchStatistics statistics;
+
+    //hubs, see HubPolicy
+    private final int hubDegreeThreshold;
+    private final HubPolicy hubPolicy;
+
+    //distances, frontiers and hubs are in the state, nodes not in its distances to the end node are farther from the
+    //end node than the backward frontier depth
+    private final SearchState state;
+    private int frontierSize = 0;
+    private int frontierDepth = 0;
+    private int backwardFrontierSize = 0;
+    private int backwardFrontierDepth = 0;
+
+    /**
+     * Construct a new search.
+     *
+     * @param input       path finder input.
+     * @param snapshot    to search.
+     * @param costs       costs of relationships, null if costs aren't needed.
+     * @param defaultCost cost of relationships with undefined costs.
+     * @param statistics  to record expanded relationships in.
+     * @param state       working state, acquired from a {@link SearchStatePool} and not used by any other search.
+     * @throws IllegalArgumentException if the start or end node is not in the snapshot.
+     */
+    SnapshotPathSearch(PathFinderInput input, GraphSnapshot snapshot, GraphSnapshot.PropertyValues costs, long defaultCost, SearchStatistics statistics, SearchState state) {
+        this.database = input.getStart().getGraphDatabase();
+        this.snapshot = snapshot;
+        this.startNode = input.getStart();
+        this.start = snapshot.indexOf(input.getStart().getId());
+        this.end = snapshot.indexOf(input.getEnd().getId());
+        this.costs = costs;
+        this.defaultCost = defaultCost;
+        this.statistics = statistics;
+        this.hubDegreeThreshold = input.getHubDegreeThreshold();
+        this.hubPolicy = input.getHubPolicy();
+        this.state = state;
+
+        if (start < 0 || end < 0) {
+            throw new IllegalArgumentException("Start or end node is not in the graph snapshot, it must be rebuilt");
+        }
+
+        List<Object> typesAndDirections = input.getTypesAndDirections();
+        if (typesAndDirections.isEmpty()) {
+            Direction direction = input.getDirection() == null ? Direction.BOTH : input.getDirection();
+            int[] allTypes = new int[snapshot.getTypeCount()];
+            for (int i = 0; i < allTypes.length; i++) {
+                allTypes[i] = i;
+            }
+            int groups = allTypes.length * (Direction.BOTH.equals(direction) ? 2 : 1);
+            this.types = new int[groups];
+            this.directions = new int[groups];
+            this.skipLoops = new boolean[groups];
+            int group = 0;
+            for (int type : allTypes) {
+                group = addGroups(type, direction, group);
+            }
+        } else {
+            int groups = 0;
+            for (int i = 0; i < typesAndDirections.size(); i += 2) {
+                groups += Direction.BOTH.equals(typesAndDirections.get(i + 1)) ? 2 : 1;
+            }
+            this.types = new int[groups];
+            this.directions = new int[groups];
+            this.skipLoops = new boolean[groups];
+            int group = 0;
+            for (int i = 0; i < typesAndDirections.size(); i += 2) {
+                group = addGroups(snapshot.typeIndex(((RelationshipType) typesAndDirections.get(i)).name()), (Direction) typesAndDirections.get(i + 1), group);
+            }
+        }
+
+        state.resetForSnapshotSearch();
+
+        state.distances.put(start, 0);
+        state.frontier[frontierSize++] = start;
+
+        state.distancesToEnd.put(end, 0);
+        state.backwardFrontier[backwardFrontierSize++] = end;
+    }
+
+    private int addGroups(int type, Direction direction, int group) {
+        //types that didn't exist when the snapshot was built have no relationships and an invalid index
+        int snapshotType = type < 0 ? 0 : type;
+        boolean empty = type < 0;
+
+        if (!Direction.INCOMING.equals(direction)) {
+            types[group] = snapshotType;
+            directions[group] = empty ? -1 : GraphSnapshot.OUTGOING;
+            group++;
+        }
+        if (!Direction.OUTGOING.equals(direction)) {
+            types[group] = snapshotType;
+            directions[group] = empty ? -1 : GraphSnapshot.INCOMING;
+            skipLoops[group] = Direction.BOTH.equals(direction);
+            group++;
+        }
+        return group;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findShortestPaths(int maxDepth, PathCollector collector) {
+        if (start == end) {
+            collector.collect(CompactPath.singular(startNode), 0);
+            return 0;
+        }
+
+        while (!state.distances.containsKey(end) && frontierDepth < maxDepth && frontierSize > 0) {
+            expandFrontier();
+        }
+
+        if (!state.distances.containsKey(end)) {
+            return -1;
+        }
+
+        int length = state.distances.get(end);
+        state.ensurePathCapacity(length);
+        state.pathNodes[0] = start;
+        collectShortestPaths(state.pathRelationships, state.pathNodes, 0, 0, length, collector);
+
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void findPathsWithLength(int length, PathCollector collector) {
+        //the second node of a path is the first one that can be pruned, it must be at most length - 1 hops from the end
+        while (backwardFrontierDepth < length - 1 && backwardFrontierSize > 0) {
+            expandBackwardFrontier();
+        }
+
+        state.ensurePathCapacity(length);
+        state.pathNodes[0] = start;
+
+        collectPathsWithLength(state.pathRelationships, state.pathNodes, 0, 0, length, collector);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNegativeCosts() {
+        return costs != null && costs.hasNegative();
+    }
+
+    /**
+     * Expand all nodes in the current breadth-first search frontier and move the frontier one level deeper.
+     */
+    private void expandFrontier() {
+        int[] frontier = state.frontier;
+        int[] newFrontier = state.nextFrontier;
+        int newFrontierSize = 0;
+
+        for (int f = 0; f < frontierSize; f++) {
+            int node = frontier[f];
+            boolean hub = isHub(node);
+
+            for (int group = 0; group < types.length; group++) {
+                int direction = directions[group];
+                if (direction < 0) {
+                    continue;
+                }
+
+                for (int position = snapshot.from(direction, node, types[group]), to = snapshot.to(direction, node, types[group]); position < to; position++) {
+                    statistics.relationshipExpanded();
+                    int neighbour = snapshot.neighbour(direction, position);
+                    if (canTraverse(hub, neighbour) && !state.distances.containsKey(neighbour)) {
+                        state.distances.put(neighbour, frontierDepth + 1);
+                        if (newFrontierSize == newFrontier.length) {
+                            newFrontier = Arrays.copyOf(newFrontier, newFrontierSize * 2);
+                        }
+                        newFrontier[newFrontierSize++] = neighbour;
+                    }
+                }
+            }
+        }
+
+        state.nextFrontier = frontier;
+        state.frontier = newFrontier;
+        frontierSize = newFrontierSize;
+        frontierDepth++;
+    }
+
+    /**
+     * Expand all nodes in the current backward breadth-first search frontier, following relationships in the opposite
+     * direction, and move the frontier one level deeper. Only relationships the search could follow forwards are
+     * followed.
+     */
+    private void expandBackwardFrontier() {
+        int[] backwardFrontier = state.backwardFrontier;
+        int[] newFrontier = state.nextBackwardFrontier;
+        int newFrontierSize = 0;
+
+        for (int f = 0; f < backwardFrontierSize; f++) {
+            int node = backwardFrontier[f];
+
+            for (int group = 0; group < types.length; group++) {
+                int direction = reverse(directions[group]);
+                if (direction < 0) {
+                    continue;
+                }
+
+                for (int position = snapshot.from(direction, node, types[group]), to = snapshot.to(direction, node, types[group]); position < to; position++) {
+                    statistics.relationshipExpanded();
+                    int neighbour = snapshot.neighbour(direction, position);
+                    if (!state.distancesToEnd.containsKey(neighbour) && canTraverse(isHub(neighbour), node)) {
+                        state.distancesToEnd.put(neighbour, backwardFrontierDepth + 1);
+                        if (newFrontierSize == newFrontier.length) {
+                            newFrontier = Arrays.copyOf(newFrontier, newFrontierSize * 2);
+                        }
+                        newFrontier[newFrontierSize++] = neighbour;
+                    }
+                }
+            }
+        }
+
+        state.nextBackwardFrontier = backwardFrontier;
+        state.backwardFrontier = newFrontier;
+        backwardFrontierSize = newFrontierSize;
+        backwardFrontierDepth++;
+    }
+
+    private int reverse(int direction) {
+        if (direction < 0) {
+            return direction;
+        }
+        return direction == GraphSnapshot.OUTGOING ? GraphSnapshot.INCOMING : GraphSnapshot.OUTGOING;
+    }
+
+    /**
+     * Is a node a hub? The start and end nodes never are.
+     *
+     * @param node index of the node.
+     * @return true iff the node is a hub.
+     */
+    private boolean isHub(int node) {
+        if (hubDegreeThreshold == Integer.MAX_VALUE || node == start || node == end) {
+            return false;
+        }
+
+        int degree = 0;
+        for (int group = 0; group < types.length && degree <= hubDegreeThreshold; group++) {
+            if (directions[group] >= 0) {
+                degree += snapshot.to(directions[group], node, types[group]) - snapshot.from(directions[group], node, types[group]);
+            }
+        }
+
+        if (degree > hubDegreeThreshold && !state.hubs.containsKey(node)) {
+            state.hubs.put(node, 1);
+            statistics.hubPruned();
+        }
+
+        return degree > hubDegreeThreshold;
+    }
+
+    /**
+     * Can the search move from a node to its neighbour, according to the hub policy?
+     *
+     * @param hub       is the node a hub?
+     * @param neighbour index of the neighbour.
+     * @return true iff the neighbour can be traversed.
+     */
+    private boolean canTraverse(boolean hub, int neighbour) {
+        if (hub) {
+            return HubPolicy.TARGET_ONLY.equals(hubPolicy) && neighbour == end;
+        }
+
+        return !HubPolicy.SKIP.equals(hubPolicy) || !isHub(neighbour);
+    }
+
+    private void collectShortestPaths(long[] relationships, int[] nodes, int depth, long cost, int length, PathCollector collector) {
+        int current = nodes[depth];
+
+        if (depth == length) {
+            if (current == end && collector.accepts(cost)) {
+                collector.collect(toPath(relationships, nodes, length), cost);
+            }
+            return;
+        }
+
+        if (!collector.canExtend(cost)) {
+            return;
+        }
+
+        boolean hub = isHub(current);
+
+        for (int group = 0; group < types.length; group++) {
+            int direction = directions[group];
+            if (direction < 0) {
+                continue;
+            }
+
+            for (int position = snapshot.from(direction, current, types[group]), to = snapshot.to(direction, current, types[group]); position < to; position++) {
+                statistics.relationshipExpanded();
+                int neighbour = snapshot.neighbour(direction, position);
+                if (skipLoops[group] && neighbour == current || !canTraverse(hub, neighbour)) {
+                    continue;
+                }
+
+                if (state.distances.get(neighbour) == depth + 1) {
+                    nodes[depth + 1] = neighbour;
+                    relationships[depth] = snapshot.relationshipId(direction, position);
+                    collectShortestPaths(relationships, nodes, depth + 1, PathCostCalculatorImpl.add(cost, cost(direction, position)), length, collector);
+                }
+            }
+        }
+    }
+
+    private void collectPathsWithLength(long[] relationships, int[] nodes, int depth, long cost, int length, PathCollector collector) {
+        int current = nodes[depth];
+
+        if (depth == length) {
+            if (current == end && collector.accepts(cost)) {
+                collector.collect(toPath(relationships, nodes, length), cost);
+            }
+            return;
+        }
+
+        if (!collector.canExtend(cost)) {
+            return;
+        }
+
+        boolean hub = isHub(current);
+
+        for (int group = 0; group < types.length; group++) {
+            int direction = directions[group];
+            if (direction < 0) {
+                continue;
+            }
+
+            for (int position = snapshot.from(direction, current, types[group]), to = snapshot.to(direction, current, types[group]); position < to; position++) {
+                statistics.relationshipExpanded();
+                int neighbour = snapshot.neighbour(direction, position);
+
+                //the end node can only be the last node on the path
+                if (neighbour == end && depth + 1 < length || !canTraverse(hub, neighbour)) {
+                    continue;
+                }
+
+                if (isOnPath(neighbour, nodes, depth)) {
+                    continue;
+                }
+
+                //the rest of the path can't be shorter than the distance to the end node
+                int distanceToEnd = state.distancesToEnd.get(neighbour);
+                if (distanceToEnd < 0 || depth + 1 + distanceToEnd > length) {
+                    continue;
+                }
+
+                nodes[depth + 1] = neighbour;
+                relationships[depth] = snapshot.relationshipId(direction, position);
+                collectPathsWithLength(relationships, nodes, depth + 1, PathCostCalculatorImpl.add(cost, cost(direction, position)), length, collector);
+            }
+        }
+    }
+
+    /**
+     * Is the node on the path? Paths are short, so a linear scan is cheaper than maintaining a set.
+     */
+    private boolean isOnPath(int node, int[] nodes, int depth) {
+        for (int i = 0; i <= depth; i++) {
+            if (nodes[i] == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long cost(int direction, int position) {
+        return costs == null ? 0 : costs.get(direction, position, defaultCost);
+    }
+
+    private CompactPath toPath(long[] relationships, int[] nodes, int length) {
+        long[] nodeIds = new long[length + 1];
+        for (int i = 0; i <= length; i++) {
+            nodeIds[i] = snapshot.nodeId(nodes[i]);
+        }
+        return new CompactPath(database, nodeIds, Arrays.copyOf(relationships, length));
+    }
+}
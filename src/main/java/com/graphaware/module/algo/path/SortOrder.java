@@ -34,5 +34,12 @@ public enum SortOrder {
     /**
      * By increasing length, then by decreasing cost. The cost property must be specified.
      */
-    LENGTH_ASC_THEN_COST_DESC
+    LENGTH_ASC_THEN_COST_DESC,
+
+    /**
+     * By increasing cost, regardless of length. The cost property must be specified and its values must not be negative.
+     * Relationships without the cost property are not traversed, maximum depth is ignored and only paths in which no
+     * node appears more than once are returned. Maximum number of results should be specified.
+     */
+    COST_ASC
 }
\ No newline at end of file
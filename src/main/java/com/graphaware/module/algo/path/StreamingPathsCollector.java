@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link PathCollector} collecting all paths and passing them on to a listener immediately, in the order they are found.
+ * Forks keep their paths in the order they were found, so that paths merged from forks in the order of the parts of the
+ * search they collected are passed on in the same order a single search would have found them.
+ */
+class StreamingPathsCollector implements PathCollector {
+
+    private final PathListener listener;
+    private final List<Path> forkedPaths;
+    private int count = 0;
+
+    /**
+     * Construct a new collector.
+     *
+     * @param listener to pass the paths to.
+     */
+    StreamingPathsCollector(PathListener listener) {
+        this(listener, null);
+    }
+
+    private StreamingPathsCollector(PathListener listener, List<Path> forkedPaths) {
+        this.listener = listener;
+        this.forkedPaths = forkedPaths;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canExtend(long partialCost) {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean accepts(long cost) {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void collect(CompactPath path, long cost) {
+        listener.pathFound(path);
+        count++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int complete() {
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PathCollector fork() {
+        final List<Path> paths = new ArrayList<>();
+
+        return new StreamingPathsCollector(new PathListener() {
+            @Override
+            public void pathFound(Path path) {
+                paths.add(path);
+            }
+        }, paths);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void merge(PathCollector fork) {
+        for (Path path : ((StreamingPathsCollector) fork).forkedPaths) {
+            listener.pathFound(path);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * {@link CompactPath} with a cost, see {@link WeightedPath}.
+ */
+class WeightedCompactPath extends CompactPath implements WeightedPath {
+
+    private final long cost;
+
+    /**
+     * Construct a new path. The arrays are not copied, so they must not be modified afterwards.
+     *
+     * @param database        the path is in.
+     * @param nodeIds         IDs of the nodes on the path, in order, one more than relationships.
+     * @param relationshipIds IDs of the relationships on the path, in order.
+     * @param cost            of the path.
+     */
+    WeightedCompactPath(GraphDatabaseService database, long[] nodeIds, long[] relationshipIds, long cost) {
+        super(database, nodeIds, relationshipIds);
+        this.cost = cost;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCost() {
+        return cost;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) && cost == ((WeightedCompactPath) o).cost;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Long.hashCode(cost);
+    }
+}
@@ -30,6 +30,15 @@ public class ZeroDefaultingRelationshipCostFinder extends PropertyBasedRelations
         super(costPropertyKey);
     }
 
+    /**
+     * Construct a new cost finder reading costs through a cache.
+     *
+     * @param cache to read costs through. Its cost property key is the one that defines cost.
+     */
+    public ZeroDefaultingRelationshipCostFinder(RelationshipCostCache cache) {
+        super(cache);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import com.graphaware.module.algo.generator.Neo4jGraphGenerator;
+import com.graphaware.module.algo.generator.config.BasicGeneratorConfig;
+import com.graphaware.module.algo.generator.config.ErdosRenyiConfig;
+import com.graphaware.module.algo.generator.node.SocialNetworkNodeCreator;
+import com.graphaware.module.algo.generator.relationship.ErdosRenyiRelationshipGenerator;
+import com.graphaware.module.algo.generator.relationship.SocialNetworkRelationshipCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.*;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.neo4j.graphdb.Direction.OUTGOING;
+
+/**
+ * Test for {@link DistanceMatrixFinder}.
+ */
+public class DistanceMatrixFinderTest {
+
+    private GraphDatabaseService database;
+    private final DistanceMatrixFinder finder = new DistanceMatrixFinder();
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(database).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(60, 120)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void distancesShouldBeLengthsOfShortestPaths() {
+        assertDistancesAreLengthsOfShortestPaths(null);
+    }
+
+    @Test
+    public void distancesShouldRespectDirection() {
+        assertDistancesAreLengthsOfShortestPaths(OUTGOING);
+    }
+
+    @Test
+    public void shortestPathsShouldBeReturnedWhenRequested() {
+        try (Transaction tx = database.beginTx()) {
+            List<Node> sources = nodes(0, 10, 20);
+            List<Node> targets = nodes(5, 15, 25, 35, 10);
+
+            DistanceMatrix matrix = finder.findDistances(new DistanceMatrixInput(sources, targets).setMaxDepth(5).setIncludePaths(true));
+
+            for (int row = 0; row < sources.size(); row++) {
+                for (int column = 0; column < targets.size(); column++) {
+                    Path path = matrix.getPath(row, column);
+                    if (matrix.getDistance(row, column) == DistanceMatrix.UNREACHABLE) {
+                        assertNull(path);
+                    } else {
+                        assertEquals(matrix.getDistance(row, column), path.length());
+                        assertEquals(sources.get(row), path.startNode());
+                        assertEquals(targets.get(column), path.endNode());
+                    }
+                }
+            }
+
+            assertEquals(0, matrix.getPath(1, 4).length());
+        }
+    }
+
+    @Test
+    public void eachSourceShouldBeSearchedOnlyOnce() {
+        try (Transaction tx = database.beginTx()) {
+            List<Node> sources = nodes(0, 10, 20);
+            List<Node> targets = nodes(5, 15, 25, 35, 45, 55);
+
+            SearchStatistics matrixStatistics = new SearchStatistics();
+            finder.findDistances(new DistanceMatrixInput(sources, targets).setMaxDepth(4), matrixStatistics);
+
+            SearchStatistics pairStatistics = new SearchStatistics();
+            for (Node source : sources) {
+                for (Node target : targets) {
+                    finder.findDistances(new DistanceMatrixInput(Arrays.asList(source), Arrays.asList(target)).setMaxDepth(4), pairStatistics);
+                }
+            }
+
+            assertTrue(matrixStatistics.getExpandedRelationships() < pairStatistics.getExpandedRelationships());
+        }
+    }
+
+    @Test
+    public void emptyMatrixShouldBeReturnedForNoTargets() {
+        try (Transaction tx = database.beginTx()) {
+            DistanceMatrix matrix = finder.findDistances(new DistanceMatrixInput(nodes(0, 1), new ArrayList<Node>()));
+
+            assertEquals(2, matrix.getRows());
+            assertEquals(0, matrix.getColumns());
+            assertEquals(0, matrix.getRow(1).length);
+        }
+    }
+
+    private void assertDistancesAreLengthsOfShortestPaths(Direction direction) {
+        NumberOfShortestPathsFinder pathFinder = new NumberOfShortestPathsFinder();
+
+        try (Transaction tx = database.beginTx()) {
+            List<Node> sources = nodes(0, 7, 14, 21, 28);
+            List<Node> targets = nodes(3, 9, 27, 33, 41, 59, 7);
+
+            DistanceMatrixInput input = new DistanceMatrixInput(sources, targets).setMaxDepth(4);
+            if (direction != null) {
+                input.setDirection(direction);
+            }
+
+            DistanceMatrix matrix = finder.findDistances(input);
+
+            for (int row = 0; row < sources.size(); row++) {
+                for (int column = 0; column < targets.size(); column++) {
+                    PathFinderInput pathFinderInput = new PathFinderInput(sources.get(row), targets.get(column)).setMaxDepth(4).setMaxResults(1);
+                    if (direction != null) {
+                        pathFinderInput.setDirection(direction);
+                    }
+
+                    List<? extends Path> paths = pathFinder.findPaths(pathFinderInput);
+                    assertEquals(paths.isEmpty() ? DistanceMatrix.UNREACHABLE : paths.get(0).length(), matrix.getDistance(row, column));
+                }
+            }
+        }
+    }
+
+    private List<Node> nodes(long... ids) {
+        List<Node> result = new ArrayList<>();
+        for (long id : ids) {
+            result.add(database.getNodeById(id));
+        }
+        return result;
+    }
+}
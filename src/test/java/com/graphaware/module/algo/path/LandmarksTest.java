@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import com.graphaware.module.algo.generator.Neo4jGraphGenerator;
+import com.graphaware.module.algo.generator.config.BasicGeneratorConfig;
+import com.graphaware.module.algo.generator.config.ErdosRenyiConfig;
+import com.graphaware.module.algo.generator.node.SocialNetworkNodeCreator;
+import com.graphaware.module.algo.generator.relationship.ErdosRenyiRelationshipGenerator;
+import com.graphaware.module.algo.generator.relationship.SocialNetworkRelationshipCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.*;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link Landmarks} and {@link LandmarksProvider}.
+ */
+public class LandmarksTest {
+
+    private static final String COST = "cost";
+    private static final int NODES = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseService database;
+    private LandmarksProvider provider;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(database).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(NODES, 300)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = database.beginTx()) {
+            int cost = 0;
+            for (Relationship relationship : database.getAllRelationships()) {
+                relationship.setProperty(COST, 1 + (cost++ * 7) % 10);
+            }
+            tx.success();
+        }
+
+        provider = new LandmarksProvider(database);
+    }
+
+    @After
+    public void tearDown() {
+        provider.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    public void lowerBoundsShouldNotExceedCheapestCosts() {
+        Landmarks landmarks = provider.rebuild(COST, 4);
+        assertEquals(4, landmarks.getLandmarkIds().length);
+
+        NumberOfShortestPathsFinder pathFinder = new NumberOfShortestPathsFinder();
+
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < NODES; i += 7) {
+                for (int j = 1; j < NODES; j += 11) {
+                    List<? extends Path> paths = pathFinder.findPaths(cheapestPathInput(i, j, 1));
+                    if (paths.isEmpty()) {
+                        assertEquals(Long.MAX_VALUE, landmarks.lowerBound(i, j));
+                    } else {
+                        assertTrue(landmarks.lowerBound(i, j) <= ((WeightedPath) paths.get(0)).getCost());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void landmarksShouldNotChangeCheapestPaths() {
+        provider.rebuild(COST, 8);
+
+        NumberOfShortestPathsFinder without = new NumberOfShortestPathsFinder();
+        NumberOfShortestPathsFinder with = new NumberOfShortestPathsFinder(null, null, provider);
+
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < NODES; i += 7) {
+                for (int j = 1; j < NODES; j += 11) {
+                    assertEquals(costs(without.findPaths(cheapestPathInput(i, j, 5))), costs(with.findPaths(cheapestPathInput(i, j, 5))));
+                    assertEquals(costs(without.findPaths(cheapestPathInput(i, j, 5).setDirection(Direction.OUTGOING))),
+                            costs(with.findPaths(cheapestPathInput(i, j, 5).setDirection(Direction.OUTGOING))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void landmarksShouldReduceExpandedRelationships() {
+        provider.rebuild(COST, 8);
+
+        NumberOfShortestPathsFinder without = new NumberOfShortestPathsFinder();
+        NumberOfShortestPathsFinder with = new NumberOfShortestPathsFinder(null, null, provider);
+        long expandedWithout = 0, expandedWith = 0;
+
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < NODES; i += 7) {
+                for (int j = 1; j < NODES; j += 11) {
+                    SearchStatistics statistics = new SearchStatistics();
+                    without.findPaths(cheapestPathInput(i, j, 1), statistics);
+                    expandedWithout += statistics.getExpandedRelationships();
+
+                    statistics = new SearchStatistics();
+                    with.findPaths(cheapestPathInput(i, j, 1), statistics);
+                    expandedWith += statistics.getExpandedRelationships();
+                }
+            }
+        }
+
+        assertTrue(expandedWith < expandedWithout);
+
+        LandmarksEvaluation evaluation = provider.getEvaluation(COST);
+        assertTrue(evaluation.getSamples() > 0);
+        assertTrue(evaluation.getExpandedRelationshipsWith() <= evaluation.getExpandedRelationshipsWithout());
+    }
+
+    @Test
+    public void landmarksShouldBeInvalidatedByChanges() {
+        provider.rebuild(COST, 4);
+
+        try (Transaction tx = database.beginTx()) {
+            database.getRelationshipById(0).setProperty("other", 1);
+            tx.success();
+        }
+
+        assertNotNull(provider.get(COST));
+
+        try (Transaction tx = database.beginTx()) {
+            database.getRelationshipById(0).setProperty(COST, 3);
+            tx.success();
+        }
+
+        assertNull(provider.get(COST));
+        assertNull(provider.getEvaluation(COST));
+
+        provider.rebuild(COST, 4);
+
+        try (Transaction tx = database.beginTx()) {
+            database.getNodeById(0).createRelationshipTo(database.getNodeById(1), DynamicRelationshipType.withName("NEW"));
+            tx.success();
+        }
+
+        assertTrue(provider.getAll().isEmpty());
+    }
+
+    @Test
+    public void landmarksShouldBeReadFromDirectoryWhileValid() throws Exception {
+        File directory = folder.newFolder();
+
+        LandmarksProvider writer = new LandmarksProvider(database, directory);
+        Landmarks written = writer.rebuild(COST, 4);
+        writer.shutdown();
+
+        LandmarksProvider reader = new LandmarksProvider(database, directory);
+        Landmarks read = reader.get(COST);
+        reader.shutdown();
+
+        assertNotNull(read);
+        assertArrayEquals(written.getLandmarkIds(), read.getLandmarkIds());
+        assertEquals(written.getLastTransactionId(), read.getLastTransactionId());
+        for (int i = 0; i < NODES; i += 3) {
+            for (int j = 0; j < NODES; j += 5) {
+                assertEquals(written.lowerBound(i, j), read.lowerBound(i, j));
+            }
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            database.getRelationshipById(0).setProperty(COST, 3);
+            tx.success();
+        }
+
+        reader = new LandmarksProvider(database, directory);
+        assertNull(reader.get(COST));
+        reader.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCostsShouldBeRejected() {
+        try (Transaction tx = database.beginTx()) {
+            database.getRelationshipById(0).setProperty(COST, -1);
+            tx.success();
+        }
+
+        provider.rebuild(COST, 4);
+    }
+
+    private PathFinderInput cheapestPathInput(long start, long end, int maxResults) {
+        return new PathFinderInput(database.getNodeById(start), database.getNodeById(end))
+                .setCostProperty(COST)
+                .setSortOrder(SortOrder.COST_ASC)
+                .setMaxResults(maxResults);
+    }
+
+    private List<Long> costs(List<? extends Path> paths) {
+        List<Long> result = new ArrayList<>();
+        for (Path path : paths) {
+            result.add(((WeightedPath) path).getCost());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class NodeIdSetTest {
+
+    @Test
+    public void setShouldContainAddedIds() {
+        NodeIdSet set = new NodeIdSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        //some chunks stay sparse, others become dense
+        for (int i = 0; i < 100000; i++) {
+            long id = random.nextBoolean() ? random.nextInt(1 << 18) : random.nextLong() & Long.MAX_VALUE;
+            assertEquals(expected.add(id), set.add(id));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long id : expected) {
+            assertTrue(set.contains(id));
+        }
+        for (int i = 0; i < 100000; i++) {
+            long id = random.nextBoolean() ? random.nextInt(1 << 18) : random.nextLong() & Long.MAX_VALUE;
+            assertEquals(expected.contains(id), set.contains(id));
+        }
+    }
+
+    @Test
+    public void setShouldNotContainRemovedIds() {
+        NodeIdSet set = new NodeIdSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        //the first chunk becomes dense, the others stay sparse
+        for (int i = 0; i < 100000; i++) {
+            long id = random.nextBoolean() ? random.nextInt(1 << 16) : random.nextInt(1 << 24);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), set.remove(id));
+            } else {
+                assertEquals(expected.add(id), set.add(id));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long id = 0; id < 1 << 24; id += 7) {
+            assertEquals(expected.contains(id), set.contains(id));
+        }
+
+        for (long id : expected) {
+            assertTrue(set.remove(id));
+        }
+        assertEquals(0, set.size());
+        assertFalse(set.contains(expected.iterator().next()));
+        assertFalse(set.remove(1L << 40));
+    }
+
+    @Test
+    public void denseSetShouldTakeABitPerId() {
+        NodeIdSet set = new NodeIdSet();
+        for (long id = 0; id < 1000000; id++) {
+            set.add(id);
+        }
+
+        assertEquals(1000000, set.size());
+        assertTrue(set.getMemoryFootprint() < 1000000 / 8 + 10000);
+    }
+
+    @Test
+    public void sparseSetShouldTakeFewBytesPerId() {
+        NodeIdSet set = new NodeIdSet();
+        for (long id = 0; id < 100000; id++) {
+            set.add(id * 100);
+        }
+
+        assertEquals(100000, set.size());
+        assertTrue(set.getMemoryFootprint() < 100000 * 4);
+    }
+
+    @Test
+    public void distancesShouldBeKeptPerLevel() {
+        NodeDistances distances = new NodeDistances();
+        distances.put(5, 0);
+        distances.put(100000, 1);
+        distances.put(7, 1);
+        distances.put(1L << 40, 3);
+
+        assertEquals(4, distances.size());
+        assertEquals(0, distances.get(5));
+        assertEquals(1, distances.get(7));
+        assertEquals(3, distances.get(1L << 40));
+        assertEquals(-1, distances.get(6));
+
+        assertTrue(distances.containsKey(100000));
+        assertFalse(distances.containsKey(6));
+
+        assertTrue(distances.isAt(7, 1));
+        assertFalse(distances.isAt(7, 0));
+        assertFalse(distances.isAt(7, 5));
+
+        assertTrue(distances.isWithin(1L << 40, 3));
+        assertFalse(distances.isWithin(1L << 40, 2));
+        assertFalse(distances.isWithin(5, -1));
+        assertFalse(distances.isWithin(6, 10));
+    }
+}
@@ -160,6 +160,144 @@ public class NumberOfShortestPathsFinderApiTest extends GraphAwareIntegrationTes
         post(jsonAsString("invalidInput4"), HttpStatus.NOT_FOUND_404);
     }
 
+    @Test
+    public void streamedOutputShouldBeTheSameAsRegularOutput() throws JSONException {
+        assertEquals(postToStream(jsonAsString("minimalInput"), HttpStatus.OK_200), jsonAsString("minimalOutput"), false);
+        assertEquals(postToStream(jsonAsString("requestNodePropsInput"), HttpStatus.OK_200), jsonAsString("requestNodePropsOutput"), false);
+        assertEquals(postToStream(jsonAsString("requestRelationshipPropsInput"), HttpStatus.OK_200), jsonAsString("requestRelationshipPropsOutput"), false);
+        assertEquals(postToStream(jsonAsString("maxResultsInput"), HttpStatus.OK_200), jsonAsString("maxResultsOutput"), false);
+        assertEquals(postToStream(jsonAsString("costPropertyInput"), HttpStatus.OK_200), jsonAsString("costPropertyOutput"), false);
+        assertEquals(postToStream(jsonAsString("typesAndDirectionsInput"), HttpStatus.OK_200), jsonAsString("typesAndDirectionsOutput"), false);
+    }
+
+    @Test
+    public void pathsShouldBeCountedByLength() throws JSONException {
+        assertEquals("[{\"length\": 2, \"count\": 1}, {\"length\": 3, \"count\": 3}]",
+                httpClient.post(getUrl() + "/count", jsonAsString("minimalInput"), HttpStatus.OK_200), true);
+        assertEquals("[{\"length\": 2, \"count\": 1}]",
+                httpClient.post(getUrl() + "/count", "{\"startNode\": 0, \"endNode\": 2, \"maxResults\": 1}", HttpStatus.OK_200), true);
+        assertEquals("[]", httpClient.post(getUrl() + "/count", "{\"startNode\": 0, \"endNode\": 2, \"maxDepth\": 1}", HttpStatus.OK_200), true);
+        httpClient.post(getUrl() + "/count", "{\"startNode\": 0, \"endNode\": 20}", HttpStatus.NOT_FOUND_404);
+    }
+
+    @Test
+    public void cheapestPathShouldBeFound() throws JSONException {
+        assertEquals("[{\"cost\": 3, \"nodes\": [{\"id\": 0}, {\"id\": 3}, {\"id\": 1}, {\"id\": 2}]}]",
+                httpClient.post(baseUrl() + "/algorithm/path/cheapestPath", "{\"startNode\": 0, \"endNode\": 2, \"costProperty\": \"cost\"}", HttpStatus.OK_200), false);
+        assertEquals("[]", httpClient.post(baseUrl() + "/algorithm/path/cheapestPath", "{\"startNode\": 0, \"endNode\": 6, \"costProperty\": \"cost\", \"direction\": \"INCOMING\"}", HttpStatus.OK_200), true);
+        httpClient.post(baseUrl() + "/algorithm/path/cheapestPath", "{\"startNode\": 0, \"endNode\": 2}", HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void invalidInputShouldCause400ErrorWhenStreaming() {
+        postToStream(jsonAsString("invalidInput1"), HttpStatus.BAD_REQUEST_400);
+        postToStream(jsonAsString("invalidInput3"), HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void nonExistingNodeShouldResultIn404WhenStreaming() {
+        postToStream(jsonAsString("invalidInput4"), HttpStatus.NOT_FOUND_404);
+    }
+
+    @Test
+    public void batchOutputShouldContainOutputOfEachInputInOrder() throws JSONException {
+        String input = "{\"inputs\": [" + jsonAsString("minimalInput") + "," + jsonAsString("costPropertyInput") + "," + jsonAsString("minimalInput") + "]}";
+        String output = "[" + jsonAsString("minimalOutput") + "," + jsonAsString("costPropertyOutput") + "," + jsonAsString("minimalOutput") + "]";
+
+        assertEquals(postToBatch(input, HttpStatus.OK_200), output, false);
+    }
+
+    @Test
+    public void batchWithSharedSettingsShouldProduceSameOutput() throws JSONException {
+        String input = "{\"settings\": {\"costProperty\": \"cost\", \"sortOrder\": \"LENGTH_ASC_THEN_COST_DESC\"}, " +
+                "\"pairs\": [{\"startNode\": 0, \"endNode\": 2}, {\"startNode\": 0, \"endNode\": 2}], \"parallelism\": 2}";
+        String output = "[" + jsonAsString("costPropertyOutput") + "," + jsonAsString("costPropertyOutput") + "]";
+
+        assertEquals(postToBatch(input, HttpStatus.OK_200), output, false);
+    }
+
+    @Test
+    public void invalidBatchShouldCause400Error() {
+        postToBatch("{\"inputs\": [" + jsonAsString("minimalInput") + "," + jsonAsString("invalidInput1") + "]}", HttpStatus.BAD_REQUEST_400);
+        postToBatch("{\"pairs\": [{\"startNode\": 0, \"endNode\": 2}]}", HttpStatus.BAD_REQUEST_400);
+        postToBatch("{}", HttpStatus.BAD_REQUEST_400);
+    }
+
+    @Test
+    public void nonExistingNodeInBatchShouldResultIn404() {
+        postToBatch("{\"inputs\": [" + jsonAsString("minimalInput") + "," + jsonAsString("invalidInput4") + "]}", HttpStatus.NOT_FOUND_404);
+    }
+
+    @Test
+    public void distanceMatrixShouldBeReturned() throws JSONException {
+        assertEquals(httpClient.post(baseUrl() + "/algorithm/path/distanceMatrix", "{\"sources\": [0, 2], \"targets\": [2, 6, 0]}", HttpStatus.OK_200),
+                "{\"sources\": [0, 2], \"targets\": [2, 6, 0], \"distances\": [[2, 2, 0], [0, 1, 2]]}", false);
+
+        assertEquals(httpClient.post(baseUrl() + "/algorithm/path/distanceMatrix", "{\"sources\": [0, 2], \"targets\": [2, 6, 0], \"direction\": \"OUTGOING\"}", HttpStatus.OK_200),
+                "{\"sources\": [0, 2], \"targets\": [2, 6, 0], \"distances\": [[2, 2, 0], [0, 1, -1]]}", false);
+    }
+
+    @Test
+    public void invalidDistanceMatrixInputShouldCause400Error() {
+        httpClient.post(baseUrl() + "/algorithm/path/distanceMatrix", "{\"sources\": [0]}", HttpStatus.BAD_REQUEST_400);
+        httpClient.post(baseUrl() + "/algorithm/path/distanceMatrix", "{\"sources\": [0], \"targets\": [10]}", HttpStatus.NOT_FOUND_404);
+    }
+
+    @Test
+    public void searchBudgetShouldTruncateResults() throws JSONException {
+        assertEquals(post("{\"startNode\": 0, \"endNode\": 2, \"maxExpansions\": 0}"), "[]", true);
+        assertEquals(post(jsonAsString("minimalInput").replace("}", ", \"maxExpansions\": 1000, \"maxTime\": 10000}")), jsonAsString("minimalOutput"), false);
+    }
+
+    @Test
+    public void snapshotShouldBeBuiltAndSearched() throws JSONException {
+        httpClient.get(baseUrl() + "/algorithm/path/snapshot", HttpStatus.NOT_FOUND_404);
+        post("{\"startNode\": 0, \"endNode\": 2, \"searchEngine\": \"SNAPSHOT\"}", HttpStatus.BAD_REQUEST_400);
+
+        assertEquals("{\"nodeCount\": 7, \"relationshipCount\": 9, \"typeCount\": 2, \"costProperties\": [\"cost\"]}",
+                httpClient.post(baseUrl() + "/algorithm/path/snapshot", "{\"costProperties\": [\"cost\"]}", HttpStatus.OK_200), false);
+        assertEquals("{\"nodeCount\": 7, \"relationshipCount\": 9, \"typeCount\": 2, \"costProperties\": [\"cost\"]}",
+                httpClient.get(baseUrl() + "/algorithm/path/snapshot", HttpStatus.OK_200), false);
+
+        String input = jsonAsString("costPropertyInput").replace("}", ", \"searchEngine\": \"SNAPSHOT\"}");
+        assertEquals(post(input), jsonAsString("costPropertyOutput"), false);
+    }
+
+    @Test
+    public void landmarksShouldBeBuiltAndUsed() throws JSONException {
+        assertEquals("[]", httpClient.get(baseUrl() + "/algorithm/path/landmarks", HttpStatus.OK_200), false);
+        String input = jsonAsString("costPropertyInput").replace("LENGTH_ASC_THEN_COST_DESC", "COST_ASC");
+        String expected = post(input);
+        httpClient.post(baseUrl() + "/algorithm/path/landmarks", "{\"count\": 2}", HttpStatus.BAD_REQUEST_400);
+
+        assertEquals("{\"costProperty\": \"cost\"}",
+                httpClient.post(baseUrl() + "/algorithm/path/landmarks", "{\"costProperty\": \"cost\", \"count\": 2}", HttpStatus.OK_200), false);
+        assertEquals("[{\"costProperty\": \"cost\"}]",
+                httpClient.get(baseUrl() + "/algorithm/path/landmarks", HttpStatus.OK_200), false);
+
+        assertEquals(expected, post(input), true);
+    }
+
+    @Test
+    public void statsShouldBeRecorded() throws JSONException {
+        assertEquals("{\"requests\": 0, \"requestTimes\": {\"count\": 0}, \"returnedPaths\": {\"count\": 0}}",
+                httpClient.get(baseUrl() + "/algorithm/path/stats", HttpStatus.OK_200), false);
+
+        post(jsonAsString("minimalInput"));
+        postToStream(jsonAsString("costPropertyInput"), HttpStatus.OK_200);
+        post("{\"startNode\": 0, \"endNode\": 2, \"maxDepth\": 1}");
+
+        assertEquals("{\"requests\": 3, \"requestTimes\": {\"count\": 3}, \"returnedPaths\": {\"count\": 3}, " +
+                        "\"phaseTimes\": {\"INPUT_RESOLUTION\": {\"count\": 3}, \"SHORTEST_PATHS\": {\"count\": 3}, \"COST_CALCULATION\": {\"count\": 0}, \"SERIALIZATION\": {\"count\": 3}}}",
+                httpClient.get(baseUrl() + "/algorithm/path/stats", HttpStatus.OK_200), false);
+        httpClient.post(getUrl() + "/count", jsonAsString("minimalInput"), HttpStatus.OK_200);
+        httpClient.post(baseUrl() + "/algorithm/path/cheapestPath", "{\"startNode\": 0, \"endNode\": 2, \"costProperty\": \"cost\"}", HttpStatus.OK_200);
+
+        assertEquals("{\"requests\": 5, \"requestTimes\": {\"count\": 5}, \"returnedPaths\": {\"count\": 5}, " +
+                        "\"phaseTimes\": {\"INPUT_RESOLUTION\": {\"count\": 5}, \"SERIALIZATION\": {\"count\": 4}}}",
+                httpClient.get(baseUrl() + "/algorithm/path/stats", HttpStatus.OK_200), false);
+    }
+
     protected final String post(String json) {
         return post(json, HttpStatus.OK_200);
     }
@@ -168,6 +306,14 @@ public class NumberOfShortestPathsFinderApiTest extends GraphAwareIntegrationTes
         return httpClient.post(getUrl(), json, expectedStatus);
     }
 
+    protected final String postToStream(String json, int expectedStatus) {
+        return httpClient.post(getUrl() + "/stream", json, expectedStatus);
+    }
+
+    protected final String postToBatch(String json, int expectedStatus) {
+        return httpClient.post(getUrl() + "/batch", json, expectedStatus);
+    }
+
     private String getUrl() {
         return baseUrl() + "/algorithm/path/increasinglyLongerShortestPath";
     }
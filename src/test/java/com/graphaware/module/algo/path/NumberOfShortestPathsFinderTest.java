@@ -19,13 +19,38 @@ package com.graphaware.module.algo.path;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import com.graphaware.module.algo.generator.Neo4jGraphGenerator;
+import com.graphaware.module.algo.generator.config.BasicGeneratorConfig;
+import com.graphaware.module.algo.generator.config.ErdosRenyiConfig;
+import com.graphaware.module.algo.generator.node.SocialNetworkNodeCreator;
+import com.graphaware.module.algo.generator.relationship.ErdosRenyiRelationshipGenerator;
+import com.graphaware.module.algo.generator.relationship.SocialNetworkRelationshipCreator;
 import org.neo4j.graphdb.*;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.neo4j.graphdb.Direction.*;
 
 /**
@@ -83,6 +108,7 @@ public class NumberOfShortestPathsFinderTest {
 
     @After
     public void tearDown() {
+        pathFinder.shutdown();
         database.shutdown();
     }
 
@@ -258,6 +284,28 @@ public class NumberOfShortestPathsFinderTest {
         }
     }
 
+    @Test
+    public void noPathsShouldBeFoundWhenOrderingByCostWithZeroMaxResults() {
+        try (Transaction tx = database.beginTx()) {
+            for (SearchEngine engine : SearchEngine.values()) {
+                if (SearchEngine.SNAPSHOT.equals(engine)) {
+                    continue;
+                }
+
+                for (SortOrder sortOrder : new SortOrder[]{SortOrder.LENGTH_ASC_THEN_COST_ASC, SortOrder.LENGTH_ASC_THEN_COST_DESC}) {
+                    PathFinderInput input = new PathFinderInput(one, three)
+                            .setMaxDepth(3)
+                            .setMaxResults(0)
+                            .setCostProperty(COST)
+                            .setSortOrder(sortOrder)
+                            .setSearchEngine(engine);
+
+                    assertTrue(pathFinder.findPaths(input).isEmpty());
+                }
+            }
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void costPropertyMustBeSetWhenOrderingByCost() {
         PathFinderInput input = new PathFinderInput(one, three)
@@ -330,4 +378,1161 @@ public class NumberOfShortestPathsFinderTest {
             assertEquals(2, ((WeightedPath) paths.get(3)).getCost());
         }
     }
+
+    @Test
+    public void shouldLimitPathsWhenOrderingByCost() {
+        PathFinderInput input = new PathFinderInput(one, three)
+                .setMaxResults(3)
+                .setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC)
+                .setCostProperty(COST);
+
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> paths = pathFinder.findPaths(input);
+
+            assertEquals(3, paths.size());
+            assertEquals(6, ((WeightedPath) paths.get(0)).getCost());
+            assertEquals(3, ((WeightedPath) paths.get(1)).getCost());
+            assertEquals(4, ((WeightedPath) paths.get(2)).getCost());
+        }
+    }
+
+    @Test
+    public void shouldLimitPathsWhenOrderingByCost2() {
+        PathFinderInput input = new PathFinderInput(one, three)
+                .setMaxResults(2)
+                .setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_DESC)
+                .setCostProperty(COST);
+
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> paths = pathFinder.findPaths(input);
+
+            assertEquals(2, paths.size());
+            assertEquals(6, ((WeightedPath) paths.get(0)).getCost());
+            assertEquals(4, ((WeightedPath) paths.get(1)).getCost());
+        }
+    }
+
+    @Test
+    public void negativeCostsShouldNotPreventFindingCheapestPaths() {
+        try (Transaction tx = database.beginTx()) {
+            for (Relationship relationship : three.getRelationships()) {
+                if (relationship.getOtherNode(three).getId() == 7) {
+                    relationship.setProperty(COST, -10);
+                }
+            }
+            database.getNodeById(6).getSingleRelationship(RelTypes.R1, OUTGOING).setProperty(COST, 1);
+            database.getNodeById(6).getSingleRelationship(RelTypes.R1, INCOMING).setProperty(COST, 10);
+
+            for (SearchEngine searchEngine : SearchEngine.values()) {
+                //a snapshot would not see the uncommitted changes
+                if (SearchEngine.SNAPSHOT.equals(searchEngine)) {
+                    continue;
+                }
+
+                PathFinderInput input = new PathFinderInput(one, three)
+                        .setMaxResults(2)
+                        .setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC)
+                        .setCostProperty(COST)
+                        .setSearchEngine(searchEngine);
+
+                List<? extends Path> paths = pathFinder.findPaths(input);
+
+                assertEquals(2, paths.size());
+                assertEquals(6, ((WeightedPath) paths.get(0)).getCost());
+                assertEquals(1, ((WeightedPath) paths.get(1)).getCost());
+            }
+        }
+    }
+
+    @Test
+    public void searchEnginesShouldFindSamePathsWhenOrderingByCost() {
+        try (Transaction tx = database.beginTx()) {
+            for (Node start : database.getAllNodes()) {
+                for (Node end : database.getAllNodes()) {
+                    for (int maxResults = 1; maxResults <= 5; maxResults++) {
+                        assertSameCosts(new PathFinderInput(start, end).setMaxDepth(4).setMaxResults(maxResults).setCostProperty(COST).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC));
+                        assertSameCosts(new PathFinderInput(start, end).setMaxDepth(4).setMaxResults(maxResults).setCostProperty(COST).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_DESC));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cachedCostsShouldNotChangeResults() {
+        RelationshipCostCaches caches = new RelationshipCostCaches(database, 4);
+        NumberOfShortestPathsFinder cachingPathFinder = new NumberOfShortestPathsFinder(caches);
+
+        try (Transaction tx = database.beginTx()) {
+            for (Node start : database.getAllNodes()) {
+                for (Node end : database.getAllNodes()) {
+                    for (SortOrder sortOrder : SortOrder.values()) {
+                        PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(4).setMaxResults(3).setCostProperty(COST).setSortOrder(sortOrder);
+                        assertEquals(pathsAsStrings(pathFinder.findPaths(input)), pathsAsStrings(cachingPathFinder.findPaths(input)));
+                    }
+                }
+            }
+
+            assertTrue(caches.forProperty(COST).getHits() > 0);
+        } finally {
+            caches.shutdown();
+        }
+    }
+
+    @Test
+    public void cheapestPathsShouldBeReturnedRegardlessOfLength() {
+        PathFinderInput input = new PathFinderInput(one, three)
+                .setMaxResults(10)
+                .setSortOrder(SortOrder.COST_ASC)
+                .setCostProperty(COST);
+
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> paths = pathFinder.findPaths(input);
+
+            assertEquals(4, paths.size());
+
+            assertEquals(3, paths.get(0).length());
+            assertEquals(3, ((WeightedPath) paths.get(0)).getCost());
+
+            assertEquals(3, paths.get(1).length());
+            assertEquals(4, ((WeightedPath) paths.get(1)).getCost());
+
+            assertEquals(2, paths.get(2).length());
+            assertEquals(6, ((WeightedPath) paths.get(2)).getCost());
+
+            assertEquals(4, paths.get(3).length());
+            assertEquals(9, ((WeightedPath) paths.get(3)).getCost());
+        }
+    }
+
+    @Test
+    public void cheapestPathShouldBeFoundRegardlessOfLength() {
+        try (Transaction tx = database.beginTx()) {
+            WeightedPath path = pathFinder.findCheapestPath(new PathFinderInput(one, three).setCostProperty(COST), new SearchStatistics());
+
+            assertEquals(3, path.length());
+            assertEquals(3, path.getCost());
+            assertEquals(one, path.startNode());
+            assertEquals(three, path.endNode());
+
+            path = pathFinder.findCheapestPath(new PathFinderInput(one, three).setCostProperty(COST).setDirection(OUTGOING), new SearchStatistics());
+
+            assertEquals(3, path.length());
+            assertEquals(4, path.getCost());
+
+            path = pathFinder.findCheapestPath(new PathFinderInput(one, one).setCostProperty(COST), new SearchStatistics());
+
+            assertEquals(0, path.length());
+            assertEquals(0, path.getCost());
+
+            //the relationship to 7 without cost is not traversed
+            path = pathFinder.findCheapestPath(new PathFinderInput(one, database.getNodeById(7)).setCostProperty(COST), new SearchStatistics());
+
+            assertEquals(4, path.length());
+            assertEquals(4, path.getCost());
+
+            assertNull(pathFinder.findCheapestPath(new PathFinderInput(one, three).setCostProperty(COST).addType(DynamicRelationshipType.withName("R3")), new SearchStatistics()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void costPropertyMustBeSetWhenFindingCheapestPath() {
+        try (Transaction tx = database.beginTx()) {
+            pathFinder.findCheapestPath(new PathFinderInput(one, three), new SearchStatistics());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCostsShouldNotBeAllowedWhenFindingCheapestPath() {
+        try (Transaction tx = database.beginTx()) {
+            one.getSingleRelationship(RelTypes.R2, OUTGOING).setProperty(COST, -1);
+
+            pathFinder.findCheapestPath(new PathFinderInput(one, three).setCostProperty(COST), new SearchStatistics());
+        }
+    }
+
+    @Test
+    public void cheapestPathShouldBeAsCheapAsFirstOfCheapestPathsInRandomGraph() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(200, 600)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            int cost = 0;
+            for (Relationship relationship : randomDatabase.getAllRelationships()) {
+                relationship.setProperty(COST, (cost++ * 37) % 100);
+            }
+
+            for (int i = 0; i < 200; i += 17) {
+                for (int j = 1; j < 200; j += 23) {
+                    PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(i), randomDatabase.getNodeById(j))
+                            .setCostProperty(COST).setMaxResults(1).setSortOrder(SortOrder.COST_ASC);
+
+                    List<? extends Path> expected = pathFinder.findPaths(input);
+                    WeightedPath actual = pathFinder.findCheapestPath(input, new SearchStatistics());
+
+                    if (expected.isEmpty()) {
+                        assertNull(actual);
+                        continue;
+                    }
+
+                    assertEquals(((WeightedPath) expected.get(0)).getCost(), actual.getCost());
+                    assertEquals(actual.getCost(), new PathCostCalculatorImpl(new MaxLongDefaultingRelationshipCostFinder(COST)).calculateCost(actual));
+                    assertEquals(randomDatabase.getNodeById(i), actual.startNode());
+                    assertEquals(randomDatabase.getNodeById(j), actual.endNode());
+                }
+            }
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void cheapestPathsShouldBeLimited() {
+        PathFinderInput input = new PathFinderInput(one, three)
+                .setMaxResults(2)
+                .setSortOrder(SortOrder.COST_ASC)
+                .setCostProperty(COST)
+                .setDirection(OUTGOING);
+
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> paths = pathFinder.findPaths(input);
+
+            assertEquals(2, paths.size());
+            assertEquals(4, ((WeightedPath) paths.get(0)).getCost());
+            assertEquals(6, ((WeightedPath) paths.get(1)).getCost());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void costPropertyMustBeSetWhenOrderingByCostOnly() {
+        PathFinderInput input = new PathFinderInput(one, three)
+                .setMaxResults(10)
+                .setSortOrder(SortOrder.COST_ASC);
+
+        try (Transaction tx = database.beginTx()) {
+            pathFinder.findPaths(input);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCostsShouldNotBeAllowedWhenOrderingByCostOnly() {
+        try (Transaction tx = database.beginTx()) {
+            one.getSingleRelationship(RelTypes.R2, OUTGOING).setProperty(COST, -1);
+
+            pathFinder.findPaths(new PathFinderInput(one, three)
+                    .setMaxResults(10)
+                    .setSortOrder(SortOrder.COST_ASC)
+                    .setCostProperty(COST));
+        }
+    }
+
+    @Test
+    public void cheapestPathsShouldBeTheSameAsSortedPathsOfAllLengthsInRandomGraph() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(12, 24)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            int cost = 0;
+            for (Relationship relationship : randomDatabase.getAllRelationships()) {
+                relationship.setProperty(COST, (cost++ * 7) % 5);
+            }
+
+            for (int i = 0; i < 12; i += 3) {
+                for (int j = 1; j < 12; j += 4) {
+                    PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(i), randomDatabase.getNodeById(j)).setCostProperty(COST);
+
+                    List<Long> allCosts = new ArrayList<>();
+                    for (Path path : pathFinder.findPaths(input.setMaxDepth(12).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC))) {
+                        allCosts.add(((WeightedPath) path).getCost());
+                    }
+                    Collections.sort(allCosts);
+
+                    List<Long> cheapestCosts = new ArrayList<>();
+                    for (Path path : pathFinder.findPaths(input.setMaxResults(20).setSortOrder(SortOrder.COST_ASC))) {
+                        cheapestCosts.add(((WeightedPath) path).getCost());
+                    }
+
+                    assertEquals(allCosts.subList(0, Math.min(20, allCosts.size())), cheapestCosts);
+                }
+            }
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void searchEnginesShouldFindSamePaths() {
+        try (Transaction tx = database.beginTx()) {
+            for (Node start : database.getAllNodes()) {
+                for (Node end : database.getAllNodes()) {
+                    assertSamePaths(new PathFinderInput(start, end).setMaxDepth(4));
+                    assertSamePaths(new PathFinderInput(start, end).setMaxDepth(4).setDirection(OUTGOING));
+                    assertSamePaths(new PathFinderInput(start, end).setMaxDepth(4).addTypeAndDirection(RelTypes.R1, INCOMING).addType(RelTypes.R2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pathsShouldBeCompactAndConsistentWithTheGraph() {
+        try (Transaction tx = database.beginTx()) {
+            for (SearchEngine searchEngine : new SearchEngine[]{SearchEngine.PER_DEPTH, SearchEngine.INCREMENTAL, SearchEngine.BIDIRECTIONAL}) {
+                for (Node start : database.getAllNodes()) {
+                    for (Node end : database.getAllNodes()) {
+                        PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(4).setSearchEngine(searchEngine);
+                        for (Path path : pathFinder.findPaths(input)) {
+                            assertTrue(path instanceof CompactPath);
+                            assertEquals(start, path.startNode());
+                            assertEquals(end, path.endNode());
+
+                            List<Node> nodes = Iterables.asList(path.nodes());
+                            List<Relationship> relationships = Iterables.asList(path.relationships());
+                            assertEquals(path.length() + 1, nodes.size());
+                            assertEquals(path.length(), relationships.size());
+                            for (int i = 0; i < relationships.size(); i++) {
+                                assertEquals(nodes.get(i + 1), relationships.get(i).getOtherNode(nodes.get(i)));
+                            }
+
+                            Collections.reverse(nodes);
+                            assertEquals(nodes, Iterables.asList(path.reverseNodes()));
+                            assertEquals(2 * path.length() + 1, Iterables.count(path));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void jsonPathsOfTheSameResponseShouldShareNodesAndRelationships() {
+        try (Transaction tx = database.beginTx()) {
+            one.setProperty("name", "one");
+            List<? extends Path> paths = pathFinder.findPaths(new PathFinderInput(one, three).setMaxDepth(3));
+            assertTrue(paths.size() > 1);
+
+            JsonPathFinderInput jsonInput = new JsonPathFinderInput();
+            jsonInput.setNodeProperties(new String[]{"name"});
+            JsonPathElements elements = new JsonPathElements(database, jsonInput);
+
+            JsonPath first = new JsonPath(paths.get(0), elements);
+            JsonPath second = new JsonPath(paths.get(1), elements);
+            assertSame(first.getNodes()[0], second.getNodes()[0]);
+            assertSame(first.getNodes()[first.getNodes().length - 1], second.getNodes()[second.getNodes().length - 1]);
+            assertEquals(Long.valueOf(one.getId()), first.getNodes()[0].getId());
+            assertEquals("one", first.getNodes()[0].getProperties().get("name"));
+        }
+    }
+
+    @Test
+    public void searchEnginesShouldFindSamePathsInRandomGraph() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(50, 150)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            for (int i = 0; i < 50; i += 7) {
+                for (int j = 0; j < 50; j += 5) {
+                    assertSamePaths(new PathFinderInput(randomDatabase.getNodeById(i), randomDatabase.getNodeById(j)).setMaxDepth(5));
+                }
+            }
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void snapshotSearchShouldFindSamePaths() {
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(database);
+        snapshots.rebuild(Collections.singleton(COST));
+        NumberOfShortestPathsFinder snapshotPathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+
+        try (Transaction tx = database.beginTx()) {
+            for (Node start : database.getAllNodes()) {
+                for (Node end : database.getAllNodes()) {
+                    for (Direction direction : Direction.values()) {
+                        PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(4).setDirection(direction);
+                        assertEquals(pathsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.PER_DEPTH))),
+                                pathsAsStrings(snapshotPathFinder.findPaths(input.setSearchEngine(SearchEngine.SNAPSHOT))));
+                    }
+
+                    PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(4).addTypeAndDirection(RelTypes.R1, OUTGOING).addType(RelTypes.R2);
+                    assertEquals(pathsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.PER_DEPTH))),
+                            pathsAsStrings(snapshotPathFinder.findPaths(input.setSearchEngine(SearchEngine.SNAPSHOT))));
+
+                    for (int maxResults = 1; maxResults <= 5; maxResults++) {
+                        for (SortOrder sortOrder : new SortOrder[]{SortOrder.LENGTH_ASC_THEN_COST_ASC, SortOrder.LENGTH_ASC_THEN_COST_DESC}) {
+                            input = new PathFinderInput(start, end).setMaxDepth(4).setMaxResults(maxResults).setCostProperty(COST).setSortOrder(sortOrder);
+                            assertEquals(costsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.PER_DEPTH))),
+                                    costsAsStrings(snapshotPathFinder.findPaths(input.setSearchEngine(SearchEngine.SNAPSHOT))));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void snapshotSearchShouldFindSamePathsInRandomGraph() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(50, 150)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(randomDatabase);
+        GraphSnapshot snapshot = snapshots.rebuild(Collections.<String>emptyList());
+        NumberOfShortestPathsFinder snapshotPathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+
+        assertEquals(50, snapshot.getNodeCount());
+        assertEquals(150, snapshot.getRelationshipCount());
+        assertTrue(snapshot.getMemoryFootprint() > 150 * 2 * 12);
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            for (int i = 0; i < 50; i += 7) {
+                for (int j = 0; j < 50; j += 5) {
+                    PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(i), randomDatabase.getNodeById(j)).setMaxDepth(5);
+                    assertEquals(pathsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.INCREMENTAL))),
+                            pathsAsStrings(snapshotPathFinder.findPaths(input.setSearchEngine(SearchEngine.SNAPSHOT))));
+                }
+            }
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void snapshotShouldBeConsistentWhenGraphChangesDuringBuild() throws InterruptedException {
+        final GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(200, 1000)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(42);
+                while (!stop.get()) {
+                    try (Transaction tx = randomDatabase.beginTx()) {
+                        Node node = randomDatabase.createNode();
+                        node.createRelationshipTo(randomDatabase.getNodeById(random.nextInt(200)), RelTypes.R1);
+                        for (Relationship relationship : randomDatabase.getNodeById(random.nextInt(200)).getRelationships()) {
+                            relationship.delete();
+                            break;
+                        }
+                        tx.success();
+                    }
+                }
+            }
+        });
+        writer.start();
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                try {
+                    assertConsistent(GraphSnapshot.build(randomDatabase, Collections.<String>emptyList()));
+                } catch (ConcurrentModificationException e) {
+                    //the graph kept changing, which is a clean failure
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+
+        try {
+            assertConsistent(GraphSnapshot.build(randomDatabase, Collections.<String>emptyList()));
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void snapshotMemoryShouldNotDependOnNumberOfTypes() {
+        GraphDatabaseService typedDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try (Transaction tx = typedDatabase.beginTx()) {
+            Node previous = typedDatabase.createNode();
+            for (int i = 0; i < 1000; i++) {
+                Node next = typedDatabase.createNode();
+                previous.createRelationshipTo(next, RelationshipType.withName("TYPE_" + i % 100));
+                previous = next;
+            }
+            tx.success();
+        }
+
+        try {
+            GraphSnapshot snapshot = GraphSnapshot.build(typedDatabase, Collections.<String>emptyList());
+            assertEquals(100, snapshot.getTypeCount());
+            assertConsistent(snapshot);
+
+            //a group per node, type and direction would take 4 bytes * 1001 nodes * 100 types * 2 directions
+            assertTrue(snapshot.getMemoryFootprint() < 100 * 2001);
+
+            for (int node = 0; node < 1000; node++) {
+                int type = snapshot.typeIndex("TYPE_" + node % 100);
+                assertEquals(1, snapshot.to(GraphSnapshot.OUTGOING, node, type) - snapshot.from(GraphSnapshot.OUTGOING, node, type));
+                assertEquals(1, snapshot.to(GraphSnapshot.OUTGOING, node) - snapshot.from(GraphSnapshot.OUTGOING, node));
+                assertEquals(0, snapshot.to(GraphSnapshot.OUTGOING, node, (type + 1) % 100) - snapshot.from(GraphSnapshot.OUTGOING, node, (type + 1) % 100));
+            }
+        } finally {
+            typedDatabase.shutdown();
+        }
+    }
+
+    /**
+     * Check that every relationship of a snapshot is stored once in each direction, between the same nodes.
+     */
+    private void assertConsistent(GraphSnapshot snapshot) {
+        Map<Long, String> outgoing = new HashMap<>();
+        Map<Long, String> incoming = new HashMap<>();
+
+        for (int node = 0; node < snapshot.getNodeCount(); node++) {
+            for (int type = 0; type < snapshot.getTypeCount(); type++) {
+                for (int position = snapshot.from(GraphSnapshot.OUTGOING, node, type); position < snapshot.to(GraphSnapshot.OUTGOING, node, type); position++) {
+                    String nodes = snapshot.nodeId(node) + "-" + snapshot.nodeId(snapshot.neighbour(GraphSnapshot.OUTGOING, position));
+                    assertNull(outgoing.put(snapshot.relationshipId(GraphSnapshot.OUTGOING, position), nodes));
+                }
+                for (int position = snapshot.from(GraphSnapshot.INCOMING, node, type); position < snapshot.to(GraphSnapshot.INCOMING, node, type); position++) {
+                    String nodes = snapshot.nodeId(snapshot.neighbour(GraphSnapshot.INCOMING, position)) + "-" + snapshot.nodeId(node);
+                    assertNull(incoming.put(snapshot.relationshipId(GraphSnapshot.INCOMING, position), nodes));
+                }
+            }
+        }
+
+        assertEquals(snapshot.getRelationshipCount(), outgoing.size());
+        assertEquals(outgoing, incoming);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void snapshotSearchShouldFailWithoutSnapshot() {
+        try (Transaction tx = database.beginTx()) {
+            new NumberOfShortestPathsFinder(null, new GraphSnapshotProvider(database)).findPaths(new PathFinderInput(one, three).setSearchEngine(SearchEngine.SNAPSHOT));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void snapshotSearchShouldFailWithoutCostPropertyInSnapshot() {
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(database);
+        snapshots.rebuild(Collections.<String>emptyList());
+
+        try (Transaction tx = database.beginTx()) {
+            new NumberOfShortestPathsFinder(null, snapshots).findPaths(new PathFinderInput(one, three)
+                    .setSearchEngine(SearchEngine.SNAPSHOT)
+                    .setCostProperty(COST)
+                    .setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC));
+        }
+    }
+
+    @Test
+    public void incrementalSearchShouldExpandFewerRelationships() {
+        try (Transaction tx = database.beginTx()) {
+            SearchStatistics incremental = new SearchStatistics();
+            SearchStatistics perDepth = new SearchStatistics();
+
+            pathFinder.findPaths(new PathFinderInput(one, three).setMaxDepth(5).setSearchEngine(SearchEngine.INCREMENTAL), incremental);
+            pathFinder.findPaths(new PathFinderInput(one, three).setMaxDepth(5).setSearchEngine(SearchEngine.PER_DEPTH), perDepth);
+
+            assertTrue(incremental.getExpandedRelationships() > 0);
+            assertTrue(incremental.getExpandedRelationships() < perDepth.getExpandedRelationships());
+
+            SearchStatistics bidirectional = new SearchStatistics();
+            pathFinder.findPaths(new PathFinderInput(one, three).setMaxDepth(5).setSearchEngine(SearchEngine.BIDIRECTIONAL), bidirectional);
+            assertTrue(bidirectional.getExpandedRelationships() < perDepth.getExpandedRelationships());
+        }
+    }
+
+    @Test
+    public void statisticsShouldDescribeFoundPaths() {
+        try (Transaction tx = database.beginTx()) {
+            for (SearchEngine engine : SearchEngine.values()) {
+                if (SearchEngine.SNAPSHOT.equals(engine)) {
+                    continue;
+                }
+
+                SearchStatistics statistics = new SearchStatistics();
+                List<? extends Path> paths = pathFinder.findPaths(new PathFinderInput(one, three).setMaxDepth(5).setSearchEngine(engine), statistics);
+
+                Map<Integer, Long> expected = new TreeMap<>();
+                for (Path path : paths) {
+                    expected.put(path.length(), expected.containsKey(path.length()) ? expected.get(path.length()) + 1 : 1);
+                }
+
+                Map<Integer, Long> actual = new TreeMap<>();
+                for (PathCount count : statistics.getPathsPerLength()) {
+                    actual.put(count.getLength(), count.getCount());
+                }
+
+                assertEquals(expected, actual);
+                assertEquals(paths.get(0).length(), statistics.getShortestPathLength());
+                assertEquals(5, statistics.getDepthReached());
+            }
+        }
+    }
+
+    @Test
+    public void bidirectionalSearchShouldExpandFewerRelationshipsInRandomGraph() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(200, 1000)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            SearchStatistics bidirectional = new SearchStatistics();
+            SearchStatistics incremental = new SearchStatistics();
+
+            PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(0), randomDatabase.getNodeById(1)).setMaxDepth(4);
+            pathFinder.findPaths(input.setSearchEngine(SearchEngine.BIDIRECTIONAL), bidirectional);
+            pathFinder.findPaths(input.setSearchEngine(SearchEngine.INCREMENTAL), incremental);
+
+            assertTrue(bidirectional.getExpandedRelationships() < incremental.getExpandedRelationships());
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void branchesThatCannotReachEndNodeShouldBePruned() {
+        GraphDatabaseService prunedDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        RelationshipType type = DynamicRelationshipType.withName("R1");
+        Node start, end;
+
+        //start->a->end, start->b->c->end, and 10 dead ends start->x->y->3*(z->w), none of which can reach the end node
+        try (Transaction tx = prunedDatabase.beginTx()) {
+            start = prunedDatabase.createNode();
+            end = prunedDatabase.createNode();
+            Node a = prunedDatabase.createNode();
+            Node b = prunedDatabase.createNode();
+            Node c = prunedDatabase.createNode();
+            start.createRelationshipTo(a, type);
+            a.createRelationshipTo(end, type);
+            start.createRelationshipTo(b, type);
+            b.createRelationshipTo(c, type);
+            c.createRelationshipTo(end, type);
+
+            for (int i = 0; i < 10; i++) {
+                Node x = prunedDatabase.createNode();
+                Node y = prunedDatabase.createNode();
+                start.createRelationshipTo(x, type);
+                x.createRelationshipTo(y, type);
+                for (int j = 0; j < 3; j++) {
+                    Node z = prunedDatabase.createNode();
+                    y.createRelationshipTo(z, type);
+                    z.createRelationshipTo(prunedDatabase.createNode(), type);
+                }
+            }
+
+            tx.success();
+        }
+
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(prunedDatabase);
+        snapshots.rebuild(Collections.<String>emptyList());
+        NumberOfShortestPathsFinder snapshotPathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+
+        try (Transaction tx = prunedDatabase.beginTx()) {
+            //the searches for the shortest paths reach the y nodes, but the y and z nodes are never expanded, which would
+            //add at least 60 relationships per search
+            SearchStatistics incremental = new SearchStatistics();
+            assertEquals(2, snapshotPathFinder.findPaths(new PathFinderInput(start, end).setMaxDepth(5).setDirection(OUTGOING).setSearchEngine(SearchEngine.INCREMENTAL), incremental).size());
+            assertTrue(incremental.getExpandedRelationships() < 40);
+
+            //snapshot searches don't remember expansions, so they expand the start node's relationships for every length
+            SearchStatistics snapshot = new SearchStatistics();
+            assertEquals(2, snapshotPathFinder.findPaths(new PathFinderInput(start, end).setMaxDepth(5).setDirection(OUTGOING).setSearchEngine(SearchEngine.SNAPSHOT), snapshot).size());
+            assertTrue(snapshot.getExpandedRelationships() < 110);
+        } finally {
+            prunedDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void pathCountsShouldMatchFoundPaths() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(100, 400)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            for (int end = 0; end < 10; end++) {
+                for (int hubDegreeThreshold : new int[]{Integer.MAX_VALUE, 10}) {
+                    PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(0), randomDatabase.getNodeById(end))
+                            .setMaxDepth(4).setHubDegreeThreshold(hubDegreeThreshold).setSearchEngine(SearchEngine.PER_DEPTH);
+
+                    Map<Integer, Long> expected = new TreeMap<>();
+                    for (Path path : pathFinder.findPaths(input)) {
+                        expected.put(path.length(), expected.containsKey(path.length()) ? expected.get(path.length()) + 1 : 1);
+                    }
+
+                    Map<Integer, Long> actual = new TreeMap<>();
+                    for (PathCount count : pathFinder.countPaths(input, new SearchStatistics())) {
+                        if (count.getCount() > 0) {
+                            actual.put(count.getLength(), count.getCount());
+                        }
+                    }
+
+                    assertEquals(expected, actual);
+                }
+            }
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelSearchShouldFindSamePathsInSameOrder() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(200, 1000)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            for (Relationship relationship : randomDatabase.getAllRelationships()) {
+                relationship.setProperty(COST, relationship.getId() % 7);
+            }
+            tx.success();
+        }
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            for (SortOrder sortOrder : new SortOrder[]{SortOrder.LENGTH_ASC, SortOrder.LENGTH_ASC_THEN_COST_ASC, SortOrder.LENGTH_ASC_THEN_COST_DESC}) {
+                PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(0), randomDatabase.getNodeById(1))
+                        .setMaxDepth(4).setMaxResults(50).setCostProperty(COST).setSortOrder(sortOrder).setSearchEngine(SearchEngine.INCREMENTAL);
+
+                List<? extends Path> sequential = pathFinder.findPaths(input.setParallel(false));
+                List<? extends Path> parallel = pathFinder.findPaths(input.setParallel(true));
+
+                assertFalse(sequential.isEmpty());
+                assertEquals(sequential.size(), parallel.size());
+                for (int i = 0; i < sequential.size(); i++) {
+                    if (SortOrder.LENGTH_ASC.equals(sortOrder)) {
+                        assertEquals(sequential.get(i), parallel.get(i));
+                    } else {
+                        //paths with the same length and cost can be in any order
+                        assertEquals(sequential.get(i).length(), parallel.get(i).length());
+                        assertEquals(((WeightedPath) sequential.get(i)).getCost(), ((WeightedPath) parallel.get(i)).getCost());
+                    }
+                }
+            }
+
+            PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(0), randomDatabase.getNodeById(1))
+                    .setMaxDepth(5).setSearchEngine(SearchEngine.INCREMENTAL).setParallel(true);
+
+            SearchStatistics complete = new SearchStatistics();
+            List<? extends Path> allPaths = pathFinder.findPaths(input, complete);
+            assertFalse(complete.isTruncated());
+
+            //branches expand nodes again in caches of their own, but follow the same relationships
+            SearchStatistics sequential = new SearchStatistics();
+            pathFinder.findPaths(input.setParallel(false), sequential);
+            assertEquals(sequential.getFollowedRelationships(), complete.getFollowedRelationships());
+
+            SearchStatistics truncated = new SearchStatistics();
+            List<? extends Path> somePaths = pathFinder.findPaths(input.setParallel(true).setMaxExpansions(steps(complete) / 2), truncated);
+            assertTrue(truncated.isTruncated());
+            assertTrue(somePaths.size() < allPaths.size());
+            //every task stops at the first step it can't reserve, the rest of the budget is shared
+            assertTrue(steps(truncated) <= steps(complete) / 2 + randomDatabase.getNodeById(0).getDegree());
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parallelSearchShouldFailOncePathFinderHasBeenShutDown() {
+        pathFinder.shutdown();
+
+        try (Transaction tx = database.beginTx()) {
+            pathFinder.findPaths(new PathFinderInput(one, three).setSearchEngine(SearchEngine.INCREMENTAL).setParallel(true));
+        }
+    }
+
+    @Test
+    public void searchShouldBeTruncatedWhenExpansionBudgetRunsOut() {
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(database);
+        snapshots.rebuild(Collections.singleton(COST));
+        NumberOfShortestPathsFinder snapshotPathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+
+        try (Transaction tx = database.beginTx()) {
+            for (SearchEngine searchEngine : SearchEngine.values()) {
+                for (SortOrder sortOrder : SortOrder.values()) {
+                    PathFinderInput input = new PathFinderInput(one, three).setMaxDepth(5).setMaxResults(10).setCostProperty(COST).setSortOrder(sortOrder).setSearchEngine(searchEngine);
+
+                    SearchStatistics complete = new SearchStatistics();
+                    List<? extends Path> allPaths = snapshotPathFinder.findPaths(input, complete);
+                    assertFalse(complete.isTruncated());
+
+                    SearchStatistics exact = new SearchStatistics();
+                    assertEquals(allPaths.size(), snapshotPathFinder.findPaths(input.setMaxExpansions(steps(complete)), exact).size());
+                    assertFalse(exact.isTruncated());
+
+                    SearchStatistics truncated = new SearchStatistics();
+                    List<? extends Path> somePaths = snapshotPathFinder.findPaths(input.setMaxExpansions(steps(complete) / 2), truncated);
+                    assertTrue(truncated.isTruncated());
+                    assertEquals(steps(complete) / 2 + 1, steps(truncated));
+                    assertTrue(somePaths.size() < allPaths.size());
+                    for (int i = 1; i < somePaths.size(); i++) {
+                        assertTrue(SortOrder.COST_ASC.equals(sortOrder) || somePaths.get(i - 1).length() <= somePaths.get(i).length());
+                    }
+
+                    SearchStatistics none = new SearchStatistics();
+                    assertEquals(0, snapshotPathFinder.findPaths(input.setMaxExpansions(0), none).size());
+                    assertTrue(none.isTruncated());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void enumeratingCachedExpansionsShouldBeLimitedByBudget() {
+        GraphDatabaseService layeredDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        //few relationships, but many paths through them: layers of 6 nodes, each connected to all nodes of the next one
+        Node start;
+        Node end;
+        try (Transaction tx = layeredDatabase.beginTx()) {
+            start = layeredDatabase.createNode();
+            List<Node> layer = Collections.singletonList(start);
+            for (int depth = 0; depth < 4; depth++) {
+                List<Node> nextLayer = new ArrayList<>();
+                for (int i = 0; i < 6; i++) {
+                    Node node = layeredDatabase.createNode();
+                    for (Node previous : layer) {
+                        previous.createRelationshipTo(node, RelTypes.R1);
+                    }
+                    nextLayer.add(node);
+                }
+                layer = nextLayer;
+            }
+            end = layeredDatabase.createNode();
+            for (Node previous : layer) {
+                previous.createRelationshipTo(end, RelTypes.R1);
+            }
+            tx.success();
+        }
+
+        try (Transaction tx = layeredDatabase.beginTx()) {
+            for (SearchEngine engine : new SearchEngine[]{SearchEngine.BIDIRECTIONAL, SearchEngine.INCREMENTAL}) {
+                PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(7).setMaxResults(Integer.MAX_VALUE).setSearchEngine(engine);
+
+                SearchStatistics complete = new SearchStatistics();
+                List<? extends Path> allPaths = pathFinder.findPaths(input, complete);
+                assertFalse(complete.isTruncated());
+                assertTrue(complete.getFollowedRelationships() > 10 * complete.getExpandedRelationships());
+
+                //enough to expand every relationship, but not to enumerate all paths
+                SearchStatistics truncated = new SearchStatistics();
+                List<? extends Path> somePaths = pathFinder.findPaths(input.setMaxExpansions(complete.getExpandedRelationships() * 2), truncated);
+                assertTrue(truncated.isTruncated());
+                assertEquals(complete.getExpandedRelationships() * 2 + 1, steps(truncated));
+                assertTrue(somePaths.size() < allPaths.size());
+            }
+        } finally {
+            layeredDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void searchShouldBeTruncatedWhenTimeRunsOut() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(200, 1000)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            PathFinderInput input = new PathFinderInput(randomDatabase.getNodeById(0), randomDatabase.getNodeById(1)).setMaxDepth(5).setSearchEngine(SearchEngine.INCREMENTAL);
+
+            SearchStatistics complete = new SearchStatistics();
+            List<? extends Path> allPaths = pathFinder.findPaths(input, complete);
+            assertFalse(complete.isTruncated());
+
+            SearchStatistics truncated = new SearchStatistics();
+            List<? extends Path> somePaths = pathFinder.findPaths(input.setMaxTime(0), truncated);
+            assertTrue(truncated.isTruncated());
+            assertTrue(somePaths.size() < allPaths.size());
+            assertTrue(truncated.getExpandedRelationships() < complete.getExpandedRelationships());
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test
+    public void hubsShouldBePruned() {
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(database);
+        snapshots.rebuild(Collections.singleton(COST));
+        NumberOfShortestPathsFinder snapshotPathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+
+        try (Transaction tx = database.beginTx()) {
+            for (SearchEngine searchEngine : SearchEngine.values()) {
+                //nodes 2 and 4 are hubs
+                PathFinderInput input = new PathFinderInput(one, three).setMaxDepth(5).setHubDegreeThreshold(2).setSearchEngine(searchEngine);
+
+                SearchStatistics statistics = new SearchStatistics();
+                List<? extends Path> paths = snapshotPathFinder.findPaths(input.setHubPolicy(HubPolicy.SKIP), statistics);
+                assertEquals(1, paths.size());
+                assertEquals("(1)--[R1,6]-->(6)--[R1,7]-->(7)<--[R1,8]--(3)", paths.get(0).toString());
+                assertEquals(2, statistics.getPrunedHubs());
+
+                paths = snapshotPathFinder.findPaths(input.setHubPolicy(HubPolicy.TARGET_ONLY));
+                assertEquals(2, paths.size());
+                assertEquals("(1)--[R1,0]-->(2)--[R2,1]-->(3)", paths.get(0).toString());
+                assertEquals("(1)--[R1,6]-->(6)--[R1,7]-->(7)<--[R1,8]--(3)", paths.get(1).toString());
+            }
+
+            PathFinderInput input = new PathFinderInput(one, three).setHubDegreeThreshold(2).setCostProperty(COST).setSortOrder(SortOrder.COST_ASC).setMaxResults(10);
+            assertEquals(0, pathFinder.findPaths(input.setHubPolicy(HubPolicy.SKIP)).size());
+            assertEquals(1, pathFinder.findPaths(input.setHubPolicy(HubPolicy.TARGET_ONLY)).size());
+        }
+    }
+
+    @Test
+    public void searchEnginesShouldPruneSameHubsInRandomGraph() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(50, 150)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        GraphSnapshotProvider snapshots = new GraphSnapshotProvider(randomDatabase);
+        snapshots.rebuild(Collections.<String>emptyList());
+        NumberOfShortestPathsFinder snapshotPathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+
+        final int threshold = 6;
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            for (int i = 0; i < 50; i += 7) {
+                for (int j = 1; j < 50; j += 5) {
+                    Node start = randomDatabase.getNodeById(i);
+                    Node end = randomDatabase.getNodeById(j);
+                    List<? extends Path> allPaths = pathFinder.findPaths(new PathFinderInput(start, end).setMaxDepth(4));
+
+                    for (HubPolicy hubPolicy : HubPolicy.values()) {
+                        //paths with hubs pruned must be exactly the paths allowed by the policy
+                        List<Path> expected = new ArrayList<>();
+                        for (Path path : allPaths) {
+                            if (isAllowed(path, threshold, hubPolicy)) {
+                                expected.add(path);
+                            }
+                        }
+
+                        PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(4).setHubDegreeThreshold(threshold).setHubPolicy(hubPolicy);
+                        for (SearchEngine searchEngine : SearchEngine.values()) {
+                            assertEquals(pathsAsStrings(expected), pathsAsStrings(snapshotPathFinder.findPaths(input.setSearchEngine(searchEngine))));
+                        }
+                    }
+                }
+            }
+        } finally {
+            randomDatabase.shutdown();
+        }
+    }
+
+    private boolean isAllowed(Path path, int threshold, HubPolicy hubPolicy) {
+        List<Node> nodes = Iterables.asList(path.nodes());
+        for (int i = 1; i < nodes.size() - 1; i++) {
+            if (nodes.get(i).getDegree() > threshold && (HubPolicy.SKIP.equals(hubPolicy) || i < nodes.size() - 2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void batchShouldFindSamePathsInSameOrder() {
+        GraphDatabaseService randomDatabase = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        new Neo4jGraphGenerator(randomDatabase).generateGraph(new BasicGeneratorConfig(
+                new ErdosRenyiRelationshipGenerator(new ErdosRenyiConfig(50, 150)),
+                SocialNetworkNodeCreator.getInstance(),
+                SocialNetworkRelationshipCreator.getInstance()));
+
+        BatchPathFinder batchPathFinder = new BatchPathFinder(randomDatabase, 4);
+
+        try (Transaction tx = randomDatabase.beginTx()) {
+            final List<PathFinderInput> inputs = new ArrayList<>();
+            for (int i = 0; i < 50; i += 3) {
+                for (int j = 0; j < 50; j += 4) {
+                    inputs.add(new PathFinderInput(randomDatabase.getNodeById(i), randomDatabase.getNodeById(j)).setMaxDepth(4).setMaxResults(20));
+                }
+            }
+
+            final List<Integer> indices = new ArrayList<>();
+            batchPathFinder.findPaths(inputs, 4, new BatchPathListener() {
+                @Override
+                public void resultFound(int index, List<? extends Path> paths) {
+                    indices.add(index);
+                    assertEquals(pathsAsStrings(pathFinder.findPaths(inputs.get(index))), pathsAsStrings(paths));
+                }
+            });
+
+            assertEquals(inputs.size(), indices.size());
+            for (int i = 0; i < indices.size(); i++) {
+                assertEquals(i, (int) indices.get(i));
+            }
+        } finally {
+            batchPathFinder.shutdown();
+            randomDatabase.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchShouldFailWhenSearchFails() {
+        BatchPathFinder batchPathFinder = new BatchPathFinder(database, 2);
+
+        try (Transaction tx = database.beginTx()) {
+            List<PathFinderInput> inputs = new ArrayList<>();
+            inputs.add(new PathFinderInput(one, three));
+            inputs.add(new PathFinderInput(one, three).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC));
+            inputs.add(new PathFinderInput(one, three));
+
+            batchPathFinder.findPaths(inputs, 2, new BatchPathListener() {
+                @Override
+                public void resultFound(int index, List<? extends Path> paths) {
+                    assertEquals(0, index);
+                }
+            });
+        } finally {
+            batchPathFinder.shutdown();
+        }
+    }
+
+    @Test(expected = OutOfMemoryError.class, timeout = 10000)
+    public void batchShouldFailWhenSearchFailsWithError() {
+        BatchPathFinder batchPathFinder = new BatchPathFinder(database, new NumberOfShortestPathsFinder() {
+            @Override
+            public List<? extends Path> findPaths(PathFinderInput input) {
+                if (input.getMaxDepth() == 2) {
+                    throw new OutOfMemoryError("Result too large");
+                }
+                return super.findPaths(input);
+            }
+        }, 2);
+
+        try (Transaction tx = database.beginTx()) {
+            List<PathFinderInput> inputs = new ArrayList<>();
+            inputs.add(new PathFinderInput(one, three));
+            inputs.add(new PathFinderInput(one, three).setMaxDepth(2));
+            inputs.add(new PathFinderInput(one, three));
+
+            batchPathFinder.findPaths(inputs, 2, new BatchPathListener() {
+                @Override
+                public void resultFound(int index, List<? extends Path> paths) {
+                    assertEquals(0, index);
+                }
+            });
+        } finally {
+            batchPathFinder.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void batchShouldFailWhenWorkerFailsAfterResultsHaveBeenPassedOn() {
+        final CountDownLatch firstResultPassedOn = new CountDownLatch(1);
+        final CountDownLatch batchFinished = new CountDownLatch(1);
+        final AtomicInteger transactions = new AtomicInteger();
+
+        //the second worker can't start its transaction, but only once the first result has been passed on
+        GraphDatabaseService failingDatabase = (GraphDatabaseService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{GraphDatabaseService.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("beginTx".equals(method.getName()) && transactions.incrementAndGet() > 1) {
+                    firstResultPassedOn.await();
+                    throw new IllegalStateException("Worker failed");
+                }
+
+                try {
+                    return method.invoke(database, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+
+        try (Transaction tx = database.beginTx()) {
+            final List<PathFinderInput> inputs = new ArrayList<>();
+            inputs.add(new PathFinderInput(one, three));
+            inputs.add(new PathFinderInput(one, three));
+
+            //the first worker is still busy with the second input when the second worker fails
+            BatchPathFinder batchPathFinder = new BatchPathFinder(failingDatabase, new NumberOfShortestPathsFinder() {
+                @Override
+                public List<? extends Path> findPaths(PathFinderInput input) {
+                    if (input == inputs.get(1)) {
+                        try {
+                            batchFinished.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.findPaths(input);
+                }
+            }, 2);
+
+            try {
+                batchPathFinder.findPaths(inputs, 2, new BatchPathListener() {
+                    @Override
+                    public void resultFound(int index, List<? extends Path> paths) {
+                        firstResultPassedOn.countDown();
+                    }
+                });
+            } finally {
+                batchFinished.countDown();
+                batchPathFinder.shutdown();
+            }
+        }
+    }
+
+    private void assertSamePaths(PathFinderInput input) {
+        List<String> expected = pathsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.PER_DEPTH)));
+        assertEquals(expected, pathsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.INCREMENTAL))));
+        assertEquals(expected, pathsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.BIDIRECTIONAL))));
+    }
+
+    private void assertSameCosts(PathFinderInput input) {
+        List<String> expected = costsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.PER_DEPTH)));
+        assertEquals(expected, costsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.INCREMENTAL))));
+        assertEquals(expected, costsAsStrings(pathFinder.findPaths(input.setSearchEngine(SearchEngine.BIDIRECTIONAL))));
+    }
+
+    private List<String> costsAsStrings(List<? extends Path> paths) {
+        List<String> result = new ArrayList<>();
+        for (Path path : paths) {
+            result.add(path.length() + ":" + ((WeightedPath) path).getCost());
+        }
+        return result;
+    }
+
+    private List<String> pathsAsStrings(List<? extends Path> paths) {
+        List<String> result = new ArrayList<>();
+        for (Path path : paths) {
+            result.add(path.length() + ":" + path.toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static long steps(SearchStatistics statistics) {
+        return statistics.getExpandedRelationships() + statistics.getFollowedRelationships();
+    }
 }
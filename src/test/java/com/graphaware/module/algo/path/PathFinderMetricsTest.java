@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.algo.path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.*;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link PathFinderMetrics}, {@link Histogram}, and timing of {@link SearchPhase}s.
+ */
+public class PathFinderMetricsTest {
+
+    private static final RelationshipType TEST = DynamicRelationshipType.withName("TEST");
+    private static final String COST = "cost";
+
+    private GraphDatabaseService database;
+    private Node one, three;
+
+    /**
+     * (1)-[cost=1]->(2)-[cost=1]->(3), (1)-[cost=2]->(4)-[cost=2]->(3)
+     */
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try (Transaction tx = database.beginTx()) {
+            one = database.createNode();
+            Node two = database.createNode();
+            three = database.createNode();
+            Node four = database.createNode();
+
+            one.createRelationshipTo(two, TEST).setProperty(COST, 1);
+            two.createRelationshipTo(three, TEST).setProperty(COST, 1);
+            one.createRelationshipTo(four, TEST).setProperty(COST, 2);
+            four.createRelationshipTo(three, TEST).setProperty(COST, 2);
+
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void emptyHistogramShouldReportZeros() {
+        HistogramSnapshot snapshot = new Histogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getP50());
+        assertEquals(0, snapshot.getP99());
+        assertEquals(0, snapshot.getP999());
+        assertEquals(0, snapshot.getMax());
+    }
+
+    @Test
+    public void histogramShouldReportPercentilesWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5, snapshot.getMean(), 0.001);
+        assertEquals(1000, snapshot.getMax());
+        assertTrue(snapshot.getP50() >= 500 && snapshot.getP50() <= 500 * 1.125);
+        assertTrue(snapshot.getP90() >= 900 && snapshot.getP90() <= 900 * 1.125);
+        assertTrue(snapshot.getP99() >= 990 && snapshot.getP99() <= 1000);
+        assertTrue(snapshot.getP999() >= 999 && snapshot.getP999() <= 1000);
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void bucketsShouldCoverAllValues() {
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucketOf(value);
+            long highest = Histogram.highestValueOf(bucket);
+
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 8);
+            assertEquals(bucket, Histogram.bucketOf(highest));
+            assertEquals(bucket + 1, highest == Long.MAX_VALUE ? bucket + 1 : Histogram.bucketOf(highest + 1));
+        }
+    }
+
+    @Test
+    public void phasesShouldBeTimed() {
+        NumberOfShortestPathsFinder pathFinder = new NumberOfShortestPathsFinder();
+
+        try (Transaction tx = database.beginTx()) {
+            PathFinderInput input = new PathFinderInput(one, three).setMaxDepth(3).setMaxResults(10).setCostProperty(COST);
+
+            SearchStatistics byLength = new SearchStatistics();
+            pathFinder.findPaths(input.setSortOrder(SortOrder.LENGTH_ASC), byLength);
+            assertTrue(byLength.hasPhase(SearchPhase.SHORTEST_PATHS));
+            assertFalse(byLength.hasPhase(SearchPhase.SORTING));
+            assertEquals(1, byLength.getLongerPathsTimes().size());
+
+            SearchStatistics byCost = new SearchStatistics();
+            pathFinder.findPaths(input.setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC), byCost);
+            assertTrue(byCost.hasPhase(SearchPhase.SORTING));
+            assertFalse(byCost.hasPhase(SearchPhase.COST_CALCULATION));
+
+            SearchStatistics perDepth = new SearchStatistics();
+            pathFinder.findPaths(input.setSearchEngine(SearchEngine.PER_DEPTH), perDepth);
+            assertTrue(perDepth.hasPhase(SearchPhase.COST_CALCULATION));
+            assertTrue(perDepth.hasPhase(SearchPhase.SORTING));
+
+            //the second path and the search for a third one
+            SearchStatistics cheapest = new SearchStatistics();
+            pathFinder.findPaths(input.setSortOrder(SortOrder.COST_ASC), cheapest);
+            assertTrue(cheapest.hasPhase(SearchPhase.SHORTEST_PATHS));
+            assertEquals(2, cheapest.getLongerPathsTimes().size());
+
+            for (SearchStatistics statistics : new SearchStatistics[]{byLength, byCost, perDepth, cheapest}) {
+                assertFalse(statistics.hasPhase(SearchPhase.INPUT_RESOLUTION));
+                assertFalse(statistics.hasPhase(SearchPhase.SERIALIZATION));
+                assertTrue(statistics.getPhaseTime(SearchPhase.SHORTEST_PATHS) > 0);
+            }
+
+            PathFinderMetrics metrics = new PathFinderMetrics();
+            metrics.record(byLength, 1000000, 2);
+            metrics.record(cheapest, 3000000, 2);
+
+            assertEquals(2, metrics.getRequests());
+            assertEquals(3000, metrics.getRequestTimes().getMax());
+            assertEquals(2, metrics.getPhaseTimes().get(SearchPhase.SHORTEST_PATHS.name()).getCount());
+            assertEquals(3, metrics.getPhaseTimes().get(SearchPhase.LONGER_PATHS.name()).getCount());
+            assertEquals(0, metrics.getPhaseTimes().get(SearchPhase.SORTING.name()).getCount());
+            assertEquals(2, metrics.getReturnedPaths().getMax());
+            assertEquals(Math.max(byLength.getExpandedRelationships(), cheapest.getExpandedRelationships()), metrics.getExpandedRelationships().getMax(), 0);
+
+            metrics.reset();
+            assertEquals(0, metrics.getRequests());
+            assertEquals(0, metrics.getPhaseTimes().get(SearchPhase.SHORTEST_PATHS.name()).getCount());
+        }
+    }
+
+    @Test
+    public void metricsShouldBeAvailableOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(PathFinderMetrics.OBJECT_NAME);
+
+        PathFinderMetrics metrics = new PathFinderMetrics();
+        metrics.register();
+        //registering again replaces the metrics
+        metrics.register();
+
+        try {
+            SearchStatistics statistics = new SearchStatistics();
+            statistics.startPhase(SearchPhase.INPUT_RESOLUTION);
+            statistics.finishPhase();
+            metrics.record(statistics, 5000, 0);
+
+            assertEquals(1L, server.getAttribute(name, "Requests"));
+            assertEquals(1L, ((CompositeData) server.getAttribute(name, "RequestTimes")).get("count"));
+
+            TabularData phaseTimes = (TabularData) server.getAttribute(name, "PhaseTimes");
+            assertEquals(SearchPhase.values().length, phaseTimes.size());
+            CompositeData inputResolution = (CompositeData) phaseTimes.get(new Object[]{SearchPhase.INPUT_RESOLUTION.name()}).get("value");
+            assertEquals(1L, inputResolution.get("count"));
+
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Requests"));
+        } finally {
+            metrics.unregister();
+        }
+
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void replacedMetricsShouldNotUnregisterNewOnes() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(PathFinderMetrics.OBJECT_NAME);
+
+        PathFinderMetrics oldMetrics = new PathFinderMetrics();
+        PathFinderMetrics newMetrics = new PathFinderMetrics();
+        oldMetrics.register();
+        newMetrics.register();
+
+        try {
+            oldMetrics.unregister();
+            assertTrue(server.isRegistered(name));
+
+            newMetrics.record(new SearchStatistics(), 5000, 0);
+            assertEquals(1L, server.getAttribute(name, "Requests"));
+        } finally {
+            newMetrics.unregister();
+        }
+
+        assertFalse(server.isRegistered(name));
+    }
+}
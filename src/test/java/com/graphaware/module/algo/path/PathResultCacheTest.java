@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.algo.path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.*;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link PathResultCache}.
+ */
+public class PathResultCacheTest {
+
+    private static final RelationshipType TEST = DynamicRelationshipType.withName("TEST");
+    private static final String COST = "cost";
+
+    private GraphDatabaseService database;
+    private PathResultCache cache;
+    private Node one, two, three, four;
+    private Relationship oneTwo, twoThree, oneFour, fourThree;
+
+    /**
+     * (1)-[cost=1]->(2)-[cost=1]->(3), (1)-[cost=2]->(4)-[cost=2]->(3)
+     */
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        cache = new PathResultCache(database, new NumberOfShortestPathsFinder(), 3);
+
+        try (Transaction tx = database.beginTx()) {
+            one = database.createNode();
+            two = database.createNode();
+            three = database.createNode();
+            four = database.createNode();
+
+            oneTwo = one.createRelationshipTo(two, TEST);
+            oneTwo.setProperty(COST, 1);
+            twoThree = two.createRelationshipTo(three, TEST);
+            twoThree.setProperty(COST, 1);
+            oneFour = one.createRelationshipTo(four, TEST);
+            oneFour.setProperty(COST, 2);
+            fourThree = four.createRelationshipTo(three, TEST);
+            fourThree.setProperty(COST, 2);
+
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        cache.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    public void sameInputShouldBeServedFromCache() {
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> first = cache.findPaths(new PathFinderInput(one, three));
+            List<? extends Path> second = cache.findPaths(new PathFinderInput(one, three).setSearchEngine(SearchEngine.INCREMENTAL));
+            cache.findPaths(new PathFinderInput(one, three).setMaxDepth(4));
+
+            assertEquals(2, first.size());
+            assertSame(first, second);
+            assertEquals(1, cache.getHits());
+            assertEquals(2, cache.getMisses());
+            assertEquals(2, cache.getSize());
+        }
+    }
+
+    @Test
+    public void cacheShouldBeBounded() {
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> first = cache.findPaths(new PathFinderInput(one, three));
+            cache.findPaths(new PathFinderInput(one, two));
+            cache.findPaths(new PathFinderInput(one, four));
+            cache.findPaths(new PathFinderInput(two, four));
+
+            assertEquals(3, cache.getSize());
+            assertNotSame(first, cache.findPaths(new PathFinderInput(one, three)));
+        }
+    }
+
+    @Test
+    public void createdRelationshipsShouldInvalidateAllResults() {
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(2, cache.findPaths(new PathFinderInput(one, three)).size());
+            assertEquals(2, cache.findPaths(new PathFinderInput(two, four)).size());
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            one.createRelationshipTo(three, TEST);
+            tx.success();
+        }
+
+        assertEquals(0, cache.getSize());
+
+        try (Transaction tx = database.beginTx()) {
+            List<? extends Path> paths = cache.findPaths(new PathFinderInput(one, three));
+            assertEquals(3, paths.size());
+            assertEquals(1, paths.get(0).length());
+        }
+    }
+
+    @Test
+    public void deletedRelationshipsShouldInvalidateResultsContainingThem() {
+        try (Transaction tx = database.beginTx()) {
+            cache.findPaths(new PathFinderInput(one, three));
+            cache.findPaths(new PathFinderInput(one, two).setMaxDepth(1));
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            twoThree.delete();
+            tx.success();
+        }
+
+        assertEquals(1, cache.getSize());
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(1, cache.findPaths(new PathFinderInput(one, three)).size());
+            cache.findPaths(new PathFinderInput(one, two).setMaxDepth(1));
+            assertEquals(1, cache.getHits());
+        }
+    }
+
+    @Test
+    public void deletedRelationshipsShouldInvalidateResultsWithHubThreshold() {
+        Relationship fourFive;
+        try (Transaction tx = database.beginTx()) {
+            fourFive = four.createRelationshipTo(database.createNode(), TEST);
+            tx.success();
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(1, cache.findPaths(new PathFinderInput(one, three).setHubDegreeThreshold(2)).size());
+            cache.findPaths(new PathFinderInput(one, two).setMaxDepth(1));
+        }
+
+        //four is no longer a hub
+        try (Transaction tx = database.beginTx()) {
+            fourFive.delete();
+            tx.success();
+        }
+
+        assertEquals(1, cache.getSize());
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(2, cache.findPaths(new PathFinderInput(one, three).setHubDegreeThreshold(2)).size());
+        }
+    }
+
+    @Test
+    public void changedCostsShouldInvalidateResultsSortedByCost() {
+        PathFinderInput byCost = new PathFinderInput(one, three).setCostProperty(COST).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC).setMaxResults(1);
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(oneTwo, cache.findPaths(byCost).get(0).relationships().iterator().next());
+            cache.findPaths(new PathFinderInput(one, three));
+        }
+
+        //a relationship not in the cached result becomes cheaper
+        try (Transaction tx = database.beginTx()) {
+            fourThree.setProperty(COST, -5);
+            tx.success();
+        }
+
+        assertEquals(1, cache.getSize());
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(oneFour, cache.findPaths(byCost).get(0).relationships().iterator().next());
+        }
+    }
+
+    @Test
+    public void resultsOfSearchesRunningDuringChangesShouldNotBeCached() throws InterruptedException {
+        assertResultNotCachedWhenChangedDuringSearch(new PathFinderInput(one, three), new Runnable() {
+            @Override
+            public void run() {
+                oneTwo.delete();
+            }
+        });
+
+        assertResultNotCachedWhenChangedDuringSearch(new PathFinderInput(one, three).setCostProperty(COST).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_ASC), new Runnable() {
+            @Override
+            public void run() {
+                oneFour.setProperty(COST, 0);
+            }
+        });
+    }
+
+    @Test
+    public void unrelatedChangesShouldNotInvalidateResults() {
+        try (Transaction tx = database.beginTx()) {
+            cache.findPaths(new PathFinderInput(one, three).setCostProperty(COST).setSortOrder(SortOrder.LENGTH_ASC_THEN_COST_DESC));
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            oneTwo.setProperty("other", 5);
+            one.setProperty("name", "one");
+            database.createNode();
+            tx.success();
+        }
+
+        assertEquals(1, cache.getSize());
+    }
+
+    /**
+     * Find paths through a cache whose path finder commits a change in another thread after the paths have been
+     * found, but before they are cached, and check that the paths aren't cached.
+     */
+    private void assertResultNotCachedWhenChangedDuringSearch(PathFinderInput input, final Runnable change) throws InterruptedException {
+        cache.shutdown();
+        cache = new PathResultCache(database, new NumberOfShortestPathsFinder() {
+            @Override
+            public List<? extends Path> findPaths(PathFinderInput input, SearchStatistics statistics) {
+                List<? extends Path> paths = super.findPaths(input, statistics);
+
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try (Transaction tx = database.beginTx()) {
+                            change.run();
+                            tx.success();
+                        }
+                    }
+                });
+                thread.start();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+
+                return paths;
+            }
+        }, 3);
+
+        try (Transaction tx = database.beginTx()) {
+            assertFalse(cache.findPaths(input).isEmpty());
+        }
+
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -23,6 +23,7 @@ import org.neo4j.graphdb.*;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit test for {@link com.graphaware.module.algo.path.PropertyBasedRelationshipCostFinder} implementations.
@@ -96,4 +97,131 @@ public class PropertyBasedRelationshipCostFinderTest {
             assertEquals(Long.MAX_VALUE, new MaxLongDefaultingRelationshipCostFinder(COST).getCost(r));
         }
     }
+
+    @Test
+    public void cachedCostShouldBeReadFromPropertyOnlyOnce() {
+        RelationshipCostCaches caches = new RelationshipCostCaches(database, 16);
+
+        try (Transaction tx = database.beginTx()) {
+            RelationshipCostCache cache = caches.forProperty(COST);
+
+            assertEquals(5, new ZeroDefaultingRelationshipCostFinder(cache).getCost(r));
+            assertEquals(5, new MaxLongDefaultingRelationshipCostFinder(cache).getCost(r));
+            assertEquals(5, new ZeroDefaultingRelationshipCostFinder(cache).getCost(r));
+
+            assertEquals(1, cache.getMisses());
+            assertEquals(2, cache.getHits());
+        } finally {
+            caches.shutdown();
+        }
+    }
+
+    @Test
+    public void cachedCostShouldRespectDefaults() {
+        RelationshipCostCaches caches = new RelationshipCostCaches(database, 16);
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(0, new ZeroDefaultingRelationshipCostFinder(caches.forProperty("non-existing")).getCost(r));
+            assertEquals(Long.MAX_VALUE, new MaxLongDefaultingRelationshipCostFinder(caches.forProperty("non-existing")).getCost(r));
+            assertEquals(1, caches.forProperty("non-existing").getHits());
+        } finally {
+            caches.shutdown();
+        }
+    }
+
+    @Test
+    public void cachedCostShouldBeInvalidatedWhenPropertyChanges() {
+        RelationshipCostCaches caches = new RelationshipCostCaches(database, 16);
+        RelationshipCostFinder finder = new ZeroDefaultingRelationshipCostFinder(caches.forProperty(COST));
+
+        try {
+            try (Transaction tx = database.beginTx()) {
+                assertEquals(5, finder.getCost(r));
+            }
+
+            try (Transaction tx = database.beginTx()) {
+                r.setProperty(COST, 7L);
+                tx.success();
+            }
+
+            try (Transaction tx = database.beginTx()) {
+                assertEquals(7, finder.getCost(r));
+            }
+
+            try (Transaction tx = database.beginTx()) {
+                r.removeProperty(COST);
+                tx.success();
+            }
+
+            try (Transaction tx = database.beginTx()) {
+                assertEquals(0, finder.getCost(r));
+            }
+        } finally {
+            caches.shutdown();
+        }
+    }
+
+    @Test
+    public void cachedCostShouldBeInvalidatedWhenRelationshipIsDeleted() {
+        RelationshipCostCaches caches = new RelationshipCostCaches(database, 16);
+        RelationshipCostFinder finder = new ZeroDefaultingRelationshipCostFinder(caches.forProperty(COST));
+
+        try {
+            try (Transaction tx = database.beginTx()) {
+                assertEquals(5, finder.getCost(r));
+            }
+
+            long misses = caches.forProperty(COST).getMisses();
+
+            try (Transaction tx = database.beginTx()) {
+                r.delete();
+                tx.success();
+            }
+
+            Relationship reused;
+            try (Transaction tx = database.beginTx()) {
+                reused = database.createNode().createRelationshipTo(database.createNode(), TEST);
+                tx.success();
+            }
+
+            try (Transaction tx = database.beginTx()) {
+                assertEquals(0, finder.getCost(reused));
+                assertTrue(caches.forProperty(COST).getMisses() > misses);
+            }
+        } finally {
+            caches.shutdown();
+        }
+    }
+
+    @Test
+    public void cacheShouldBeBounded() {
+        RelationshipCostCaches caches = new RelationshipCostCaches(database, 5);
+        RelationshipCostCache cache = caches.forProperty(COST);
+
+        try (Transaction tx = database.beginTx()) {
+            assertEquals(8, cache.getCapacity());
+
+            for (int i = 0; i < 100; i++) {
+                Relationship relationship = database.createNode().createRelationshipTo(database.createNode(), TEST);
+                relationship.setProperty(COST, i);
+                tx.success();
+            }
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            RelationshipCostFinder finder = new ZeroDefaultingRelationshipCostFinder(cache);
+
+            for (int round = 0; round < 2; round++) {
+                for (Relationship relationship : database.getAllRelationships()) {
+                    assertEquals(((Number) relationship.getProperty(COST)).longValue(), finder.getCost(relationship));
+                }
+            }
+
+            //101 relationships don't fit into 8 slots, so most costs must have been read twice
+            assertEquals(202, cache.getHits() + cache.getMisses());
+            assertTrue(cache.getMisses() > 101 + 101 - 8 - 1);
+        } finally {
+            caches.shutdown();
+        }
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RadixHeapTest {
+
+    @Test
+    public void valuesShouldBePoppedByIncreasingKey() {
+        RadixHeap heap = new RadixHeap();
+        Random random = new Random(42);
+        List<Long> expected = new ArrayList<>();
+        List<Long> actual = new ArrayList<>();
+
+        //interleave pushes and pops, as Dijkstra's algorithm does, never pushing keys smaller than the last popped one
+        long last = 0;
+        for (int i = 0; i < 10000; i++) {
+            long key = last + (random.nextInt(10) == 0 ? random.nextLong() & Long.MAX_VALUE >>> 2 : random.nextInt(100));
+            heap.push(key, key);
+            expected.add(key);
+
+            if (random.nextBoolean()) {
+                last = heap.peekKey();
+                assertEquals(last, heap.pop());
+                actual.add(last);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            actual.add(heap.pop());
+        }
+
+        Collections.sort(expected);
+        List<Long> sorted = new ArrayList<>(actual);
+        Collections.sort(sorted);
+
+        assertEquals(sorted, actual);
+        assertEquals(expected, actual);
+        assertEquals(0, heap.size());
+    }
+
+    @Test
+    public void valuesWithSameKeyShouldAllBePopped() {
+        RadixHeap heap = new RadixHeap();
+
+        for (int i = 0; i < 100; i++) {
+            heap.push(7, i);
+        }
+        heap.push(0, 100);
+
+        assertEquals(101, heap.size());
+        assertEquals(0, heap.peekKey());
+        assertEquals(100, heap.pop());
+
+        long sum = 0;
+        while (!heap.isEmpty()) {
+            assertEquals(7, heap.peekKey());
+            sum += heap.pop();
+        }
+        assertEquals(99 * 100 / 2, sum);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keysSmallerThanLastPoppedShouldNotBeAllowed() {
+        RadixHeap heap = new RadixHeap();
+        heap.push(5, 1);
+        heap.pop();
+        heap.push(4, 2);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link SearchStatePool}, {@link SearchState}, and {@link ReusableLongIntMap}.
+ */
+public class SearchStatePoolTest {
+
+    @Test
+    public void stateShouldBeReusedOnSameThread() throws InterruptedException {
+        final SearchStatePool pool = new SearchStatePool();
+
+        SearchState first = pool.acquire();
+        pool.release(first);
+        SearchState second = pool.acquire();
+
+        assertSame(first, second);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+
+        //the state is in use, so a nested search gets a new one, which isn't pooled
+        SearchState nested = pool.acquire();
+        assertNotSame(second, nested);
+        pool.release(nested);
+        pool.release(second);
+
+        assertSame(first, pool.acquire());
+        assertEquals(2, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(1, pool.getSize());
+
+        final AtomicReference<SearchState> other = new AtomicReference<>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                other.set(pool.acquire());
+                pool.release(other.get());
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertNotSame(first, other.get());
+        assertEquals(3, pool.getMisses());
+        assertEquals(0.4, pool.getHitRate(), 0.001);
+        assertTrue(pool.getMemoryFootprint() > 0);
+
+        pool.resetCounters();
+        assertEquals(0, pool.getHits());
+        assertEquals(0, pool.getHitRate(), 0);
+    }
+
+    @Test
+    public void mapShouldBehaveLikeHashMapWhenReused() {
+        ReusableLongIntMap map = new ReusableLongIntMap();
+        Random random = new Random(42);
+
+        for (int round = 0; round < 5; round++) {
+            Map<Long, Integer> expected = new HashMap<>();
+
+            for (int i = 0; i < 1000 * (round + 1); i++) {
+                long key = random.nextInt(5000) * 1000003L;
+                int value = random.nextInt(Integer.MAX_VALUE);
+                map.put(key, value);
+                expected.put(key, value);
+            }
+
+            assertEquals(expected.size(), map.size());
+            for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+            }
+            assertFalse(map.containsKey(1));
+
+            map.clear();
+            assertEquals(0, map.size());
+            for (long key : expected.keySet()) {
+                assertEquals(ReusableLongIntMap.ABSENT, map.get(key));
+            }
+        }
+
+        long footprint = map.getMemoryFootprint();
+        map.trim(64);
+        assertTrue(map.getMemoryFootprint() < footprint);
+        map.put(5, 5);
+        assertEquals(5, map.get(5));
+    }
+
+    @Test
+    public void pooledStateShouldBeUsedBySnapshotAndCheapestPathSearches() {
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try {
+            Node start;
+            Node end;
+            try (Transaction tx = database.beginTx()) {
+                start = database.createNode();
+                Node previous = start;
+                for (int i = 0; i < 100; i++) {
+                    Node next = database.createNode();
+                    previous.createRelationshipTo(next, DynamicRelationshipType.withName("NEXT")).setProperty("cost", i);
+                    previous = next;
+                }
+                end = previous;
+                tx.success();
+            }
+
+            GraphSnapshotProvider snapshots = new GraphSnapshotProvider(database);
+            snapshots.rebuild(Collections.<String>emptyList());
+            NumberOfShortestPathsFinder pathFinder = new NumberOfShortestPathsFinder(null, snapshots);
+            PathFinderMetrics metrics = new PathFinderMetrics(pathFinder.getStatePool());
+
+            try (Transaction tx = database.beginTx()) {
+                for (int i = 0; i < 3; i++) {
+                    PathFinderInput input = new PathFinderInput(start, end).setMaxDepth(100).setCostProperty("cost");
+
+                    assertEquals(100, pathFinder.findPaths(input.setSearchEngine(SearchEngine.SNAPSHOT)).get(0).length());
+                    assertEquals(4950, pathFinder.findCheapestPath(input, new SearchStatistics()).getCost());
+                }
+            }
+
+            assertEquals(1, metrics.getStatePoolSize());
+            assertEquals(5, metrics.getStatePoolHits());
+            assertEquals(1, metrics.getStatePoolMisses());
+            assertTrue(metrics.getStatePoolMemoryFootprint() > 0);
+
+            metrics.reset();
+            assertEquals(0, metrics.getStatePoolHits());
+            assertEquals(1, metrics.getStatePoolSize());
+        } finally {
+            database.shutdown();
+        }
+    }
+}
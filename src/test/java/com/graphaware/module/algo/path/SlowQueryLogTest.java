@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.algo.path;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SlowQueryLogTest {
+
+    private final BlockingQueue<String> entries = new LinkedBlockingQueue<>();
+    private SlowQueryLog log;
+
+    @After
+    public void tearDown() {
+        log.shutdown();
+    }
+
+    @Test
+    public void onlySlowRequestsShouldBeLoggedWithTheirSearch() throws Exception {
+        log = newLog(100, 10);
+
+        JsonPathFinderInput input = new JsonPathFinderInput();
+        input.setStartNode(1L);
+        input.setEndNode(7L);
+        input.setMaxDepth(4);
+
+        SearchStatistics statistics = new SearchStatistics();
+        statistics.startPhase(SearchPhase.SHORTEST_PATHS);
+        statistics.shortestPathsFound(2);
+        statistics.pathFound(2);
+        statistics.startPhase(SearchPhase.LONGER_PATHS);
+        statistics.depthSearched(3);
+        statistics.pathFound(3);
+        statistics.pathFound(3);
+        statistics.finishPhase();
+
+        log.record("increasinglyLongerShortestPath", input, statistics, TimeUnit.MILLISECONDS.toNanos(99));
+        log.record("increasinglyLongerShortestPath", input, statistics, TimeUnit.MILLISECONDS.toNanos(150));
+
+        JSONObject entry = new JSONObject(entries.poll(5, TimeUnit.SECONDS));
+        assertEquals("increasinglyLongerShortestPath", entry.getString("endpoint"));
+        assertEquals(150000, entry.getLong("time"));
+        assertEquals(1, entry.getJSONObject("input").getLong("startNode"));
+        assertEquals(7, entry.getJSONObject("input").getLong("endNode"));
+        assertEquals(4, entry.getJSONObject("input").getInt("maxDepth"));
+        assertEquals(2, entry.getInt("shortestPathLength"));
+        assertEquals(3, entry.getInt("depthReached"));
+        assertEquals(2, entry.getJSONArray("pathsPerLength").length());
+        assertEquals(3, entry.getJSONArray("pathsPerLength").getJSONObject(1).getInt("length"));
+        assertEquals(2, entry.getJSONArray("pathsPerLength").getJSONObject(1).getLong("count"));
+        assertTrue(entry.getJSONObject("phaseTimes").has("SHORTEST_PATHS"));
+        assertTrue(entry.getJSONObject("phaseTimes").has("LONGER_PATHS"));
+        assertEquals(1, entry.getJSONArray("longerPathsTimes").length());
+        assertEquals(0, entry.getLong("droppedBefore"));
+
+        assertNull(entries.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void entriesOverRateShouldBeDroppedAndCounted() throws Exception {
+        log = newLog(0, 2);
+
+        for (int i = 0; i < 10; i++) {
+            log.record("cheapestPath", new JsonPathFinderInput(), new SearchStatistics(), 0);
+        }
+
+        assertNotNull(entries.poll(5, TimeUnit.SECONDS));
+        assertNotNull(entries.poll(5, TimeUnit.SECONDS));
+        assertNull(entries.poll(100, TimeUnit.MILLISECONDS));
+
+        Thread.sleep(1000);
+        log.record("cheapestPath", new JsonPathFinderInput(), new SearchStatistics(), 0);
+
+        assertEquals(8, new JSONObject(entries.poll(5, TimeUnit.SECONDS)).getLong("droppedBefore"));
+    }
+
+    private SlowQueryLog newLog(long threshold, int maxEntriesPerSecond) {
+        return new SlowQueryLog(threshold, maxEntriesPerSecond) {
+            @Override
+            protected void write(String entry) {
+                entries.add(entry);
+            }
+        };
+    }
+}